@@ -1,11 +1,29 @@
 package com.rjrouleau.dining_review_api;
 
 import com.rjrouleau.dining_review_api.model.Restaurant;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 public class AppUtils {
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    // The formats entities are written in, in the order content negotiation picks them for a client that accepts
+    // any. See ResponseFormatConfiguration.
+    private static final List<MediaType> RESPONSE_FORMATS = List.of(
+            MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_CBOR,
+            APPLICATION_SMILE
+    );
 
     // Updates the value of an object's field with a Consumer if the value provided by the Supplier is not null.
     public static <T> void setIfNotNull(Supplier<T> getter, Consumer<T> setter) {
@@ -24,4 +42,59 @@ public class AppUtils {
         Float overallScore = (peanutScore + eggScore + dairyScore) / 3.f;
         return overallScore;
     }
+
+    // Encodes the id of the last row on a page as an opaque cursor for the next page.
+    public static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Decodes a cursor made by encodeCursor. Throws IllegalArgumentException if the cursor is malformed.
+    public static Long decodeCursor(String cursor) {
+        return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+    }
+
+    // Returns true if a save failed because the row breaks a unique constraint, such as a taken userName.
+    public static boolean isUniqueViolation(DataIntegrityViolationException exception) {
+        return exception.getCause() instanceof ConstraintViolationException violation
+                && violation.getKind() == ConstraintViolationException.ConstraintKind.UNIQUE;
+    }
+
+    // Thread factory for the background pools. Makes virtual threads when spring.threads.virtual.enabled is set, so
+    // background work waiting on the database doesn't hold a platform thread, and platform threads otherwise.
+    public static ThreadFactory threadFactory(boolean virtual, String namePrefix) {
+        return virtual
+                ? Thread.ofVirtual().name(namePrefix, 0).factory()
+                : Thread.ofPlatform().name(namePrefix, 0).factory();
+    }
+
+    // Returns a strong ETag for the version tag of a resource, written in the format chosen for the given Accept header,
+    // so that the ETag of a JSON response never matches a CBOR one. Tomcat doesn't compress a response that has a strong
+    // ETag, so these responses are always sent uncompressed and the tag always names the same bytes.
+    public static String etag(String tag, String accept) {
+        MediaType format = responseFormat(accept);
+        return "\"" + tag + (format.equals(MediaType.APPLICATION_JSON) ? "" : "-" + format.getSubtype()) + "\"";
+    }
+
+    // Returns the format a response to the given Accept header is written in, taking the acceptable types by quality
+    // and specificity, as content negotiation does. A missing or malformed header gets JSON.
+    public static MediaType responseFormat(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(acceptable);
+        for (MediaType type : acceptable) {
+            for (MediaType format : RESPONSE_FORMATS) {
+                if (type.getQualityValue() > 0 && type.isCompatibleWith(format)) {
+                    return format;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
 }
@@ -1,9 +1,14 @@
 package com.rjrouleau.dining_review_api;
 
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
+// The servlet application, backed by JPA. JPA only scans the repository package, since it rejects the reactive
+// repositories that the reactive Maven profile adds to the build.
 @SpringBootApplication
+@EnableJpaRepositories(basePackageClasses = RestaurantRepository.class)
 public class DiningReviewApiApplication {
 
 	public static void main(String[] args) {
@@ -2,82 +2,236 @@ package com.rjrouleau.dining_review_api.controller;
 
 import com.rjrouleau.dining_review_api.AppUtils;
 import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.RestaurantExport;
 import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import com.rjrouleau.dining_review_api.service.BulkImporter;
+import com.rjrouleau.dining_review_api.service.EntityStreamWriter;
+import com.rjrouleau.dining_review_api.service.ExportWriter;
+import com.rjrouleau.dining_review_api.service.RestaurantCache;
+import com.rjrouleau.dining_review_api.service.RestaurantLeaderboard;
+import com.rjrouleau.dining_review_api.service.RestaurantUpdater;
+import com.rjrouleau.dining_review_api.service.ScoreRebuildJob;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 
 @RestController
 @RequestMapping("/restaurants")
 public class RestaurantController {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String DUPLICATE_RESTAURANT = "Bad Request: Restaurant name must be unique for a given zipcode.";
+    private static final String RESTAURANT_CONFLICT =
+            "Conflict: Restaurant is being updated by other requests. Please try again.";
+
     private final RestaurantRepository restaurantRepository;
+    private final RestaurantCache restaurantCache;
+    private final RestaurantLeaderboard restaurantLeaderboard;
+    private final RestaurantUpdater restaurantUpdater;
+    private final ScoreRebuildJob scoreRebuildJob;
+    private final EntityStreamWriter entityStreamWriter;
+    private final BulkImporter bulkImporter;
+    private final ExportWriter exportWriter;
 
-    public RestaurantController(RestaurantRepository restaurantRepository) {
+    public RestaurantController(
+            RestaurantRepository restaurantRepository,
+            RestaurantCache restaurantCache,
+            RestaurantLeaderboard restaurantLeaderboard,
+            RestaurantUpdater restaurantUpdater,
+            ScoreRebuildJob scoreRebuildJob,
+            EntityStreamWriter entityStreamWriter,
+            BulkImporter bulkImporter,
+            ExportWriter exportWriter
+    ) {
         this.restaurantRepository = restaurantRepository;
+        this.restaurantCache = restaurantCache;
+        this.restaurantLeaderboard = restaurantLeaderboard;
+        this.restaurantUpdater = restaurantUpdater;
+        this.scoreRebuildJob = scoreRebuildJob;
+        this.entityStreamWriter = entityStreamWriter;
+        this.bulkImporter = bulkImporter;
+        this.exportWriter = exportWriter;
     }
 
+    // Creates a restaurant with a single insert. The unique constraint on the normalized name and zipcode rejects a
+    // restaurant that already exists in that zipcode, including one created by a concurrent request.
     @PostMapping
     public ResponseEntity<Object> createRestaurant(@RequestBody Restaurant restaurant){
-        // check for existing restaurant with this name and return bad request if found.
-        List<Restaurant> sameNameAndZipRestaurants =
-                restaurantRepository.findByNameAndZipcode(restaurant.getName(), restaurant.getZipcode());
-        if (!sameNameAndZipRestaurants.isEmpty()){
-            return new ResponseEntity<>(
-                    "Bad Request: Restaurant name must be unique for a given zipcode.",
-                    HttpStatus.BAD_REQUEST
-            );
+        Restaurant savedRestaurant;
+        try {
+            savedRestaurant = restaurantRepository.save(restaurant);
+        } catch (DataIntegrityViolationException e) {
+            if (!AppUtils.isUniqueViolation(e)) {
+                throw e;
+            }
+            return new ResponseEntity<>(DUPLICATE_RESTAURANT, HttpStatus.BAD_REQUEST);
         }
-        Restaurant savedRestaurant = restaurantRepository.save(restaurant);
+        restaurantLeaderboard.update(null, savedRestaurant);
 
         return new ResponseEntity<>(savedRestaurant, HttpStatus.CREATED);
     }
 
+    // Imports restaurants from an ndjson body, one restaurant per line, as it is read. Returns how many were imported
+    // and the lines that were not, such as a restaurant that already exists in its zipcode.
+    @PostMapping(value = "/import", consumes = EntityStreamWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkImporter.Report> importRestaurants(InputStream body) throws IOException {
+        return new ResponseEntity<>(bulkImporter.importRestaurants(body), HttpStatus.OK);
+    }
+
+    // Exports the scores of every restaurant with an id above sinceId, in id order, as ndjson or csv. zipcode and state
+    // narrow the export. The response is gzipped if the client accepts gzip.
+    @GetMapping("/export")
+    public void exportRestaurantScores(
+            @RequestParam(name = "format", defaultValue = "ndjson") String format,
+            @RequestParam(name = "zipcode", required = false) String zipcode,
+            @RequestParam(name = "state", required = false) String state,
+            @RequestParam(name = "sinceId", required = false) Long sinceId,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        exportWriter.write(format, acceptEncoding, RestaurantExport.class, () -> restaurantRepository.streamExport(
+                sinceId != null ? sinceId : Long.MIN_VALUE,
+                zipcode,
+                state
+        ), response);
+    }
+
+    // Returns one page of restaurants ordered by id. The X-Next-Cursor response header holds the cursor to pass as
+    // after for the next page, and is absent on the last page.
     @GetMapping
-    public ResponseEntity<Iterable<Restaurant>> getRestaurants() {
-        List<Restaurant> restaurantList = new ArrayList<>();
-        // Return restaurants with decimal place adjusted without changing score in repository.
-        restaurantRepository.findAll().forEach(restaurant -> {
-            restaurantList.add(createAdjustedScoresRestaurant(restaurant));
-        });
-        return new ResponseEntity<>(restaurantList, HttpStatus.OK);
+    public ResponseEntity<Object> getRestaurants(
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "after", required = false) String after
+    ) {
+        return getKeysetPage(size, after, restaurantRepository::findByIdGreaterThan);
     }
 
+    // Streams every restaurant in id order in one response. stream is json or ndjson.
+    @GetMapping(params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamRestaurants(@RequestParam String stream) {
+        return entityStreamWriter.write(stream, restaurantRepository::streamAllByOrderByIdAsc);
+    }
+
+    // Returns the restaurant with an ETag made from its version and its Last-Modified date. A request whose
+    // If-None-Match or If-Modified-Since still matches gets 304 without a body. Either way the restaurant is read
+    // through the cache, so a repeated poll rarely reaches the database.
     @GetMapping("/{id}")
-    public ResponseEntity<Restaurant> getRestaurantById(@PathVariable Long id) {
-        Optional<Restaurant> optionalRestaurant = restaurantRepository.findById(id);
+    public ResponseEntity<Restaurant> getRestaurantById(
+            @PathVariable Long id,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept
+    ) {
+        Optional<Restaurant> optionalRestaurant = restaurantCache.findById(id);
         if (optionalRestaurant.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        // Return the restaurant with decimal place adjusted without changing score in repository.
-        Restaurant tempRestaurant = createAdjustedScoresRestaurant(optionalRestaurant.get());
+        Restaurant restaurant = optionalRestaurant.get();
+        HttpHeaders headers = new HttpHeaders();
+        if (restaurant.getVersion() != null) {
+            headers.setETag(AppUtils.etag(restaurant.getVersion().toString(), accept));
+        }
+        if (restaurant.getLastModified() != null) {
+            headers.setLastModified(restaurant.getLastModified());
+        }
+        return new ResponseEntity<>(restaurant, headers, HttpStatus.OK);
+    }
 
-        return new ResponseEntity<>(tempRestaurant, HttpStatus.OK);
+    @GetMapping(value = "/byzipcode/{zipcode}", params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamRestaurantsByZipcode(
+            @PathVariable String zipcode,
+            @RequestParam String stream
+    ) {
+        return entityStreamWriter.write(stream, () -> restaurantRepository.streamByZipcodeOrderByIdAsc(zipcode));
     }
 
+    // Pages carry an ETag summed from the ids and versions of every restaurant in the zipcode, read with one aggregate
+    // query. A request whose If-None-Match still matches gets 304 before the page is loaded.
     @GetMapping("/byzipcode/{zipcode}")
-    public ResponseEntity<List<Restaurant>> getRestaurantByZipcode(@PathVariable String zipcode) {
-        return new ResponseEntity<>(restaurantRepository.findByZipcode(zipcode), HttpStatus.OK);
+    public ResponseEntity<Object> getRestaurantByZipcode(
+            @PathVariable String zipcode,
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "after", required = false) String after,
+            WebRequest request
+    ) {
+        String etag = AppUtils.etag(
+                restaurantRepository.summarizeByZipcode(zipcode).tag(),
+                request.getHeader(HttpHeaders.ACCEPT)
+        );
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return getKeysetPage(
+                size,
+                after,
+                (afterId, pageable) -> restaurantRepository.findByZipcodeAndIdGreaterThan(zipcode, afterId, pageable)
+        );
+    }
+
+    @GetMapping(value = "/bycity/{city}", params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamRestaurantsByCity(
+            @PathVariable String city,
+            @RequestParam String stream
+    ) {
+        return entityStreamWriter.write(stream, () -> restaurantRepository.streamByCityOrderByIdAsc(city));
     }
+
     @GetMapping("/bycity/{city}")
-    public ResponseEntity<List<Restaurant>> getRestaurantByCity(@PathVariable String city) {
-        return new ResponseEntity<>(restaurantRepository.findByCity(city), HttpStatus.OK);
+    public ResponseEntity<Object> getRestaurantByCity(
+            @PathVariable String city,
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "after", required = false) String after
+    ) {
+        return getKeysetPage(
+                size,
+                after,
+                (afterId, pageable) -> restaurantRepository.findByCityAndIdGreaterThan(city, afterId, pageable)
+        );
+    }
+
+    @GetMapping(value = "/bystate/{state}", params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamRestaurantsByState(
+            @PathVariable String state,
+            @RequestParam String stream
+    ) {
+        return entityStreamWriter.write(stream, () -> restaurantRepository.streamByStateOrderByIdAsc(state));
     }
 
     @GetMapping("/bystate/{state}")
-    public ResponseEntity<List<Restaurant>> getRestaurantByState(@PathVariable String state) {
-        return new ResponseEntity<>(restaurantRepository.findByState(state), HttpStatus.OK);
+    public ResponseEntity<Object> getRestaurantByState(
+            @PathVariable String state,
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "after", required = false) String after
+    ) {
+        return getKeysetPage(
+                size,
+                after,
+                (afterId, pageable) -> restaurantRepository.findByStateAndIdGreaterThan(state, afterId, pageable)
+        );
     }
 
-    // Searches for restaurants by zipcode and allergy score in descending order. If allergy is invalid,
-    // all restaurants for that zipcode are returned.
+    // Searches for restaurants by zipcode and allergy score in descending order. Results come from the in-memory
+    // leaderboard for that zipcode and allergy. If limit is given, only the top results are returned.
     @GetMapping("/search")
     public ResponseEntity<Object> getRestaurantByZipcodeAllergyDesc(
             @RequestParam(name = "zipcode") String zipcode,
-            @RequestParam(name = "allergy") String allergy
+            @RequestParam(name = "allergy") String allergy,
+            @RequestParam(name = "limit", required = false) Integer limit
     ){
         // validate that the zipcode is formatted correctly.
         if (!zipcode.matches("\\d{5}")) {
@@ -95,84 +249,120 @@ public class RestaurantController {
                     HttpStatus.BAD_REQUEST
             );
         }
-        // call the appropriate method for the allergy.
-        List<Restaurant> restaurants = switch (allergy.toLowerCase()) {
-            case "peanut" ->
-                    restaurantRepository.
-                            findByZipcodeAndPeanutScoreGreaterThanOrderByPeanutScoreDesc(zipcode, 0.f);
-            case "egg" ->
-                    restaurantRepository.
-                            findByZipcodeAndEggScoreGreaterThanOrderByEggScoreDesc(zipcode, 0.f);
-            case "dairy" ->
-                    restaurantRepository.
-                            findByZipcodeAndDairyScoreGreaterThanOrderByDairyScoreDesc(zipcode, 0.f);
-            default ->
-                    restaurantRepository.
-                            findByZipcode(zipcode);
-        };
+        List<Restaurant> restaurants = restaurantLeaderboard.search(
+                zipcode,
+                RestaurantLeaderboard.Allergy.valueOf(allergy.toUpperCase())
+        );
+        if (limit != null && limit >= 0 && limit < restaurants.size()) {
+            restaurants = restaurants.subList(0, limit);
+        }
         return new ResponseEntity<>(restaurants, HttpStatus.OK);
     }
 
-    // Updates restaurant fields only if provided, and recalculates overall score.
+    // Updates restaurant fields only if provided. Scores in the body are ignored, since they are kept from the accepted
+    // reviews' aggregates and would be overwritten by the next review decision. Returns 400 if the new name or zipcode
+    // matches another restaurant, and 409 if concurrent writes to the restaurant kept the update from applying.
     @PutMapping("/{id}")
-    public ResponseEntity<Restaurant> updateRestaurant(
+    public ResponseEntity<Object> updateRestaurant(
             @PathVariable Long id,
             @RequestBody Restaurant restaurantDetails
     ) {
-        Optional<Restaurant> optionalRestaurant = restaurantRepository.findById(id);
+        AtomicReference<String> previousZipcode = new AtomicReference<>();
+        Optional<Restaurant> optionalRestaurant;
+        try {
+            optionalRestaurant = restaurantUpdater.update(id, restaurant -> {
+                previousZipcode.set(restaurant.getZipcode());
+                AppUtils.setIfNotNull(restaurantDetails::getName, restaurant::setName);
+                AppUtils.setIfNotNull(restaurantDetails::getCity, restaurant::setCity);
+                AppUtils.setIfNotNull(restaurantDetails::getState, restaurant::setState);
+                AppUtils.setIfNotNull(restaurantDetails::getZipcode, restaurant::setZipcode);
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (!AppUtils.isUniqueViolation(e)) {
+                throw e;
+            }
+            return new ResponseEntity<>(DUPLICATE_RESTAURANT, HttpStatus.BAD_REQUEST);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>(RESTAURANT_CONFLICT, HttpStatus.CONFLICT);
+        }
         if (optionalRestaurant.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        Restaurant restaurant = optionalRestaurant.get();
-
-        AppUtils.setIfNotNull(restaurantDetails::getPeanutScore, restaurant::setPeanutScore);
-        AppUtils.setIfNotNull(restaurantDetails::getEggScore, restaurant::setEggScore);
-        AppUtils.setIfNotNull(restaurantDetails::getDairyScore, restaurant::setDairyScore);
-        AppUtils.setIfNotNull(restaurantDetails::getName, restaurant::setName);
-        AppUtils.setIfNotNull(restaurantDetails::getCity, restaurant::setCity);
-        AppUtils.setIfNotNull(restaurantDetails::getState, restaurant::setState);
-        AppUtils.setIfNotNull(restaurantDetails::getZipcode, restaurant::setZipcode);
-        restaurant.setOverallScore(AppUtils.calculateOverallScore(restaurant));
-        Restaurant updatedRestaurant = restaurantRepository.save(restaurant);
+        Restaurant updatedRestaurant = optionalRestaurant.get();
+        restaurantCache.invalidate(id);
+        restaurantLeaderboard.update(previousZipcode.get(), updatedRestaurant);
 
         return new ResponseEntity<>(updatedRestaurant, HttpStatus.OK);
     }
 
+    // Deletes the restaurant through RestaurantUpdater, so a concurrent score or field update doesn't fail the delete.
+    // Returns 409 if concurrent writes to the restaurant kept the delete from applying.
     @DeleteMapping("/{id}")
-    public ResponseEntity<Restaurant> deleteRestaurant(@PathVariable Long id) {
-        Optional<Restaurant> optionalRestaurant = restaurantRepository.findById(id);
+    public ResponseEntity<Object> deleteRestaurant(@PathVariable Long id) {
+        Optional<Restaurant> optionalRestaurant;
+        try {
+            optionalRestaurant = restaurantUpdater.delete(id);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>(RESTAURANT_CONFLICT, HttpStatus.CONFLICT);
+        }
         if (optionalRestaurant.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         Restaurant restaurantTBD = optionalRestaurant.get();
-        restaurantRepository.delete(restaurantTBD);
+        restaurantCache.invalidate(id);
+        restaurantLeaderboard.remove(restaurantTBD);
         return new ResponseEntity<>(restaurantTBD, HttpStatus.NO_CONTENT);
     }
 
-    // Returns a copy of the restaurant with each score adjusted to two decimal places.
-    private Restaurant createAdjustedScoresRestaurant(Restaurant restaurant) {
-        // create a temp restaurant so that restaurants scores are not permanently changed.
-        Restaurant tempRestaurant = Restaurant.builder()
-                .overallScore(restaurant.getOverallScore())
-                .peanutScore(restaurant.getPeanutScore())
-                .eggScore(restaurant.getEggScore())
-                .dairyScore(restaurant.getDairyScore())
-                .name(restaurant.getName())
-                .city(restaurant.getCity())
-                .state(restaurant.getState())
-                .zipcode(restaurant.getZipcode())
-                .build();
-
-        Float adjustedPeanutScore = Float.parseFloat(String.format("%.2f", restaurant.getPeanutScore()));
-        Float adjustedEggScore = Float.parseFloat(String.format("%.2f", restaurant.getEggScore()));
-        Float adjustedDairyScore = Float.parseFloat(String.format("%.2f", restaurant.getDairyScore()));
-        Float adjustedOverallScore = Float.parseFloat(String.format("%.2f", restaurant.getOverallScore()));
-
-        restaurant.setPeanutScore(adjustedPeanutScore);
-        restaurant.setPeanutScore(adjustedEggScore);
-        restaurant.setPeanutScore(adjustedDairyScore);
-        restaurant.setPeanutScore(adjustedOverallScore);
-
-        return tempRestaurant;
+    // Starts rebuilding every restaurant's scores from its accepted reviews in the background. Returns the job progress,
+    // or 409 if a rebuild is already running.
+    @PostMapping("/admin/scores/rebuild")
+    public ResponseEntity<ScoreRebuildJob.Progress> rebuildScores() {
+        if (!scoreRebuildJob.start()) {
+            return new ResponseEntity<>(scoreRebuildJob.getProgress(), HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<>(scoreRebuildJob.getProgress(), HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping("/admin/scores/rebuild")
+    public ResponseEntity<ScoreRebuildJob.Progress> getRebuildScoresProgress() {
+        return new ResponseEntity<>(scoreRebuildJob.getProgress(), HttpStatus.OK);
+    }
+
+    // Reports the size and hit, miss and eviction counts of the restaurant cache used by GET /restaurants/{id}.
+    @GetMapping("/admin/cache/stats")
+    public ResponseEntity<RestaurantCache.Stats> getCacheStats() {
+        return new ResponseEntity<>(restaurantCache.getStats(), HttpStatus.OK);
+    }
+
+    // Runs a keyset page query for the rows after the cursor. One extra row is fetched to learn whether another page
+    // follows, in which case the cursor for it is returned in the X-Next-Cursor header.
+    private ResponseEntity<Object> getKeysetPage(
+            Integer size,
+            String after,
+            BiFunction<Long, Pageable, List<Restaurant>> query
+    ) {
+        int pageSize = size != null ? size : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return new ResponseEntity<>(
+                    "Invalid size. Size must be between 1 and " + MAX_PAGE_SIZE + ".",
+                    HttpStatus.BAD_REQUEST
+            );
+        }
+        Long afterId;
+        try {
+            afterId = after != null ? AppUtils.decodeCursor(after) : Long.MIN_VALUE;
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>("Invalid cursor.", HttpStatus.BAD_REQUEST);
+        }
+
+        List<Restaurant> rows = query.apply(afterId, PageRequest.of(0, pageSize + 1, Sort.by("id")));
+        List<Restaurant> page = rows.size() > pageSize ? rows.subList(0, pageSize) : rows;
+
+        HttpHeaders headers = new HttpHeaders();
+        if (rows.size() > pageSize) {
+            headers.add(NEXT_CURSOR_HEADER, AppUtils.encodeCursor(rows.get(pageSize - 1).getId()));
+        }
+        return new ResponseEntity<>(page, headers, HttpStatus.OK);
     }
 }
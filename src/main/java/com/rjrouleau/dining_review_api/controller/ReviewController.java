@@ -3,14 +3,40 @@ package com.rjrouleau.dining_review_api.controller;
 import com.rjrouleau.dining_review_api.AppUtils;
 import com.rjrouleau.dining_review_api.model.Restaurant;
 import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.ReviewDecision;
+import com.rjrouleau.dining_review_api.model.ReviewDecisionResult;
+import com.rjrouleau.dining_review_api.model.ReviewExport;
+import com.rjrouleau.dining_review_api.model.ScoreDelta;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.model.VersionSummary;
 import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
 import com.rjrouleau.dining_review_api.repository.ReviewRepository;
+import com.rjrouleau.dining_review_api.service.BulkImporter;
+import com.rjrouleau.dining_review_api.service.EntityStreamWriter;
+import com.rjrouleau.dining_review_api.service.ExportWriter;
+import com.rjrouleau.dining_review_api.service.ReviewStatusMetrics;
+import com.rjrouleau.dining_review_api.service.ScoreUpdateQueue;
+import com.rjrouleau.dining_review_api.service.UserCache;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/reviews")
@@ -19,20 +45,86 @@ public class ReviewController {
     private final RestaurantRepository restaurantRepository; // Spring Beans are singletons by default, meaning this
                                                              // repository is the same instance as the
                                                              // restaurantRepository in RestaurantController.
+    private final UserCache userCache;
+    private final ScoreUpdateQueue scoreUpdateQueue;
+    private final EntityStreamWriter entityStreamWriter;
+    private final BulkImporter bulkImporter;
+    private final ExportWriter exportWriter;
+    private final ReviewStatusMetrics reviewStatusMetrics;
 
-    public ReviewController(ReviewRepository reviewRepository, RestaurantRepository restaurantRepository){
+    public ReviewController(
+            ReviewRepository reviewRepository,
+            RestaurantRepository restaurantRepository,
+            UserCache userCache,
+            ScoreUpdateQueue scoreUpdateQueue,
+            EntityStreamWriter entityStreamWriter,
+            BulkImporter bulkImporter,
+            ExportWriter exportWriter,
+            ReviewStatusMetrics reviewStatusMetrics
+    ){
 
         this.reviewRepository = reviewRepository;
         this.restaurantRepository = restaurantRepository;
+        this.userCache = userCache;
+        this.scoreUpdateQueue = scoreUpdateQueue;
+        this.entityStreamWriter = entityStreamWriter;
+        this.bulkImporter = bulkImporter;
+        this.exportWriter = exportWriter;
+        this.reviewStatusMetrics = reviewStatusMetrics;
     }
 
+    // Creates a review for the restaurant with the given restaurantId, written by the user with the given userName.
     @PostMapping
-    public ResponseEntity<Review> createReview(@RequestBody Review review){
+    public ResponseEntity<Object> createReview(@RequestBody Review review){
         // TODO: validate review.commentary length, content
+        Optional<User> userOptional = userCache.findByUserName(review.getUserName());
+        if (userOptional.isEmpty()){
+            return new ResponseEntity<>("Bad Request: User not found.", HttpStatus.BAD_REQUEST);
+        }
+        Optional<Restaurant> restaurantOptional = review.getRestaurantId() != null
+                ? restaurantRepository.findById(review.getRestaurantId())
+                : Optional.empty();
+        if (restaurantOptional.isEmpty()){
+            return new ResponseEntity<>("Bad Request: Restaurant was not found.", HttpStatus.BAD_REQUEST);
+        }
+
+        review.setUser(userOptional.get());
+        review.setUserId(userOptional.get().getId());
+        review.setRestaurant(restaurantOptional.get());
         Review savedReview = reviewRepository.save(review);
         return new ResponseEntity<>(savedReview, HttpStatus.CREATED);
     }
 
+    // Imports reviews from an ndjson body, one review per line, as it is read. Each review needs the userName of an
+    // existing user and the restaurantId of an existing restaurant, and is imported as PENDING. Returns how many were
+    // imported and the lines that were not.
+    @PostMapping(value = "/import", consumes = EntityStreamWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkImporter.Report> importReviews(InputStream body) throws IOException {
+        return new ResponseEntity<>(bulkImporter.importReviews(body), HttpStatus.OK);
+    }
+
+    // Exports every accepted review with an id above sinceId, in id order, as ndjson or csv. restaurantId, zipcode and
+    // state narrow the export to one restaurant or to the restaurants in a zipcode or state. The response is gzipped
+    // if the client accepts gzip. To continue an export, pass the id of the last row received as sinceId.
+    @GetMapping("/export")
+    public void exportAcceptedReviews(
+            @RequestParam(name = "format", defaultValue = "ndjson") String format,
+            @RequestParam(name = "restaurantId", required = false) Long restaurantId,
+            @RequestParam(name = "zipcode", required = false) String zipcode,
+            @RequestParam(name = "state", required = false) String state,
+            @RequestParam(name = "sinceId", required = false) Long sinceId,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        exportWriter.write(format, acceptEncoding, ReviewExport.class, () -> reviewRepository.streamExport(
+                Review.Status.ACCEPTED,
+                sinceId != null ? sinceId : Long.MIN_VALUE,
+                restaurantId,
+                zipcode,
+                state
+        ), response);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Review> getReviewById(@PathVariable Long id){
         Optional<Review> optionalReview = reviewRepository.findById(id);
@@ -43,25 +135,99 @@ public class ReviewController {
         return new ResponseEntity<>(review, HttpStatus.OK);
     }
 
+    // Streams the approved reviews for every restaurant with the given name in one response. stream is json or
+    // ndjson. An empty result is an empty list rather than 404, since the status is sent before any rows are read.
+    @GetMapping(value = "/restaurant/{restaurantName}", params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamApprovedReviewsByRestaurantName(
+            @PathVariable String restaurantName,
+            @RequestParam String stream
+    ){
+        return entityStreamWriter.write(stream, () -> reviewRepository.streamByRestaurantIdInAndStatusOrderByIdAsc(
+                restaurantRepository.findIdsByName(restaurantName),
+                Review.Status.ACCEPTED
+        ));
+    }
+
+    // Returns the approved reviews for every restaurant with the given name. Use /byrestaurant/{restaurantId} to
+    // get the reviews of one restaurant when several share a name. The list carries an ETag summed from the ids and
+    // versions of the reviews, read with one aggregate query, and a request whose If-None-Match still matches gets 304
+    // before the reviews are loaded.
     @GetMapping("/restaurant/{restaurantName}")
-    public ResponseEntity<List<Review>> getApprovedReviewsByRestaurantName(@PathVariable String restaurantName){
-        List<Review> reviews = reviewRepository.findByRestaurantNameAndStatus(restaurantName, Review.Status.ACCEPTED);
+    public ResponseEntity<List<Review>> getApprovedReviewsByRestaurantName(
+            @PathVariable String restaurantName,
+            WebRequest request
+    ){
+        List<Long> restaurantIds = restaurantRepository.findIdsByName(restaurantName);
+        if (restaurantIds.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        VersionSummary summary = reviewRepository.summarizeByRestaurantIdInAndStatus(
+                restaurantIds,
+                Review.Status.ACCEPTED
+        );
+        // an empty list is a 404, which gets no ETag.
+        if (summary.rows() > 0
+                && request.checkNotModified(AppUtils.etag(summary.tag(), request.getHeader(HttpHeaders.ACCEPT)))) {
+            return null;
+        }
+        List<Review> reviews = reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(
+                restaurantIds,
+                Review.Status.ACCEPTED
+        );
+        if (reviews.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(reviews, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/byrestaurant/{restaurantId}", params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamApprovedReviewsByRestaurantId(
+            @PathVariable Long restaurantId,
+            @RequestParam String stream
+    ){
+        return entityStreamWriter.write(stream, () -> reviewRepository.streamByRestaurantIdInAndStatusOrderByIdAsc(
+                List.of(restaurantId),
+                Review.Status.ACCEPTED
+        ));
+    }
+
+    @GetMapping("/byrestaurant/{restaurantId}")
+    public ResponseEntity<List<Review>> getApprovedReviewsByRestaurantId(@PathVariable Long restaurantId){
+        List<Review> reviews = reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(
+                List.of(restaurantId),
+                Review.Status.ACCEPTED
+        );
         if (reviews.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         return new ResponseEntity<>(reviews, HttpStatus.OK);
     }
 
+    @GetMapping(value = "/user/{userName}", params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamReviewsByUserName(
+            @PathVariable String userName,
+            @RequestParam String stream
+    ){
+        return entityStreamWriter.write(stream, () -> userCache.findByUserName(userName)
+                .map(user -> reviewRepository.streamByUserIdOrderByIdAsc(user.getId()))
+                .orElseGet(Stream::empty));
+    }
+
     @GetMapping("/user/{userName}")
     public ResponseEntity<List<Review>> getReviewsByUserName(@PathVariable String userName){
-        List<Review> reviews = reviewRepository.findByUserName(userName);
+        Optional<User> userOptional = userCache.findByUserName(userName);
+        if (userOptional.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        List<Review> reviews = reviewRepository.findByUserIdOrderByIdAsc(userOptional.get().getId());
         if (reviews.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         return new ResponseEntity<>(reviews, HttpStatus.OK);
     }
 
-    // Updates a review's scores and commentary. Status is changed to PENDING.
+    // Updates a review's scores and commentary. Status is changed to PENDING. Returns 409 if the review was changed
+    // since it was read, such as by a concurrent moderation decision.
     @PutMapping("/{id}")
     public ResponseEntity<Object> updateReview(
             @PathVariable Long id,
@@ -73,16 +239,39 @@ public class ReviewController {
         }
 
         Review review = reviewOptional.get();
+        // an edited review goes back to PENDING, so its old scores are withdrawn from the restaurant once the edit is
+        // saved. They are taken before the edit replaces them.
+        ScoreDelta withdrawnScores = null;
+        if (review.getStatus() == Review.Status.ACCEPTED && restaurantExists(review.getRestaurantId())) {
+            withdrawnScores = ScoreDelta.of(review, -1);
+        }
         AppUtils.setIfNotNull(reviewDetails::getPeanutScore, review::setPeanutScore);
         AppUtils.setIfNotNull(reviewDetails::getEggScore, review::setEggScore);
         AppUtils.setIfNotNull(reviewDetails::getDairyScore, review::setDairyScore);
         AppUtils.setIfNotNull(reviewDetails::getCommentary, review::setCommentary);
+        Review.Status previousStatus = review.getStatus();
         review.setStatus(Review.Status.PENDING);
-        Review updatedReview = reviewRepository.save(review);
+        Review updatedReview;
+        try (ScoreUpdateQueue.ScoreChange ignored = scoreUpdateQueue.beginScoreChange()) {
+            try {
+                updatedReview = reviewRepository.save(review);
+            } catch (OptimisticLockingFailureException e) {
+                return reviewConflict();
+            }
+            if (withdrawnScores != null) {
+                scoreUpdateQueue.submit(review.getRestaurantId(), withdrawnScores);
+            }
+        }
+        reviewStatusMetrics.recordTransition(previousStatus, Review.Status.PENDING);
 
         return new ResponseEntity<>(updatedReview, HttpStatus.OK);
     }
 
+    @GetMapping(value = "/admin", params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamReviewsPendingApproval(@RequestParam String stream){
+        return entityStreamWriter.write(stream, () -> reviewRepository.streamByStatusOrderByIdAsc(Review.Status.PENDING));
+    }
+
     @GetMapping("/admin")
     public ResponseEntity<List<Review>> getReviewsPendingApproval(){
         List<Review> reviews = reviewRepository.findByStatus(Review.Status.PENDING);
@@ -92,8 +281,10 @@ public class ReviewController {
         return new ResponseEntity<>(reviews, HttpStatus.OK);
     }
 
-    // Updates the status of a review and recalculates overall score if approved. Provide status as a string path
-    // variable. If status is not accepted or rejected, review is set to pending.
+    // Updates the status of a review and adjusts the restaurant scores when the review becomes accepted or stops
+    // being accepted. Provide status as a string path variable. If status is not accepted or rejected, review is set
+    // to pending. A review is not accepted if its restaurant no longer exists. Returns 409 if the review was changed
+    // since it was read, so its scores are never applied twice.
     @PutMapping("/admin/{id}")
     public ResponseEntity<Object> updateReviewStatus(@PathVariable Long id, @RequestBody String status){
         Optional<Review> reviewOptional = reviewRepository.findById(id);
@@ -103,25 +294,102 @@ public class ReviewController {
 
         Review review = reviewOptional.get();
 
-        Review.Status reviewStatus = switch (status.toLowerCase()){
-            case "accepted" -> Review.Status.ACCEPTED;
-            case "rejected" -> Review.Status.REJECTED;
-            default -> Review.Status.PENDING;
-        };
+        Review.Status reviewStatus = parseStatus(status);
 
+        Review.Status previousStatus = review.getStatus();
+        int weight = scoreWeight(previousStatus, reviewStatus);
+        if (weight > 0 && !restaurantExists(review.getRestaurantId())) {
+            return scoreUpdateFailed();
+        }
         review.setStatus(reviewStatus);
-        Review updatedReview = reviewRepository.save(review);
-        if (reviewStatus == Review.Status.ACCEPTED){
+        Review updatedReview;
+        try (ScoreUpdateQueue.ScoreChange ignored = scoreUpdateQueue.beginScoreChange()) {
             try {
-                updateRestaurantScores(review.getRestaurantId(), review.getRestaurantName());
-            } catch (Exception e) {
-                return new ResponseEntity<>("An error occurred while updating restaurant scores.", HttpStatus.INTERNAL_SERVER_ERROR);
+                updatedReview = reviewRepository.save(review);
+            } catch (OptimisticLockingFailureException e) {
+                return reviewConflict();
+            }
+            reviewStatusMetrics.recordTransition(previousStatus, reviewStatus);
+            if (weight != 0){
+                try {
+                    updateRestaurantScores(review, weight);
+                } catch (Exception e) {
+                    return scoreUpdateFailed();
+                }
             }
         }
 
         return new ResponseEntity<>(updatedReview, HttpStatus.OK);
     }
 
+    // Applies many status decisions at once. The reviews are loaded with one query, the status changes are written
+    // as a single JDBC batch, and each affected restaurant receives one merged score update. Returns a result for
+    // every decision, in request order. Returns 409 without applying any decision if one of the reviews was changed
+    // since it was read.
+    @PutMapping("/admin")
+    public ResponseEntity<List<ReviewDecisionResult>> updateReviewStatuses(@RequestBody List<ReviewDecision> decisions){
+        Set<Long> reviewIds = new HashSet<>();
+        for (ReviewDecision decision : decisions) {
+            if (decision.getReviewId() != null) {
+                reviewIds.add(decision.getReviewId());
+            }
+        }
+        Map<Long, Review> reviews = new HashMap<>();
+        reviewRepository.findAllById(reviewIds).forEach(review -> reviews.put(review.getId(), review));
+
+        Set<Long> restaurantIds = new HashSet<>();
+        for (Review review : reviews.values()) {
+            if (review.getRestaurantId() != null) {
+                restaurantIds.add(review.getRestaurantId());
+            }
+        }
+        Set<Long> existingRestaurantIds = new HashSet<>();
+        if (!restaurantIds.isEmpty()) {
+            existingRestaurantIds.addAll(restaurantRepository.findExistingIds(restaurantIds));
+        }
+
+        List<ReviewDecisionResult> results = new ArrayList<>();
+        Map<Long, Review> changedReviews = new LinkedHashMap<>();
+        // the status of each changed review before its first decision, since a review may be decided more than once.
+        Map<Long, Review.Status> previousStatuses = new HashMap<>();
+        Map<Long, ScoreDelta> scoreDeltas = new HashMap<>();
+        for (ReviewDecision decision : decisions) {
+            Review review = reviews.get(decision.getReviewId());
+            if (review == null) {
+                results.add(new ReviewDecisionResult(decision.getReviewId(), null, "Review not found."));
+                continue;
+            }
+            Review.Status reviewStatus = parseStatus(decision.getStatus() != null ? decision.getStatus() : "");
+            int weight = scoreWeight(review.getStatus(), reviewStatus);
+            boolean restaurantExists = existingRestaurantIds.contains(review.getRestaurantId());
+            if (weight > 0 && !restaurantExists) {
+                results.add(new ReviewDecisionResult(review.getId(), review.getStatus(), "Restaurant was not found."));
+                continue;
+            }
+            if (weight != 0 && restaurantExists) {
+                scoreDeltas.merge(review.getRestaurantId(), ScoreDelta.of(review, weight), ScoreDelta::merge);
+            }
+            previousStatuses.putIfAbsent(review.getId(), review.getStatus());
+            review.setStatus(reviewStatus);
+            changedReviews.put(review.getId(), review);
+            results.add(new ReviewDecisionResult(review.getId(), reviewStatus, null));
+        }
+
+        try (ScoreUpdateQueue.ScoreChange ignored = scoreUpdateQueue.beginScoreChange()) {
+            try {
+                reviewRepository.saveAll(changedReviews.values());
+            } catch (OptimisticLockingFailureException e) {
+                return new ResponseEntity<>(HttpStatus.CONFLICT);
+            }
+            scoreDeltas.forEach(scoreUpdateQueue::submit);
+        }
+        for (Review review : changedReviews.values()) {
+            reviewStatusMetrics.recordTransition(previousStatuses.get(review.getId()), review.getStatus());
+        }
+
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Object> deleteReview(@PathVariable Long id){
         Optional<Review> reviewOptional = reviewRepository.findById(id);
@@ -130,50 +398,72 @@ public class ReviewController {
         }
 
         Review review = reviewOptional.get();
-        reviewRepository.delete(review);
+        try (ScoreUpdateQueue.ScoreChange ignored = scoreUpdateQueue.beginScoreChange()) {
+            reviewRepository.delete(review);
+            if (review.getStatus() == Review.Status.ACCEPTED && restaurantExists(review.getRestaurantId())) {
+                scoreUpdateQueue.submit(review.getRestaurantId(), ScoreDelta.of(review, -1));
+            }
+        }
 
         return new ResponseEntity<>(review, HttpStatus.NO_CONTENT);
     }
 
-    // Calculates the overall score as the average of available allergy scores.
-    // Used as part of the review approval process.
-    private void updateOverallScore(Restaurant restaurant) {
-        Float peanutScore = restaurant.getPeanutScore() != null ? restaurant.getPeanutScore() : 0.f;
-        Float eggScore = restaurant.getEggScore() != null ? restaurant.getEggScore() : 0.f;
-        Float dairyScore = restaurant.getDairyScore() != null ? restaurant.getDairyScore() : 0.f;
-
-        Float overallScore = (peanutScore + eggScore + dairyScore) / 3.f;
-        restaurant.setOverallScore(overallScore);
+    // Maps a requested status to a review status. Anything other than accepted or rejected means pending.
+    private Review.Status parseStatus(String status) {
+        return switch (status.toLowerCase()){
+            case "accepted" -> Review.Status.ACCEPTED;
+            case "rejected" -> Review.Status.REJECTED;
+            default -> Review.Status.PENDING;
+        };
     }
 
-    // Calculates each individual score across all approved reviews for a restaurant.
-    // Used as part of the review approval process.
-
-    private void updateRestaurantScores(Long restaurantId, String restaurantName) throws Exception {
-        List<Review> reviewList = reviewRepository.findByRestaurantNameAndStatus(restaurantName, Review.Status.ACCEPTED);
-        if (reviewList.isEmpty()) {
-            throw new Exception ("No reviews were found.");
+    // Returns 1 when a review becomes accepted, -1 when it stops being accepted, and 0 when its scores do not count
+    // toward the restaurant either way.
+    private int scoreWeight(Review.Status previousStatus, Review.Status newStatus) {
+        boolean wasAccepted = previousStatus == Review.Status.ACCEPTED;
+        boolean isAccepted = newStatus == Review.Status.ACCEPTED;
+        if (wasAccepted == isAccepted) {
+            return 0;
         }
+        return isAccepted ? 1 : -1;
+    }
 
-        Optional<Restaurant> restaurantOptional = restaurantRepository.findById(restaurantId);
-        if (restaurantOptional.isEmpty()){
+    // Reports how far behind the background restaurant score updates are and how many changes are being merged.
+    @GetMapping("/admin/scores/stats")
+    public ResponseEntity<ScoreUpdateQueue.Stats> getScoreUpdateStats(){
+        return new ResponseEntity<>(scoreUpdateQueue.getStats(), HttpStatus.OK);
+    }
+
+    // Queues the addition (weight 1) or withdrawal (weight -1) of a review's scores from its restaurant's running
+    // aggregates. The restaurant row is written in the background, merged with other changes to the same restaurant.
+    // A withdrawal from a restaurant that no longer exists has nothing to undo, so it is skipped.
+    private void updateRestaurantScores(Review review, int weight) throws Exception {
+        if (!restaurantExists(review.getRestaurantId())) {
+            if (weight < 0) {
+                return;
+            }
             throw new Exception("Restaurant was not found.");
         }
-        Restaurant restaurant = restaurantOptional.get();
 
-        Float peanutSum = 0.f;
-        Float eggSum = 0.f;
-        Float dairySum = 0.f;
+        scoreUpdateQueue.submit(review.getRestaurantId(), ScoreDelta.of(review, weight));
+    }
 
-        for (Review r: reviewList) {
-            peanutSum += r.getPeanutScore() != null ? r.getPeanutScore() : 0.f;
-            eggSum += r.getEggScore() != null ? r.getEggScore() : 0.f;
-            dairySum += r.getDairyScore() != null ? r.getDairyScore() : 0.f;
-        }
+    // Deleting a restaurant sets the restaurantId of its reviews to null, so an accepted review can outlive it.
+    private boolean restaurantExists(Long restaurantId) {
+        return restaurantId != null && restaurantRepository.findById(restaurantId).isPresent();
+    }
+
+    private ResponseEntity<Object> scoreUpdateFailed() {
+        return new ResponseEntity<>(
+                "An error occurred while updating restaurant scores.",
+                HttpStatus.INTERNAL_SERVER_ERROR
+        );
+    }
 
-        restaurant.setPeanutScore(peanutSum / reviewList.size());
-        restaurant.setEggScore(eggSum / reviewList.size());
-        restaurant.setDairyScore(dairySum / reviewList.size());
-        updateOverallScore(restaurant);
+    private ResponseEntity<Object> reviewConflict() {
+        return new ResponseEntity<>(
+                "Conflict: Review was changed by another request. Please try again.",
+                HttpStatus.CONFLICT
+        );
     }
 }
@@ -3,6 +3,8 @@ package com.rjrouleau.dining_review_api.controller;
 import com.rjrouleau.dining_review_api.AppUtils;
 import com.rjrouleau.dining_review_api.model.User;
 import com.rjrouleau.dining_review_api.repository.UserRepository;
+import com.rjrouleau.dining_review_api.service.UserCache;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -13,14 +15,16 @@ import java.util.Optional;
 @RequestMapping("/user")
 public class UserController {
     private final UserRepository userRepository;
+    private final UserCache userCache;
 
-    public UserController(UserRepository userRepository) {
+    public UserController(UserRepository userRepository, UserCache userCache) {
         this.userRepository = userRepository;
+        this.userCache = userCache;
     }
 
     @GetMapping("/{userName}")
     public ResponseEntity<Object> getUserByUserName(@PathVariable String userName) {
-        Optional<User> userOptional = userRepository.findByUserName(userName);
+        Optional<User> userOptional = userCache.findByUserName(userName);
         if (userOptional.isEmpty()){
             return new ResponseEntity<>("User not found.", HttpStatus.NOT_FOUND);
         }
@@ -31,15 +35,20 @@ public class UserController {
     }
 
 
-    // Creates a new user and verifies that the userName is unique.
+    // Creates a new user with a single insert. The unique index on userName rejects a taken name, including one taken
+    // by a concurrent request.
     @PostMapping
     public ResponseEntity<Object> createUser(@RequestBody User user){
-        Optional<User> userOptional = userRepository.findByUserName(user.getUserName());
-        if (userOptional.isPresent()){
+        User savedUser;
+        try {
+            savedUser = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            if (!AppUtils.isUniqueViolation(e)) {
+                throw e;
+            }
             return new ResponseEntity<Object>("Username is taken. Please choose a unique username.", HttpStatus.BAD_REQUEST);
         }
-
-        User savedUser = userRepository.save(user);
+        userCache.invalidate(savedUser.getUserName());
 
         return new ResponseEntity<>(savedUser, HttpStatus.CREATED);
     }
@@ -51,7 +60,7 @@ public class UserController {
             @PathVariable String userName,
             @RequestBody User userDetails
     ){
-        Optional<User> userOptional = userRepository.findByUserName(userName);
+        Optional<User> userOptional = userCache.findByUserName(userName);
         if (userOptional.isEmpty()){
             return new ResponseEntity<>("User not found.", HttpStatus.NOT_FOUND);
         }
@@ -64,18 +73,26 @@ public class UserController {
         AppUtils.setIfNotNull(userDetails::getEggAllergy, user::setEggAllergy);
         AppUtils.setIfNotNull(userDetails::getDairyAllergy, user::setDairyAllergy);
         User updatedUser = userRepository.save(user);
+        userCache.invalidate(userName);
 
         return new ResponseEntity<>(updatedUser, HttpStatus.OK);
     }
 
     @DeleteMapping("/{userName}")
     public ResponseEntity<Object> deleteUser(@PathVariable String userName){
-        Optional<User> userOptional = userRepository.findByUserName(userName);
+        Optional<User> userOptional = userCache.findByUserName(userName);
         if (userOptional.isEmpty()){
             return new ResponseEntity<>("User not found.", HttpStatus.NOT_FOUND);
         }
         User userTBD = userOptional.get();
         userRepository.delete(userTBD);
+        userCache.invalidate(userName);
         return new ResponseEntity<>(userTBD, HttpStatus.NO_CONTENT);
     }
+
+    // Reports the size and hit, miss and eviction counts of the userName cache used by the user endpoints.
+    @GetMapping("/admin/cache/stats")
+    public ResponseEntity<UserCache.Stats> getCacheStats() {
+        return new ResponseEntity<>(userCache.getStats(), HttpStatus.OK);
+    }
 }
@@ -1,31 +1,153 @@
 package com.rjrouleau.dining_review_api.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.rjrouleau.dining_review_api.AppUtils;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Each index starts with the column a finder filters on and ends with id, so keyset pages and id-ordered streams are
+// read in index order without a sort. A name may only be used once per zipcode, ignoring case and spacing.
 @Entity
+@Table(
+        indexes = {
+                @Index(name = "idx_restaurant_zipcode_id", columnList = "zipcode, id"),
+                @Index(name = "idx_restaurant_city_id", columnList = "city, id"),
+                @Index(name = "idx_restaurant_state_id", columnList = "state, id"),
+                @Index(name = "idx_restaurant_name_id", columnList = "name, id")
+        },
+        uniqueConstraints = @UniqueConstraint(
+                name = "ux_restaurant_normalized_name_zipcode",
+                columnNames = {"normalizedName", "zipcode"}
+        )
+)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Restaurant {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // the jakarta annotations map the entity for JPA, and the Spring Data ones for R2DBC in the reactive variant. Ids
+    // come from a pooled sequence that is read once per 50 ids, as they are for users and reviews, so batched inserts
+    // don't wait on the database for every id.
     @Id
-    @GeneratedValue
+    @org.springframework.data.annotation.Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "restaurant_seq")
+    @SequenceGenerator(name = "restaurant_seq", sequenceName = "restaurant_seq", allocationSize = 50)
     private Long id;
 
+    // Incremented on every write. A write based on an older version fails, so concurrent updates from different
+    // instances can't overwrite each other. See RestaurantUpdater. Spring Data JPA rejects Spring Data's @Version here,
+    // so under R2DBC the version is checked by ReactiveRestaurantUpdater instead.
+    @JsonIgnore
+    @Version
+    private Long version;
+
+    // When the row was last inserted or updated. Sent as Last-Modified with the restaurant, along with an ETag made
+    // from the version. Not mapped under R2DBC, since the reactive variant doesn't answer conditional requests.
+    @JsonIgnore
+    @org.springframework.data.annotation.Transient
+    @UpdateTimestamp
+    private Instant lastModified;
+
+    // scores are stored at full precision and written to JSON with two decimal places.
+    @JsonSerialize(using = ScoreSerializer.class)
     private Float overallScore;
+    @JsonSerialize(using = ScoreSerializer.class)
     private Float peanutScore;
+    @JsonSerialize(using = ScoreSerializer.class)
     private Float eggScore;
+    @JsonSerialize(using = ScoreSerializer.class)
     private Float dairyScore;
 
     private String name;
+    // name trimmed, lower-cased and with runs of whitespace collapsed. Set from name on every insert and update.
+    @JsonIgnore
+    private String normalizedName;
     private String city;
     private String state;
     private String zipcode;
 
+    // Running sums and counts of the scores from ACCEPTED reviews. Each allergy keeps its own count because a
+    // review may leave any score null, and a null score does not count toward that allergy's average.
+    @JsonIgnore
+    private long peanutSum;
+    @JsonIgnore
+    private long peanutCount;
+    @JsonIgnore
+    private long eggSum;
+    @JsonIgnore
+    private long eggCount;
+    @JsonIgnore
+    private long dairySum;
+    @JsonIgnore
+    private long dairyCount;
+
+    // Adds (weight 1) or withdraws (weight -1) a review's scores from the running aggregates.
+    public void applyReviewScores(Review review, int weight) {
+        applyScoreDelta(ScoreDelta.of(review, weight));
+    }
+
+    // Applies a (possibly merged) delta to the running aggregates, then refreshes the average scores. Runs in
+    // constant time regardless of how many reviews the restaurant has.
+    public void applyScoreDelta(ScoreDelta delta) {
+        peanutSum += delta.getPeanutSum();
+        peanutCount += delta.getPeanutCount();
+        eggSum += delta.getEggSum();
+        eggCount += delta.getEggCount();
+        dairySum += delta.getDairySum();
+        dairyCount += delta.getDairyCount();
+
+        peanutScore = average(peanutSum, peanutCount);
+        eggScore = average(eggSum, eggCount);
+        dairyScore = average(dairySum, dairyCount);
+        overallScore = AppUtils.calculateOverallScore(this);
+    }
+
+    // Replaces the running aggregates with totals computed from scratch, then refreshes the average scores.
+    public void setScoreAggregates(ScoreDelta totals) {
+        peanutSum = 0;
+        peanutCount = 0;
+        eggSum = 0;
+        eggCount = 0;
+        dairySum = 0;
+        dairyCount = 0;
+        applyScoreDelta(totals);
+    }
+
+    @PrePersist
+    @PreUpdate
+    private void normalizeName() {
+        normalizedName = normalizeName(name);
+    }
+
+    public static String normalizeName(String name) {
+        if (name == null) {
+            return null;
+        }
+        return WHITESPACE.matcher(name.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    private static Float average(long sum, long count) {
+        return count > 0 ? (float) sum / count : null;
+    }
 }
@@ -0,0 +1,21 @@
+package com.rjrouleau.dining_review_api.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+// One row of the restaurant score export: a restaurant, its scores and the number of accepted reviews behind each
+// allergy score. Read as a projection, like ReviewExport.
+public record RestaurantExport(
+        Long id,
+        String name,
+        String city,
+        String state,
+        String zipcode,
+        @JsonSerialize(using = ScoreSerializer.class) Float overallScore,
+        @JsonSerialize(using = ScoreSerializer.class) Float peanutScore,
+        @JsonSerialize(using = ScoreSerializer.class) Float eggScore,
+        @JsonSerialize(using = ScoreSerializer.class) Float dairyScore,
+        long peanutCount,
+        long eggCount,
+        long dairyCount
+) {
+}
@@ -1,26 +1,109 @@
 package com.rjrouleau.dining_review_api.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.Id;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_review_status_id", columnList = "status, id"),
+        @Index(name = "idx_review_restaurant_id_status_id", columnList = "restaurant_id, status, id"),
+        @Index(name = "idx_review_user_id_id", columnList = "user_id, id")
+})
+@NamedEntityGraph(name = Review.WITH_RESTAURANT_AND_USER, attributeNodes = {
+        @NamedAttributeNode("restaurant"),
+        @NamedAttributeNode("user")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Review {
+    // Fetches the restaurant and user in the same query, for finders whose reviews are returned with their names.
+    public static final String WITH_RESTAURANT_AND_USER = "Review.withRestaurantAndUser";
+
     @Id
-    @GeneratedValue
+    @org.springframework.data.annotation.Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "review_seq")
+    @SequenceGenerator(name = "review_seq", sequenceName = "review_seq", allocationSize = 50)
     private Long id;
 
+    // Incremented on every write, so a moderation decision based on an older read fails instead of applying the
+    // review's scores twice. Review list ETags are summed from it. R2DBC reads it as a plain column, so under R2DBC
+    // the version is checked by ReactiveReviewUpdater instead.
+    @JsonIgnore
+    @Version
+    private Long version;
+
+    // The foreign keys are written through these ids. The associations below map the same columns read-only, so a
+    // review can be saved and scored from its ids without loading the restaurant or user.
+    @Column(name = "restaurant_id")
+    private Long    restaurantId;
+    @Column(name = "user_id")
+    private Long    userId;
+
+    // Detaching a streamed review also detaches the restaurant and user fetched with it. R2DBC has no associations,
+    // so the reactive variant ignores these and fills in the names below instead.
+    @JsonIgnore
+    @org.springframework.data.annotation.Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.DETACH)
+    @JoinColumn(
+            name = "restaurant_id",
+            insertable = false,
+            updatable = false,
+            foreignKey = @ForeignKey(name = "fk_review_restaurant")
+    )
+    @OnDelete(action = OnDeleteAction.SET_NULL)
+    private Restaurant restaurant;
+
+    @JsonIgnore
+    @org.springframework.data.annotation.Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.DETACH)
+    @JoinColumn(
+            name = "user_id",
+            insertable = false,
+            updatable = false,
+            foreignKey = @ForeignKey(name = "fk_review_user")
+    )
+    @OnDelete(action = OnDeleteAction.SET_NULL)
+    private User user;
+
+    // Names are not stored with the review. They are read from the referenced restaurant and user, and these fields
+    // only hold the names given in a request, such as the userName of a new review.
+    @Transient
+    @org.springframework.data.annotation.Transient
     private String  userName;
+    @Transient
+    @org.springframework.data.annotation.Transient
     private String  restaurantName;
-    private Long    restaurantId;
+
     private Integer peanutScore;
     private Integer eggScore;
     private Integer dairyScore;
@@ -30,4 +113,12 @@ public class Review {
         PENDING, ACCEPTED, REJECTED;
     }
     private Status status;
+
+    public String getUserName() {
+        return user != null ? user.getUserName() : userName;
+    }
+
+    public String getRestaurantName() {
+        return restaurant != null ? restaurant.getName() : restaurantName;
+    }
 }
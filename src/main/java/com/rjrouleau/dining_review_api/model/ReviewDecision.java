@@ -0,0 +1,14 @@
+package com.rjrouleau.dining_review_api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One entry of a bulk moderation request. Status accepts the same values as the single review status update.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewDecision {
+    private Long reviewId;
+    private String status;
+}
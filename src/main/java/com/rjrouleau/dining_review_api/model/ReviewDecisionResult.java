@@ -0,0 +1,16 @@
+package com.rjrouleau.dining_review_api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// The outcome of one bulk moderation decision. Status is the review's resulting status, or null with an error
+// message if the decision could not be applied.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewDecisionResult {
+    private Long reviewId;
+    private Review.Status status;
+    private String error;
+}
@@ -0,0 +1,19 @@
+package com.rjrouleau.dining_review_api.model;
+
+// One row of the review export: a review with the name and location of its restaurant and the name of its user. Read
+// as a projection, so that exporting does not load entities into the persistence context. The restaurant and user
+// columns are null if they have been deleted.
+public record ReviewExport(
+        Long id,
+        Long restaurantId,
+        String restaurantName,
+        String zipcode,
+        String state,
+        Long userId,
+        String userName,
+        Integer peanutScore,
+        Integer eggScore,
+        Integer dairyScore,
+        String commentary
+) {
+}
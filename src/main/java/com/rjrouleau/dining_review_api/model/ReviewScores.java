@@ -0,0 +1,6 @@
+package com.rjrouleau.dining_review_api.model;
+
+// The scores of one review and the restaurant they belong to. A read-only projection used when scanning large
+// numbers of reviews, so that no Review entities are loaded into the persistence context.
+public record ReviewScores(Long restaurantId, Integer peanutScore, Integer eggScore, Integer dairyScore) {
+}
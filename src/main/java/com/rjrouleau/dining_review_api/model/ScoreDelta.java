@@ -0,0 +1,70 @@
+package com.rjrouleau.dining_review_api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A pending change to a restaurant's running score aggregates. Deltas for the same restaurant can be merged so that
+// many review approvals are applied to the restaurant row with a single write.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScoreDelta {
+    private long peanutSum;
+    private long peanutCount;
+    private long eggSum;
+    private long eggCount;
+    private long dairySum;
+    private long dairyCount;
+    // the number of review changes folded into this delta, whatever their scores.
+    private long reviews;
+
+    // Creates the delta for adding (weight 1) or withdrawing (weight -1) a review's scores. Null scores are skipped.
+    public static ScoreDelta of(Review review, int weight) {
+        ScoreDelta delta = new ScoreDelta();
+        delta.reviews = 1;
+        if (review.getPeanutScore() != null) {
+            delta.peanutSum = (long) weight * review.getPeanutScore();
+            delta.peanutCount = weight;
+        }
+        if (review.getEggScore() != null) {
+            delta.eggSum = (long) weight * review.getEggScore();
+            delta.eggCount = weight;
+        }
+        if (review.getDairyScore() != null) {
+            delta.dairySum = (long) weight * review.getDairyScore();
+            delta.dairyCount = weight;
+        }
+        return delta;
+    }
+
+    // Adds one accepted review's scores, as read by a bulk scan. Null scores are skipped.
+    public void add(ReviewScores scores) {
+        reviews++;
+        if (scores.peanutScore() != null) {
+            peanutSum += scores.peanutScore();
+            peanutCount++;
+        }
+        if (scores.eggScore() != null) {
+            eggSum += scores.eggScore();
+            eggCount++;
+        }
+        if (scores.dairyScore() != null) {
+            dairySum += scores.dairyScore();
+            dairyCount++;
+        }
+    }
+
+    public ScoreDelta merge(ScoreDelta other) {
+        peanutSum += other.peanutSum;
+        peanutCount += other.peanutCount;
+        eggSum += other.eggSum;
+        eggCount += other.eggCount;
+        dairySum += other.dairySum;
+        dairyCount += other.dairyCount;
+        reviews += other.reviews;
+        return this;
+    }
+}
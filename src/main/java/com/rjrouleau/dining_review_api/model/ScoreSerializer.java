@@ -0,0 +1,54 @@
+package com.rjrouleau.dining_review_api.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+// Writes a score as a JSON number with exactly two decimal places, rounding half up, so 3.6666667 is written as 3.67.
+// The digits are written into a per-thread buffer and handed to the generator as characters, so no String, Formatter
+// or copy of the entity is created for each score.
+public class ScoreSerializer extends StdSerializer<Float> {
+    // scores at or above this are written as plain floats, since their hundredths would not fit in a long.
+    private static final double MAX_FIXED = 1e15;
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[24]);
+
+    public ScoreSerializer() {
+        super(Float.class);
+    }
+
+    @Override
+    public void serialize(Float value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        double score = value;
+        if (Double.isNaN(score) || Math.abs(score) >= MAX_FIXED) {
+            generator.writeNumber(value);
+            return;
+        }
+        long hundredths = Math.round(Math.abs(score) * 100.);
+        boolean negative = score < 0 && hundredths != 0;
+        // binary formats such as CBOR and Smile have no decimal text, so the rounded score is written as a float.
+        if (!generator.canWriteFormattedNumbers()) {
+            float rounded = (float) (hundredths / 100.);
+            generator.writeNumber(negative ? -rounded : rounded);
+            return;
+        }
+
+        char[] buffer = BUFFER.get();
+        int end = buffer.length;
+        int start = end;
+        buffer[--start] = (char) ('0' + hundredths % 10);
+        hundredths /= 10;
+        buffer[--start] = (char) ('0' + hundredths % 10);
+        hundredths /= 10;
+        buffer[--start] = '.';
+        do {
+            buffer[--start] = (char) ('0' + hundredths % 10);
+            hundredths /= 10;
+        } while (hundredths > 0);
+        if (negative) {
+            buffer[--start] = '-';
+        }
+        generator.writeNumber(buffer, start, end - start);
+    }
+}
@@ -0,0 +1,12 @@
+package com.rjrouleau.dining_review_api.model;
+
+// The number of rows in a list, the sum of their ids and the sum of their versions, read with one aggregate query
+// instead of loading the rows. Any write to a row in the list raises the version sum, and a row joining or leaving
+// the list changes the count or the id sum, so the summary makes a cheap ETag for the list.
+public record VersionSummary(long rows, long idSum, long versionSum) {
+
+    // The summary as the version tag of an ETag. See AppUtils.etag.
+    public String tag() {
+        return Long.toHexString(rows) + "-" + Long.toHexString(idSum) + "-" + Long.toHexString(versionSum);
+    }
+}
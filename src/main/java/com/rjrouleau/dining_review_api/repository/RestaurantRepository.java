@@ -1,19 +1,94 @@
 package com.rjrouleau.dining_review_api.repository;
 
 import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.RestaurantExport;
+import com.rjrouleau.dining_review_api.model.VersionSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface RestaurantRepository extends CrudRepository<Restaurant, Long> {
-    List<Restaurant> findByNameAndZipcode(String name, String zipcode);
+public interface RestaurantRepository
+        extends CrudRepository<Restaurant, Long>, PagingAndSortingRepository<Restaurant, Long> {
     List<Restaurant> findByZipcode(String zipcode);
+
+    @Query("select r.id from Restaurant r where r.name = :name")
+    List<Long> findIdsByName(@Param("name") String name);
     List<Restaurant> findByCity(String city);
     List<Restaurant> findByState(String state);
+
+    // Keyset pages: restaurants with an id above the cursor, in the order and size given by the Pageable. Returning a
+    // List rather than a Page avoids a count query, so each page costs the same no matter how deep it is.
+    List<Restaurant> findByIdGreaterThan(Long afterId, Pageable pageable);
+    List<Restaurant> findByZipcodeAndIdGreaterThan(String zipcode, Long afterId, Pageable pageable);
+    List<Restaurant> findByCityAndIdGreaterThan(String city, Long afterId, Pageable pageable);
+    List<Restaurant> findByStateAndIdGreaterThan(String state, Long afterId, Pageable pageable);
+
+    // Summarizes the restaurants in a zipcode without loading them, for the ETag of their pages.
+    @Query("select new com.rjrouleau.dining_review_api.model.VersionSummary("
+            + "count(r), coalesce(sum(r.id), 0), coalesce(sum(r.version), 0)) "
+            + "from Restaurant r where r.zipcode = :zipcode")
+    VersionSummary summarizeByZipcode(@Param("zipcode") String zipcode);
+
+    // Streams restaurants in id order through a forward-only cursor. Must be consumed inside a transaction and
+    // closed afterwards.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Restaurant> streamAllByOrderByIdAsc();
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Restaurant> streamByZipcodeOrderByIdAsc(String zipcode);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Restaurant> streamByCityOrderByIdAsc(String city);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Restaurant> streamByStateOrderByIdAsc(String state);
+
+    // Streams the restaurants with an id above afterId as export rows, in id order, through a forward-only cursor. A
+    // null zipcode or state matches every restaurant. Must be consumed inside a transaction and closed afterwards.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.rjrouleau.dining_review_api.model.RestaurantExport("
+            + "r.id, r.name, r.city, r.state, r.zipcode, r.overallScore, r.peanutScore, r.eggScore, r.dairyScore, "
+            + "r.peanutCount, r.eggCount, r.dairyCount) "
+            + "from Restaurant r "
+            + "where r.id > :afterId "
+            + "and (:zipcode is null or r.zipcode = :zipcode) "
+            + "and (:state is null or r.state = :state) "
+            + "order by r.id")
+    Stream<RestaurantExport> streamExport(
+            @Param("afterId") Long afterId,
+            @Param("zipcode") String zipcode,
+            @Param("state") String state
+    );
+
     List<Restaurant> findByZipcodeAndPeanutScoreGreaterThanOrderByPeanutScoreDesc(String zipcode, Float peanutScore);
     List<Restaurant> findByZipcodeAndEggScoreGreaterThanOrderByEggScoreDesc(String zipcode, Float eggScore);
     List<Restaurant> findByZipcodeAndDairyScoreGreaterThanOrderByDairyScoreDesc(String zipcode, Float dairyScore);
 
+    // Returns which of the given ids belong to an existing restaurant, without loading the restaurants.
+    @Query("select r.id from Restaurant r where r.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Returns the normalized name and zipcode of every restaurant with one of the given normalized names, so that the
+    // uniqueness of many new restaurants is checked in one query. See Restaurant.normalizeName. Zipcodes are compared
+    // by the caller, since H2 tests a second IN list against every row the index finds.
+    @Query("select r.normalizedName as normalizedName, r.zipcode as zipcode from Restaurant r "
+            + "where r.normalizedName in :normalizedNames")
+    List<NameAndZipcode> findNamesAndZipcodes(@Param("normalizedNames") Collection<String> normalizedNames);
+
+    // Returns the ids of restaurants that currently hold review score aggregates.
+    @Query("select r.id from Restaurant r where r.peanutCount <> 0 or r.eggCount <> 0 or r.dairyCount <> 0")
+    List<Long> findIdsWithScoreAggregates();
+
+    interface NameAndZipcode {
+        String getNormalizedName();
+        String getZipcode();
+    }
 }
 
 
@@ -1,13 +1,84 @@
 package com.rjrouleau.dining_review_api.repository;
 
 import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.ReviewExport;
 import com.rjrouleau.dining_review_api.model.Review.Status;
+import com.rjrouleau.dining_review_api.model.ReviewScores;
+import com.rjrouleau.dining_review_api.model.VersionSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ReviewRepository extends CrudRepository<Review, Long> {
+    // Finders for reviews that are returned to clients fetch the restaurant and user in the same query, since the
+    // review's names are read from them.
+    @Override
+    @EntityGraph(Review.WITH_RESTAURANT_AND_USER)
+    Optional<Review> findById(Long id);
+    @EntityGraph(Review.WITH_RESTAURANT_AND_USER)
     List<Review> findByStatus(Status status);
-    List<Review> findByRestaurantNameAndStatus(String restaurantName, Status status);
-    List<Review> findByUserName(String userName);
+    @EntityGraph(Review.WITH_RESTAURANT_AND_USER)
+    List<Review> findByRestaurantIdInAndStatusOrderByIdAsc(Collection<Long> restaurantIds, Status status);
+    @EntityGraph(Review.WITH_RESTAURANT_AND_USER)
+    List<Review> findByUserIdOrderByIdAsc(Long userId);
+    long countByStatus(Status status);
+
+    // Summarizes the reviews with the given status for the given restaurants without loading them, for the ETag of
+    // the list findByRestaurantIdInAndStatusOrderByIdAsc returns.
+    @Query("select new com.rjrouleau.dining_review_api.model.VersionSummary("
+            + "count(r), coalesce(sum(r.id), 0), coalesce(sum(r.version), 0)) "
+            + "from Review r where r.restaurantId in :restaurantIds and r.status = :status")
+    VersionSummary summarizeByRestaurantIdInAndStatus(
+            @Param("restaurantIds") Collection<Long> restaurantIds,
+            @Param("status") Status status
+    );
+
+    // Streaming versions of the finders above, read in id order through a forward-only cursor. Must be consumed
+    // inside a transaction and closed afterwards.
+    @EntityGraph(Review.WITH_RESTAURANT_AND_USER)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Review> streamByStatusOrderByIdAsc(Status status);
+    @EntityGraph(Review.WITH_RESTAURANT_AND_USER)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Review> streamByRestaurantIdInAndStatusOrderByIdAsc(Collection<Long> restaurantIds, Status status);
+    @EntityGraph(Review.WITH_RESTAURANT_AND_USER)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Review> streamByUserIdOrderByIdAsc(Long userId);
+
+    // Streams the scores of every review with the given status through a forward-only cursor. Must be consumed
+    // inside a transaction and closed afterwards.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.rjrouleau.dining_review_api.model.ReviewScores("
+            + "r.restaurantId, r.peanutScore, r.eggScore, r.dairyScore) from Review r where r.status = :status")
+    Stream<ReviewScores> streamScoresByStatus(@Param("status") Status status);
+
+    // Streams the reviews with the given status and an id above afterId as export rows, in id order, through a
+    // forward-only cursor. A null restaurantId, zipcode or state matches every review. Must be consumed inside a
+    // transaction and closed afterwards.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.rjrouleau.dining_review_api.model.ReviewExport("
+            + "r.id, r.restaurantId, rs.name, rs.zipcode, rs.state, r.userId, u.userName, "
+            + "r.peanutScore, r.eggScore, r.dairyScore, r.commentary) "
+            + "from Review r left join r.restaurant rs left join r.user u "
+            + "where r.status = :status and r.id > :afterId "
+            + "and (:restaurantId is null or r.restaurantId = :restaurantId) "
+            + "and (:zipcode is null or rs.zipcode = :zipcode) "
+            + "and (:state is null or rs.state = :state) "
+            + "order by r.id")
+    Stream<ReviewExport> streamExport(
+            @Param("status") Status status,
+            @Param("afterId") Long afterId,
+            @Param("restaurantId") Long restaurantId,
+            @Param("zipcode") String zipcode,
+            @Param("state") String state
+    );
 }
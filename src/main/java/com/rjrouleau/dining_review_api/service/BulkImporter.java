@@ -0,0 +1,318 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// Imports restaurants or reviews from a newline-delimited JSON body, one record per line. Lines are read and parsed
+// one at a time and inserted with BulkLoader in batches of bulk.import.batch-size records, so memory use does not
+// depend on the size of the body. Each record is checked against the same rules as POST /restaurants and
+// POST /reviews. A line that can't be parsed or breaks a rule is skipped and reported with its line number, and the
+// other lines are still imported. If the import fails part way, the batches inserted before the failure stay inserted.
+//
+// Batches are inserted without BulkLoader's cache clearing. Restaurant batches forget the leaderboards of their
+// zipcodes. Reviews are imported PENDING, so they don't change any cached restaurant, user or leaderboard.
+@Service
+public class BulkImporter {
+    private static final Logger log = LoggerFactory.getLogger(BulkImporter.class);
+    static final String INVALID_JSON = "Invalid JSON: ";
+    static final String DUPLICATE_RESTAURANT = "Restaurant name must be unique for a given zipcode.";
+    static final String USER_NOT_FOUND = "User not found.";
+    static final String RESTAURANT_NOT_FOUND = "Restaurant was not found.";
+
+    private final BulkLoader bulkLoader;
+    private final EntityManager entityManager;
+    private final RestaurantRepository restaurantRepository;
+    private final UserCache userCache;
+    private final RestaurantLeaderboard restaurantLeaderboard;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    public BulkImporter(
+            BulkLoader bulkLoader,
+            EntityManager entityManager,
+            RestaurantRepository restaurantRepository,
+            UserCache userCache,
+            RestaurantLeaderboard restaurantLeaderboard,
+            ObjectMapper objectMapper,
+            @Value("${bulk.import.batch-size:1000}") int batchSize,
+            @Value("${bulk.import.max-reported-errors:1000}") int maxReportedErrors
+    ) {
+        this.bulkLoader = bulkLoader;
+        this.entityManager = entityManager;
+        this.restaurantRepository = restaurantRepository;
+        this.userCache = userCache;
+        this.restaurantLeaderboard = restaurantLeaderboard;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    // Imports one restaurant per line. A restaurant's name must be unique in its zipcode, ignoring case and spacing,
+    // both among the existing restaurants and among the lines of the import.
+    public Report importRestaurants(InputStream body) throws IOException {
+        return importLines(body, Restaurant.class, new RestaurantRules());
+    }
+
+    // Imports one review per line, written by the user with the review's userName for the restaurant with its
+    // restaurantId. Imported reviews are PENDING whatever status the line gives, so they are moderated like any other.
+    public Report importReviews(InputStream body) throws IOException {
+        return importLines(body, Review.class, new ReviewRules());
+    }
+
+    private <T> Report importLines(InputStream body, Class<T> type, Rules<T> rules) throws IOException {
+        long startedAt = System.nanoTime();
+        ObjectReader reader = objectMapper.readerFor(type);
+        Tally tally = new Tally(maxReportedErrors);
+        List<Line<T>> batch = new ArrayList<>(batchSize);
+
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            long number = 0;
+            String text;
+            while ((text = lines.readLine()) != null) {
+                number++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                tally.records++;
+                T record;
+                try {
+                    record = reader.readValue(text);
+                } catch (JsonProcessingException e) {
+                    tally.fail(number, INVALID_JSON + e.getOriginalMessage());
+                    continue;
+                }
+                if (record == null) {
+                    tally.fail(number, INVALID_JSON + "expected an object.");
+                    continue;
+                }
+                batch.add(new Line<>(number, record));
+                if (batch.size() == batchSize) {
+                    insertBatch(batch, rules, tally);
+                    batch.clear();
+                }
+            }
+        }
+        insertBatch(batch, rules, tally);
+
+        log.info("Imported {} of {} {} records in {} ms", tally.imported, tally.records, type.getSimpleName(),
+                (System.nanoTime() - startedAt) / 1_000_000);
+        return tally.report();
+    }
+
+    // Inserts the lines of the batch that pass the rules. A concurrent write, such as a restaurant created with the
+    // same name, can break a constraint after the batch was checked. The batch is then rolled back, checked again and
+    // inserted without the lines that fail now.
+    private <T> void insertBatch(List<Line<T>> batch, Rules<T> rules, Tally tally) {
+        try {
+            List<Line<T>> valid = check(batch, rules, tally);
+            while (!valid.isEmpty()) {
+                List<Line<T>> attempted = valid;
+                try {
+                    bulkLoader.insertWithoutInvalidating(attempted.stream().map(Line::record).iterator());
+                    tally.imported += attempted.size();
+                    return;
+                } catch (DataIntegrityViolationException e) {
+                    List<Line<T>> stillValid = check(attempted, rules, tally);
+                    if (stillValid.size() == attempted.size()) {
+                        throw e;
+                    }
+                    valid = stillValid;
+                } finally {
+                    rules.inserted(attempted);
+                }
+            }
+        } finally {
+            // with open-in-view, the users looked up outside a transaction stay in the request's persistence context.
+            entityManager.clear();
+        }
+    }
+
+    // Returns the lines that pass the rules, and records the others as failed.
+    private <T> List<Line<T>> check(List<Line<T>> lines, Rules<T> rules, Tally tally) {
+        List<Line<T>> prepared = new ArrayList<>(lines.size());
+        for (Line<T> line : lines) {
+            String error = rules.prepare(line.record());
+            if (error != null) {
+                tally.fail(line.number(), error);
+            } else {
+                prepared.add(line);
+            }
+        }
+        Map<Long, String> errors = rules.check(prepared);
+        List<Line<T>> valid = new ArrayList<>(prepared.size());
+        for (Line<T> line : prepared) {
+            String error = errors.get(line.number());
+            if (error != null) {
+                tally.fail(line.number(), error);
+            } else {
+                valid.add(line);
+            }
+        }
+        return valid;
+    }
+
+    private interface Rules<T> {
+        // Returns why the record can't be imported, or null. Clears the fields the database assigns, such as the id,
+        // which a rolled back insert may also have set.
+        String prepare(T record);
+
+        // Returns the error of each line, by line number, that conflicts with another line or with the database.
+        Map<Long, String> check(List<Line<T>> lines);
+
+        // Invalidates what the lines' records change once inserted. Also called after a failed insert, since rows of
+        // its earlier transactions may have been committed.
+        void inserted(List<Line<T>> lines);
+    }
+
+    private class RestaurantRules implements Rules<Restaurant> {
+        @Override
+        public String prepare(Restaurant restaurant) {
+            restaurant.setId(null);
+            restaurant.setVersion(null);
+            return null;
+        }
+
+        // restaurants without a name or zipcode never conflict, as under the unique constraint. The existing
+        // restaurants of the whole batch are looked up in one query.
+        @Override
+        public Map<Long, String> check(List<Line<Restaurant>> lines) {
+            Set<String> normalizedNames = new HashSet<>();
+            for (Line<Restaurant> line : lines) {
+                if (line.record().getName() != null && line.record().getZipcode() != null) {
+                    normalizedNames.add(Restaurant.normalizeName(line.record().getName()));
+                }
+            }
+            Set<List<String>> keys = new HashSet<>();
+            if (!normalizedNames.isEmpty()) {
+                for (RestaurantRepository.NameAndZipcode existing
+                        : restaurantRepository.findNamesAndZipcodes(normalizedNames)) {
+                    keys.add(List.of(existing.getNormalizedName(), existing.getZipcode()));
+                }
+            }
+
+            Map<Long, String> errors = new HashMap<>();
+            for (Line<Restaurant> line : lines) {
+                String normalizedName = Restaurant.normalizeName(line.record().getName());
+                String zipcode = line.record().getZipcode();
+                if (normalizedName != null && zipcode != null && !keys.add(List.of(normalizedName, zipcode))) {
+                    errors.put(line.number(), DUPLICATE_RESTAURANT);
+                }
+            }
+            return errors;
+        }
+
+        // searches of these zipcodes may have loaded boards without the new restaurants.
+        @Override
+        public void inserted(List<Line<Restaurant>> lines) {
+            Set<String> zipcodes = new HashSet<>();
+            for (Line<Restaurant> line : lines) {
+                zipcodes.add(line.record().getZipcode());
+            }
+            restaurantLeaderboard.clear(zipcodes);
+        }
+    }
+
+    private class ReviewRules implements Rules<Review> {
+        @Override
+        public String prepare(Review review) {
+            review.setId(null);
+            Optional<User> user = review.getUserName() != null
+                    ? userCache.findByUserName(review.getUserName())
+                    : Optional.empty();
+            if (user.isEmpty()) {
+                return USER_NOT_FOUND;
+            }
+            if (review.getRestaurantId() == null) {
+                return RESTAURANT_NOT_FOUND;
+            }
+            review.setUserId(user.get().getId());
+            review.setStatus(Review.Status.PENDING);
+            return null;
+        }
+
+        // the restaurants of the whole batch are looked up in one query.
+        @Override
+        public Map<Long, String> check(List<Line<Review>> lines) {
+            Set<Long> restaurantIds = new HashSet<>();
+            for (Line<Review> line : lines) {
+                restaurantIds.add(line.record().getRestaurantId());
+            }
+            Set<Long> existingIds = restaurantIds.isEmpty()
+                    ? Set.of()
+                    : new HashSet<>(restaurantRepository.findExistingIds(restaurantIds));
+            Map<Long, String> errors = new HashMap<>();
+            for (Line<Review> line : lines) {
+                if (!existingIds.contains(line.record().getRestaurantId())) {
+                    errors.put(line.number(), RESTAURANT_NOT_FOUND);
+                }
+            }
+            return errors;
+        }
+
+        // pending reviews don't count towards any score.
+        @Override
+        public void inserted(List<Line<Review>> lines) {
+        }
+    }
+
+    private record Line<T>(long number, T record) {
+    }
+
+    // Counts of one import. Only the first maxReportedErrors errors are kept, so that a body of bad lines doesn't
+    // fill the heap.
+    private static class Tally {
+        private final int maxReportedErrors;
+        private final List<LineError> errors = new ArrayList<>();
+        private long records;
+        private long imported;
+        private long failed;
+
+        Tally(int maxReportedErrors) {
+            this.maxReportedErrors = maxReportedErrors;
+        }
+
+        void fail(long line, String error) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new LineError(line, error));
+            }
+        }
+
+        Report report() {
+            return new Report(records, imported, failed, errors);
+        }
+    }
+
+    // records counts the non-blank lines. errors holds the first maxReportedErrors failed lines, and failed counts all
+    // of them.
+    public record Report(long records, long imported, long failed, List<LineError> errors) {
+    }
+
+    public record LineError(long line, String error) {
+    }
+}
@@ -0,0 +1,110 @@
+package com.rjrouleau.dining_review_api.service;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Iterator;
+
+// Inserts large numbers of restaurants, users or reviews, for seeding a database at startup or in tests and for
+// imports. Entities are persisted through one EntityManager and flushed every bulk.load.flush-size rows, which
+// Hibernate sends as one JDBC batch per table, in table order (hibernate.order_inserts). Ids come from pooled
+// sequences, so the database is only asked for an id once per allocationSize rows. The persistence context is cleared
+// after each flush, so memory use does not grow with the number of rows, and every bulk.load.transaction-size rows
+// are committed together.
+//
+// Inserted entities are given their ids and left detached. Reviews are inserted as they are: accepted reviews don't
+// change their restaurants' scores until ScoreRebuildJob runs.
+@Service
+public class BulkLoader {
+    private static final Logger log = LoggerFactory.getLogger(BulkLoader.class);
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate writeTransaction;
+    private final RestaurantCache restaurantCache;
+    private final UserCache userCache;
+    private final RestaurantLeaderboard restaurantLeaderboard;
+    private final int flushSize;
+    private final int transactionSize;
+
+    public BulkLoader(
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            RestaurantCache restaurantCache,
+            UserCache userCache,
+            RestaurantLeaderboard restaurantLeaderboard,
+            @Value("${bulk.load.flush-size:1000}") int flushSize,
+            @Value("${bulk.load.transaction-size:50000}") int transactionSize
+    ) {
+        this.entityManager = entityManager;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.restaurantCache = restaurantCache;
+        this.userCache = userCache;
+        this.restaurantLeaderboard = restaurantLeaderboard;
+        this.flushSize = flushSize;
+        this.transactionSize = transactionSize;
+    }
+
+    // Inserts every entity and returns how many were inserted. If an insert fails, such as a taken userName, the
+    // rows of its transaction are rolled back and the exception is thrown. Rows of earlier transactions stay inserted.
+    // Afterwards the restaurant and user caches and every leaderboard are cleared, since a seed can add rows of any
+    // kind.
+    public long insertAll(Iterable<?> entities) {
+        return insertAll(entities.iterator());
+    }
+
+    public long insertAll(Iterator<?> entities) {
+        return insert(entities, true);
+    }
+
+    // Inserts like insertAll but leaves the caches and leaderboards alone, for callers such as BulkImporter that know
+    // which entries their rows change and invalidate only those.
+    long insertWithoutInvalidating(Iterator<?> entities) {
+        return insert(entities, false);
+    }
+
+    private long insert(Iterator<?> entities, boolean invalidate) {
+        long startedAt = System.nanoTime();
+        long inserted = 0;
+        try {
+            while (entities.hasNext()) {
+                inserted += writeTransaction.execute(status -> insertTransaction(entities));
+            }
+        } finally {
+            // lookups made before the load may have cached that a row didn't exist, or a zipcode without the new rows.
+            if (invalidate && inserted > 0) {
+                restaurantCache.clear();
+                userCache.clear();
+                restaurantLeaderboard.clear();
+            }
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        // debug rather than info, since imports call this once per batch.
+        log.debug("Bulk loaded {} rows in {} ms ({} rows/s)", inserted, Math.round(seconds * 1000),
+                seconds > 0 ? Math.round(inserted / seconds) : 0);
+        return inserted;
+    }
+
+    // Persists up to transactionSize entities in the current transaction.
+    private long insertTransaction(Iterator<?> entities) {
+        // a flush is sent as one batch per table rather than in batches of the application's hibernate.jdbc.batch_size.
+        entityManager.unwrap(Session.class).setJdbcBatchSize(flushSize);
+        long count = 0;
+        while (count < transactionSize && entities.hasNext()) {
+            entityManager.persist(entities.next());
+            count++;
+            if (count % flushSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return count;
+    }
+}
@@ -0,0 +1,119 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import com.rjrouleau.dining_review_api.repository.ReviewRepository;
+import com.rjrouleau.dining_review_api.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+// Seeds the database at startup with BulkLoader when bulk.load.seed.enabled is set. bulk.load.seed.restaurants, users
+// and reviews are optional resource locations, such as file:seed/users.ndjson, of newline-delimited JSON files with
+// one entity per line. Lines are parsed as they are inserted, so a seed of any size uses the same memory. A table that
+// already has rows is not seeded again, so restarting against a kept database doesn't duplicate it.
+//
+// Ids in the files are ignored. Reviews keep their restaurantId, userId and status, so they must refer to the ids the
+// seeded or existing restaurants and users have. Every restaurant's scores are rebuilt after reviews are seeded.
+@Service
+@ConditionalOnProperty(name = "bulk.load.seed.enabled")
+public class BulkSeeder implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(BulkSeeder.class);
+
+    private final BulkLoader bulkLoader;
+    private final ScoreRebuildJob scoreRebuildJob;
+    private final RestaurantRepository restaurantRepository;
+    private final UserRepository userRepository;
+    private final ReviewRepository reviewRepository;
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+    private final String restaurants;
+    private final String users;
+    private final String reviews;
+
+    public BulkSeeder(
+            BulkLoader bulkLoader,
+            ScoreRebuildJob scoreRebuildJob,
+            RestaurantRepository restaurantRepository,
+            UserRepository userRepository,
+            ReviewRepository reviewRepository,
+            ResourceLoader resourceLoader,
+            ObjectMapper objectMapper,
+            @Value("${bulk.load.seed.restaurants:}") String restaurants,
+            @Value("${bulk.load.seed.users:}") String users,
+            @Value("${bulk.load.seed.reviews:}") String reviews
+    ) {
+        this.bulkLoader = bulkLoader;
+        this.scoreRebuildJob = scoreRebuildJob;
+        this.restaurantRepository = restaurantRepository;
+        this.userRepository = userRepository;
+        this.reviewRepository = reviewRepository;
+        this.resourceLoader = resourceLoader;
+        this.objectMapper = objectMapper;
+        this.restaurants = restaurants;
+        this.users = users;
+        this.reviews = reviews;
+    }
+
+    // A file that can't be read or parsed fails the startup. Rows of the transactions committed before it stay.
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        seed(restaurants, Restaurant.class, restaurantRepository, restaurant -> restaurant.setId(null));
+        seed(users, User.class, userRepository, user -> user.setId(null));
+        if (seed(reviews, Review.class, reviewRepository, review -> review.setId(null)) > 0) {
+            scoreRebuildJob.rebuild();
+        }
+    }
+
+    // Inserts the entities of the file at location and returns how many were inserted.
+    private <T> long seed(String location, Class<T> type, CrudRepository<T, Long> repository, Consumer<T> prepare)
+            throws IOException {
+        if (location.isBlank()) {
+            return 0;
+        }
+        if (repository.count() > 0) {
+            log.info("Skipping the {} seed from {}, since the table already has rows", type.getSimpleName(), location);
+            return 0;
+        }
+        ObjectReader reader = objectMapper.readerFor(type);
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+                resourceLoader.getResource(location).getInputStream(), StandardCharsets.UTF_8))) {
+            Iterator<T> entities = lines.lines()
+                    .filter(line -> !line.isBlank())
+                    .map(line -> this.<T>read(reader, line, prepare))
+                    .iterator();
+            long inserted = bulkLoader.insertAll(entities);
+            log.info("Seeded {} {} rows from {}", inserted, type.getSimpleName(), location);
+            return inserted;
+        }
+    }
+
+    private <T> T read(ObjectReader reader, String line, Consumer<T> prepare) {
+        try {
+            T entity = reader.readValue(line);
+            prepare.accept(entity);
+            return entity;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
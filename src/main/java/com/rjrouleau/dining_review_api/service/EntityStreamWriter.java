@@ -0,0 +1,93 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Writes the rows of a repository Stream to the response as they are read, either as one JSON array or as
+// newline-delimited JSON. The query runs in a read-only transaction on the response thread, and each entity is
+// detached once it has been written, so memory use does not grow with the size of the result.
+@Service
+public class EntityStreamWriter {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+    private static final String INVALID_FORMAT = "Invalid stream format. Stream must be json or ndjson.";
+
+    private enum Format {
+        JSON, NDJSON
+    }
+
+    private final EntityManager entityManager;
+    private final ObjectWriter objectWriter;
+    private final TransactionTemplate readTransaction;
+
+    public EntityStreamWriter(
+            EntityManager entityManager,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.entityManager = entityManager;
+        // the servlet stream is buffered, so there is no need to flush after every row.
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    // Streams each row to the response, as json (one array) or ndjson (one row per line). query is only called once
+    // the response starts, and the stream it returns is always closed.
+    public <T> ResponseEntity<StreamingResponseBody> write(String format, Supplier<Stream<T>> query) {
+        Format outputFormat;
+        try {
+            outputFormat = Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(out -> out.write(INVALID_FORMAT.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        StreamingResponseBody body = out -> readTransaction.executeWithoutResult(status -> {
+            try (Stream<T> rows = query.get();
+                 JsonGenerator generator = objectWriter.getFactory().createGenerator(out)) {
+                if (outputFormat == Format.JSON) {
+                    generator.writeStartArray();
+                } else {
+                    // each row ends with its own newline instead of the default separator between root values.
+                    generator.setRootValueSeparator(null);
+                }
+                Iterator<T> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    T row = iterator.next();
+                    objectWriter.writeValue(generator, row);
+                    if (outputFormat == Format.NDJSON) {
+                        generator.writeRaw('\n');
+                    }
+                    if (entityManager.contains(row)) {
+                        entityManager.detach(row);
+                    }
+                }
+                if (outputFormat == Format.JSON) {
+                    generator.writeEndArray();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        MediaType contentType = outputFormat == Format.JSON ? MediaType.APPLICATION_JSON : APPLICATION_NDJSON;
+        return ResponseEntity.ok().contentType(contentType).body(body);
+    }
+}
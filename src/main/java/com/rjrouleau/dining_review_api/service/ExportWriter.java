@@ -0,0 +1,141 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+// Writes the rows of an export query to the response as they are read from the database cursor, as
+// newline-delimited JSON or as CSV with a header line. The response is gzip-compressed as it is written when the
+// client accepts gzip. Rows should be projections rather than entities, so that nothing is kept in the persistence
+// context and memory use does not grow with the number of rows.
+//
+// Unlike EntityStreamWriter, the rows are written on the request thread instead of in a StreamingResponseBody, so an
+// export that runs for longer than spring.mvc.async.request-timeout is not cut off.
+@Service
+public class ExportWriter {
+    public static final String TEXT_CSV_VALUE = "text/csv";
+    private static final String INVALID_FORMAT = "Invalid format. Format must be ndjson or csv.";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private enum Format {
+        NDJSON, CSV
+    }
+
+    private final ObjectWriter jsonWriter;
+    private final CsvMapper csvMapper;
+    private final TransactionTemplate readTransaction;
+
+    public ExportWriter(ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        // the response stream is buffered, so there is no need to flush after every row.
+        this.jsonWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        // a separate mapper without the application's non-null inclusion, so that every CSV line has every column.
+        // Columns are in the order the row's fields are declared rather than sorted by name.
+        this.csvMapper = CsvMapper.builder().disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY).build();
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    // Writes each row of rowType to the response as ndjson or csv, or responds 400 if the format is neither.
+    // acceptEncoding is the request's Accept-Encoding header. query is only called once the format is known, and the
+    // stream it returns is always closed.
+    public <T> void write(
+            String format,
+            String acceptEncoding,
+            Class<T> rowType,
+            Supplier<Stream<T>> query,
+            HttpServletResponse response
+    ) throws IOException {
+        Format outputFormat;
+        try {
+            outputFormat = Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getOutputStream().write(INVALID_FORMAT.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        ObjectWriter rowWriter = outputFormat == Format.CSV
+                ? csvMapper.writer(csvMapper.schemaFor(rowType).withHeader())
+                : jsonWriter;
+        response.setContentType(outputFormat == Format.CSV
+                ? TEXT_CSV_VALUE
+                : EntityStreamWriter.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        OutputStream out = response.getOutputStream();
+        if (acceptsGzip(acceptEncoding)) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            out = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+        }
+
+        OutputStream body = out;
+        readTransaction.executeWithoutResult(status -> {
+            // closing the generator finishes the gzip stream.
+            try (Stream<T> rows = query.get();
+                 JsonGenerator generator = rowWriter.createGenerator(body)) {
+                if (outputFormat == Format.NDJSON) {
+                    // each row ends with its own newline instead of the default separator between root values.
+                    generator.setRootValueSeparator(null);
+                }
+                Iterator<T> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    rowWriter.writeValue(generator, iterator.next());
+                    if (outputFormat == Format.NDJSON) {
+                        generator.writeRaw('\n');
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Returns true if the Accept-Encoding header lists gzip, or *, without a quality of 0.
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(parameter.substring(2)) == 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,54 @@
+package com.rjrouleau.dining_review_api.service;
+
+import org.hibernate.SessionEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+
+// Counts Hibernate's flushes, second-level cache lookups and entity loads into the QueryCounts of the current thread.
+// Hibernate creates one instance per session from hibernate.session.events.auto, and one more is registered for the
+// post-load event, so it keeps no state of its own.
+public class HibernateQueryCounter implements SessionEventListener, PostLoadEventListener {
+
+    @Override
+    public void flushStart() {
+        QueryCounts.current().flushStartedAt = System.nanoTime();
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        endFlush(numberOfEntities);
+    }
+
+    // a partial flush is the automatic flush before a query that reads tables with pending changes.
+    @Override
+    public void partialFlushStart() {
+        flushStart();
+    }
+
+    @Override
+    public void partialFlushEnd(int numberOfEntities, int numberOfCollections) {
+        endFlush(numberOfEntities);
+    }
+
+    @Override
+    public void cacheGetEnd(boolean hit) {
+        QueryCounts counts = QueryCounts.current();
+        if (hit) {
+            counts.cacheHits++;
+        } else {
+            counts.cacheMisses++;
+        }
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        QueryCounts.current().entityLoads++;
+    }
+
+    private static void endFlush(int numberOfEntities) {
+        QueryCounts counts = QueryCounts.current();
+        counts.flushes++;
+        counts.entitiesFlushed += numberOfEntities;
+        counts.flushNanos += System.nanoTime() - counts.flushStartedAt;
+    }
+}
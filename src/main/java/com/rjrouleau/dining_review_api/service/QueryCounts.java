@@ -0,0 +1,68 @@
+package com.rjrouleau.dining_review_api.service;
+
+// Running totals of the database work done on one thread: SQL statements with their rows and time, and Hibernate
+// entity loads, flushes and second-level cache lookups. They only ever grow, so the work of a request or a repository
+// call is the difference between a copy taken before it and the totals after it. Updated by QueryStatisticsListener
+// and HibernateQueryCounter, on the thread doing the work.
+public class QueryCounts {
+    private static final ThreadLocal<QueryCounts> CURRENT = ThreadLocal.withInitial(QueryCounts::new);
+
+    long statements;
+    long rows;
+    long sqlNanos;
+    long entityLoads;
+    long flushes;
+    long entitiesFlushed;
+    long flushNanos;
+    long cacheHits;
+    long cacheMisses;
+
+    // not part of the totals: when the flush in progress started, and the innermost repository method running.
+    long flushStartedAt;
+    String repositoryMethod;
+
+    public static QueryCounts current() {
+        return CURRENT.get();
+    }
+
+    public QueryCounts copy() {
+        QueryCounts copy = new QueryCounts();
+        copy.add(this);
+        return copy;
+    }
+
+    // Returns the work done since before was copied from these totals.
+    public QueryCounts since(QueryCounts before) {
+        QueryCounts difference = copy();
+        difference.statements -= before.statements;
+        difference.rows -= before.rows;
+        difference.sqlNanos -= before.sqlNanos;
+        difference.entityLoads -= before.entityLoads;
+        difference.flushes -= before.flushes;
+        difference.entitiesFlushed -= before.entitiesFlushed;
+        difference.flushNanos -= before.flushNanos;
+        difference.cacheHits -= before.cacheHits;
+        difference.cacheMisses -= before.cacheMisses;
+        return difference;
+    }
+
+    void add(QueryCounts other) {
+        statements += other.statements;
+        rows += other.rows;
+        sqlNanos += other.sqlNanos;
+        entityLoads += other.entityLoads;
+        flushes += other.flushes;
+        entitiesFlushed += other.entitiesFlushed;
+        flushNanos += other.flushNanos;
+        cacheHits += other.cacheHits;
+        cacheMisses += other.cacheMisses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d statements, %d rows, %.1f ms SQL, %d entity loads, "
+                        + "%d flushes of %d entities in %.1f ms, %d cache hits, %d cache misses",
+                statements, rows, sqlNanos / 1e6, entityLoads, flushes, entitiesFlushed, flushNanos / 1e6, cacheHits,
+                cacheMisses);
+    }
+}
@@ -0,0 +1,194 @@
+package com.rjrouleau.dining_review_api.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Database statistics since startup: the executions, time and rows of every distinct SQL statement, and the database
+// work of every repository method and every endpoint. A statement that takes longer than queries.slow-threshold-ms is
+// logged with its SQL, the types of its parameters (never their values), its row count and the repository method that
+// ran it. Only the first queries.stats.max-statements distinct statements are tracked, so that SQL built on the fly
+// can't fill the heap. Later ones are still timed, logged when slow and counted in the totals.
+@Service
+public class QueryStatistics {
+    private static final Logger log = LoggerFactory.getLogger(QueryStatistics.class);
+
+    private final long slowThresholdNanos;
+    private final int maxStatements;
+    private final Map<String, StatementAggregate> statements = new ConcurrentHashMap<>();
+    private final Map<String, UsageAggregate> repositoryMethods = new ConcurrentHashMap<>();
+    private final Map<String, UsageAggregate> endpoints = new ConcurrentHashMap<>();
+    private final AtomicLong untrackedExecutions = new AtomicLong();
+
+    public QueryStatistics(
+            @Value("${queries.slow-threshold-ms:100}") long slowThresholdMs,
+            @Value("${queries.stats.max-statements:1000}") int maxStatements
+    ) {
+        this.slowThresholdNanos = slowThresholdMs * 1_000_000;
+        this.maxStatements = maxStatements;
+    }
+
+    // Records one execution of a statement, taking nanos on the database and returning rows rows (the update count for
+    // inserts, updates and deletes, or -1 if unknown). parameters describes the parameter types, and is only called
+    // when the description is kept or logged.
+    void recordStatement(String sql, Supplier<String> parameters, long nanos, long rows) {
+        QueryCounts counts = QueryCounts.current();
+        counts.statements++;
+        counts.rows += Math.max(rows, 0);
+        counts.sqlNanos += nanos;
+
+        StatementAggregate aggregate = statements.get(sql);
+        if (aggregate == null && statements.size() < maxStatements) {
+            aggregate = statements.computeIfAbsent(sql, StatementAggregate::new);
+        }
+        if (aggregate != null) {
+            aggregate.add(nanos, rows, parameters);
+        } else {
+            untrackedExecutions.incrementAndGet();
+        }
+        if (nanos >= slowThresholdNanos) {
+            log.warn("Slow query: {} ms, {} rows, in {}, parameters {}: {}", Math.round(nanos / 1e6), rows,
+                    counts.repositoryMethod != null ? counts.repositoryMethod : "no repository method",
+                    parameters.get(), sql);
+        }
+    }
+
+    void recordRepositoryMethod(String name, long nanos, QueryCounts work) {
+        repositoryMethods.computeIfAbsent(name, UsageAggregate::new).add(nanos, work);
+    }
+
+    void recordEndpoint(String name, long nanos, QueryCounts work) {
+        endpoints.computeIfAbsent(name, UsageAggregate::new).add(nanos, work);
+        log.debug("{} in {} ms: {}", name, Math.round(nanos / 1e6), work);
+    }
+
+    // The top statements by longest execution and by number of executions, and the top repository methods and
+    // endpoints by total SQL time.
+    public Report report(int top) {
+        List<StatementStats> statementStats = statements.values().stream().map(StatementAggregate::stats).toList();
+        return new Report(
+                untrackedExecutions.get(),
+                statementStats.stream()
+                        .sorted(Comparator.comparingDouble(StatementStats::maxMs).reversed())
+                        .limit(top)
+                        .toList(),
+                statementStats.stream()
+                        .sorted(Comparator.comparingLong(StatementStats::executions).reversed())
+                        .limit(top)
+                        .toList(),
+                top(repositoryMethods, top),
+                top(endpoints, top)
+        );
+    }
+
+    private static List<UsageStats> top(Map<String, UsageAggregate> aggregates, int top) {
+        return aggregates.values().stream()
+                .map(UsageAggregate::stats)
+                .sorted(Comparator.comparingDouble(UsageStats::sqlMs).reversed())
+                .limit(top)
+                .toList();
+    }
+
+    private static class StatementAggregate {
+        private final String sql;
+        private long executions;
+        private long totalNanos;
+        private long maxNanos;
+        private long rows;
+        private String slowestParameters;
+
+        StatementAggregate(String sql) {
+            this.sql = sql;
+        }
+
+        synchronized void add(long nanos, long rows, Supplier<String> parameters) {
+            executions++;
+            totalNanos += nanos;
+            this.rows += Math.max(rows, 0);
+            if (nanos > maxNanos || slowestParameters == null) {
+                maxNanos = Math.max(maxNanos, nanos);
+                slowestParameters = parameters.get();
+            }
+        }
+
+        synchronized StatementStats stats() {
+            return new StatementStats(sql, executions, totalNanos / 1e6, totalNanos / 1e6 / executions, maxNanos / 1e6,
+                    rows, slowestParameters);
+        }
+    }
+
+    private static class UsageAggregate {
+        private final String name;
+        private final QueryCounts work = new QueryCounts();
+        private long calls;
+        private long totalNanos;
+        private long maxNanos;
+
+        UsageAggregate(String name) {
+            this.name = name;
+        }
+
+        synchronized void add(long nanos, QueryCounts work) {
+            calls++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            this.work.add(work);
+        }
+
+        synchronized UsageStats stats() {
+            return new UsageStats(name, calls, totalNanos / 1e6 / calls, maxNanos / 1e6, work.statements,
+                    (double) work.statements / calls, work.rows, work.sqlNanos / 1e6, work.entityLoads, work.flushes,
+                    work.entitiesFlushed, work.flushNanos / 1e6, work.cacheHits, work.cacheMisses);
+        }
+    }
+
+    // untrackedExecutions counts the executions of statements beyond queries.stats.max-statements.
+    public record Report(
+            long untrackedExecutions,
+            List<StatementStats> slowest,
+            List<StatementStats> mostFrequent,
+            List<UsageStats> repositoryMethods,
+            List<UsageStats> endpoints
+    ) {
+    }
+
+    // rows is the total over all executions. slowestParameters are the parameter types of the slowest execution.
+    public record StatementStats(
+            String sql,
+            long executions,
+            double totalMs,
+            double meanMs,
+            double maxMs,
+            long rows,
+            String slowestParameters
+    ) {
+    }
+
+    // The calls of one repository method or endpoint and the database work done during them. meanMs and maxMs are
+    // the time of the whole call, and sqlMs and flushMs the part of it spent running statements and flushing.
+    public record UsageStats(
+            String name,
+            long calls,
+            double meanMs,
+            double maxMs,
+            long statements,
+            double statementsPerCall,
+            long rows,
+            double sqlMs,
+            long entityLoads,
+            long flushes,
+            long entitiesFlushed,
+            double flushMs,
+            long cacheHits,
+            long cacheMisses
+    ) {
+    }
+}
@@ -0,0 +1,176 @@
+package com.rjrouleau.dining_review_api.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.cfg.SessionEventSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.jpa.boot.spi.JpaSettings;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.util.function.SingletonSupplier;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Collects the database work of every request and repository method into QueryStatistics: statements are counted by
+// QueryStatisticsListener on a datasource-proxy wrapper around the DataSource, Hibernate's flushes, cache lookups and
+// entity loads by HibernateQueryCounter, and the counts are attributed by an interceptor around every repository
+// method and every handler. Turned off with queries.stats.enabled=false.
+//
+// Work done after a handler returns, such as the rows of a streamed response, is not attributed to its endpoint, and
+// the rows read from a repository method that returns a Stream are not attributed to the method.
+@Configuration
+@ConditionalOnProperty(name = "queries.stats.enabled", matchIfMissing = true)
+public class QueryStatisticsConfiguration implements WebMvcConfigurer {
+    private static final String REQUEST_START = QueryStatisticsConfiguration.class.getName() + ".start";
+    private static final String REQUEST_COUNTS = QueryStatisticsConfiguration.class.getName() + ".counts";
+
+    private final QueryStatistics queryStatistics;
+
+    public QueryStatisticsConfiguration(QueryStatistics queryStatistics) {
+        this.queryStatistics = queryStatistics;
+    }
+
+    @Bean
+    public static BeanPostProcessor queryStatisticsDataSourceWrapper(ObjectProvider<QueryStatistics> queryStatistics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ProxyDataSource) {
+                    return bean;
+                }
+                QueryStatisticsListener listener =
+                        new QueryStatisticsListener(SingletonSupplier.of(queryStatistics::getObject));
+                return ProxyDataSourceBuilder.create(beanName, dataSource)
+                        .listener(listener)
+                        .methodListener(listener)
+                        .proxyResultSet()
+                        .proxyGeneratedKeys()
+                        .build();
+            }
+        };
+    }
+
+    // the interceptor goes first, outside the repository's transaction, so that the flush on commit is counted.
+    @Bean
+    public static BeanPostProcessor queryStatisticsRepositoryInterceptor(
+            ObjectProvider<QueryStatistics> queryStatistics
+    ) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repository) -> proxyFactory.addAdvice(0, new RepositoryMethodInterceptor(
+                                    repository.getRepositoryInterface().getSimpleName(),
+                                    SingletonSupplier.of(queryStatistics::getObject)
+                            ))
+                    ));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryStatisticsHibernateListeners() {
+        return properties -> {
+            properties.put(SessionEventSettings.AUTO_SESSION_EVENTS_LISTENER, HibernateQueryCounter.class.getName());
+            properties.put(JpaSettings.INTEGRATOR_PROVIDER, (IntegratorProvider) () -> List.of(new Integrator() {
+                @Override
+                public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                                      SessionFactoryImplementor sessionFactory) {
+                    sessionFactory.getServiceRegistry().requireService(EventListenerRegistry.class)
+                            .appendListeners(EventType.POST_LOAD, new HibernateQueryCounter());
+                }
+
+                @Override
+                public void disintegrate(SessionFactoryImplementor sessionFactory,
+                                         SessionFactoryServiceRegistry serviceRegistry) {
+                }
+            }));
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                request.setAttribute(REQUEST_START, System.nanoTime());
+                request.setAttribute(REQUEST_COUNTS, QueryCounts.current().copy());
+                return true;
+            }
+
+            // an async dispatch runs preHandle again, on its own thread, so the counts are from the same thread.
+            @Override
+            public void afterCompletion(
+                    HttpServletRequest request,
+                    HttpServletResponse response,
+                    Object handler,
+                    Exception exception
+            ) {
+                if (request.getAttribute(REQUEST_COUNTS) instanceof QueryCounts before
+                        && request.getAttribute(REQUEST_START) instanceof Long startedAt) {
+                    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                    queryStatistics.recordEndpoint(request.getMethod() + " " + pattern,
+                            System.nanoTime() - startedAt, QueryCounts.current().since(before));
+                }
+            }
+        });
+    }
+
+    // Records the database work done during each call to a repository method, under the method's name, and makes the
+    // method the current one for the slow query log.
+    private static class RepositoryMethodInterceptor implements MethodInterceptor {
+        private final String repositoryName;
+        private final SingletonSupplier<QueryStatistics> queryStatistics;
+        private final Map<Method, String> names = new ConcurrentHashMap<>();
+
+        RepositoryMethodInterceptor(String repositoryName, SingletonSupplier<QueryStatistics> queryStatistics) {
+            this.repositoryName = repositoryName;
+            this.queryStatistics = queryStatistics;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            String name = names.computeIfAbsent(invocation.getMethod(),
+                    method -> repositoryName + "." + method.getName());
+            QueryCounts counts = QueryCounts.current();
+            QueryCounts before = counts.copy();
+            String outerMethod = counts.repositoryMethod;
+            counts.repositoryMethod = name;
+            long startedAt = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                counts.repositoryMethod = outerMethod;
+                queryStatistics.obtain().recordRepositoryMethod(name, System.nanoTime() - startedAt,
+                        counts.since(before));
+            }
+        }
+    }
+}
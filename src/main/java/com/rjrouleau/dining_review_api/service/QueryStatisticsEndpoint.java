@@ -0,0 +1,25 @@
+package com.rjrouleau.dining_review_api.service;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+// GET /actuator/queries returns the top statements, repository methods and endpoints of QueryStatistics. top is the
+// number of entries in each list, 10 by default.
+@Component
+@Endpoint(id = "queries")
+public class QueryStatisticsEndpoint {
+    private static final int DEFAULT_TOP = 10;
+
+    private final QueryStatistics queryStatistics;
+
+    public QueryStatisticsEndpoint(QueryStatistics queryStatistics) {
+        this.queryStatistics = queryStatistics;
+    }
+
+    @ReadOperation
+    public QueryStatistics.Report queries(@Nullable Integer top) {
+        return queryStatistics.report(top != null && top > 0 ? top : DEFAULT_TOP);
+    }
+}
@@ -0,0 +1,158 @@
+package com.rjrouleau.dining_review_api.service;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+// Reports every statement run through the datasource-proxy wrapper around the connection pool to QueryStatistics.
+// A statement's time is the time spent executing it plus the time spent fetching its rows, and a query is reported
+// once its result set or statement is closed or the statement runs again, with the number of rows read. That includes
+// the result set of an execute() read through getResultSet(). The types of the bound parameters are kept, but not
+// their values.
+public class QueryStatisticsListener implements QueryExecutionListener, MethodExecutionListener {
+    private static final String STARTED_AT = QueryStatisticsListener.class.getName() + ".startedAt";
+
+    // the queries whose rows are being read on this thread, by statement. Weak, so an unclosed statement isn't kept.
+    private static final ThreadLocal<Map<Statement, Execution>> OPEN_QUERIES =
+            ThreadLocal.withInitial(WeakHashMap::new);
+
+    private final Supplier<QueryStatistics> queryStatistics;
+
+    // queryStatistics is looked up on first use, since the DataSource is created before most beans.
+    public QueryStatisticsListener(Supplier<QueryStatistics> queryStatistics) {
+        this.queryStatistics = queryStatistics;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+        finish(execution.getStatement());
+        execution.addCustomValue(STARTED_AT, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+        long nanos = System.nanoTime() - execution.getCustomValue(STARTED_AT, Long.class);
+        QueryInfo query = queries.get(0);
+        Supplier<String> parameters = describeParameters(query.getParametersList());
+        Object result = execution.getResult();
+        // execute() returns whether there is a result set, not a row count.
+        if (result instanceof ResultSet || Boolean.TRUE.equals(result)) {
+            OPEN_QUERIES.get().put(execution.getStatement(), new Execution(query.getQuery(), parameters, nanos));
+        } else {
+            queryStatistics.get().recordStatement(query.getQuery(), parameters, nanos, rows(result));
+        }
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext context) {
+        if (context.getTarget() instanceof ResultSet resultSet) {
+            switch (context.getMethod().getName()) {
+                case "next" -> context.addCustomValue(STARTED_AT, System.nanoTime());
+                case "close" -> finish(statementOf(resultSet));
+                default -> {
+                }
+            }
+        } else if (context.getTarget() instanceof Statement statement
+                && context.getMethod().getName().equals("close")) {
+            finish(statement);
+        }
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext context) {
+        if (context.getTarget() instanceof ResultSet resultSet && context.getMethod().getName().equals("next")) {
+            Execution execution = OPEN_QUERIES.get().get(statementOf(resultSet));
+            if (execution != null) {
+                execution.nanos += System.nanoTime() - context.getCustomValue(STARTED_AT, Long.class);
+                if (Boolean.TRUE.equals(context.getResult())) {
+                    execution.rows++;
+                }
+            }
+        }
+    }
+
+    private void finish(Statement statement) {
+        Execution execution = statement != null ? OPEN_QUERIES.get().remove(statement) : null;
+        if (execution != null) {
+            queryStatistics.get().recordStatement(execution.sql, execution.parameters, execution.nanos, execution.rows);
+        }
+    }
+
+    // null for a result set that doesn't come from a statement, such as one from DatabaseMetaData.
+    private static Statement statementOf(ResultSet resultSet) {
+        try {
+            return resultSet.getStatement();
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    // The update count for inserts, updates and deletes, summed over a batch, or -1 if unknown.
+    private static long rows(Object result) {
+        if (result instanceof Number count) {
+            return count.longValue();
+        }
+        long rows = 0;
+        if (result instanceof int[] counts) {
+            for (int count : counts) {
+                rows += Math.max(count, 0);
+            }
+        } else if (result instanceof long[] counts) {
+            for (long count : counts) {
+                rows += Math.max(count, 0);
+            }
+        } else {
+            return -1;
+        }
+        return rows;
+    }
+
+    // the types are taken now, while the parameters are still bound, and the description is built only if it is used.
+    // A batch is described by its size and its last parameters.
+    private static Supplier<String> describeParameters(List<List<ParameterSetOperation>> parametersList) {
+        int batchSize = parametersList.size();
+        List<ParameterSetOperation> last = batchSize > 0 ? parametersList.get(batchSize - 1) : List.of();
+        String[] bound = new String[0];
+        for (ParameterSetOperation operation : last) {
+            Object[] args = operation.getArgs();
+            if (args.length >= 2 && args[0] instanceof Integer index && index >= 1) {
+                if (index > bound.length) {
+                    bound = Arrays.copyOf(bound, index);
+                }
+                bound[index - 1] = ParameterSetOperation.isSetNullParameterOperation(operation) || args[1] == null
+                        ? "null"
+                        : args[1].getClass().getSimpleName();
+            }
+        }
+        String[] types = bound;
+        return batchSize > 1
+                ? () -> "batch of " + batchSize + ", last " + Arrays.toString(types)
+                : () -> Arrays.toString(types);
+    }
+
+    // A query whose rows are being read.
+    private static class Execution {
+        private final String sql;
+        private final Supplier<String> parameters;
+        private long nanos;
+        private long rows;
+
+        Execution(String sql, Supplier<String> parameters, long nanos) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.nanos = nanos;
+        }
+    }
+}
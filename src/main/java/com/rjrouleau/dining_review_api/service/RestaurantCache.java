@@ -0,0 +1,80 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+// Read-through cache in front of RestaurantRepository.findById, bounded by size and by time since the entry was
+// loaded. Every path that writes a restaurant must call invalidate() after the write. An invalidate that overlaps a
+// load drops the pending entry, so the load cannot leave the old row cached. Missing restaurants are not cached.
+//
+// Entries are futures. The first caller for an id runs the query itself, outside the cache's internal locks, and
+// concurrent callers for the same id wait on its future, so a virtual thread waiting on the database doesn't pin its
+// carrier.
+@Service
+public class RestaurantCache {
+    private final RestaurantRepository restaurantRepository;
+    private final AsyncCache<Long, Restaurant> cache;
+
+    public RestaurantCache(
+            RestaurantRepository restaurantRepository,
+            @Value("${restaurants.cache.max-size:10000}") long maxSize,
+            @Value("${restaurants.cache.ttl-seconds:300}") long ttlSeconds
+    ) {
+        this.restaurantRepository = restaurantRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .buildAsync();
+    }
+
+    // Returns a copy of the cached restaurant, so that callers can't change the cached entry.
+    public Optional<Restaurant> findById(Long id) {
+        CompletableFuture<Restaurant> loading = new CompletableFuture<>();
+        CompletableFuture<Restaurant> cached = cache.get(id, (key, executor) -> loading);
+        if (cached == loading) {
+            try {
+                loading.complete(restaurantRepository.findById(id)
+                        .map(restaurant -> restaurant.toBuilder().build())
+                        .orElse(null));
+            } catch (RuntimeException e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return Optional.ofNullable(cached.join()).map(restaurant -> restaurant.toBuilder().build());
+    }
+
+    public void invalidate(Long id) {
+        if (id != null) {
+            cache.synchronous().invalidate(id);
+        }
+    }
+
+    public void clear() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public Stats getStats() {
+        CacheStats stats = cache.synchronous().stats();
+        return new Stats(
+                cache.synchronous().estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.evictionCount(),
+                stats.hitRate()
+        );
+    }
+
+    public record Stats(long size, long hits, long misses, long evictions, double hitRate) {
+    }
+}
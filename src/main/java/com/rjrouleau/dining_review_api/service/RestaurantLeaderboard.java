@@ -0,0 +1,247 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// In-memory leaderboards of restaurants per (zipcode, allergy), sorted by that allergy's score descending. Only
+// restaurants with a score above zero are listed, matching the search endpoint. A zipcode is loaded from the database
+// the first time it is searched, and is then kept up to date by the write paths calling update() and remove().
+// Readers get immutable snapshots without locking. Writers to the same zipcode are serialized, and each write copies
+// the sorted lists and moves only the changed restaurant, found and placed by binary search. At most
+// restaurants.leaderboard.max-zipcodes zipcodes are kept, so that searches for arbitrary zipcodes can't fill the heap.
+// An evicted zipcode is loaded again on its next search.
+@Service
+public class RestaurantLeaderboard {
+
+    public enum Allergy {
+        PEANUT(Restaurant::getPeanutScore),
+        EGG(Restaurant::getEggScore),
+        DAIRY(Restaurant::getDairyScore);
+
+        private final Function<Restaurant, Float> score;
+
+        Allergy(Function<Restaurant, Float> score) {
+            this.score = score;
+        }
+
+        // Highest score first. Ties are ordered by id so that snapshots are stable.
+        private Comparator<Restaurant> order() {
+            return Comparator.comparing(score, Comparator.reverseOrder())
+                    .thenComparing(Restaurant::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+        }
+
+        private boolean isListed(Restaurant restaurant) {
+            Float value = score.apply(restaurant);
+            return value != null && value > 0.f;
+        }
+    }
+
+    private final RestaurantRepository restaurantRepository;
+    private final Cache<String, ZipcodeBoard> boards;
+
+    public RestaurantLeaderboard(
+            RestaurantRepository restaurantRepository,
+            @Value("${restaurants.leaderboard.max-zipcodes:1000}") long maxZipcodes
+    ) {
+        this.restaurantRepository = restaurantRepository;
+        this.boards = Caffeine.newBuilder().maximumSize(maxZipcodes).build();
+    }
+
+    // Returns the restaurants in a zipcode ordered by the allergy score descending. The list must not be modified.
+    public List<Restaurant> search(String zipcode, Allergy allergy) {
+        return boards.get(zipcode, ZipcodeBoard::new).snapshot(allergy);
+    }
+
+    // Records a created or changed restaurant. previousZipcode is the zipcode before the change, or null if it did not
+    // change or the restaurant is new. Writers publish after releasing the restaurant's RestaurantUpdater stripe, so
+    // two writes of one restaurant can be published in either order. A copy older than the one a board holds, or than
+    // the one that removed it from the board, is ignored.
+    public void update(String previousZipcode, Restaurant restaurant) {
+        if (previousZipcode != null && !previousZipcode.equals(restaurant.getZipcode())) {
+            ZipcodeBoard previousBoard = boards.getIfPresent(previousZipcode);
+            if (previousBoard != null) {
+                previousBoard.remove(restaurant.getId(), restaurant.getVersion());
+            }
+        }
+        ZipcodeBoard board = restaurant.getZipcode() != null ? boards.getIfPresent(restaurant.getZipcode()) : null;
+        if (board != null) {
+            board.put(restaurant.toBuilder().build());
+        }
+    }
+
+    public void remove(Restaurant restaurant) {
+        ZipcodeBoard board = restaurant.getZipcode() != null ? boards.getIfPresent(restaurant.getZipcode()) : null;
+        if (board != null) {
+            board.remove(restaurant.getId(), restaurant.getVersion());
+        }
+    }
+
+    // Forgets every loaded zipcode, so each is reloaded from the database on its next search.
+    public void clear() {
+        boards.invalidateAll();
+    }
+
+    // Forgets the given zipcodes, such as those of newly inserted restaurants, and keeps the other loaded ones.
+    public void clear(Collection<String> zipcodes) {
+        boards.invalidateAll(zipcodes.stream().filter(Objects::nonNull).toList());
+    }
+
+    long zipcodeCount() {
+        boards.cleanUp();
+        return boards.estimatedSize();
+    }
+
+    // One zipcode's restaurants, keyed by id, and the leaderboards built from them. Never modified once published.
+    private record Snapshot(Map<Long, Restaurant> restaurants, Map<Allergy, List<Restaurant>> lists) {
+
+        static Snapshot of(Map<Long, Restaurant> restaurants) {
+            Map<Allergy, List<Restaurant>> lists = new EnumMap<>(Allergy.class);
+            for (Allergy allergy : Allergy.values()) {
+                lists.put(allergy, restaurants.values().stream()
+                        .filter(allergy::isListed)
+                        .sorted(allergy.order())
+                        .toList());
+            }
+            return new Snapshot(restaurants, lists);
+        }
+
+        // Returns a snapshot with the restaurant added or replaced, or this one if it holds a newer version of it.
+        Snapshot with(Restaurant restaurant) {
+            Restaurant held = restaurants.get(restaurant.getId());
+            if (held != null && isOlder(restaurant.getVersion(), held.getVersion())) {
+                return this;
+            }
+            Map<Long, Restaurant> changed = new HashMap<>(restaurants);
+            Restaurant previous = changed.put(restaurant.getId(), restaurant);
+            return new Snapshot(changed, changeLists(previous, restaurant));
+        }
+
+        // Returns a snapshot without the restaurant, or this one if it isn't in the zipcode.
+        Snapshot without(Long restaurantId) {
+            if (!restaurants.containsKey(restaurantId)) {
+                return this;
+            }
+            Map<Long, Restaurant> changed = new HashMap<>(restaurants);
+            Restaurant previous = changed.remove(restaurantId);
+            return new Snapshot(changed, changeLists(previous, null));
+        }
+
+        // Moves one restaurant in each list: previous, if listed, is removed from its position and current, if listed,
+        // is inserted at its own. A list the restaurant is in neither before nor after is shared, not copied.
+        private Map<Allergy, List<Restaurant>> changeLists(Restaurant previous, Restaurant current) {
+            Map<Allergy, List<Restaurant>> changed = new EnumMap<>(Allergy.class);
+            for (Allergy allergy : Allergy.values()) {
+                List<Restaurant> list = lists.get(allergy);
+                boolean wasListed = previous != null && allergy.isListed(previous);
+                boolean isListed = current != null && allergy.isListed(current);
+                if (!wasListed && !isListed) {
+                    changed.put(allergy, list);
+                    continue;
+                }
+                List<Restaurant> copy = new ArrayList<>(list.size() + 1);
+                copy.addAll(list);
+                if (wasListed) {
+                    copy.remove(Collections.binarySearch(copy, previous, allergy.order()));
+                }
+                if (isListed) {
+                    copy.add(-Collections.binarySearch(copy, current, allergy.order()) - 1, current);
+                }
+                changed.put(allergy, Collections.unmodifiableList(copy));
+            }
+            return changed;
+        }
+    }
+
+    // Restaurants without a version, such as ones built in tests, are never older.
+    private static boolean isOlder(Long version, Long than) {
+        return version != null && than != null && version < than;
+    }
+
+    // The leaderboards of one zipcode. Loading and updates hold the board's lock, so an update that arrives while the
+    // zipcode is being loaded is applied on top of the loaded lists rather than lost. The lock is a ReentrantLock
+    // rather than a monitor so that a virtual thread waiting on the database in load() doesn't pin its carrier.
+    private class ZipcodeBoard {
+        private final String zipcode;
+        private final ReentrantLock lock = new ReentrantLock();
+        // the version each restaurant had when it was moved away or deleted, so that an older copy published late
+        // doesn't put it back. Guarded by lock.
+        private final Map<Long, Long> departedVersions = new HashMap<>();
+        private volatile Snapshot snapshot;
+
+        ZipcodeBoard(String zipcode) {
+            this.zipcode = zipcode;
+        }
+
+        List<Restaurant> snapshot(Allergy allergy) {
+            Snapshot current = snapshot;
+            if (current == null) {
+                current = load();
+            }
+            return current.lists().get(allergy);
+        }
+
+        private Snapshot load() {
+            lock.lock();
+            try {
+                if (snapshot == null) {
+                    Map<Long, Restaurant> restaurants = new HashMap<>();
+                    for (Restaurant restaurant : restaurantRepository.findByZipcode(zipcode)) {
+                        restaurants.put(restaurant.getId(), restaurant.toBuilder().build());
+                    }
+                    snapshot = Snapshot.of(restaurants);
+                }
+                return snapshot;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(Restaurant restaurant) {
+            lock.lock();
+            try {
+                Long departed = departedVersions.get(restaurant.getId());
+                if (departed != null) {
+                    if (restaurant.getVersion() == null || !isOlder(departed, restaurant.getVersion())) {
+                        return;
+                    }
+                    departedVersions.remove(restaurant.getId());
+                }
+                if (snapshot != null) {
+                    snapshot = snapshot.with(restaurant);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(Long restaurantId, Long version) {
+            lock.lock();
+            try {
+                if (version != null) {
+                    departedVersions.merge(restaurantId, version, Math::max);
+                }
+                if (snapshot != null) {
+                    snapshot = snapshot.without(restaurantId);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
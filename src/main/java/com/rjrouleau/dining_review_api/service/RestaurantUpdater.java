@@ -0,0 +1,172 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Read-modify-write of a single restaurant. Updates to the same restaurant in this process are serialized by one of a
+// fixed number of lock stripes, chosen by id, so updates to different restaurants mostly run in parallel. Updates
+// from other instances are caught by the version column on Restaurant: a stale write fails, and the update is read
+// and applied again, up to a bounded number of attempts.
+@Service
+public class RestaurantUpdater {
+    private static final Logger log = LoggerFactory.getLogger(RestaurantUpdater.class);
+
+    private final RestaurantRepository restaurantRepository;
+    private final TransactionTemplate transaction;
+    private final ReentrantLock[] stripes;
+    private final int maxAttempts;
+
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public RestaurantUpdater(
+            RestaurantRepository restaurantRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${restaurants.update.lock-stripes:64}") int stripeCount,
+            @Value("${restaurants.update.max-attempts:5}") int maxAttempts
+    ) {
+        this.restaurantRepository = restaurantRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    // Loads the restaurant, applies change to it and saves it in one transaction. change may run more than once if the
+    // write conflicts with another instance, so it must only depend on the restaurant it is given. Returns the saved
+    // restaurant, or empty if there is no restaurant with that id. Throws OptimisticLockingFailureException if every
+    // attempt conflicted.
+    public Optional<Restaurant> update(Long restaurantId, Consumer<Restaurant> change) {
+        ReentrantLock lock = stripes[stripe(restaurantId)];
+        lock.lock();
+        try {
+            Optional<Restaurant> updated = retrying("Restaurant " + restaurantId, status -> {
+                // the restaurant is managed by this transaction, so save() keeps the same instance.
+                Optional<Restaurant> restaurant = restaurantRepository.findById(restaurantId);
+                restaurant.ifPresent(found -> {
+                    change.accept(found);
+                    restaurantRepository.save(found);
+                });
+                return restaurant;
+            });
+            if (updated.isPresent()) {
+                updates.incrementAndGet();
+            }
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Like update(), for many restaurants written in one transaction. The stripes of all of them are held for the
+    // whole write, taken in index order so that two batches can't deadlock. Returns the restaurants that exist.
+    public List<Restaurant> updateAll(Collection<Long> restaurantIds, Consumer<Restaurant> change) {
+        List<ReentrantLock> locks = restaurantIds.stream()
+                .mapToInt(this::stripe)
+                .distinct()
+                .sorted()
+                .mapToObj(index -> stripes[index])
+                .toList();
+        locks.forEach(ReentrantLock::lock);
+        try {
+            List<Restaurant> updated = retrying(restaurantIds.size() + " restaurants", status -> {
+                List<Restaurant> restaurants = new ArrayList<>();
+                restaurantRepository.findAllById(restaurantIds).forEach(restaurant -> {
+                    change.accept(restaurant);
+                    restaurants.add(restaurant);
+                });
+                restaurantRepository.saveAll(restaurants);
+                return restaurants;
+            });
+            updates.addAndGet(updated.size());
+            return updated;
+        } finally {
+            locks.reversed().forEach(ReentrantLock::unlock);
+        }
+    }
+
+    // Deletes the restaurant in one transaction, serialized with its updates like update(). A delete that conflicts
+    // with another instance's write reads the restaurant again and is retried. Returns the deleted restaurant, or
+    // empty if there is no restaurant with that id. Throws OptimisticLockingFailureException if every attempt
+    // conflicted.
+    public Optional<Restaurant> delete(Long restaurantId) {
+        return locked(restaurantId, () -> retrying("Restaurant " + restaurantId, status -> {
+            Optional<Restaurant> restaurant = restaurantRepository.findById(restaurantId);
+            restaurant.ifPresent(restaurantRepository::delete);
+            return restaurant;
+        }));
+    }
+
+    // Runs action while holding the restaurant's stripe, so that no other update of it in this process runs meanwhile.
+    // update() and updateAll() can be called from action.
+    public <T> T locked(Long restaurantId, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripe(restaurantId)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(updates.get(), retries.get(), failures.get());
+    }
+
+    private int stripe(Long restaurantId) {
+        return Math.floorMod(Long.hashCode(restaurantId), stripes.length);
+    }
+
+    // Runs write in a transaction until it doesn't conflict with another instance, up to maxAttempts times. written
+    // names what is written, for the log.
+    private <T> T retrying(String written, TransactionCallback<T> write) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transaction.execute(write);
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    failures.incrementAndGet();
+                    throw e;
+                }
+                retries.incrementAndGet();
+                log.debug("{} changed during update, retrying (attempt {})", written, attempt);
+                backOff(attempt);
+            }
+        }
+    }
+
+    // Waits a short random time that grows with each attempt, so that instances retrying the same restaurant don't
+    // keep colliding.
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // retries counts writes that hit a newer version and were applied again. failures counts updates that gave up.
+    public record Stats(long updates, long retries, long failures) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.rjrouleau.dining_review_api.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+// A timer for score work tagged with how many reviews it covered. The count is tagged by order of magnitude ("0", "1",
+// "2-10", "11-100" and so on) rather than exactly, so the number of series stays small. Every timer is registered up
+// front, so recording a duration only picks one from an array.
+class ReviewCountTimers {
+    // the largest count of each bucket. Counts above the last one share a final bucket.
+    private static final long[] UPPER_BOUNDS = {0, 1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    private final Timer[] timers = new Timer[UPPER_BOUNDS.length + 1];
+
+    ReviewCountTimers(MeterRegistry meterRegistry, String name, String description, Tags tags) {
+        for (int i = 0; i < timers.length; i++) {
+            timers[i] = Timer.builder(name)
+                    .description(description)
+                    .tags(tags)
+                    .tag("reviews", label(i))
+                    .register(meterRegistry);
+        }
+    }
+
+    void record(long reviews, long startedAtNanos) {
+        timers[bucket(reviews)].record(System.nanoTime() - startedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    static String label(int bucket) {
+        if (bucket == UPPER_BOUNDS.length) {
+            return ">" + UPPER_BOUNDS[UPPER_BOUNDS.length - 1];
+        }
+        long upper = UPPER_BOUNDS[bucket];
+        long lower = bucket > 0 ? UPPER_BOUNDS[bucket - 1] + 1 : 0;
+        return lower == upper ? Long.toString(upper) : lower + "-" + upper;
+    }
+
+    static int bucket(long reviews) {
+        for (int i = 0; i < UPPER_BOUNDS.length; i++) {
+            if (reviews <= UPPER_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return UPPER_BOUNDS.length;
+    }
+}
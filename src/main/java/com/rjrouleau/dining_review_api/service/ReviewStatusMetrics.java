@@ -0,0 +1,45 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.repository.ReviewRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+// Review moderation metrics: a counter of status changes tagged with the old and new status, and a gauge of the
+// number of PENDING reviews. The counters are registered up front for every pair of statuses, so counting a change
+// only indexes an array. The gauge counts the pending reviews with a query each time it is read, which is once per
+// scrape.
+@Service
+public class ReviewStatusMetrics {
+    private static final Review.Status[] STATUSES = Review.Status.values();
+
+    private final Counter[][] transitions = new Counter[STATUSES.length][STATUSES.length];
+
+    public ReviewStatusMetrics(ReviewRepository reviewRepository, MeterRegistry meterRegistry) {
+        for (Review.Status from : STATUSES) {
+            for (Review.Status to : STATUSES) {
+                if (from != to) {
+                    transitions[from.ordinal()][to.ordinal()] = Counter.builder("reviews.status.transitions")
+                            .description("Reviews moved from one status to another")
+                            .tag("from", from.name())
+                            .tag("to", to.name())
+                            .register(meterRegistry);
+                }
+            }
+        }
+        Gauge.builder("reviews.pending", reviewRepository,
+                        repository -> repository.countByStatus(Review.Status.PENDING))
+                .description("Reviews waiting for moderation")
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    // Counts a review's change of status. Does nothing if the status is unchanged or either one is unknown.
+    public void recordTransition(Review.Status from, Review.Status to) {
+        if (from != null && to != null && from != to) {
+            transitions[from.ordinal()][to.ordinal()].increment();
+        }
+    }
+}
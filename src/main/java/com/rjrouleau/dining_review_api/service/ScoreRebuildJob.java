@@ -0,0 +1,304 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.rjrouleau.dining_review_api.AppUtils;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.ReviewScores;
+import com.rjrouleau.dining_review_api.model.ScoreDelta;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import com.rjrouleau.dining_review_api.repository.ReviewRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+// Recomputes every restaurant's score aggregates from its ACCEPTED reviews, for repairs after an import, a bug fix or
+// a change in scoring rules. Review scores are read through a forward-only cursor and aggregated in parallel chunks
+// on a fork/join pool. Only a bounded number of chunks is held in memory at once, so heap use depends on the number
+// of restaurants rather than the number of reviews. Restaurants are then written back in batches, under their
+// RestaurantUpdater stripes.
+//
+// The score update queue keeps writing during a rebuild. Review changes made meanwhile are either in the scan or have
+// their deltas applied after it, never both, and each restaurant is written with the deltas applied to it since the
+// scan added to its totals, so none is lost. See ScoreUpdateQueue.
+@Service
+public class ScoreRebuildJob {
+    private static final Logger log = LoggerFactory.getLogger(ScoreRebuildJob.class);
+
+    private static final int CHUNK_SIZE = 10_000;
+    private static final int SPLIT_THRESHOLD = 1_000;
+    private static final int WRITE_BATCH_SIZE = 500;
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    private final ReviewRepository reviewRepository;
+    private final RestaurantRepository restaurantRepository;
+    private final RestaurantUpdater restaurantUpdater;
+    private final ScoreUpdateQueue scoreUpdateQueue;
+    private final RestaurantCache restaurantCache;
+    private final RestaurantLeaderboard restaurantLeaderboard;
+    private final TransactionTemplate readTransaction;
+    private final int parallelism;
+    private final ExecutorService runner;
+    private final ReviewCountTimers completedTimers;
+    private final ReviewCountTimers failedTimers;
+
+    private volatile State state = State.IDLE;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile String error;
+    private final AtomicLong reviewsScanned = new AtomicLong();
+    private final AtomicLong restaurantsWritten = new AtomicLong();
+
+    public ScoreRebuildJob(
+            ReviewRepository reviewRepository,
+            RestaurantRepository restaurantRepository,
+            RestaurantUpdater restaurantUpdater,
+            ScoreUpdateQueue scoreUpdateQueue,
+            RestaurantCache restaurantCache,
+            RestaurantLeaderboard restaurantLeaderboard,
+            PlatformTransactionManager transactionManager,
+            @Value("${scores.rebuild.parallelism:0}") int parallelism,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            MeterRegistry meterRegistry
+    ) {
+        this.reviewRepository = reviewRepository;
+        this.restaurantRepository = restaurantRepository;
+        this.restaurantUpdater = restaurantUpdater;
+        this.scoreUpdateQueue = scoreUpdateQueue;
+        this.restaurantCache = restaurantCache;
+        this.restaurantLeaderboard = restaurantLeaderboard;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        // the aggregation itself stays on the fork/join pool, since it is CPU bound.
+        this.runner = Executors.newSingleThreadExecutor(AppUtils.threadFactory(virtualThreads, "score-rebuild-"));
+        this.completedTimers = new ReviewCountTimers(meterRegistry, "scores.rebuild",
+                "Time to rebuild every restaurant's scores", Tags.of("state", State.COMPLETED.name()));
+        this.failedTimers = new ReviewCountTimers(meterRegistry, "scores.rebuild",
+                "Time to rebuild every restaurant's scores", Tags.of("state", State.FAILED.name()));
+    }
+
+    // Starts a rebuild in the background. Returns false if a rebuild is already running.
+    public synchronized boolean start() {
+        if (state == State.RUNNING) {
+            return false;
+        }
+        begin();
+        runner.submit(this::execute);
+        return true;
+    }
+
+    // Runs a rebuild on the calling thread.
+    public void rebuild() {
+        synchronized (this) {
+            if (state == State.RUNNING) {
+                throw new IllegalStateException("A score rebuild is already running.");
+            }
+            begin();
+        }
+        execute();
+    }
+
+    public Progress getProgress() {
+        long scanned = reviewsScanned.get();
+        long end = state == State.RUNNING ? System.currentTimeMillis() : finishedAt;
+        long elapsedMs = startedAt > 0 ? end - startedAt : 0;
+        double reviewsPerSecond = elapsedMs > 0 ? scanned * 1000. / elapsedMs : 0.;
+        return new Progress(state, scanned, restaurantsWritten.get(), elapsedMs, reviewsPerSecond, error);
+    }
+
+    private void begin() {
+        state = State.RUNNING;
+        startedAt = System.currentTimeMillis();
+        finishedAt = 0;
+        error = null;
+        reviewsScanned.set(0);
+        restaurantsWritten.set(0);
+    }
+
+    // Runs the rebuild and records its duration, tagged with its outcome and the number of reviews scanned.
+    private void execute() {
+        long startedAtNanos = System.nanoTime();
+        try {
+            Map<Long, ScoreDelta> totals = aggregateAcceptedReviews();
+            writeRestaurants(totals);
+            state = State.COMPLETED;
+        } catch (RuntimeException e) {
+            log.error("Score rebuild failed", e);
+            error = e.getMessage();
+            state = State.FAILED;
+        } finally {
+            scoreUpdateQueue.endRebuild();
+            finishedAt = System.currentTimeMillis();
+        }
+        Progress progress = getProgress();
+        (progress.state() == State.COMPLETED ? completedTimers : failedTimers)
+                .record(progress.reviewsScanned(), startedAtNanos);
+        log.info("Score rebuild {}: {} reviews, {} restaurants in {} ms ({} reviews/s)", progress.state(),
+                progress.reviewsScanned(), progress.restaurantsWritten(), progress.elapsedMs(),
+                Math.round(progress.reviewsPerSecond()));
+    }
+
+    // Streams the accepted review scores and sums them per restaurant. The reading thread hands full chunks to the
+    // fork/join pool and blocks once too many chunks are waiting, which keeps memory bounded. The query is started by
+    // the score update queue, between two score changes.
+    private Map<Long, ScoreDelta> aggregateAcceptedReviews() {
+        Map<Long, ScoreDelta> totals = new ConcurrentHashMap<>();
+        int maxChunksInFlight = parallelism * 2;
+        Semaphore chunksInFlight = new Semaphore(maxChunksInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            readTransaction.executeWithoutResult(status -> {
+                try (Stream<ReviewScores> rows = scoreUpdateQueue.beginRebuild(
+                        () -> reviewRepository.streamScoresByStatus(Review.Status.ACCEPTED))) {
+                    Iterator<ReviewScores> iterator = rows.iterator();
+                    List<ReviewScores> chunk = new ArrayList<>(CHUNK_SIZE);
+                    while (iterator.hasNext() && failure.get() == null) {
+                        chunk.add(iterator.next());
+                        if (chunk.size() == CHUNK_SIZE) {
+                            submitChunk(pool, chunk, totals, chunksInFlight, failure);
+                            chunk = new ArrayList<>(CHUNK_SIZE);
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        submitChunk(pool, chunk, totals, chunksInFlight, failure);
+                    }
+                }
+            });
+            // wait for the last chunks to finish.
+            chunksInFlight.acquireUninterruptibly(maxChunksInFlight);
+        } finally {
+            pool.shutdown();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Aggregating review scores failed.", failure.get());
+        }
+        return totals;
+    }
+
+    private void submitChunk(
+            ForkJoinPool pool,
+            List<ReviewScores> chunk,
+            Map<Long, ScoreDelta> totals,
+            Semaphore chunksInFlight,
+            AtomicReference<Throwable> failure
+    ) {
+        chunksInFlight.acquireUninterruptibly();
+        pool.execute(() -> {
+            try {
+                Map<Long, ScoreDelta> partial = new AggregateTask(chunk, 0, chunk.size()).invoke();
+                partial.forEach((restaurantId, delta) -> totals.merge(restaurantId, delta, ScoreDelta::merge));
+                reviewsScanned.addAndGet(chunk.size());
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                chunksInFlight.release();
+            }
+        });
+    }
+
+    // Writes the rebuilt totals in id order, one transaction per batch. Restaurants that hold aggregates but no longer
+    // have accepted reviews are reset. Restaurants with neither are left alone, so scores entered directly are kept.
+    private void writeRestaurants(Map<Long, ScoreDelta> totals) {
+        Set<Long> restaurantIds = new TreeSet<>(totals.keySet());
+        restaurantIds.addAll(restaurantRepository.findIdsWithScoreAggregates());
+        List<Long> ids = new ArrayList<>(restaurantIds);
+
+        for (int from = 0; from < ids.size(); from += WRITE_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + WRITE_BATCH_SIZE, ids.size()));
+            List<Restaurant> restaurants = writeBatch(batch, totals);
+            restaurants.forEach(restaurant -> {
+                restaurantCache.invalidate(restaurant.getId());
+                restaurantLeaderboard.update(null, restaurant);
+            });
+            restaurantsWritten.addAndGet(batch.size());
+        }
+    }
+
+    // Writes one batch in a transaction, retried if another instance wrote one of its restaurants first. The stripes
+    // of the batch are held, so no delta is applied to its restaurants between reading and writing them.
+    private List<Restaurant> writeBatch(List<Long> batch, Map<Long, ScoreDelta> totals) {
+        List<Restaurant> written = restaurantUpdater.updateAll(batch, restaurant -> {
+            restaurant.setScoreAggregates(totals.getOrDefault(restaurant.getId(), new ScoreDelta()));
+            restaurant.applyScoreDelta(scoreUpdateQueue.changesSinceScan(restaurant.getId()));
+        });
+        scoreUpdateQueue.rebuilt(batch);
+        return written;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    // Sums a slice of a chunk per restaurant, splitting in half until the slice is small enough.
+    private static class AggregateTask extends RecursiveTask<Map<Long, ScoreDelta>> {
+        private final List<ReviewScores> rows;
+        private final int from;
+        private final int to;
+
+        AggregateTask(List<ReviewScores> rows, int from, int to) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Long, ScoreDelta> compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                Map<Long, ScoreDelta> sums = new HashMap<>();
+                for (int i = from; i < to; i++) {
+                    ReviewScores scores = rows.get(i);
+                    if (scores.restaurantId() != null) {
+                        sums.computeIfAbsent(scores.restaurantId(), id -> new ScoreDelta()).add(scores);
+                    }
+                }
+                return sums;
+            }
+            int middle = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(rows, from, middle);
+            left.fork();
+            Map<Long, ScoreDelta> right = new AggregateTask(rows, middle, to).compute();
+            Map<Long, ScoreDelta> merged = left.join();
+            right.forEach((restaurantId, delta) -> merged.merge(restaurantId, delta, ScoreDelta::merge));
+            return merged;
+        }
+    }
+
+    // Progress of the current or last rebuild. reviewsPerSecond is the scan throughput over the elapsed time.
+    public record Progress(
+            State state,
+            long reviewsScanned,
+            long restaurantsWritten,
+            long elapsedMs,
+            double reviewsPerSecond,
+            String error
+    ) {
+    }
+}
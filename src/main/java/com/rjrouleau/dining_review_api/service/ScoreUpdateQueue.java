@@ -0,0 +1,232 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.rjrouleau.dining_review_api.AppUtils;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.ScoreDelta;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// Background stage that applies review score changes to restaurants. Deltas submitted for the same restaurant while
+// it is waiting in the queue are merged, and every flush window a bounded worker pool writes each dirty restaurant
+// once. Flushes never overlap, so a restaurant is only ever updated by one worker at a time. Writes go through
+// RestaurantUpdater, so they are also serialized with other writers of the same restaurant.
+//
+// Queued deltas are only held in memory. Shutting down flushes them, but if the process dies first, the review changes
+// are saved while their restaurants' scores never get them. Nothing records which restaurants were affected, so run a
+// score rebuild (POST /restaurants/admin/scores/rebuild) after a crash to recompute every score from the reviews.
+//
+// The queue keeps writing during a score rebuild. Review writes that change scores run inside beginScoreChange(), so
+// that the rebuild's scan either sees a review change and its deltas were applied before the scan, or doesn't see it
+// and its deltas are applied after. Deltas applied after the scan to a restaurant the rebuild hasn't written yet are
+// also kept, and the rebuild adds them to the totals it writes, so they survive the overwrite. This only covers
+// writers in this process.
+@Service
+public class ScoreUpdateQueue {
+    private static final Logger log = LoggerFactory.getLogger(ScoreUpdateQueue.class);
+
+    private final RestaurantUpdater restaurantUpdater;
+    private final RestaurantCache restaurantCache;
+    private final RestaurantLeaderboard restaurantLeaderboard;
+    private final Map<Long, ScoreDelta> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService workers;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantReadWriteLock scoreChanges = new ReentrantReadWriteLock();
+    // the deltas applied since a running rebuild's scan, for the restaurants it hasn't written yet. null when no
+    // rebuild is running. Only replaced under flushLock, so it doesn't change during a flush.
+    private volatile Map<Long, ScoreDelta> appliedSinceScan;
+    private final ReviewCountTimers updateTimers;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+
+    public ScoreUpdateQueue(
+            RestaurantUpdater restaurantUpdater,
+            RestaurantCache restaurantCache,
+            RestaurantLeaderboard restaurantLeaderboard,
+            @Value("${scores.update.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${scores.update.workers:4}") int workerCount,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            MeterRegistry meterRegistry
+    ) {
+        this.restaurantUpdater = restaurantUpdater;
+        this.restaurantCache = restaurantCache;
+        this.restaurantLeaderboard = restaurantLeaderboard;
+        this.workers = Executors.newFixedThreadPool(
+                workerCount,
+                AppUtils.threadFactory(virtualThreads, "score-update-")
+        );
+        this.updateTimers = new ReviewCountTimers(meterRegistry, "scores.update",
+                "Time to write one restaurant's merged score changes", Tags.empty());
+        Gauge.builder("scores.update.queue.depth", pending, Map::size)
+                .description("Restaurants waiting for a score write")
+                .register(meterRegistry);
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Queues a score change for a restaurant, merging it with any change already waiting for that restaurant.
+    public void submit(Long restaurantId, ScoreDelta delta) {
+        submitted.incrementAndGet();
+        pending.merge(restaurantId, delta, ScoreDelta::merge);
+    }
+
+    // Holds off a rebuild's scan from starting while a review write and the submits of the score changes it causes
+    // are in progress. Close the returned handle after the last submit.
+    public ScoreChange beginScoreChange() {
+        Lock lock = scoreChanges.readLock();
+        lock.lock();
+        return lock::unlock;
+    }
+
+    // Applies every queued change and runs snapshot, the start of a rebuild's scan, while no score change is in
+    // progress, so a query it starts sees the review changes of every delta applied so far and of none applied later.
+    // From then until endRebuild(), the deltas applied to each restaurant are kept for changesSinceScan(). Returns
+    // what snapshot returns.
+    public <T> T beginRebuild(Supplier<T> snapshot) {
+        flushLock.lock();
+        Lock lock = scoreChanges.writeLock();
+        lock.lock();
+        try {
+            flush();
+            T result = snapshot.get();
+            appliedSinceScan = new ConcurrentHashMap<>();
+            return result;
+        } finally {
+            lock.unlock();
+            flushLock.unlock();
+        }
+    }
+
+    // The deltas applied to the restaurant since the rebuild's scan, which its rebuilt totals must include. Call while
+    // holding the restaurant's RestaurantUpdater stripe, so that none is applied meanwhile.
+    public ScoreDelta changesSinceScan(Long restaurantId) {
+        Map<Long, ScoreDelta> sinceScan = appliedSinceScan;
+        ScoreDelta delta = sinceScan != null ? sinceScan.get(restaurantId) : null;
+        return delta != null ? delta : new ScoreDelta();
+    }
+
+    // Forgets the deltas kept for restaurants the rebuild has written. Later deltas are applied on top of the rebuilt
+    // totals.
+    public void rebuilt(Collection<Long> restaurantIds) {
+        Map<Long, ScoreDelta> sinceScan = appliedSinceScan;
+        if (sinceScan != null) {
+            sinceScan.keySet().removeAll(restaurantIds);
+        }
+    }
+
+    // Stops keeping applied deltas once the rebuild has written every restaurant or failed.
+    public void endRebuild() {
+        flushLock.lock();
+        try {
+            appliedSinceScan = null;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Applies every queued change and waits for the writes to finish. Called by the scheduler each flush window, and
+    // can be called directly when the caller needs the scores to be up to date.
+    public void flush() {
+        flushLock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (Long restaurantId : pending.keySet()) {
+                ScoreDelta delta = pending.remove(restaurantId);
+                if (delta != null) {
+                    tasks.add(() -> {
+                        apply(restaurantId, delta);
+                        return null;
+                    });
+                }
+            }
+            workers.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public Stats getStats() {
+        long submittedCount = submitted.get();
+        long appliedCount = applied.get();
+        double coalescingRatio = appliedCount > 0 ? (double) submittedCount / appliedCount : 0.;
+        return new Stats(pending.size(), submittedCount, appliedCount, coalescingRatio);
+    }
+
+    // Writes a merged delta to the restaurant. A failed write is queued again so the change is not lost. The write is
+    // timed, tagged with the number of review changes merged into it. While a rebuild is running, the delta is also
+    // kept for it, under the same stripe as the write so that the rebuild can't write the restaurant in between.
+    private void apply(Long restaurantId, ScoreDelta delta) {
+        long startedAt = System.nanoTime();
+        Map<Long, ScoreDelta> sinceScan = appliedSinceScan;
+        try {
+            Restaurant restaurant = restaurantUpdater.locked(restaurantId, () -> {
+                Restaurant written = restaurantUpdater.update(restaurantId, r -> r.applyScoreDelta(delta)).orElse(null);
+                if (written != null && sinceScan != null) {
+                    sinceScan.merge(restaurantId, delta, ScoreDelta::merge);
+                }
+                return written;
+            });
+            if (restaurant == null) {
+                log.warn("Dropping score update for missing restaurant {}", restaurantId);
+                return;
+            }
+            restaurantCache.invalidate(restaurantId);
+            restaurantLeaderboard.update(null, restaurant);
+            applied.incrementAndGet();
+            updateTimers.record(delta.getReviews(), startedAt);
+        } catch (RuntimeException e) {
+            log.error("Score update for restaurant {} failed, requeueing", restaurantId, e);
+            pending.merge(restaurantId, delta, ScoreDelta::merge);
+        }
+    }
+
+    // Writes what is still queued. Deltas that fail to write here are lost, so the restaurants are logged for a rebuild.
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+        workers.shutdown();
+        if (!pending.isEmpty()) {
+            log.error("Score changes for restaurants {} were not written. Run a score rebuild to repair their scores",
+                    pending.keySet());
+        }
+    }
+
+    // Ends a score change started by beginScoreChange().
+    public interface ScoreChange extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // queueDepth is the number of restaurants waiting to be written. coalescingRatio is submitted changes per
+    // restaurant write, so 1.0 means no merging happened.
+    public record Stats(int queueDepth, long submitted, long applied, double coalescingRatio) {
+    }
+}
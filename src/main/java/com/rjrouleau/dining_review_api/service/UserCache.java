@@ -0,0 +1,109 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+// Read-through cache in front of UserRepository.findByUserName, bounded by size. Unlike RestaurantCache, names that
+// don't exist are cached too, for a shorter time, since most lookups during a burst of signups are for names that
+// are still free. Every path that creates, updates or deletes a user must call invalidate() after the write, which
+// also clears a cached miss for a name that was just taken. Lookups are loaded on the caller's thread outside the
+// cache's locks, like in RestaurantCache.
+@Service
+public class UserCache {
+    private final UserRepository userRepository;
+    private final AsyncCache<String, Optional<User>> cache;
+
+    public UserCache(
+            UserRepository userRepository,
+            @Value("${users.cache.max-size:10000}") long maxSize,
+            @Value("${users.cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${users.cache.negative-ttl-seconds:5}") long negativeTtlSeconds
+    ) {
+        this.userRepository = userRepository;
+        long ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        long negativeTtlNanos = Duration.ofSeconds(negativeTtlSeconds).toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Optional<User>>() {
+                    @Override
+                    public long expireAfterCreate(String userName, Optional<User> user, long currentTime) {
+                        return user.isPresent() ? ttlNanos : negativeTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(
+                            String userName,
+                            Optional<User> user,
+                            long currentTime,
+                            long currentDuration
+                    ) {
+                        return expireAfterCreate(userName, user, currentTime);
+                    }
+
+                    // reads don't extend an entry, so a cached user is reloaded at least once per ttl.
+                    @Override
+                    public long expireAfterRead(
+                            String userName,
+                            Optional<User> user,
+                            long currentTime,
+                            long currentDuration
+                    ) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+    }
+
+    // Returns a copy of the cached user, so that callers can't change the cached entry.
+    public Optional<User> findByUserName(String userName) {
+        if (userName == null) {
+            return Optional.empty();
+        }
+        CompletableFuture<Optional<User>> loading = new CompletableFuture<>();
+        CompletableFuture<Optional<User>> cached = cache.get(userName, (key, executor) -> loading);
+        if (cached == loading) {
+            try {
+                loading.complete(userRepository.findByUserName(userName).map(user -> user.toBuilder().build()));
+            } catch (RuntimeException e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return cached.join().map(user -> user.toBuilder().build());
+    }
+
+    public void invalidate(String userName) {
+        if (userName != null) {
+            cache.synchronous().invalidate(userName);
+        }
+    }
+
+    public void clear() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public Stats getStats() {
+        CacheStats stats = cache.synchronous().stats();
+        return new Stats(
+                cache.synchronous().estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.evictionCount(),
+                stats.hitRate()
+        );
+    }
+
+    public record Stats(long size, long hits, long misses, long evictions, double hitRate) {
+    }
+}
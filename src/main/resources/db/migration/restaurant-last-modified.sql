@@ -0,0 +1,4 @@
+-- Adds the column that Restaurant sends as Last-Modified.
+-- The app creates its schema on startup, so this is only needed for a database that was kept from an older version.
+-- Existing rows are left NULL, and are sent without Last-Modified until their next update.
+ALTER TABLE restaurant ADD COLUMN IF NOT EXISTS last_modified TIMESTAMP(6) WITH TIME ZONE;
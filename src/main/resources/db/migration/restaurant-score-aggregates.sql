@@ -0,0 +1,10 @@
+-- Adds the running sums and counts of accepted review scores that Restaurant keeps for each allergy.
+-- The app creates its schema on startup, so this is only needed for a database that was kept from an older version.
+-- Existing rows start at 0, so their scores are wrong until they are rebuilt from the accepted reviews with
+-- POST /restaurants/admin/scores/rebuild once the new version is running.
+ALTER TABLE restaurant ADD COLUMN IF NOT EXISTS peanut_sum BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE restaurant ADD COLUMN IF NOT EXISTS peanut_count BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE restaurant ADD COLUMN IF NOT EXISTS egg_sum BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE restaurant ADD COLUMN IF NOT EXISTS egg_count BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE restaurant ADD COLUMN IF NOT EXISTS dairy_sum BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE restaurant ADD COLUMN IF NOT EXISTS dairy_count BIGINT DEFAULT 0 NOT NULL;
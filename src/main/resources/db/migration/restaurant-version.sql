@@ -0,0 +1,4 @@
+-- Adds the version column that Restaurant uses to detect concurrent updates.
+-- The app creates its schema on startup, so this is only needed for a database that was kept from an older version.
+-- Existing rows start at version 0.
+ALTER TABLE restaurant ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
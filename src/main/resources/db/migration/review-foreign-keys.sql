@@ -0,0 +1,34 @@
+-- Moves an existing review table from stored names to foreign keys on restaurant and app_user.
+-- The app creates its schema on startup, so this is only needed for a database that was kept from an older version.
+-- Run it once, before starting the new version.
+
+-- Link each review to its user by name. userName is unique, so there is at most one match.
+ALTER TABLE review ADD COLUMN IF NOT EXISTS user_id BIGINT;
+UPDATE review r
+SET user_id = (SELECT u.id FROM app_user u WHERE u.user_name = r.user_name)
+WHERE r.user_id IS NULL;
+
+-- Fill in a missing restaurant_id from the restaurant name, only where exactly one restaurant has that name.
+UPDATE review r
+SET restaurant_id = (SELECT MIN(s.id) FROM restaurant s WHERE s.name = r.restaurant_name)
+WHERE r.restaurant_id IS NULL
+  AND (SELECT COUNT(*) FROM restaurant s WHERE s.name = r.restaurant_name) = 1;
+
+-- Clear ids that point at deleted rows, so the constraints below can be added.
+UPDATE review r
+SET restaurant_id = NULL
+WHERE r.restaurant_id IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM restaurant s WHERE s.id = r.restaurant_id);
+
+ALTER TABLE review ADD CONSTRAINT fk_review_restaurant
+    FOREIGN KEY (restaurant_id) REFERENCES restaurant (id) ON DELETE SET NULL;
+ALTER TABLE review ADD CONSTRAINT fk_review_user
+    FOREIGN KEY (user_id) REFERENCES app_user (id) ON DELETE SET NULL;
+
+DROP INDEX IF EXISTS idx_review_restaurant_name_status_id;
+DROP INDEX IF EXISTS idx_review_user_name_id;
+CREATE INDEX IF NOT EXISTS idx_review_restaurant_id_status_id ON review (restaurant_id, status, id);
+CREATE INDEX IF NOT EXISTS idx_review_user_id_id ON review (user_id, id);
+
+ALTER TABLE review DROP COLUMN restaurant_name;
+ALTER TABLE review DROP COLUMN user_name;
@@ -0,0 +1,4 @@
+-- Adds the version column that Review uses to detect concurrent updates and to build the ETags of review lists.
+-- The app creates its schema on startup, so this is only needed for a database that was kept from an older version.
+-- Existing rows start at version 0.
+ALTER TABLE review ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,17 @@
+-- Adds the normalized restaurant name and the unique constraints that creates and updates rely on.
+-- The app creates its schema on startup, so this is only needed for a database that was kept from an older version.
+-- Run it once, before starting the new version. It fails if existing rows break a constraint. To list them first:
+--   SELECT user_name FROM app_user GROUP BY user_name HAVING COUNT(*) > 1;
+--   SELECT LOWER(REGEXP_REPLACE(TRIM(name), '\s+', ' ')), zipcode FROM restaurant
+--   GROUP BY 1, zipcode HAVING COUNT(*) > 1;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_app_user_user_name ON app_user (user_name);
+
+-- Same normalization as Restaurant.normalizeName: trimmed, lower-cased, runs of whitespace collapsed.
+ALTER TABLE restaurant ADD COLUMN IF NOT EXISTS normalized_name VARCHAR(255);
+UPDATE restaurant SET normalized_name = LOWER(REGEXP_REPLACE(TRIM(name), '\s+', ' '));
+
+ALTER TABLE restaurant ADD CONSTRAINT ux_restaurant_normalized_name_zipcode UNIQUE (normalized_name, zipcode);
+
+DROP INDEX IF EXISTS idx_restaurant_name_zipcode;
+CREATE INDEX IF NOT EXISTS idx_restaurant_name_id ON restaurant (name, id);
@@ -0,0 +1,99 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.rjrouleau.dining_review_api.DiningReviewApiApplication;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.reactive.ReactiveDiningReviewApiApplication;
+import com.rjrouleau.dining_review_api.reactive.repository.ReactiveRestaurantRepository;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Compares the servlet stack (Tomcat and JPA, on platform and on virtual threads) with the reactive stack (Netty,
+// WebFlux and R2DBC) on the same read. Each stack is started in turn with the same restaurants, and driven by the
+// closed-loop clients of VirtualThreadLoadBenchmark at 100 and 1,000 concurrent clients. Prints requests per second
+// and p50/p99 latency per run.
+//
+// Run main() after mvn test-compile. The first argument is the path to request, by default a keyset page of
+// restaurants by zipcode, which both stacks answer from the database on every request.
+public class ReactiveLoadBenchmark {
+    private static final int[] CLIENT_COUNTS = {100, 1_000};
+    private static final Duration WARMUP = Duration.ofSeconds(10);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(30);
+    private static final int RESTAURANT_COUNT = 5_000;
+    private static final int ZIPCODE_COUNT = 100;
+
+    private enum Stack { SERVLET, SERVLET_VIRTUAL, REACTIVE }
+
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "/restaurants/byzipcode/00001?size=20";
+        List<String> rows = new ArrayList<>();
+        rows.add(String.format("%-16s %8s %10s %10s %10s %10s %8s",
+                "stack", "clients", "requests", "req/s", "p50 ms", "p99 ms", "errors"));
+
+        for (Stack stack : Stack.values()) {
+            try (ConfigurableApplicationContext context = start(stack)) {
+                seed(context, stack);
+                URI uri = URI.create("http://localhost:"
+                        + context.getEnvironment().getProperty("local.server.port") + path);
+                // warms up the JIT and the connection pools before anything is measured.
+                VirtualThreadLoadBenchmark.run(uri, CLIENT_COUNTS[0], WARMUP, Duration.ZERO);
+                for (int clients : CLIENT_COUNTS) {
+                    VirtualThreadLoadBenchmark.Result result =
+                            VirtualThreadLoadBenchmark.run(uri, clients, WARMUP, MEASUREMENT);
+                    rows.add(String.format("%-16s %8d %10d %10.0f %10.1f %10.1f %8d",
+                            stack.name().toLowerCase(),
+                            clients,
+                            result.requests(),
+                            result.requests() / (double) MEASUREMENT.toSeconds(),
+                            result.percentileMs(0.50),
+                            result.percentileMs(0.99),
+                            result.errors()));
+                    System.out.println(rows.get(rows.size() - 1));
+                }
+            }
+        }
+        System.out.println();
+        rows.forEach(System.out::println);
+    }
+
+    private static ConfigurableApplicationContext start(Stack stack) {
+        if (stack == Stack.REACTIVE) {
+            return new SpringApplicationBuilder(ReactiveDiningReviewApiApplication.class)
+                    .web(WebApplicationType.REACTIVE)
+                    .profiles("reactive")
+                    .properties("server.port=0", "logging.level.root=WARN")
+                    .run();
+        }
+        return new SpringApplicationBuilder(DiningReviewApiApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + (stack == Stack.SERVLET_VIRTUAL),
+                        "logging.level.root=WARN"
+                )
+                .run();
+    }
+
+    private static void seed(ConfigurableApplicationContext context, Stack stack) {
+        List<Restaurant> restaurants = new ArrayList<>(RESTAURANT_COUNT);
+        for (int i = 0; i < RESTAURANT_COUNT; i++) {
+            restaurants.add(Restaurant.builder()
+                    .name("restaurant" + i)
+                    .city("Chicago")
+                    .state("Illinois")
+                    .zipcode(String.format("%05d", i % ZIPCODE_COUNT))
+                    .peanutScore(1 + i % 5f)
+                    .build());
+        }
+        if (stack == Stack.REACTIVE) {
+            context.getBean(ReactiveRestaurantRepository.class).saveAll(restaurants).blockLast();
+        } else {
+            context.getBean(RestaurantRepository.class).saveAll(restaurants);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.rjrouleau.dining_review_api.reactive;
+
+import com.rjrouleau.dining_review_api.ApiContractTest;
+import com.rjrouleau.dining_review_api.reactive.repository.ReactiveRestaurantRepository;
+import com.rjrouleau.dining_review_api.reactive.repository.ReactiveReviewRepository;
+import com.rjrouleau.dining_review_api.reactive.repository.ReactiveUserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+// Runs the API contract against the reactive handlers on Netty, backed by R2DBC.
+@SpringBootTest(
+        classes = ReactiveDiningReviewApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive"
+)
+@ActiveProfiles("reactive")
+public class ReactiveApiContractTest extends ApiContractTest {
+    @Autowired
+    private ReactiveReviewRepository reviewRepository;
+
+    @Autowired
+    private ReactiveRestaurantRepository restaurantRepository;
+
+    @Autowired
+    private ReactiveUserRepository userRepository;
+
+    @Override
+    protected void clearData() {
+        reviewRepository.deleteAll()
+                .then(restaurantRepository.deleteAll())
+                .then(userRepository.deleteAll())
+                .block();
+    }
+
+    // score changes are written before the response is sent.
+    @Override
+    protected void awaitScoreUpdates() {
+    }
+}
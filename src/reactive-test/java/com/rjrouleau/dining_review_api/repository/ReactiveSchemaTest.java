@@ -0,0 +1,82 @@
+package com.rjrouleau.dining_review_api.repository;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.List;
+import java.util.Map;
+
+// Compares the schema the reactive variant creates from db/reactive/schema.sql with the one Hibernate creates from the
+// entities, so that a column, index, constraint or sequence added to an entity fails here until the script has it too.
+// The id columns are the one allowed difference: in the script they take the next value of the entity's sequence by
+// default, since R2DBC repositories leave the id to the database on insert. Names H2 makes up for unnamed constraints
+// and their indexes are left out.
+@DataJpaTest
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+public class ReactiveSchemaTest {
+
+    private static final List<String> SCHEMA_QUERIES = List.of(
+            """
+            select table_name, column_name, data_type, character_maximum_length, numeric_precision, is_nullable,
+                   is_identity, case when column_name = 'ID' then null else column_default end as column_default
+            from information_schema.columns where table_schema = 'PUBLIC'
+            """,
+            """
+            select i.table_name, i.index_type_name,
+                   case when regexp_like(i.index_name, '^(IDX|UX)_') then i.index_name end as index_name,
+                   listagg(c.column_name, ',') within group (order by c.ordinal_position) as column_names
+            from information_schema.indexes i
+            join information_schema.index_columns c
+              on c.index_schema = i.index_schema and c.index_name = i.index_name
+            where i.table_schema = 'PUBLIC'
+            group by i.table_name, i.index_type_name, i.index_name
+            """,
+            """
+            select t.table_name, t.constraint_type,
+                   case when t.constraint_name not like 'CONSTRAINT%' then t.constraint_name end as constraint_name,
+                   r.delete_rule, k.check_clause,
+                   (select listagg(u.column_name, ',') within group (order by u.ordinal_position)
+                    from information_schema.key_column_usage u
+                    where u.constraint_schema = t.constraint_schema
+                      and u.constraint_name = t.constraint_name) as column_names
+            from information_schema.table_constraints t
+            left join information_schema.referential_constraints r
+              on r.constraint_schema = t.constraint_schema and r.constraint_name = t.constraint_name
+            left join information_schema.check_constraints k
+              on k.constraint_schema = t.constraint_schema and k.constraint_name = t.constraint_name
+            where t.table_schema = 'PUBLIC'
+            """,
+            """
+            select sequence_name, start_value, increment
+            from information_schema.sequences where sequence_schema = 'PUBLIC'
+            """
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void ReactiveSchema_MatchesJpaSchema(){
+        SingleConnectionDataSource reactive = new SingleConnectionDataSource(
+                "jdbc:h2:mem:reactive-schema-test", "sa", "", true);
+        try {
+            new ResourceDatabasePopulator(new ClassPathResource("db/reactive/schema.sql")).execute(reactive);
+            JdbcTemplate reactiveJdbc = new JdbcTemplate(reactive);
+            for (String query : SCHEMA_QUERIES) {
+                List<Map<String, Object>> expected = jdbcTemplate.queryForList(query);
+                Assertions.assertThat(expected).isNotEmpty();
+                Assertions.assertThat(reactiveJdbc.queryForList(query)).containsExactlyInAnyOrderElementsOf(expected);
+            }
+        } finally {
+            reactive.destroy();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.rjrouleau.dining_review_api.reactive;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.User;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.H2Dialect;
+import org.springframework.data.r2dbc.mapping.event.BeforeConvertCallback;
+import org.springframework.data.relational.core.mapping.NamingStrategy;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// Maps the shared model classes for R2DBC the same way Hibernate maps them for the servlet application.
+@Configuration
+@Profile("reactive")
+public class ReactiveConfiguration {
+
+    // Review.Status is stored as its ordinal, which is JPA's default for an enum, rather than R2DBC's default name.
+    @Bean
+    public R2dbcCustomConversions r2dbcCustomConversions() {
+        return R2dbcCustomConversions.of(H2Dialect.INSTANCE, List.of(
+                new StatusToOrdinalConverter(),
+                new OrdinalToStatusConverter()
+        ));
+    }
+
+    // Sets normalizedName before every save, which Restaurant does for itself under JPA, and starts a new restaurant
+    // at version 0 as Hibernate does.
+    @Bean
+    public BeforeConvertCallback<Restaurant> prepareRestaurant() {
+        return (restaurant, table) -> {
+            restaurant.setNormalizedName(Restaurant.normalizeName(restaurant.getName()));
+            if (restaurant.getVersion() == null) {
+                restaurant.setVersion(0L);
+            }
+            return Mono.just(restaurant);
+        };
+    }
+
+    // User is stored in app_user, as its @Table names it for JPA, since user is a reserved word. Other tables keep
+    // R2DBC's default names, which match Hibernate's.
+    @Bean
+    public NamingStrategy namingStrategy() {
+        return new NamingStrategy() {
+            @Override
+            public String getTableName(Class<?> type) {
+                return type == User.class ? "app_user" : NamingStrategy.super.getTableName(type);
+            }
+        };
+    }
+
+    // Starts a new review at version 0 as Hibernate does. Later writes go through ReactiveReviewUpdater.
+    @Bean
+    public BeforeConvertCallback<Review> prepareReview() {
+        return (review, table) -> {
+            if (review.getVersion() == null) {
+                review.setVersion(0L);
+            }
+            return Mono.just(review);
+        };
+    }
+
+    @WritingConverter
+    static class StatusToOrdinalConverter implements Converter<Review.Status, Integer> {
+        @Override
+        public Integer convert(Review.Status status) {
+            return status.ordinal();
+        }
+    }
+
+    @ReadingConverter
+    static class OrdinalToStatusConverter implements Converter<Number, Review.Status> {
+        @Override
+        public Review.Status convert(Number ordinal) {
+            return Review.Status.values()[ordinal.intValue()];
+        }
+    }
+}
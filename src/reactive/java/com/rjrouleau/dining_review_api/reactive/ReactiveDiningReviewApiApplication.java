@@ -0,0 +1,32 @@
+package com.rjrouleau.dining_review_api.reactive;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Profile;
+
+// The reactive variant of the API: the same /restaurants, /reviews and /user endpoints served by WebFlux handlers on
+// Netty, with R2DBC repositories instead of JPA. It only scans this package, so none of the servlet controllers or
+// services are loaded, and its settings are in application-reactive.properties. Everything in this package belongs
+// to the reactive profile, which keeps it out of the servlet application that scans the whole project.
+@SpringBootApplication
+@Profile("reactive")
+public class ReactiveDiningReviewApiApplication {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactiveDiningReviewApiApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .profiles("reactive")
+                .run(args);
+    }
+
+    // Tomcat is on the classpath for the servlet application, and Spring Boot would run WebFlux on it in preference to
+    // Netty, so the Netty server is declared explicitly. server.* properties still apply to it.
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+}
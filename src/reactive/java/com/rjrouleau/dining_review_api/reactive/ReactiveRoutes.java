@@ -0,0 +1,75 @@
+package com.rjrouleau.dining_review_api.reactive;
+
+import com.rjrouleau.dining_review_api.reactive.handler.RestaurantHandler;
+import com.rjrouleau.dining_review_api.reactive.handler.ReviewHandler;
+import com.rjrouleau.dining_review_api.reactive.handler.UserHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RequestPredicate;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.queryParam;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+// Routes the servlet controllers' paths to the reactive handlers. Within each path, routes are matched in order, so a
+// streamed listing is listed before the paged one and fixed paths before path variables. The admin endpoints for the
+// servlet stack's caches, score queue and rebuild job are not routed, since the reactive variant has none of those.
+@Configuration
+@Profile("reactive")
+public class ReactiveRoutes {
+    private static final RequestPredicate STREAM = queryParam("stream", value -> true);
+
+    @Bean
+    public RouterFunction<ServerResponse> restaurantRoutes(RestaurantHandler handler) {
+        return route()
+                .path("/restaurants", builder -> builder
+                        .POST("", handler::createRestaurant)
+                        .GET("", STREAM, handler::streamRestaurants)
+                        .GET("", handler::getRestaurants)
+                        .GET("/search", handler::getRestaurantsByZipcodeAllergyDesc)
+                        .GET("/byzipcode/{zipcode}", STREAM, handler::streamRestaurantsByZipcode)
+                        .GET("/byzipcode/{zipcode}", handler::getRestaurantsByZipcode)
+                        .GET("/bycity/{city}", STREAM, handler::streamRestaurantsByCity)
+                        .GET("/bycity/{city}", handler::getRestaurantsByCity)
+                        .GET("/bystate/{state}", STREAM, handler::streamRestaurantsByState)
+                        .GET("/bystate/{state}", handler::getRestaurantsByState)
+                        .GET("/{id}", handler::getRestaurantById)
+                        .PUT("/{id}", handler::updateRestaurant)
+                        .DELETE("/{id}", handler::deleteRestaurant))
+                .build();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> reviewRoutes(ReviewHandler handler) {
+        return route()
+                .path("/reviews", builder -> builder
+                        .POST("", handler::createReview)
+                        .GET("/admin", STREAM, handler::streamReviewsPendingApproval)
+                        .GET("/admin", handler::getReviewsPendingApproval)
+                        .PUT("/admin", handler::updateReviewStatuses)
+                        .PUT("/admin/{id}", handler::updateReviewStatus)
+                        .GET("/restaurant/{restaurantName}", STREAM, handler::streamApprovedReviewsByRestaurantName)
+                        .GET("/restaurant/{restaurantName}", handler::getApprovedReviewsByRestaurantName)
+                        .GET("/byrestaurant/{restaurantId}", STREAM, handler::streamApprovedReviewsByRestaurantId)
+                        .GET("/byrestaurant/{restaurantId}", handler::getApprovedReviewsByRestaurantId)
+                        .GET("/user/{userName}", STREAM, handler::streamReviewsByUserName)
+                        .GET("/user/{userName}", handler::getReviewsByUserName)
+                        .GET("/{id}", handler::getReviewById)
+                        .PUT("/{id}", handler::updateReview)
+                        .DELETE("/{id}", handler::deleteReview))
+                .build();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> userRoutes(UserHandler handler) {
+        return route()
+                .path("/user", builder -> builder
+                        .POST("", handler::createUser)
+                        .GET("/{userName}", handler::getUserByUserName)
+                        .PUT("/{userName}", handler::updateUser)
+                        .DELETE("/{userName}", handler::deleteUser))
+                .build();
+    }
+}
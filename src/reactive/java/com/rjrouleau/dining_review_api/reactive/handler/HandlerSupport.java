@@ -0,0 +1,57 @@
+package com.rjrouleau.dining_review_api.reactive.handler;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Request parsing and streamed responses shared by the reactive handlers.
+class HandlerSupport {
+    private static final String INVALID_FORMAT = "Invalid stream format. Stream must be json or ndjson.";
+
+    private HandlerSupport() {
+    }
+
+    // Reads a numeric path variable. A value that is not a number is a 400, as it is for the servlet controllers.
+    static Long pathLong(ServerRequest request, String name) {
+        try {
+            return Long.valueOf(request.pathVariable(name));
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("Invalid " + name + ".");
+        }
+    }
+
+    static Integer queryInteger(ServerRequest request, String name) {
+        String value = request.queryParam(name).orElse(null);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("Invalid " + name + ".");
+        }
+    }
+
+    static String requiredQueryParam(ServerRequest request, String name) {
+        return request.queryParam(name)
+                .orElseThrow(() -> new ServerWebInputException("Required parameter '" + name + "' is not present."));
+    }
+
+    // Writes rows to the response as they are read, as one JSON array (stream=json) or one row per line
+    // (stream=ndjson), like EntityStreamWriter does for the servlet controllers.
+    static <T> Mono<ServerResponse> stream(ServerRequest request, Flux<T> rows, Class<T> rowType) {
+        String format = request.queryParam("stream").orElse("");
+        MediaType contentType;
+        if (format.equalsIgnoreCase("json")) {
+            contentType = MediaType.APPLICATION_JSON;
+        } else if (format.equalsIgnoreCase("ndjson")) {
+            contentType = MediaType.APPLICATION_NDJSON;
+        } else {
+            return ServerResponse.badRequest().contentType(MediaType.TEXT_PLAIN).bodyValue(INVALID_FORMAT);
+        }
+        return ServerResponse.ok().contentType(contentType).body(rows, rowType);
+    }
+}
@@ -0,0 +1,205 @@
+package com.rjrouleau.dining_review_api.reactive.handler;
+
+import com.rjrouleau.dining_review_api.AppUtils;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.reactive.repository.ReactiveRestaurantRepository;
+import com.rjrouleau.dining_review_api.reactive.service.ReactiveRestaurantUpdater;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+// Reactive version of RestaurantController. The search endpoint reads the database for each request instead of the
+// servlet stack's in-memory leaderboard, which other instances could not keep up to date.
+@Component
+@Profile("reactive")
+public class RestaurantHandler {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String DUPLICATE_RESTAURANT = "Bad Request: Restaurant name must be unique for a given zipcode.";
+
+    private final ReactiveRestaurantRepository restaurantRepository;
+    private final ReactiveRestaurantUpdater restaurantUpdater;
+
+    public RestaurantHandler(
+            ReactiveRestaurantRepository restaurantRepository,
+            ReactiveRestaurantUpdater restaurantUpdater
+    ) {
+        this.restaurantRepository = restaurantRepository;
+        this.restaurantUpdater = restaurantUpdater;
+    }
+
+    // Creates a restaurant with a single insert. The unique constraint on the normalized name and zipcode rejects a
+    // restaurant that already exists in that zipcode.
+    public Mono<ServerResponse> createRestaurant(ServerRequest request) {
+        return request.bodyToMono(Restaurant.class)
+                .flatMap(restaurant -> {
+                    // ids and versions are assigned by the database, as they are under JPA.
+                    restaurant.setId(null);
+                    restaurant.setVersion(null);
+                    return restaurantRepository.save(restaurant);
+                })
+                .flatMap(saved -> ServerResponse.status(HttpStatus.CREATED).bodyValue(saved))
+                .onErrorResume(DuplicateKeyException.class, e -> ServerResponse.badRequest().bodyValue(DUPLICATE_RESTAURANT));
+    }
+
+    public Mono<ServerResponse> getRestaurants(ServerRequest request) {
+        return getKeysetPage(request, restaurantRepository::findByIdGreaterThan);
+    }
+
+    public Mono<ServerResponse> streamRestaurants(ServerRequest request) {
+        return HandlerSupport.stream(request, restaurantRepository.streamAllByOrderByIdAsc(), Restaurant.class);
+    }
+
+    public Mono<ServerResponse> getRestaurantById(ServerRequest request) {
+        return restaurantRepository.findById(HandlerSupport.pathLong(request, "id"))
+                .flatMap(restaurant -> ServerResponse.ok().bodyValue(restaurant))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    public Mono<ServerResponse> getRestaurantsByZipcode(ServerRequest request) {
+        String zipcode = request.pathVariable("zipcode");
+        return getKeysetPage(
+                request,
+                (afterId, pageable) -> restaurantRepository.findByZipcodeAndIdGreaterThan(zipcode, afterId, pageable)
+        );
+    }
+
+    public Mono<ServerResponse> streamRestaurantsByZipcode(ServerRequest request) {
+        return HandlerSupport.stream(
+                request,
+                restaurantRepository.streamByZipcodeOrderByIdAsc(request.pathVariable("zipcode")),
+                Restaurant.class
+        );
+    }
+
+    public Mono<ServerResponse> getRestaurantsByCity(ServerRequest request) {
+        String city = request.pathVariable("city");
+        return getKeysetPage(
+                request,
+                (afterId, pageable) -> restaurantRepository.findByCityAndIdGreaterThan(city, afterId, pageable)
+        );
+    }
+
+    public Mono<ServerResponse> streamRestaurantsByCity(ServerRequest request) {
+        return HandlerSupport.stream(
+                request,
+                restaurantRepository.streamByCityOrderByIdAsc(request.pathVariable("city")),
+                Restaurant.class
+        );
+    }
+
+    public Mono<ServerResponse> getRestaurantsByState(ServerRequest request) {
+        String state = request.pathVariable("state");
+        return getKeysetPage(
+                request,
+                (afterId, pageable) -> restaurantRepository.findByStateAndIdGreaterThan(state, afterId, pageable)
+        );
+    }
+
+    public Mono<ServerResponse> streamRestaurantsByState(ServerRequest request) {
+        return HandlerSupport.stream(
+                request,
+                restaurantRepository.streamByStateOrderByIdAsc(request.pathVariable("state")),
+                Restaurant.class
+        );
+    }
+
+    // Searches for restaurants by zipcode and allergy score in descending order. If limit is given, only the top
+    // results are returned.
+    public Mono<ServerResponse> getRestaurantsByZipcodeAllergyDesc(ServerRequest request) {
+        String zipcode = HandlerSupport.requiredQueryParam(request, "zipcode");
+        String allergy = HandlerSupport.requiredQueryParam(request, "allergy");
+        Integer limit = HandlerSupport.queryInteger(request, "limit");
+        if (!zipcode.matches("\\d{5}")) {
+            return ServerResponse.badRequest().bodyValue("Invalid zipcode. Zipcode must be 5 digits.");
+        }
+        Flux<Restaurant> restaurants;
+        switch (allergy.toLowerCase()) {
+            case "peanut" -> restaurants =
+                    restaurantRepository.findByZipcodeAndPeanutScoreGreaterThanOrderByPeanutScoreDescIdAsc(zipcode, 0.f);
+            case "egg" -> restaurants =
+                    restaurantRepository.findByZipcodeAndEggScoreGreaterThanOrderByEggScoreDescIdAsc(zipcode, 0.f);
+            case "dairy" -> restaurants =
+                    restaurantRepository.findByZipcodeAndDairyScoreGreaterThanOrderByDairyScoreDescIdAsc(zipcode, 0.f);
+            default -> {
+                return ServerResponse.badRequest()
+                        .bodyValue("Invalid allergy. Allergy must be peanut, egg, or dairy.");
+            }
+        }
+        if (limit != null && limit >= 0) {
+            restaurants = restaurants.take(limit);
+        }
+        return restaurants.collectList().flatMap(list -> ServerResponse.ok().bodyValue(list));
+    }
+
+    // Updates restaurant fields only if provided. Scores in the body are ignored, as they are by the servlet controller.
+    // Returns 400 if the new name or zipcode matches another restaurant, and 409 if concurrent writes to the restaurant
+    // kept the update from applying.
+    public Mono<ServerResponse> updateRestaurant(ServerRequest request) {
+        Long id = HandlerSupport.pathLong(request, "id");
+        return request.bodyToMono(Restaurant.class)
+                .flatMap(restaurantDetails -> restaurantUpdater.update(id, restaurant -> {
+                    AppUtils.setIfNotNull(restaurantDetails::getName, restaurant::setName);
+                    AppUtils.setIfNotNull(restaurantDetails::getCity, restaurant::setCity);
+                    AppUtils.setIfNotNull(restaurantDetails::getState, restaurant::setState);
+                    AppUtils.setIfNotNull(restaurantDetails::getZipcode, restaurant::setZipcode);
+                }))
+                .flatMap(updated -> ServerResponse.ok().bodyValue(updated))
+                .switchIfEmpty(ServerResponse.notFound().build())
+                .onErrorResume(DuplicateKeyException.class, e -> ServerResponse.badRequest().bodyValue(DUPLICATE_RESTAURANT))
+                .onErrorResume(OptimisticLockingFailureException.class, e -> ServerResponse.status(HttpStatus.CONFLICT)
+                        .bodyValue("Conflict: Restaurant is being updated by other requests. Please try again."));
+    }
+
+    public Mono<ServerResponse> deleteRestaurant(ServerRequest request) {
+        return restaurantRepository.findById(HandlerSupport.pathLong(request, "id"))
+                .flatMap(restaurant -> restaurantRepository.delete(restaurant)
+                        .then(ServerResponse.noContent().build()))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    // Runs a keyset page query for the rows after the cursor. One extra row is fetched to learn whether another page
+    // follows, in which case the cursor for it is returned in the X-Next-Cursor header.
+    private Mono<ServerResponse> getKeysetPage(
+            ServerRequest request,
+            BiFunction<Long, Pageable, Flux<Restaurant>> query
+    ) {
+        Integer size = HandlerSupport.queryInteger(request, "size");
+        String after = request.queryParam("after").orElse(null);
+        int pageSize = size != null ? size : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return ServerResponse.badRequest()
+                    .bodyValue("Invalid size. Size must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        Long afterId;
+        try {
+            afterId = after != null ? AppUtils.decodeCursor(after) : Long.MIN_VALUE;
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue("Invalid cursor.");
+        }
+
+        return query.apply(afterId, PageRequest.of(0, pageSize + 1, Sort.by("id")))
+                .collectList()
+                .flatMap(rows -> {
+                    List<Restaurant> page = rows.size() > pageSize ? rows.subList(0, pageSize) : rows;
+                    ServerResponse.BodyBuilder response = ServerResponse.ok();
+                    if (rows.size() > pageSize) {
+                        response.header(NEXT_CURSOR_HEADER, AppUtils.encodeCursor(rows.get(pageSize - 1).getId()));
+                    }
+                    return response.bodyValue(page);
+                });
+    }
+}
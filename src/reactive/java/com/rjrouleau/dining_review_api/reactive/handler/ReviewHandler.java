@@ -0,0 +1,413 @@
+package com.rjrouleau.dining_review_api.reactive.handler;
+
+import com.rjrouleau.dining_review_api.AppUtils;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.ReviewDecision;
+import com.rjrouleau.dining_review_api.model.ReviewDecisionResult;
+import com.rjrouleau.dining_review_api.model.ScoreDelta;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.reactive.repository.ReactiveRestaurantRepository;
+import com.rjrouleau.dining_review_api.reactive.repository.ReactiveReviewRepository;
+import com.rjrouleau.dining_review_api.reactive.repository.ReactiveUserRepository;
+import com.rjrouleau.dining_review_api.reactive.service.ReactiveRestaurantUpdater;
+import com.rjrouleau.dining_review_api.reactive.service.ReactiveReviewUpdater;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Reactive version of ReviewController. Score changes are written to the restaurant before the response is sent,
+// rather than merged in a background queue as the servlet stack does. A review change and the score change it causes
+// are written in one transaction, and the review only if it is still the version that was read, so a decision is
+// applied once even when two requests race to make it.
+@Component
+@Profile("reactive")
+public class ReviewHandler {
+    // reviews are given their restaurant and user names in batches of this many, with one query for each.
+    private static final int NAME_BATCH_SIZE = 500;
+    private static final String REVIEW_NOT_FOUND = "Review not found.";
+    private static final String SCORE_UPDATE_FAILED = "An error occurred while updating restaurant scores.";
+    private static final String REVIEW_CONFLICT = "Conflict: Review was changed by another request. Please try again.";
+
+    private final ReactiveReviewRepository reviewRepository;
+    private final ReactiveRestaurantRepository restaurantRepository;
+    private final ReactiveUserRepository userRepository;
+    private final ReactiveRestaurantUpdater restaurantUpdater;
+    private final ReactiveReviewUpdater reviewUpdater;
+    private final TransactionalOperator transactionalOperator;
+
+    public ReviewHandler(
+            ReactiveReviewRepository reviewRepository,
+            ReactiveRestaurantRepository restaurantRepository,
+            ReactiveUserRepository userRepository,
+            ReactiveRestaurantUpdater restaurantUpdater,
+            ReactiveReviewUpdater reviewUpdater,
+            TransactionalOperator transactionalOperator
+    ) {
+        this.reviewRepository = reviewRepository;
+        this.restaurantRepository = restaurantRepository;
+        this.userRepository = userRepository;
+        this.restaurantUpdater = restaurantUpdater;
+        this.reviewUpdater = reviewUpdater;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    // Creates a review for the restaurant with the given restaurantId, written by the user with the given userName.
+    public Mono<ServerResponse> createReview(ServerRequest request) {
+        return request.bodyToMono(Review.class).flatMap(review -> {
+            Mono<User> user = review.getUserName() != null
+                    ? userRepository.findByUserName(review.getUserName())
+                    : Mono.empty();
+            return user.flatMap(foundUser -> {
+                Mono<Restaurant> restaurant = review.getRestaurantId() != null
+                        ? restaurantRepository.findById(review.getRestaurantId())
+                        : Mono.empty();
+                return restaurant.flatMap(foundRestaurant -> {
+                    review.setId(null);
+                    review.setUserId(foundUser.getId());
+                    review.setUserName(foundUser.getUserName());
+                    review.setRestaurantName(foundRestaurant.getName());
+                    return reviewRepository.save(review)
+                            .flatMap(saved -> ServerResponse.status(HttpStatus.CREATED).bodyValue(saved));
+                }).switchIfEmpty(badRequest("Bad Request: Restaurant was not found."));
+            }).switchIfEmpty(badRequest("Bad Request: User not found."));
+        });
+    }
+
+    public Mono<ServerResponse> getReviewById(ServerRequest request) {
+        return reviewRepository.findById(HandlerSupport.pathLong(request, "id"))
+                .flatMapMany(review -> withNames(Flux.just(review)))
+                .next()
+                .flatMap(review -> ServerResponse.ok().bodyValue(review))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    // Returns the approved reviews for every restaurant with the given name.
+    public Mono<ServerResponse> getApprovedReviewsByRestaurantName(ServerRequest request) {
+        return restaurantRepository.findIdsByName(request.pathVariable("restaurantName"))
+                .collectList()
+                .flatMap(restaurantIds -> restaurantIds.isEmpty()
+                        ? ServerResponse.notFound().build()
+                        : listOrNotFound(
+                                reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(restaurantIds, Review.Status.ACCEPTED)
+                        ));
+    }
+
+    // An empty result is an empty list rather than 404, as it is for the servlet stream.
+    public Mono<ServerResponse> streamApprovedReviewsByRestaurantName(ServerRequest request) {
+        Flux<Review> reviews = restaurantRepository.findIdsByName(request.pathVariable("restaurantName"))
+                .collectList()
+                .flatMapMany(restaurantIds -> restaurantIds.isEmpty()
+                        ? Flux.empty()
+                        : reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(restaurantIds, Review.Status.ACCEPTED));
+        return HandlerSupport.stream(request, withNames(reviews), Review.class);
+    }
+
+    public Mono<ServerResponse> getApprovedReviewsByRestaurantId(ServerRequest request) {
+        return listOrNotFound(reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(
+                List.of(HandlerSupport.pathLong(request, "restaurantId")),
+                Review.Status.ACCEPTED
+        ));
+    }
+
+    public Mono<ServerResponse> streamApprovedReviewsByRestaurantId(ServerRequest request) {
+        Flux<Review> reviews = reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(
+                List.of(HandlerSupport.pathLong(request, "restaurantId")),
+                Review.Status.ACCEPTED
+        );
+        return HandlerSupport.stream(request, withNames(reviews), Review.class);
+    }
+
+    public Mono<ServerResponse> getReviewsByUserName(ServerRequest request) {
+        return userRepository.findByUserName(request.pathVariable("userName"))
+                .flatMap(user -> listOrNotFound(reviewRepository.findByUserIdOrderByIdAsc(user.getId())))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    public Mono<ServerResponse> streamReviewsByUserName(ServerRequest request) {
+        Flux<Review> reviews = userRepository.findByUserName(request.pathVariable("userName"))
+                .flatMapMany(user -> reviewRepository.findByUserIdOrderByIdAsc(user.getId()));
+        return HandlerSupport.stream(request, withNames(reviews), Review.class);
+    }
+
+    // Updates a review's scores and commentary. Status is changed to PENDING. Returns 409 if the review was changed
+    // since it was read, such as by a concurrent moderation decision.
+    public Mono<ServerResponse> updateReview(ServerRequest request) {
+        Long id = HandlerSupport.pathLong(request, "id");
+        return request.bodyToMono(Review.class).flatMap(reviewDetails -> reviewRepository.findById(id)
+                .flatMap(review -> {
+                    // an edited review goes back to PENDING, so its old scores are withdrawn from the restaurant.
+                    Mono<Void> withdrawn = review.getStatus() == Review.Status.ACCEPTED
+                            ? updateRestaurantScores(review, -1)
+                            : Mono.empty();
+                    return withdrawn
+                            .then(Mono.fromCallable(() -> {
+                                AppUtils.setIfNotNull(reviewDetails::getPeanutScore, review::setPeanutScore);
+                                AppUtils.setIfNotNull(reviewDetails::getEggScore, review::setEggScore);
+                                AppUtils.setIfNotNull(reviewDetails::getDairyScore, review::setDairyScore);
+                                AppUtils.setIfNotNull(reviewDetails::getCommentary, review::setCommentary);
+                                review.setStatus(Review.Status.PENDING);
+                                return review;
+                            }))
+                            .flatMap(this::saveIfUnchanged)
+                            .as(transactionalOperator::transactional)
+                            .flatMapMany(saved -> withNames(Flux.just(saved)))
+                            .next()
+                            .flatMap(saved -> ServerResponse.ok().bodyValue(saved))
+                            .onErrorResume(ScoreUpdateException.class, e -> scoreUpdateFailed())
+                            .onErrorResume(ReviewConflictException.class, e -> reviewConflict());
+                })
+                .switchIfEmpty(reviewNotFound()));
+    }
+
+    public Mono<ServerResponse> getReviewsPendingApproval(ServerRequest request) {
+        return listOrNotFound(reviewRepository.findByStatusOrderByIdAsc(Review.Status.PENDING));
+    }
+
+    public Mono<ServerResponse> streamReviewsPendingApproval(ServerRequest request) {
+        return HandlerSupport.stream(
+                request,
+                withNames(reviewRepository.findByStatusOrderByIdAsc(Review.Status.PENDING)),
+                Review.class
+        );
+    }
+
+    // Updates the status of a review and adjusts the restaurant scores when the review becomes accepted or stops
+    // being accepted. If status is not accepted or rejected, review is set to pending. A review is not accepted if
+    // its restaurant no longer exists. Returns 409 if the review was changed since it was read.
+    public Mono<ServerResponse> updateReviewStatus(ServerRequest request) {
+        Long id = HandlerSupport.pathLong(request, "id");
+        return request.bodyToMono(String.class)
+                .switchIfEmpty(Mono.error(new ServerWebInputException("Required request body is missing.")))
+                .flatMap(status -> reviewRepository.findById(id).flatMap(review -> {
+                    Review.Status reviewStatus = parseStatus(status);
+                    int weight = scoreWeight(review.getStatus(), reviewStatus);
+                    Mono<Boolean> restaurantFound = weight > 0
+                            ? restaurantExists(review.getRestaurantId())
+                            : Mono.just(true);
+                    return restaurantFound.flatMap(found -> {
+                        if (!found) {
+                            return scoreUpdateFailed();
+                        }
+                        review.setStatus(reviewStatus);
+                        return saveIfUnchanged(review)
+                                .flatMap(saved -> (weight != 0
+                                        ? updateRestaurantScores(saved, weight)
+                                        : Mono.<Void>empty()).thenReturn(saved))
+                                .as(transactionalOperator::transactional)
+                                .flatMap(saved -> withNames(Flux.just(saved)).next())
+                                .flatMap(saved -> ServerResponse.ok().bodyValue(saved))
+                                .onErrorResume(ScoreUpdateException.class, e -> scoreUpdateFailed())
+                                .onErrorResume(ReviewConflictException.class, e -> reviewConflict());
+                    });
+                }))
+                .switchIfEmpty(reviewNotFound());
+    }
+
+    // Applies many status decisions at once. The reviews are loaded with one query, and each affected restaurant
+    // receives one merged score update. Returns a result for every decision, in request order. Returns 409 without
+    // applying any decision if one of the reviews was changed since it was read.
+    public Mono<ServerResponse> updateReviewStatuses(ServerRequest request) {
+        return request.bodyToMono(new ParameterizedTypeReference<List<ReviewDecision>>() {})
+                .flatMap(decisions -> {
+                    Set<Long> reviewIds = new HashSet<>();
+                    for (ReviewDecision decision : decisions) {
+                        if (decision.getReviewId() != null) {
+                            reviewIds.add(decision.getReviewId());
+                        }
+                    }
+                    return reviewRepository.findAllById(reviewIds)
+                            .collectMap(Review::getId)
+                            .flatMap(reviews -> findExistingRestaurantIds(reviews.values())
+                                    .flatMap(existingRestaurantIds -> applyDecisions(decisions, reviews, existingRestaurantIds)));
+                })
+                .flatMap(results -> ServerResponse.ok().bodyValue(results))
+                .onErrorResume(ReviewConflictException.class, e -> ServerResponse.status(HttpStatus.CONFLICT).build());
+    }
+
+    public Mono<ServerResponse> deleteReview(ServerRequest request) {
+        return reviewRepository.findById(HandlerSupport.pathLong(request, "id"))
+                .flatMap(review -> {
+                    Mono<Void> withdrawn = review.getStatus() == Review.Status.ACCEPTED
+                            ? updateRestaurantScores(review, -1)
+                            : Mono.empty();
+                    return withdrawn
+                            .then(reviewUpdater.delete(review).onErrorMap(
+                                    OptimisticLockingFailureException.class, e -> new ReviewConflictException()))
+                            .as(transactionalOperator::transactional)
+                            .then(ServerResponse.noContent().build())
+                            .onErrorResume(ScoreUpdateException.class, e -> scoreUpdateFailed())
+                            .onErrorResume(ReviewConflictException.class, e -> reviewConflict());
+                })
+                .switchIfEmpty(reviewNotFound());
+    }
+
+    private Mono<Set<Long>> findExistingRestaurantIds(Iterable<Review> reviews) {
+        Set<Long> restaurantIds = new HashSet<>();
+        for (Review review : reviews) {
+            if (review.getRestaurantId() != null) {
+                restaurantIds.add(review.getRestaurantId());
+            }
+        }
+        if (restaurantIds.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        return restaurantRepository.findExistingIds(restaurantIds).collect(HashSet::new, Set::add);
+    }
+
+    private Mono<List<ReviewDecisionResult>> applyDecisions(
+            List<ReviewDecision> decisions,
+            Map<Long, Review> reviews,
+            Set<Long> existingRestaurantIds
+    ) {
+        List<ReviewDecisionResult> results = new ArrayList<>();
+        Map<Long, Review> changedReviews = new LinkedHashMap<>();
+        Map<Long, ScoreDelta> scoreDeltas = new HashMap<>();
+        for (ReviewDecision decision : decisions) {
+            Review review = decision.getReviewId() != null ? reviews.get(decision.getReviewId()) : null;
+            if (review == null) {
+                results.add(new ReviewDecisionResult(decision.getReviewId(), null, REVIEW_NOT_FOUND));
+                continue;
+            }
+            Review.Status reviewStatus = parseStatus(decision.getStatus() != null ? decision.getStatus() : "");
+            int weight = scoreWeight(review.getStatus(), reviewStatus);
+            boolean restaurantExists = existingRestaurantIds.contains(review.getRestaurantId());
+            if (weight > 0 && !restaurantExists) {
+                results.add(new ReviewDecisionResult(review.getId(), review.getStatus(), "Restaurant was not found."));
+                continue;
+            }
+            if (weight != 0 && restaurantExists) {
+                scoreDeltas.merge(review.getRestaurantId(), ScoreDelta.of(review, weight), ScoreDelta::merge);
+            }
+            review.setStatus(reviewStatus);
+            changedReviews.put(review.getId(), review);
+            results.add(new ReviewDecisionResult(review.getId(), reviewStatus, null));
+        }
+
+        return reviewUpdater.saveAll(changedReviews.values())
+                .onErrorMap(OptimisticLockingFailureException.class, e -> new ReviewConflictException())
+                .thenMany(Flux.fromIterable(scoreDeltas.entrySet()))
+                .concatMap(entry -> restaurantUpdater.update(entry.getKey(), r -> r.applyScoreDelta(entry.getValue())))
+                .then(Mono.just(results))
+                .as(transactionalOperator::transactional);
+    }
+
+    // Saves a change to an existing review. Fails with ReviewConflictException if the review was changed since it
+    // was read. A restaurant update that keeps conflicting still fails with OptimisticLockingFailureException.
+    private Mono<Review> saveIfUnchanged(Review review) {
+        return reviewUpdater.save(review)
+                .onErrorMap(OptimisticLockingFailureException.class, e -> new ReviewConflictException());
+    }
+
+    // Deleting a restaurant sets the restaurantId of its reviews to null, so an accepted review can outlive it.
+    private Mono<Boolean> restaurantExists(Long restaurantId) {
+        return restaurantId != null ? restaurantRepository.existsById(restaurantId) : Mono.just(false);
+    }
+
+    // Adds (weight 1) or withdraws (weight -1) a review's scores from its restaurant's running aggregates. Fails with
+    // ScoreUpdateException if scores are added to a restaurant that does not exist. Deleting a restaurant sets the
+    // restaurantId of its reviews to null, and a withdrawal from it has nothing to undo, so it is skipped.
+    private Mono<Void> updateRestaurantScores(Review review, int weight) {
+        Mono<Void> missing = weight < 0 ? Mono.empty() : Mono.error(new ScoreUpdateException());
+        if (review.getRestaurantId() == null) {
+            return missing;
+        }
+        return restaurantUpdater.update(review.getRestaurantId(), r -> r.applyScoreDelta(ScoreDelta.of(review, weight)))
+                .switchIfEmpty(missing.then(Mono.<Restaurant>empty()))
+                .then();
+    }
+
+    // Fills in the restaurant and user names of each review, which R2DBC does not load with it. Reviews are handled in
+    // batches, with one query for the restaurants and one for the users of each batch, and keep their order.
+    private Flux<Review> withNames(Flux<Review> reviews) {
+        return reviews.buffer(NAME_BATCH_SIZE).concatMap(batch -> {
+            Set<Long> restaurantIds = new HashSet<>();
+            Set<Long> userIds = new HashSet<>();
+            for (Review review : batch) {
+                if (review.getRestaurantId() != null) {
+                    restaurantIds.add(review.getRestaurantId());
+                }
+                if (review.getUserId() != null) {
+                    userIds.add(review.getUserId());
+                }
+            }
+            Mono<Map<Long, String>> restaurantNames = restaurantRepository.findAllById(restaurantIds)
+                    .collect(HashMap::new, (names, restaurant) -> names.put(restaurant.getId(), restaurant.getName()));
+            Mono<Map<Long, String>> userNames = userRepository.findAllById(userIds)
+                    .collect(HashMap::new, (names, user) -> names.put(user.getId(), user.getUserName()));
+            return Mono.zip(restaurantNames, userNames).flatMapIterable(names -> {
+                for (Review review : batch) {
+                    review.setRestaurantName(names.getT1().get(review.getRestaurantId()));
+                    review.setUserName(names.getT2().get(review.getUserId()));
+                }
+                return batch;
+            });
+        });
+    }
+
+    private Mono<ServerResponse> listOrNotFound(Flux<Review> reviews) {
+        return withNames(reviews).collectList().flatMap(list -> list.isEmpty()
+                ? ServerResponse.notFound().build()
+                : ServerResponse.ok().bodyValue(list));
+    }
+
+    // Maps a requested status to a review status. Anything other than accepted or rejected means pending.
+    private static Review.Status parseStatus(String status) {
+        return switch (status.toLowerCase()){
+            case "accepted" -> Review.Status.ACCEPTED;
+            case "rejected" -> Review.Status.REJECTED;
+            default -> Review.Status.PENDING;
+        };
+    }
+
+    // Returns 1 when a review becomes accepted, -1 when it stops being accepted, and 0 when its scores do not count
+    // toward the restaurant either way.
+    private static int scoreWeight(Review.Status previousStatus, Review.Status newStatus) {
+        boolean wasAccepted = previousStatus == Review.Status.ACCEPTED;
+        boolean isAccepted = newStatus == Review.Status.ACCEPTED;
+        if (wasAccepted == isAccepted) {
+            return 0;
+        }
+        return isAccepted ? 1 : -1;
+    }
+
+    private static Mono<ServerResponse> badRequest(String message) {
+        return ServerResponse.badRequest().bodyValue(message);
+    }
+
+    private static Mono<ServerResponse> reviewNotFound() {
+        return ServerResponse.status(HttpStatus.NOT_FOUND).bodyValue(REVIEW_NOT_FOUND);
+    }
+
+    private static Mono<ServerResponse> scoreUpdateFailed() {
+        return ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR).bodyValue(SCORE_UPDATE_FAILED);
+    }
+
+    private static Mono<ServerResponse> reviewConflict() {
+        return ServerResponse.status(HttpStatus.CONFLICT).bodyValue(REVIEW_CONFLICT);
+    }
+
+    // The review's restaurant no longer exists, so its scores could not be applied.
+    private static class ScoreUpdateException extends RuntimeException {
+    }
+
+    // The review was changed since it was read, so the change based on it was not written.
+    private static class ReviewConflictException extends RuntimeException {
+    }
+}
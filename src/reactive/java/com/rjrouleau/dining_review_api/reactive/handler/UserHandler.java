@@ -0,0 +1,69 @@
+package com.rjrouleau.dining_review_api.reactive.handler;
+
+import com.rjrouleau.dining_review_api.AppUtils;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.reactive.repository.ReactiveUserRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+// Reactive version of UserController.
+@Component
+@Profile("reactive")
+public class UserHandler {
+    private final ReactiveUserRepository userRepository;
+
+    public UserHandler(ReactiveUserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    public Mono<ServerResponse> getUserByUserName(ServerRequest request) {
+        return userRepository.findByUserName(request.pathVariable("userName"))
+                .flatMap(user -> ServerResponse.ok().bodyValue(user))
+                .switchIfEmpty(userNotFound());
+    }
+
+    // Creates a new user with a single insert. The unique constraint on userName rejects a taken name.
+    public Mono<ServerResponse> createUser(ServerRequest request) {
+        return request.bodyToMono(User.class)
+                .flatMap(user -> {
+                    user.setId(null);
+                    return userRepository.save(user);
+                })
+                .flatMap(saved -> ServerResponse.status(HttpStatus.CREATED).bodyValue(saved))
+                .onErrorResume(DuplicateKeyException.class, e -> ServerResponse.badRequest()
+                        .bodyValue("Username is taken. Please choose a unique username."));
+    }
+
+    // updates a user profile without changing the username. If a new username is provided, it is ignored and the
+    // remaining fields are still updated.
+    public Mono<ServerResponse> updateUser(ServerRequest request) {
+        return request.bodyToMono(User.class)
+                .flatMap(userDetails -> userRepository.findByUserName(request.pathVariable("userName"))
+                        .flatMap(user -> {
+                            AppUtils.setIfNotNull(userDetails::getCity, user::setCity);
+                            AppUtils.setIfNotNull(userDetails::getState, user::setState);
+                            AppUtils.setIfNotNull(userDetails::getZipcode, user::setZipcode);
+                            AppUtils.setIfNotNull(userDetails::getPeanutAllergy, user::setPeanutAllergy);
+                            AppUtils.setIfNotNull(userDetails::getEggAllergy, user::setEggAllergy);
+                            AppUtils.setIfNotNull(userDetails::getDairyAllergy, user::setDairyAllergy);
+                            return userRepository.save(user);
+                        }))
+                .flatMap(updated -> ServerResponse.ok().bodyValue(updated))
+                .switchIfEmpty(userNotFound());
+    }
+
+    public Mono<ServerResponse> deleteUser(ServerRequest request) {
+        return userRepository.findByUserName(request.pathVariable("userName"))
+                .flatMap(user -> userRepository.delete(user).then(ServerResponse.noContent().build()))
+                .switchIfEmpty(userNotFound());
+    }
+
+    private static Mono<ServerResponse> userNotFound() {
+        return ServerResponse.status(HttpStatus.NOT_FOUND).bodyValue("User not found.");
+    }
+}
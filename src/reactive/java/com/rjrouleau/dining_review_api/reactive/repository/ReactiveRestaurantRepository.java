@@ -0,0 +1,38 @@
+package com.rjrouleau.dining_review_api.reactive.repository;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+// R2DBC mirror of RestaurantRepository for the reactive variant. A Flux is already read from the database as it is
+// consumed, so the stream* finders need no cursor hints or transaction, and the same finders serve both the paged and
+// the streamed endpoints.
+public interface ReactiveRestaurantRepository extends R2dbcRepository<Restaurant, Long> {
+    @Query("select id from restaurant where name = :name")
+    Flux<Long> findIdsByName(@Param("name") String name);
+
+    // Keyset pages: restaurants with an id above the cursor, in the order and size given by the Pageable.
+    Flux<Restaurant> findByIdGreaterThan(Long afterId, Pageable pageable);
+    Flux<Restaurant> findByZipcodeAndIdGreaterThan(String zipcode, Long afterId, Pageable pageable);
+    Flux<Restaurant> findByCityAndIdGreaterThan(String city, Long afterId, Pageable pageable);
+    Flux<Restaurant> findByStateAndIdGreaterThan(String state, Long afterId, Pageable pageable);
+
+    Flux<Restaurant> streamAllByOrderByIdAsc();
+    Flux<Restaurant> streamByZipcodeOrderByIdAsc(String zipcode);
+    Flux<Restaurant> streamByCityOrderByIdAsc(String city);
+    Flux<Restaurant> streamByStateOrderByIdAsc(String state);
+
+    // Ties are ordered by id, the same order RestaurantLeaderboard keeps for the servlet search.
+    Flux<Restaurant> findByZipcodeAndPeanutScoreGreaterThanOrderByPeanutScoreDescIdAsc(String zipcode, Float peanutScore);
+    Flux<Restaurant> findByZipcodeAndEggScoreGreaterThanOrderByEggScoreDescIdAsc(String zipcode, Float eggScore);
+    Flux<Restaurant> findByZipcodeAndDairyScoreGreaterThanOrderByDairyScoreDescIdAsc(String zipcode, Float dairyScore);
+
+    // Returns which of the given ids belong to an existing restaurant, without loading the restaurants.
+    @Query("select id from restaurant where id in (:ids)")
+    Flux<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+}
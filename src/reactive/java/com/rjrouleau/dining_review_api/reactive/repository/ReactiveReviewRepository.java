@@ -0,0 +1,16 @@
+package com.rjrouleau.dining_review_api.reactive.repository;
+
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.Review.Status;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+// R2DBC mirror of ReviewRepository for the reactive variant. R2DBC has no associations, so reviews are read without
+// their restaurant and user, and ReviewHandler looks up the names for each batch of reviews it returns.
+public interface ReactiveReviewRepository extends R2dbcRepository<Review, Long> {
+    Flux<Review> findByStatusOrderByIdAsc(Status status);
+    Flux<Review> findByRestaurantIdInAndStatusOrderByIdAsc(Collection<Long> restaurantIds, Status status);
+    Flux<Review> findByUserIdOrderByIdAsc(Long userId);
+}
@@ -0,0 +1,10 @@
+package com.rjrouleau.dining_review_api.reactive.repository;
+
+import com.rjrouleau.dining_review_api.model.User;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+// R2DBC mirror of UserRepository for the reactive variant.
+public interface ReactiveUserRepository extends R2dbcRepository<User, Long> {
+    Mono<User> findByUserName(String userName);
+}
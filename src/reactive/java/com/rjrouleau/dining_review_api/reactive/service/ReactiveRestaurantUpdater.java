@@ -0,0 +1,84 @@
+package com.rjrouleau.dining_review_api.reactive.service;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.reactive.repository.ReactiveRestaurantRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.data.relational.core.query.Update;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Read-modify-write of a single restaurant for the reactive variant. Unlike RestaurantUpdater there are no lock
+// stripes, since waiting on a lock would block an event loop thread. The version column alone catches concurrent
+// writes: the row is only written if its version is still the one that was read, and otherwise the restaurant is read
+// and changed again after a short random backoff, up to a bounded number of attempts.
+@Service
+@Profile("reactive")
+public class ReactiveRestaurantUpdater {
+    private final ReactiveRestaurantRepository restaurantRepository;
+    private final R2dbcEntityTemplate template;
+    private final int maxAttempts;
+
+    public ReactiveRestaurantUpdater(
+            ReactiveRestaurantRepository restaurantRepository,
+            R2dbcEntityTemplate template,
+            @Value("${restaurants.update.max-attempts:5}") int maxAttempts
+    ) {
+        this.restaurantRepository = restaurantRepository;
+        this.template = template;
+        this.maxAttempts = maxAttempts;
+    }
+
+    // Loads the restaurant, applies change to it and saves it. change may run more than once, so it must only depend
+    // on the restaurant it is given. Emits the saved restaurant, or completes empty if there is no restaurant with
+    // that id. Fails with OptimisticLockingFailureException if every attempt conflicted.
+    public Mono<Restaurant> update(Long restaurantId, Consumer<Restaurant> change) {
+        return Mono.defer(() -> restaurantRepository.findById(restaurantId)
+                        .flatMap(restaurant -> {
+                            Long readVersion = restaurant.getVersion();
+                            change.accept(restaurant);
+                            return saveIfUnchanged(restaurant, readVersion);
+                        }))
+                .retryWhen(Retry.backoff(maxAttempts - 1, Duration.ofMillis(1))
+                        .maxBackoff(Duration.ofMillis(50))
+                        .filter(OptimisticLockingFailureException.class::isInstance)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    // Writes every column of the restaurant with the next version, but only if the row still has the version that was
+    // read, which is the check Hibernate makes for the servlet stack.
+    private Mono<Restaurant> saveIfUnchanged(Restaurant restaurant, Long readVersion) {
+        restaurant.setVersion(readVersion != null ? readVersion + 1 : 0L);
+        restaurant.setNormalizedName(Restaurant.normalizeName(restaurant.getName()));
+
+        OutboundRow row = new OutboundRow();
+        template.getConverter().write(restaurant, row);
+        Map<SqlIdentifier, Object> columns = new LinkedHashMap<>(row);
+        columns.remove(template.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Restaurant.class)
+                .getIdColumn());
+
+        Criteria sameVersion = readVersion != null
+                ? Criteria.where("version").is(readVersion)
+                : Criteria.where("version").isNull();
+        return template.update(Restaurant.class)
+                .matching(Query.query(Criteria.where("id").is(restaurant.getId()).and(sameVersion)))
+                .apply(Update.from(columns))
+                .flatMap(updatedRows -> updatedRows > 0
+                        ? Mono.just(restaurant)
+                        : Mono.error(new OptimisticLockingFailureException(
+                                "Restaurant " + restaurant.getId() + " was changed by another update")));
+    }
+}
@@ -0,0 +1,75 @@
+package com.rjrouleau.dining_review_api.reactive.service;
+
+import com.rjrouleau.dining_review_api.model.Review;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.data.relational.core.query.Update;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Writes changes to existing reviews for the reactive variant with the version check Hibernate makes for the servlet
+// stack, which R2DBC repositories don't make. A review is only written or deleted if its row still has the version it
+// was read with, so two requests that both read a pending review can't both apply its scores. Unlike
+// ReactiveRestaurantUpdater nothing is retried: a decision based on an older read fails with
+// OptimisticLockingFailureException and is left to the caller.
+@Service
+@Profile("reactive")
+public class ReactiveReviewUpdater {
+    private final R2dbcEntityTemplate template;
+
+    public ReactiveReviewUpdater(R2dbcEntityTemplate template) {
+        this.template = template;
+    }
+
+    // Writes every column of the review with the next version. Emits the saved review.
+    public Mono<Review> save(Review review) {
+        Criteria sameVersion = sameVersion(review);
+        review.setVersion(review.getVersion() != null ? review.getVersion() + 1 : 0L);
+
+        OutboundRow row = new OutboundRow();
+        template.getConverter().write(review, row);
+        Map<SqlIdentifier, Object> columns = new LinkedHashMap<>(row);
+        columns.remove(template.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Review.class)
+                .getIdColumn());
+
+        return template.update(Review.class)
+                .matching(Query.query(sameVersion))
+                .apply(Update.from(columns))
+                .flatMap(updatedRows -> updatedRows > 0 ? Mono.just(review) : conflict(review));
+    }
+
+    // Saves the reviews one after another, failing at the first one that was changed since it was read.
+    public Flux<Review> saveAll(Collection<Review> reviews) {
+        return Flux.fromIterable(reviews).concatMap(this::save);
+    }
+
+    public Mono<Void> delete(Review review) {
+        return template.delete(Review.class)
+                .matching(Query.query(sameVersion(review)))
+                .all()
+                .flatMap(deletedRows -> deletedRows > 0 ? Mono.<Void>empty() : conflict(review).then());
+    }
+
+    private static Criteria sameVersion(Review review) {
+        Criteria id = Criteria.where("id").is(review.getId());
+        return review.getVersion() != null
+                ? id.and(Criteria.where("version").is(review.getVersion()))
+                : id.and(Criteria.where("version").isNull());
+    }
+
+    private static Mono<Review> conflict(Review review) {
+        return Mono.error(new OptimisticLockingFailureException(
+                "Review " + review.getId() + " was changed by another update"));
+    }
+}
@@ -0,0 +1,65 @@
+-- Schema for the reactive variant, run through R2DBC when it starts. The tables, indexes, constraints and sequences
+-- match the ones Hibernate creates for the servlet application, which ReactiveSchemaTest checks. The only difference is
+-- that id columns take the next value of their sequence by default, since R2DBC repositories leave the id to the
+-- database on insert. Hibernate hands out the 50 ids below each value it takes, so ids never collide when both
+-- variants write to one database. The reactive variant doesn't map review.version or restaurant.last_modified, and
+-- leaves them NULL.
+CREATE SEQUENCE IF NOT EXISTS app_user_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS restaurant_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS review_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS app_user (
+    id             BIGINT DEFAULT NEXT VALUE FOR app_user_seq PRIMARY KEY,
+    user_name      VARCHAR(255),
+    city           VARCHAR(255),
+    state          VARCHAR(255),
+    zipcode        VARCHAR(255),
+    peanut_allergy BOOLEAN,
+    egg_allergy    BOOLEAN,
+    dairy_allergy  BOOLEAN,
+    CONSTRAINT ux_app_user_user_name UNIQUE (user_name)
+);
+
+CREATE TABLE IF NOT EXISTS restaurant (
+    id              BIGINT DEFAULT NEXT VALUE FOR restaurant_seq PRIMARY KEY,
+    version         BIGINT,
+    last_modified   TIMESTAMP(6) WITH TIME ZONE,
+    overall_score   FLOAT(24),
+    peanut_score    FLOAT(24),
+    egg_score       FLOAT(24),
+    dairy_score     FLOAT(24),
+    name            VARCHAR(255),
+    normalized_name VARCHAR(255),
+    city            VARCHAR(255),
+    state           VARCHAR(255),
+    zipcode         VARCHAR(255),
+    peanut_sum      BIGINT NOT NULL,
+    peanut_count    BIGINT NOT NULL,
+    egg_sum         BIGINT NOT NULL,
+    egg_count       BIGINT NOT NULL,
+    dairy_sum       BIGINT NOT NULL,
+    dairy_count     BIGINT NOT NULL,
+    CONSTRAINT ux_restaurant_normalized_name_zipcode UNIQUE (normalized_name, zipcode)
+);
+CREATE INDEX IF NOT EXISTS idx_restaurant_zipcode_id ON restaurant (zipcode, id);
+CREATE INDEX IF NOT EXISTS idx_restaurant_city_id ON restaurant (city, id);
+CREATE INDEX IF NOT EXISTS idx_restaurant_state_id ON restaurant (state, id);
+CREATE INDEX IF NOT EXISTS idx_restaurant_name_id ON restaurant (name, id);
+
+-- status holds the ordinal of Review.Status, as it does under JPA.
+CREATE TABLE IF NOT EXISTS review (
+    id            BIGINT DEFAULT NEXT VALUE FOR review_seq PRIMARY KEY,
+    version       BIGINT,
+    restaurant_id BIGINT,
+    user_id       BIGINT,
+    peanut_score  INTEGER,
+    egg_score     INTEGER,
+    dairy_score   INTEGER,
+    commentary    VARCHAR(255),
+    status        TINYINT CHECK (status BETWEEN 0 AND 2),
+    CONSTRAINT fk_review_restaurant FOREIGN KEY (restaurant_id) REFERENCES restaurant ON DELETE SET NULL,
+    CONSTRAINT fk_review_user FOREIGN KEY (user_id) REFERENCES app_user ON DELETE SET NULL
+);
+CREATE INDEX IF NOT EXISTS idx_review_status_id ON review (status, id);
+CREATE INDEX IF NOT EXISTS idx_review_restaurant_id_status_id ON review (restaurant_id, status, id);
+CREATE INDEX IF NOT EXISTS idx_review_user_id_id ON review (user_id, id);
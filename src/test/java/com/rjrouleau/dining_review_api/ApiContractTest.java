@@ -0,0 +1,635 @@
+package com.rjrouleau.dining_review_api;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.User;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+// The HTTP contract shared by the servlet controllers and the reactive handlers. Each stack runs these tests through
+// a subclass that starts it on a random port with its real database, so both answer the same requests with the same
+// statuses, headers and bodies. The mocked controller tests cover the servlet stack's internals.
+public abstract class ApiContractTest {
+    @Autowired
+    protected WebTestClient webTestClient;
+
+    @LocalServerPort
+    private int port;
+
+    // Deletes every review, restaurant and user, and forgets anything the stack keeps in memory about them.
+    protected abstract void clearData();
+
+    // Waits until accepted and withdrawn review scores have been written to their restaurants.
+    protected abstract void awaitScoreUpdates();
+
+    @BeforeEach
+    public void init(){
+        clearData();
+    }
+
+    @Test
+    public void Api_CreateUser_ReturnUser() {
+        User user = createUser("testUser");
+
+        Assertions.assertThat(user.getId()).isNotNull();
+        webTestClient.get().uri("/user/testUser")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(user.getId())
+                .jsonPath("$.userName").isEqualTo("testUser")
+                .jsonPath("$.city").isEqualTo("Fremont")
+                .jsonPath("$.peanutAllergy").isEqualTo(true);
+    }
+
+    @Test
+    public void Api_CreateUser_ReturnNameTaken() {
+        createUser("testUser");
+
+        webTestClient.post().uri("/user")
+                .bodyValue(Map.of("userName", "testUser"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Username is taken. Please choose a unique username.");
+    }
+
+    @Test
+    public void Api_UpdateUser_ReturnUser() {
+        createUser("testUser");
+
+        webTestClient.put().uri("/user/testUser")
+                .bodyValue(Map.of("userName", "otherUser", "city", "Oakland", "eggAllergy", true))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.userName").isEqualTo("testUser")
+                .jsonPath("$.city").isEqualTo("Oakland")
+                .jsonPath("$.state").isEqualTo("California")
+                .jsonPath("$.eggAllergy").isEqualTo(true);
+    }
+
+    @Test
+    public void Api_DeleteUser_ReturnNotFound() {
+        createUser("testUser");
+
+        webTestClient.delete().uri("/user/testUser").exchange().expectStatus().isNoContent();
+        webTestClient.get().uri("/user/testUser")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("User not found.");
+        webTestClient.delete().uri("/user/testUser").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void Api_CreateRestaurant_ReturnBadName() {
+        createRestaurant("Test Restaurant", "00005");
+
+        webTestClient.post().uri("/restaurants")
+                .bodyValue(Map.of("name", "  test   restaurant ", "zipcode", "00005"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Bad Request: Restaurant name must be unique for a given zipcode.");
+        // the same name is allowed in another zipcode.
+        createRestaurant("Test Restaurant", "00006");
+    }
+
+    @Test
+    public void Api_GetRestaurants_ReturnNextCursor() {
+        Restaurant first = createRestaurant("restaurant1", "00005");
+        Restaurant second = createRestaurant("restaurant2", "00005");
+        Restaurant third = createRestaurant("restaurant3", "00006");
+
+        String cursor = webTestClient.get().uri("/restaurants?size=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists("X-Next-Cursor")
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].id").isEqualTo(first.getId())
+                .jsonPath("$[1].id").isEqualTo(second.getId())
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst("X-Next-Cursor");
+
+        webTestClient.get().uri("/restaurants?size=2&after=" + cursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist("X-Next-Cursor")
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].id").isEqualTo(third.getId());
+    }
+
+    // WebTestClient asks for gzip itself and hides the encoding, so these requests go through a plain HTTP client.
+    @Test
+    public void Api_GetRestaurants_AcceptGzip_ReturnCompressedLargePages() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            createRestaurant("restaurant" + i, "00005");
+        }
+
+        HttpResponse<byte[]> page = getWithGzip("/restaurants?size=100");
+        Assertions.assertThat(page.statusCode()).isEqualTo(200);
+        Assertions.assertThat(page.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).hasValue("gzip");
+        try (GZIPInputStream body = new GZIPInputStream(new ByteArrayInputStream(page.body()))) {
+            Assertions.assertThat(new String(body.readAllBytes(), StandardCharsets.UTF_8)).contains("restaurant39");
+        }
+    }
+
+    @Test
+    public void Api_GetRestaurants_ReturnBadRequest() {
+        webTestClient.get().uri("/restaurants?size=0")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Invalid size. Size must be between 1 and 500.");
+        webTestClient.get().uri("/restaurants?after=!!")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Invalid cursor.");
+        webTestClient.get().uri("/restaurants/notAnId").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void Api_GetRestaurantByZipcodeCityState_ReturnRestaurantList() {
+        Restaurant fremont = createRestaurant("restaurant1", "00005");
+        Restaurant oakland = webTestClient.post().uri("/restaurants")
+                .bodyValue(Map.of("name", "restaurant2", "zipcode", "00006", "city", "Oakland", "state", "Nevada"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Restaurant.class)
+                .returnResult()
+                .getResponseBody();
+
+        webTestClient.get().uri("/restaurants/byzipcode/00005").exchange()
+                .expectBody().jsonPath("$[*].id").value(ids(fremont.getId()));
+        webTestClient.get().uri("/restaurants/bycity/Oakland").exchange()
+                .expectBody().jsonPath("$[*].id").value(ids(oakland.getId()));
+        webTestClient.get().uri("/restaurants/bystate/California").exchange()
+                .expectBody().jsonPath("$[*].id").value(ids(fremont.getId()));
+    }
+
+    @Test
+    public void Api_StreamRestaurantsByZipcode_ReturnJsonArrayAndNdjson() {
+        Restaurant first = createRestaurant("restaurant1", "00005");
+        Restaurant second = createRestaurant("restaurant2", "00005");
+        createRestaurant("restaurant3", "00006");
+
+        webTestClient.get().uri("/restaurants/byzipcode/00005?stream=json")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$[*].id").value(ids(first.getId(), second.getId()));
+
+        String ndjson = webTestClient.get().uri("/restaurants/byzipcode/00005?stream=ndjson")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        Assertions.assertThat(ndjson.split("\n"))
+                .hasSize(2)
+                .allSatisfy(line -> Assertions.assertThat(line).startsWith("{").endsWith("}"));
+
+        webTestClient.get().uri("/restaurants?stream=xml")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Invalid stream format. Stream must be json or ndjson.");
+    }
+
+    @Test
+    public void Api_UpdateRestaurant_ReturnRestaurant() {
+        Restaurant restaurant = createRestaurant("restaurant1", "00005");
+        createRestaurant("restaurant2", "00005");
+
+        webTestClient.put().uri("/restaurants/" + restaurant.getId())
+                .bodyValue(Map.of("peanutScore", 3, "eggScore", 4, "city", "Oakland"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("restaurant1")
+                .jsonPath("$.city").isEqualTo("Oakland")
+                .jsonPath("$.peanutScore").doesNotExist()
+                .jsonPath("$.eggScore").doesNotExist()
+                .jsonPath("$.version").doesNotExist();
+
+        webTestClient.put().uri("/restaurants/" + restaurant.getId())
+                .bodyValue(Map.of("name", "Restaurant2"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Bad Request: Restaurant name must be unique for a given zipcode.");
+        webTestClient.put().uri("/restaurants/" + (restaurant.getId() + 1000))
+                .bodyValue(Map.of("name", "restaurant3"))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void Api_DeleteRestaurant_ReturnNotFound() {
+        Restaurant restaurant = createRestaurant("restaurant1", "00005");
+
+        webTestClient.delete().uri("/restaurants/" + restaurant.getId()).exchange().expectStatus().isNoContent();
+        webTestClient.get().uri("/restaurants/" + restaurant.getId()).exchange().expectStatus().isNotFound();
+        webTestClient.delete().uri("/restaurants/" + restaurant.getId()).exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void Api_GetRestaurantByZipcodeAllergyDesc_ReturnBadRequest() {
+        webTestClient.get().uri("/restaurants/search?zipcode=123&allergy=peanut")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Invalid zipcode. Zipcode must be 5 digits.");
+        webTestClient.get().uri("/restaurants/search?zipcode=00005&allergy=gluten")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Invalid allergy. Allergy must be peanut, egg, or dairy.");
+        webTestClient.get().uri("/restaurants/search?zipcode=00005").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void Api_CreateReview_ReturnReview() {
+        createUser("testUser");
+        Restaurant restaurant = createRestaurant("restaurant1", "00005");
+
+        Review review = createReview("testUser", restaurant.getId(), 4);
+
+        Assertions.assertThat(review.getUserName()).isEqualTo("testUser");
+        Assertions.assertThat(review.getRestaurantName()).isEqualTo("restaurant1");
+        webTestClient.get().uri("/reviews/" + review.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.userName").isEqualTo("testUser")
+                .jsonPath("$.restaurantName").isEqualTo("restaurant1")
+                .jsonPath("$.restaurantId").isEqualTo(restaurant.getId())
+                .jsonPath("$.peanutScore").isEqualTo(4);
+        webTestClient.get().uri("/reviews/" + (review.getId() + 1000)).exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void Api_CreateReview_ReturnBadRequest() {
+        createUser("testUser");
+        Restaurant restaurant = createRestaurant("restaurant1", "00005");
+
+        webTestClient.post().uri("/reviews")
+                .bodyValue(Map.of("userName", "otherUser", "restaurantId", restaurant.getId()))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Bad Request: User not found.");
+        webTestClient.post().uri("/reviews")
+                .bodyValue(Map.of("userName", "testUser", "restaurantId", restaurant.getId() + 1000))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Bad Request: Restaurant was not found.");
+    }
+
+    @Test
+    public void Api_UpdateReviewStatus_AppliesScores() {
+        createUser("testUser");
+        Restaurant first = createRestaurant("restaurant1", "00005");
+        Restaurant second = createRestaurant("restaurant2", "00005");
+        Review firstReview = createReview("testUser", first.getId(), 2);
+        Review secondReview = createReview("testUser", first.getId(), 5);
+        Review thirdReview = createReview("testUser", second.getId(), 4);
+
+        for (Review review : List.of(firstReview, secondReview, thirdReview)) {
+            webTestClient.put().uri("/reviews/admin/" + review.getId())
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .bodyValue("accepted")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().jsonPath("$.status").isEqualTo("ACCEPTED");
+        }
+        awaitScoreUpdates();
+
+        webTestClient.get().uri("/restaurants/" + first.getId())
+                .exchange()
+                .expectBody()
+                .jsonPath("$.peanutScore").isEqualTo(3.5)
+                .jsonPath("$.overallScore").isEqualTo(1.17);
+        webTestClient.get().uri("/restaurants/search?zipcode=00005&allergy=peanut")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[*].id").value(ids(second.getId(), first.getId()));
+        webTestClient.get().uri("/restaurants/search?zipcode=00005&allergy=egg")
+                .exchange()
+                .expectBody().jsonPath("$.length()").isEqualTo(0);
+        webTestClient.get().uri("/reviews/restaurant/restaurant1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[*].id").value(ids(firstReview.getId(), secondReview.getId()))
+                .jsonPath("$[0].userName").isEqualTo("testUser")
+                .jsonPath("$[0].restaurantName").isEqualTo("restaurant1");
+        webTestClient.get().uri("/reviews/byrestaurant/" + second.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[*].id").value(ids(thirdReview.getId()));
+        webTestClient.put().uri("/reviews/admin/" + (thirdReview.getId() + 1000))
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("accepted")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("Review not found.");
+    }
+
+    // racing decisions on one review each read it before the others write it. Only one of them may apply its scores,
+    // and the rest are rejected with 409, so the restaurant always counts the review once if it ends up accepted.
+    @Test
+    public void Api_UpdateReviewStatus_ConcurrentDecisions_AppliesScoresOnce() throws Exception {
+        createUser("testUser");
+        Restaurant restaurant = createRestaurant("restaurant1", "00005");
+        Review kept = createReview("testUser", restaurant.getId(), 2);
+        Review contested = createReview("testUser", restaurant.getId(), 4);
+        webTestClient.put().uri("/reviews/admin/" + kept.getId())
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("accepted")
+                .exchange()
+                .expectStatus().isOk();
+
+        List<Callable<HttpStatusCode>> decisions = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            String status = i % 2 == 0 ? "accepted" : "rejected";
+            decisions.add(() -> webTestClient.put().uri("/reviews/admin/" + contested.getId())
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .bodyValue(status)
+                    .exchange()
+                    .returnResult(String.class)
+                    .getStatus());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (Future<HttpStatusCode> decision : executor.invokeAll(decisions)) {
+                Assertions.assertThat(decision.get()).isIn(HttpStatus.OK, HttpStatus.CONFLICT);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        awaitScoreUpdates();
+
+        Review decided = webTestClient.get().uri("/reviews/" + contested.getId())
+                .exchange()
+                .expectBody(Review.class)
+                .returnResult()
+                .getResponseBody();
+        double expectedScore = decided.getStatus() == Review.Status.ACCEPTED ? 3.0 : 2.0;
+        webTestClient.get().uri("/restaurants/" + restaurant.getId())
+                .exchange()
+                .expectBody().jsonPath("$.peanutScore").isEqualTo(expectedScore);
+    }
+
+    // a review whose restaurant was deleted can't be accepted, and stays as it was.
+    @Test
+    public void Api_UpdateReviewStatus_DeletedRestaurant_ReturnReviewUnchanged() {
+        createUser("testUser");
+        Restaurant restaurant = createRestaurant("restaurant1", "00005");
+        Review review = createReview("testUser", restaurant.getId(), 4);
+        webTestClient.delete().uri("/restaurants/" + restaurant.getId()).exchange().expectStatus().isNoContent();
+
+        webTestClient.put().uri("/reviews/admin/" + review.getId())
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("accepted")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR)
+                .expectBody(String.class).isEqualTo("An error occurred while updating restaurant scores.");
+
+        webTestClient.get().uri("/reviews/" + review.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.status").doesNotExist();
+    }
+
+    @Test
+    public void Api_UpdateReview_WithdrawsAcceptedScores() {
+        createUser("testUser");
+        Restaurant restaurant = createRestaurant("restaurant1", "00005");
+        Review review = createReview("testUser", restaurant.getId(), 4);
+        webTestClient.put().uri("/reviews/admin/" + review.getId())
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("accepted")
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.put().uri("/reviews/" + review.getId())
+                .bodyValue(Map.of("peanutScore", 1, "commentary", "Changed my mind."))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.peanutScore").isEqualTo(1)
+                .jsonPath("$.commentary").isEqualTo("Changed my mind.")
+                .jsonPath("$.status").isEqualTo("PENDING");
+        awaitScoreUpdates();
+
+        webTestClient.get().uri("/restaurants/" + restaurant.getId())
+                .exchange()
+                .expectBody()
+                .jsonPath("$.peanutScore").doesNotExist()
+                .jsonPath("$.overallScore").isEqualTo(0.0);
+        webTestClient.get().uri("/reviews/admin")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[*].id").value(ids(review.getId()));
+        webTestClient.get().uri("/reviews/byrestaurant/" + restaurant.getId()).exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void Api_UpdateReviewStatuses_ReturnResultPerDecision() {
+        createUser("testUser");
+        Restaurant restaurant = createRestaurant("restaurant1", "00005");
+        Review accepted = createReview("testUser", restaurant.getId(), 2);
+        Review rejected = createReview("testUser", restaurant.getId(), 5);
+        Long missingId = rejected.getId() + 1000;
+
+        webTestClient.put().uri("/reviews/admin")
+                .bodyValue(List.of(
+                        Map.of("reviewId", accepted.getId(), "status", "accepted"),
+                        Map.of("reviewId", rejected.getId(), "status", "rejected"),
+                        Map.of("reviewId", missingId, "status", "accepted")
+                ))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].reviewId").isEqualTo(accepted.getId())
+                .jsonPath("$[0].status").isEqualTo("ACCEPTED")
+                .jsonPath("$[1].status").isEqualTo("REJECTED")
+                .jsonPath("$[2].reviewId").isEqualTo(missingId)
+                .jsonPath("$[2].error").isEqualTo("Review not found.");
+        awaitScoreUpdates();
+
+        webTestClient.get().uri("/restaurants/" + restaurant.getId())
+                .exchange()
+                .expectBody().jsonPath("$.peanutScore").isEqualTo(2.0);
+        webTestClient.get().uri("/reviews/admin").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void Api_DeleteReview_WithdrawsAcceptedScores() {
+        createUser("testUser");
+        Restaurant restaurant = createRestaurant("restaurant1", "00005");
+        Review kept = createReview("testUser", restaurant.getId(), 2);
+        Review deleted = createReview("testUser", restaurant.getId(), 4);
+        webTestClient.put().uri("/reviews/admin")
+                .bodyValue(List.of(
+                        Map.of("reviewId", kept.getId(), "status", "accepted"),
+                        Map.of("reviewId", deleted.getId(), "status", "accepted")
+                ))
+                .exchange()
+                .expectStatus().isOk();
+        awaitScoreUpdates();
+
+        webTestClient.delete().uri("/reviews/" + deleted.getId()).exchange().expectStatus().isNoContent();
+        awaitScoreUpdates();
+
+        webTestClient.get().uri("/restaurants/" + restaurant.getId())
+                .exchange()
+                .expectBody().jsonPath("$.peanutScore").isEqualTo(2.0);
+        webTestClient.delete().uri("/reviews/" + deleted.getId())
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("Review not found.");
+    }
+
+    // deleting a restaurant keeps its reviews, with no restaurant, and they can still be edited and deleted.
+    @Test
+    public void Api_UpdateAndDeleteReview_DeletedRestaurant_ReturnReview() {
+        createUser("testUser");
+        Restaurant restaurant = createRestaurant("restaurant1", "00005");
+        Review edited = createReview("testUser", restaurant.getId(), 2);
+        Review deleted = createReview("testUser", restaurant.getId(), 4);
+        webTestClient.put().uri("/reviews/admin")
+                .bodyValue(List.of(
+                        Map.of("reviewId", edited.getId(), "status", "accepted"),
+                        Map.of("reviewId", deleted.getId(), "status", "accepted")
+                ))
+                .exchange()
+                .expectStatus().isOk();
+        awaitScoreUpdates();
+        webTestClient.delete().uri("/restaurants/" + restaurant.getId()).exchange().expectStatus().isNoContent();
+
+        webTestClient.put().uri("/reviews/" + edited.getId())
+                .bodyValue(Map.of("peanutScore", 5))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.peanutScore").isEqualTo(5)
+                .jsonPath("$.status").isEqualTo("PENDING");
+        webTestClient.delete().uri("/reviews/" + deleted.getId()).exchange().expectStatus().isNoContent();
+        webTestClient.get().uri("/reviews/" + deleted.getId()).exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void Api_GetReviewsByUserName_ReturnReviewList() {
+        createUser("testUser");
+        createUser("otherUser");
+        Restaurant restaurant = createRestaurant("restaurant1", "00005");
+        Review first = createReview("testUser", restaurant.getId(), 2);
+        createReview("otherUser", restaurant.getId(), 3);
+        Review second = createReview("testUser", restaurant.getId(), 4);
+
+        webTestClient.get().uri("/reviews/user/testUser")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[*].id").value(ids(first.getId(), second.getId()))
+                .jsonPath("$[1].userName").isEqualTo("testUser");
+
+        String ndjson = webTestClient.get().uri("/reviews/user/testUser?stream=ndjson")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        Assertions.assertThat(ndjson.split("\n")).hasSize(2);
+        Assertions.assertThat(ndjson).contains("\"restaurantName\":\"restaurant1\"");
+
+        webTestClient.get().uri("/reviews/user/noUser").exchange().expectStatus().isNotFound();
+        webTestClient.get().uri("/reviews/user/noUser?stream=json")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().json("[]");
+    }
+
+    protected User createUser(String userName) {
+        User user = User.builder()
+                .userName(userName)
+                .city("Fremont")
+                .state("California")
+                .zipcode("00005")
+                .peanutAllergy(true)
+                .build();
+        return webTestClient.post().uri("/user")
+                .bodyValue(user)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(User.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    protected Restaurant createRestaurant(String name, String zipcode) {
+        Restaurant restaurant = Restaurant.builder()
+                .name(name)
+                .city("Fremont")
+                .state("California")
+                .zipcode(zipcode)
+                .build();
+        return webTestClient.post().uri("/restaurants")
+                .bodyValue(restaurant)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBody(Restaurant.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    protected Review createReview(String userName, Long restaurantId, int peanutScore) {
+        return webTestClient.post().uri("/reviews")
+                .bodyValue(Map.of("userName", userName, "restaurantId", restaurantId, "peanutScore", peanutScore))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Review.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    protected HttpResponse<byte[]> getWithGzip(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .build();
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        }
+    }
+
+    // Checks the ids of the rows in a JSON array, in order.
+    private static Consumer<Object> ids(Long... expectedIds) {
+        return ids -> Assertions.assertThat(((List<?>) ids).stream().map(id -> ((Number) id).longValue()).toList())
+                .containsExactly(expectedIds);
+    }
+}
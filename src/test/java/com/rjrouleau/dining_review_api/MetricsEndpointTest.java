@@ -0,0 +1,54 @@
+package com.rjrouleau.dining_review_api;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Reads the actuator endpoints after a request, against the real repositories. Metrics export is off in tests unless
+// AutoConfigureObservability turns it on.
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+public class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void Prometheus_Scrape_ReturnEndpointRepositoryAndReviewMetrics() throws Exception {
+        mockMvc.perform(get("/reviews/{id}", 1L)).andExpect(status().isNotFound());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        Assertions.assertThat(scrape)
+                .containsPattern("http_server_requests_seconds_bucket\\{.*uri=\"/reviews/\\{id\\}\"")
+                .containsPattern("spring_data_repository_invocations_seconds_count\\{.*method=\"findById\""
+                        + ".*repository=\"ReviewRepository\"")
+                .containsPattern("reviews_status_transitions_total\\{from=\"PENDING\",to=\"ACCEPTED\"")
+                .containsPattern("(?m)^reviews_pending 0")
+                .contains("scores_update_seconds_count{reviews=\"1\"}");
+    }
+
+    @Test
+    public void Queries_Read_ReturnEndpointAndRepositoryStatistics() throws Exception {
+        mockMvc.perform(get("/reviews/{id}", 1L)).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/queries").param("top", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.endpoints[*].name").value(hasItem("GET /reviews/{id}")))
+                .andExpect(jsonPath("$.repositoryMethods[*].name").value(hasItem("ReviewRepository.findById")))
+                .andExpect(jsonPath("$.slowest").isArray())
+                .andExpect(jsonPath("$.mostFrequent").isArray());
+    }
+}
@@ -0,0 +1,90 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.rjrouleau.dining_review_api.AppUtils;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// Measures the helpers every restaurant and user update goes through: calculateOverallScore with all scores set and
+// with missing ones, and copying a user's fields with setIfNotNull, once from a full update and once from an update
+// that only sets one field. Run main() after mvn test-compile.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppUtilsBenchmark {
+    private Restaurant scoredRestaurant;
+    private Restaurant partlyScoredRestaurant;
+    private User user;
+    private User fullUpdate;
+    private User partialUpdate;
+
+    @Setup
+    public void setup() {
+        scoredRestaurant = Restaurant.builder().peanutScore(4.5f).eggScore(3.25f).dairyScore(2.f).build();
+        partlyScoredRestaurant = Restaurant.builder().peanutScore(4.5f).build();
+        user = User.builder().userName("user").city("Chicago").state("Illinois").zipcode("60601").build();
+        fullUpdate = User.builder()
+                .city("Fremont")
+                .state("California")
+                .zipcode("94536")
+                .peanutAllergy(true)
+                .eggAllergy(false)
+                .dairyAllergy(true)
+                .build();
+        partialUpdate = User.builder().zipcode("94536").build();
+    }
+
+    @Benchmark
+    public Float calculateOverallScore() {
+        return AppUtils.calculateOverallScore(scoredRestaurant);
+    }
+
+    @Benchmark
+    public Float calculateOverallScore_MissingScores() {
+        return AppUtils.calculateOverallScore(partlyScoredRestaurant);
+    }
+
+    @Benchmark
+    public User setIfNotNull_FullUpdate() {
+        return copyFields(fullUpdate, user);
+    }
+
+    @Benchmark
+    public User setIfNotNull_PartialUpdate() {
+        return copyFields(partialUpdate, user);
+    }
+
+    // the same copy UserController.updateUser makes.
+    private static User copyFields(User userDetails, User user) {
+        AppUtils.setIfNotNull(userDetails::getCity, user::setCity);
+        AppUtils.setIfNotNull(userDetails::getState, user::setState);
+        AppUtils.setIfNotNull(userDetails::getZipcode, user::setZipcode);
+        AppUtils.setIfNotNull(userDetails::getPeanutAllergy, user::setPeanutAllergy);
+        AppUtils.setIfNotNull(userDetails::getEggAllergy, user::setEggAllergy);
+        AppUtils.setIfNotNull(userDetails::getDairyAllergy, user::setDairyAllergy);
+        return user;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AppUtilsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
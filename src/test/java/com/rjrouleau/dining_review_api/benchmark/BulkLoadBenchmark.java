@@ -0,0 +1,81 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.rjrouleau.dining_review_api.DiningReviewApiApplication;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.service.BulkLoader;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Iterator;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+// Measures how many rows per second BulkLoader inserts into the application's H2 database. Rows are generated as they
+// are inserted, so the loader holds no more than one flush of entities, but the in-memory database keeps every row on
+// the heap, so give it room (-Xmx2g for the default). A warmup load of each entity is run first and not reported.
+// Run main() after mvn test-compile. The first argument is the number of rows of each entity to load, 500,000 by
+// default.
+public class BulkLoadBenchmark {
+    private static final int WARMUP_ROWS = 100_000;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DiningReviewApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN")
+                .run()) {
+            BulkLoader bulkLoader = context.getBean(BulkLoader.class);
+
+            load(bulkLoader, "warmup", WARMUP_ROWS, i -> restaurant(-1 - i));
+            load(bulkLoader, "warmup", WARMUP_ROWS, i -> user(-1 - i));
+            load(bulkLoader, "warmup", WARMUP_ROWS, BulkLoadBenchmark::review);
+            load(bulkLoader, "restaurants", rows, BulkLoadBenchmark::restaurant);
+            load(bulkLoader, "users", rows, BulkLoadBenchmark::user);
+            // reviews reference the first restaurant and user ids, which the sequences start at.
+            load(bulkLoader, "reviews", rows, BulkLoadBenchmark::review);
+        }
+    }
+
+    private static void load(BulkLoader bulkLoader, String label, int rows, IntFunction<Object> row) {
+        Iterator<Object> entities = IntStream.range(0, rows).mapToObj(row).iterator();
+        long startedAt = System.nanoTime();
+        long inserted = bulkLoader.insertAll(entities);
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        System.out.printf("%-12s %10d rows %8.2f s %10.0f rows/s%n", label, inserted, seconds, inserted / seconds);
+    }
+
+    private static Restaurant restaurant(int i) {
+        return Restaurant.builder()
+                .name("restaurant" + i)
+                .city("Chicago")
+                .state("Illinois")
+                .zipcode(String.format("%05d", Math.abs(i) % 1000))
+                .build();
+    }
+
+    private static User user(int i) {
+        return User.builder()
+                .userName("user" + i)
+                .city("Chicago")
+                .state("Illinois")
+                .zipcode(String.format("%05d", Math.abs(i) % 1000))
+                .peanutAllergy(i % 5 == 0)
+                .eggAllergy(i % 7 == 0)
+                .dairyAllergy(i % 3 == 0)
+                .build();
+    }
+
+    private static Review review(int i) {
+        return Review.builder()
+                .restaurantId(1L + i % 1000)
+                .userId(1L + i % 1000)
+                .peanutScore(1 + i % 5)
+                .dairyScore(1 + i % 3)
+                .commentary("Bulk loaded review " + i)
+                .status(Review.Status.ACCEPTED)
+                .build();
+    }
+}
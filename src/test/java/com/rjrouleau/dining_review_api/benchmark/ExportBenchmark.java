@@ -0,0 +1,155 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.rjrouleau.dining_review_api.DiningReviewApiApplication;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.service.BulkLoader;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+// Measures GET /reviews/export on a database of accepted reviews, as ndjson and csv, with and without gzip. Reports
+// rows per second, the bytes sent (compressed, for gzip), and the heap still in use halfway through the export above
+// the heap in use before it, so that memory held for the rows already written shows up. The database itself is on the
+// heap, so give it room (-Xmx2g for the default). Run main() after mvn test-compile. The first argument is the number
+// of reviews, 1,000,000 by default.
+public class ExportBenchmark {
+    private static final int RESTAURANTS = 1_000;
+    private static final int USERS = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int reviews = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DiningReviewApiApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN")
+                .run();
+             HttpClient httpClient = HttpClient.newHttpClient()) {
+            BulkLoader bulkLoader = context.getBean(BulkLoader.class);
+            bulkLoader.insertAll(IntStream.range(0, RESTAURANTS).mapToObj(ExportBenchmark::restaurant).iterator());
+            bulkLoader.insertAll(IntStream.range(0, USERS).mapToObj(ExportBenchmark::user).iterator());
+            bulkLoader.insertAll(IntStream.range(0, reviews).mapToObj(ExportBenchmark::review).iterator());
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+            // warmup, not reported.
+            export(httpClient, baseUrl + "/reviews/export?format=ndjson", false, reviews);
+            System.out.printf("%-14s %10s %10s %10s %10s %14s%n",
+                    "export", "rows", "seconds", "rows/s", "MB sent", "heap held MB");
+            for (String format : new String[]{"ndjson", "csv"}) {
+                for (boolean gzip : new boolean[]{false, true}) {
+                    Result result = export(httpClient, baseUrl + "/reviews/export?format=" + format, gzip, reviews);
+                    System.out.printf("%-14s %10d %10.2f %10.0f %10.1f %14.1f%n",
+                            format + (gzip ? " gzip" : ""), result.rows, result.seconds, result.rows / result.seconds,
+                            result.bytes / 1e6, result.heapHeld / 1e6);
+                }
+            }
+        }
+    }
+
+    // halfway through the body, garbage is collected and the heap still in use is compared to before the export.
+    private static Result export(HttpClient httpClient, String url, boolean gzip, long expectedRows) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        long heapHalfway = heapBefore;
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url));
+        if (gzip) {
+            request.header("Accept-Encoding", "gzip");
+        }
+        long startedAt = System.nanoTime();
+        HttpResponse<InputStream> response =
+                httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        long newlines = 0;
+        boolean measured = false;
+        CountingInputStream sent = new CountingInputStream(response.body());
+        try (InputStream body = gzip ? new GZIPInputStream(sent) : sent) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = body.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        newlines++;
+                    }
+                }
+                if (!measured && newlines >= expectedRows / 2) {
+                    measured = true;
+                    System.gc();
+                    heapHalfway = memory.getHeapMemoryUsage().getUsed();
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Export returned " + response.statusCode());
+        }
+        // a csv export starts with a header line.
+        long rows = url.contains("csv") ? newlines - 1 : newlines;
+        return new Result(rows, seconds, sent.count, heapHalfway - heapBefore);
+    }
+
+    // Counts the bytes read from the response before they are decompressed.
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    private record Result(long rows, double seconds, long bytes, long heapHeld) {
+    }
+
+    private static Restaurant restaurant(int i) {
+        return Restaurant.builder()
+                .name("restaurant" + i)
+                .city("Chicago")
+                .state("Illinois")
+                .zipcode(String.format("%05d", i % 100))
+                .build();
+    }
+
+    private static User user(int i) {
+        return User.builder().userName("user" + i).build();
+    }
+
+    // restaurant and user ids start at 1.
+    private static Review review(int i) {
+        return Review.builder()
+                .restaurantId(1L + i % RESTAURANTS)
+                .userId(1L + i % USERS)
+                .peanutScore(1 + i % 5)
+                .dairyScore(1 + i % 3)
+                .commentary("Exported review " + i)
+                .status(Review.Status.ACCEPTED)
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Writes listings of size restaurants and reviews with an ObjectMapper configured the way Spring MVC configures the
+// one its message converter uses. Run main() after mvn test-compile.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private final OutputStream out = OutputStream.nullOutputStream();
+    private List<Restaurant> restaurants;
+    private List<Review> reviews;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        restaurants = new ArrayList<>(size);
+        reviews = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            Restaurant restaurant = Restaurant.builder()
+                    .id(i)
+                    .name("restaurant" + i)
+                    .city("Chicago")
+                    .state("Illinois")
+                    .zipcode(String.format("%05d", i % 1000))
+                    .build();
+            Review review = Review.builder()
+                    .id(i)
+                    .restaurantId(i)
+                    .userId(i % 100)
+                    .restaurantName(restaurant.getName())
+                    .userName("user" + i % 100)
+                    .peanutScore(1 + random.nextInt(5))
+                    .eggScore(1 + random.nextInt(5))
+                    .dairyScore(1 + random.nextInt(5))
+                    .commentary("Good food, and they were careful with allergies.")
+                    .status(Review.Status.ACCEPTED)
+                    .build();
+            restaurant.applyReviewScores(review, 1);
+            restaurants.add(restaurant);
+            reviews.add(review);
+        }
+        // keep the shared null stream open between writes.
+        objectMapper = Jackson2ObjectMapperBuilder.json().build()
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Benchmark
+    public void restaurants() throws IOException {
+        objectMapper.writeValue(out, restaurants);
+    }
+
+    @Benchmark
+    public void reviews() throws IOException {
+        objectMapper.writeValue(out, reviews);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JsonSerializationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,360 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rjrouleau.dining_review_api.DiningReviewApiApplication;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.User;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Capacity test for one node. Starts the application on a random port with its embedded H2 database, seeds it with a
+// SyntheticDataset, and then drives the HTTP endpoints with a mix of reads, writes and moderation. Each client is a
+// virtual thread that picks an operation at random by weight, sends it, waits for the response and picks the next,
+// for the warmup and then the measurement window. Prints throughput, error rates and latency percentiles for each
+// operation and for the whole mix.
+//
+// Run main() after mvn test-compile. Every setting is a name=value argument, for example
+//   clients=200 duration=120 restaurants=20000 reviews=200000 read=60 write=30 moderation=10
+// See DEFAULTS for the names and default values. Client and server share the machine, so the numbers are a lower
+// bound on what the node would serve on its own.
+public class MixedWorkloadLoadTest {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    static {
+        DEFAULTS.put("restaurants", "5000");
+        DEFAULTS.put("users", "2000");
+        DEFAULTS.put("reviews", "50000");
+        DEFAULTS.put("zipcodes", "200");
+        DEFAULTS.put("clients", "100");
+        DEFAULTS.put("warmup", "10");
+        DEFAULTS.put("duration", "60");
+        // share of the mix for each group of operations. Operations within a group keep their relative weights.
+        DEFAULTS.put("read", "80");
+        DEFAULTS.put("write", "15");
+        DEFAULTS.put("moderation", "5");
+        DEFAULTS.put("virtual", "false");
+        DEFAULTS.put("seed", "42");
+    }
+
+    private enum Group { READ, WRITE, MODERATION }
+
+    private enum Operation {
+        GET_RESTAURANT(Group.READ, 25, "GET /restaurants/{id}"),
+        SEARCH(Group.READ, 20, "GET /restaurants/search"),
+        RESTAURANTS_BY_ZIPCODE(Group.READ, 10, "GET /restaurants/byzipcode/{zipcode}"),
+        REVIEWS_BY_RESTAURANT(Group.READ, 10, "GET /reviews/byrestaurant/{id}"),
+        GET_USER(Group.READ, 10, "GET /user/{userName}"),
+        REVIEWS_BY_USER(Group.READ, 5, "GET /reviews/user/{userName}"),
+        CREATE_REVIEW(Group.WRITE, 10, "POST /reviews"),
+        UPDATE_REVIEW(Group.WRITE, 2, "PUT /reviews/{id}"),
+        UPDATE_USER(Group.WRITE, 3, "PUT /user/{userName}"),
+        PENDING_REVIEWS(Group.MODERATION, 1, "GET /reviews/admin"),
+        MODERATE_REVIEW(Group.MODERATION, 4, "PUT /reviews/admin/{id}");
+
+        final Group group;
+        final int weight;
+        final String label;
+
+        Operation(Group group, int weight, String label) {
+            this.group = group;
+            this.weight = weight;
+            this.label = label;
+        }
+    }
+
+    private static final String[] ALLERGIES = {"peanut", "egg", "dairy"};
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final SyntheticDataset dataset;
+    private final String baseUrl;
+    private final double[] cumulativeWeights = new double[Operation.values().length];
+    // reviews waiting for moderation. Reviews created by the clients join the queue and moderators take from it.
+    private final ConcurrentLinkedQueue<Long> pendingReviewIds;
+
+    private MixedWorkloadLoadTest(SyntheticDataset dataset, String baseUrl, Map<Group, Double> groupShares) {
+        this.dataset = dataset;
+        this.baseUrl = baseUrl;
+        this.pendingReviewIds = new ConcurrentLinkedQueue<>(dataset.getPendingReviewIds());
+
+        Map<Group, Integer> groupWeights = new EnumMap<>(Group.class);
+        for (Operation operation : Operation.values()) {
+            groupWeights.merge(operation.group, operation.weight, Integer::sum);
+        }
+        double total = 0;
+        for (Operation operation : Operation.values()) {
+            total += groupShares.get(operation.group) * operation.weight / groupWeights.get(operation.group);
+            cumulativeWeights[operation.ordinal()] = total;
+        }
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            cumulativeWeights[i] /= total;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> settings = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2 || !DEFAULTS.containsKey(pair[0])) {
+                throw new IllegalArgumentException("Unknown setting " + arg + ". Settings: " + DEFAULTS.keySet());
+            }
+            settings.put(pair[0], pair[1]);
+        }
+        System.out.println("Settings: " + settings);
+
+        Map<Group, Double> groupShares = new EnumMap<>(Group.class);
+        groupShares.put(Group.READ, Double.parseDouble(settings.get("read")));
+        groupShares.put(Group.WRITE, Double.parseDouble(settings.get("write")));
+        groupShares.put(Group.MODERATION, Double.parseDouble(settings.get("moderation")));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DiningReviewApiApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + settings.get("virtual"),
+                        "logging.level.root=WARN"
+                )
+                .run()) {
+            long seedStart = System.nanoTime();
+            SyntheticDataset dataset = new SyntheticDataset(
+                    Integer.parseInt(settings.get("zipcodes")), Long.parseLong(settings.get("seed")));
+            dataset.seed(context,
+                    Integer.parseInt(settings.get("restaurants")),
+                    Integer.parseInt(settings.get("users")),
+                    Integer.parseInt(settings.get("reviews")));
+            System.out.printf("Seeded in %.1f s%n", (System.nanoTime() - seedStart) / 1e9);
+
+            MixedWorkloadLoadTest loadTest = new MixedWorkloadLoadTest(
+                    dataset,
+                    "http://localhost:" + context.getEnvironment().getProperty("local.server.port"),
+                    groupShares);
+            Duration measurement = Duration.ofSeconds(Long.parseLong(settings.get("duration")));
+            Map<Operation, Stats> results = loadTest.run(
+                    Integer.parseInt(settings.get("clients")),
+                    Duration.ofSeconds(Long.parseLong(settings.get("warmup"))),
+                    measurement,
+                    Long.parseLong(settings.get("seed")));
+            print(results, measurement);
+        }
+    }
+
+    // Runs the clients for the warmup and then the measurement window, and returns the stats of the requests that
+    // started and finished inside the measurement window.
+    private Map<Operation, Stats> run(int clients, Duration warmup, Duration measurement, long seed)
+            throws InterruptedException {
+        List<Map<Operation, Stats>> clientStats = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(clients);
+
+        try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(clientThreads)
+                     .build()) {
+            long measureFrom = System.nanoTime() + warmup.toNanos();
+            long measureTo = measureFrom + measurement.toNanos();
+            for (int i = 0; i < clients; i++) {
+                Random random = new Random(seed + i);
+                Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+                for (Operation operation : Operation.values()) {
+                    stats.put(operation, new Stats());
+                }
+                clientStats.add(stats);
+                clientThreads.execute(() -> {
+                    try {
+                        while (System.nanoTime() < measureTo) {
+                            Operation operation = nextOperation(random);
+                            long sentAt = System.nanoTime();
+                            int status = send(httpClient, operation, random);
+                            long receivedAt = System.nanoTime();
+                            if (sentAt >= measureFrom && receivedAt <= measureTo) {
+                                stats.get(operation).record(status, receivedAt - sentAt);
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        }
+
+        Map<Operation, Stats> merged = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            Stats total = new Stats();
+            clientStats.forEach(stats -> total.add(stats.get(operation)));
+            merged.put(operation, total);
+        }
+        return merged;
+    }
+
+    private Operation nextOperation(Random random) {
+        int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble());
+        return Operation.values()[Math.min(index >= 0 ? index : -index - 1, cumulativeWeights.length - 1)];
+    }
+
+    // Sends one request for the operation and returns its status code, or 0 if it failed without a response.
+    private int send(HttpClient httpClient, Operation operation, Random random) {
+        try {
+            HttpRequest request = request(operation, random);
+            if (operation == Operation.CREATE_REVIEW) {
+                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 201) {
+                    pendingReviewIds.add(objectMapper.readTree(response.body()).get("id").asLong());
+                }
+                return response.statusCode();
+            }
+            return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private HttpRequest request(Operation operation, Random random) throws Exception {
+        return switch (operation) {
+            case GET_RESTAURANT -> get("/restaurants/" + dataset.randomRestaurant(random).getId());
+            case SEARCH -> get("/restaurants/search?zipcode=" + dataset.randomZipcode(random)
+                    + "&allergy=" + ALLERGIES[random.nextInt(ALLERGIES.length)]);
+            case RESTAURANTS_BY_ZIPCODE -> get("/restaurants/byzipcode/" + dataset.randomZipcode(random) + "?size=20");
+            case REVIEWS_BY_RESTAURANT -> get("/reviews/byrestaurant/" + dataset.randomRestaurant(random).getId());
+            case GET_USER -> get("/user/" + encode(dataset.randomUser(random).getUserName()));
+            case REVIEWS_BY_USER -> get("/reviews/user/" + encode(dataset.randomUser(random).getUserName()));
+            case CREATE_REVIEW -> {
+                User user = dataset.randomUser(random);
+                Restaurant restaurant = dataset.randomRestaurant(random);
+                Review review = dataset.newReview(user, restaurant, null, random);
+                review.setUserId(null);
+                review.setUserName(user.getUserName());
+                yield send("POST", "/reviews", "application/json", objectMapper.writeValueAsString(review));
+            }
+            case UPDATE_REVIEW -> send("PUT", "/reviews/" + anyPendingReviewId(random), "application/json",
+                    "{\"commentary\":\"Edited review " + random.nextInt(1_000_000) + "\"}");
+            case UPDATE_USER -> send("PUT", "/user/" + encode(dataset.randomUser(random).getUserName()),
+                    "application/json", "{\"zipcode\":\"" + dataset.randomZipcode(random) + "\"}");
+            case PENDING_REVIEWS -> get("/reviews/admin");
+            case MODERATE_REVIEW -> {
+                Long reviewId = pendingReviewIds.poll();
+                yield send("PUT", "/reviews/admin/" + (reviewId != null ? reviewId : anyPendingReviewId(random)),
+                        "text/plain", random.nextInt(4) > 0 ? "accepted" : "rejected");
+            }
+        };
+    }
+
+    // A review that was pending when the dataset was seeded. It may have been moderated since.
+    private Long anyPendingReviewId(Random random) {
+        List<Long> seeded = dataset.getPendingReviewIds();
+        return seeded.isEmpty() ? 0L : seeded.get(random.nextInt(seeded.size()));
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(60)).GET().build();
+    }
+
+    private HttpRequest send(String method, String path, String contentType, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", contentType)
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void print(Map<Operation, Stats> results, Duration measurement) {
+        String format = "%-38s %9s %9s %8s %8s %9s %9s %9s %9s%n";
+        System.out.println();
+        System.out.printf(format, "operation", "requests", "req/s", "5xx %", "4xx %",
+                "p50 ms", "p90 ms", "p99 ms", "max ms");
+        Stats total = new Stats();
+        for (Operation operation : Operation.values()) {
+            Stats stats = results.get(operation);
+            total.add(stats);
+            printRow(format, operation.label, stats, measurement);
+        }
+        printRow(format, "all", total, measurement);
+    }
+
+    private static void printRow(String format, String label, Stats stats, Duration measurement) {
+        long[] sorted = stats.sortedLatencies();
+        System.out.printf(format,
+                label,
+                stats.count,
+                String.format("%.0f", stats.count / (double) measurement.toSeconds()),
+                percent(stats.serverErrors, stats.count),
+                percent(stats.clientErrors, stats.count),
+                percentileMs(sorted, 0.50),
+                percentileMs(sorted, 0.90),
+                percentileMs(sorted, 0.99),
+                percentileMs(sorted, 1.0));
+    }
+
+    private static String percent(long part, long whole) {
+        return whole > 0 ? String.format("%.2f", 100. * part / whole) : "-";
+    }
+
+    private static String percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return "-";
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return String.format("%.1f", sorted[Math.max(index, 0)] / 1e6);
+    }
+
+    // Latencies and outcomes of one operation. Each client records into its own Stats, which are added up at the end.
+    // A request that failed without a response, such as a timeout, counts as a server error.
+    private static class Stats {
+        private long[] latencies = new long[64];
+        private int count;
+        private long clientErrors;
+        private long serverErrors;
+
+        void record(int status, long latencyNanos) {
+            if (status >= 400 && status < 500) {
+                clientErrors++;
+            } else if (status >= 500 || status == 0) {
+                serverErrors++;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+
+        void add(Stats other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            clientErrors += other.clientErrors;
+            serverErrors += other.serverErrors;
+        }
+
+        long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rjrouleau.dining_review_api.model.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Writes a page of size reviews in each response format, with and without the gzip compression Tomcat applies, using
+// mappers configured the way the message converters are. main() first prints the bytes each format puts on the wire,
+// then runs the benchmarks for the CPU time. Run main() after mvn test-compile.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseFormatBenchmark {
+    private static final String[] FORMATS = {"json", "cbor", "smile"};
+    private static final int[] SIZES = {50, 500};
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param({"50", "500"})
+    private int size;
+
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    private final OutputStream out = OutputStream.nullOutputStream();
+    private List<Review> reviews;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() {
+        reviews = reviews(size);
+        objectMapper = objectMapper(format);
+    }
+
+    @Benchmark
+    public void reviews() throws IOException {
+        if (gzip) {
+            // closes the gzip stream to write its trailer, but not the shared null stream.
+            try (GZIPOutputStream compressed = new GZIPOutputStream(OutputStream.nullOutputStream())) {
+                objectMapper.writeValue(compressed, reviews);
+            }
+        } else {
+            objectMapper.writeValue(out, reviews);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        System.out.printf("%-8s %6s %12s %12s%n", "format", "size", "bytes", "gzip bytes");
+        for (int size : SIZES) {
+            List<Review> reviews = reviews(size);
+            for (String format : FORMATS) {
+                byte[] body = objectMapper(format).writeValueAsBytes(reviews);
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                    gzip.write(body);
+                }
+                System.out.printf("%-8s %6d %12d %12d%n", format, size, body.length, compressed.size());
+            }
+        }
+        new Runner(new OptionsBuilder()
+                .include(ResponseFormatBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    // spring.jackson.default-property-inclusion=non-null is set in application.properties.
+    private static ObjectMapper objectMapper(String format) {
+        Jackson2ObjectMapperBuilder builder = switch (format) {
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile();
+            default -> Jackson2ObjectMapperBuilder.json();
+        };
+        return builder.serializationInclusion(JsonInclude.Include.NON_NULL).build()
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private static List<Review> reviews(int size) {
+        Random random = new Random(42);
+        List<Review> reviews = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            reviews.add(Review.builder()
+                    .id(i)
+                    .restaurantId(i % 50 + 1)
+                    .userId(i % 100)
+                    .restaurantName("restaurant" + (i % 50 + 1))
+                    .userName("user" + i % 100)
+                    .peanutScore(1 + random.nextInt(5))
+                    .eggScore(1 + random.nextInt(5))
+                    .dairyScore(1 + random.nextInt(5))
+                    .commentary("Good food, and they were careful with allergies.")
+                    .status(Review.Status.ACCEPTED)
+                    .build());
+        }
+        return reviews;
+    }
+}
@@ -0,0 +1,106 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares writing a 100k restaurant listing with ScoreSerializer against the old path, which copied every restaurant
+// and rounded each score with String.format and Float.parseFloat before serializing. Run main() after
+// mvn test-compile, or add -prof gc to the options to compare allocation per operation.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoreSerializationBenchmark {
+    private static final int RESTAURANT_COUNT = 100_000;
+
+    private final OutputStream out = OutputStream.nullOutputStream();
+    private List<Restaurant> restaurants;
+    private ObjectMapper objectMapper;
+    private ObjectMapper plainScoreMapper;
+
+    // turns ScoreSerializer off so the old path writes scores as plain floats, like it used to.
+    private abstract static class PlainScores {
+        @JsonSerialize(using = JsonSerializer.None.class)
+        private Float overallScore;
+        @JsonSerialize(using = JsonSerializer.None.class)
+        private Float peanutScore;
+        @JsonSerialize(using = JsonSerializer.None.class)
+        private Float eggScore;
+        @JsonSerialize(using = JsonSerializer.None.class)
+        private Float dairyScore;
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        restaurants = new ArrayList<>(RESTAURANT_COUNT);
+        for (long i = 1; i <= RESTAURANT_COUNT; i++) {
+            Restaurant restaurant = Restaurant.builder()
+                    .id(i)
+                    .peanutScore(1 + random.nextFloat() * 4)
+                    .eggScore(1 + random.nextFloat() * 4)
+                    .dairyScore(1 + random.nextFloat() * 4)
+                    .name("restaurant" + i)
+                    .city("Chicago")
+                    .state("Illinois")
+                    .zipcode(String.format("%05d", i % 1000))
+                    .build();
+            restaurant.setOverallScore(
+                    (restaurant.getPeanutScore() + restaurant.getEggScore() + restaurant.getDairyScore()) / 3.f);
+            restaurants.add(restaurant);
+        }
+        // keep the shared null stream open between writes.
+        objectMapper = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        plainScoreMapper = objectMapper.copy().addMixIn(Restaurant.class, PlainScores.class);
+    }
+
+    @Benchmark
+    public void scoreSerializer() throws IOException {
+        objectMapper.writeValue(out, restaurants);
+    }
+
+    @Benchmark
+    public void formatParseAndCopy() throws IOException {
+        List<Restaurant> adjusted = new ArrayList<>(restaurants.size());
+        for (Restaurant restaurant : restaurants) {
+            adjusted.add(restaurant.toBuilder()
+                    .overallScore(Float.parseFloat(String.format("%.2f", restaurant.getOverallScore())))
+                    .peanutScore(Float.parseFloat(String.format("%.2f", restaurant.getPeanutScore())))
+                    .eggScore(Float.parseFloat(String.format("%.2f", restaurant.getEggScore())))
+                    .dairyScore(Float.parseFloat(String.format("%.2f", restaurant.getDairyScore())))
+                    .build());
+        }
+        plainScoreMapper.writeValue(out, adjusted);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ScoreSerializationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,112 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.ReviewScores;
+import com.rjrouleau.dining_review_api.model.ScoreDelta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Applies reviewCount accepted reviews to one restaurant's scores, the work ReviewController.updateRestaurantScores
+// hands to ScoreUpdateQueue. applyEachReview applies every review on its own, mergeThenApply merges them into one
+// delta first like a flush window does, and rebuildFromScores recomputes the scores from the reviews' projections like
+// ScoreRebuildJob does. Run main() after mvn test-compile.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoringBenchmark {
+    @Param({"10", "1000", "100000"})
+    private int reviewCount;
+
+    private List<Review> reviews;
+    private List<ReviewScores> scores;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        reviews = new ArrayList<>(reviewCount);
+        scores = new ArrayList<>(reviewCount);
+        for (long i = 1; i <= reviewCount; i++) {
+            // about one in four reviews leaves out each score, like reviewers who only rate some allergies.
+            Integer peanutScore = random.nextInt(4) > 0 ? 1 + random.nextInt(5) : null;
+            Integer eggScore = random.nextInt(4) > 0 ? 1 + random.nextInt(5) : null;
+            Integer dairyScore = random.nextInt(4) > 0 ? 1 + random.nextInt(5) : null;
+            reviews.add(Review.builder()
+                    .id(i)
+                    .restaurantId(1L)
+                    .peanutScore(peanutScore)
+                    .eggScore(eggScore)
+                    .dairyScore(dairyScore)
+                    .status(Review.Status.ACCEPTED)
+                    .build());
+            scores.add(new ReviewScores(1L, peanutScore, eggScore, dairyScore));
+        }
+    }
+
+    @Benchmark
+    public Restaurant applyEachReview() {
+        Restaurant restaurant = newRestaurant();
+        for (Review review : reviews) {
+            restaurant.applyReviewScores(review, 1);
+        }
+        return restaurant;
+    }
+
+    @Benchmark
+    public Restaurant mergeThenApply() {
+        ScoreDelta merged = new ScoreDelta();
+        for (Review review : reviews) {
+            merged.merge(ScoreDelta.of(review, 1));
+        }
+        Restaurant restaurant = newRestaurant();
+        restaurant.applyScoreDelta(merged);
+        return restaurant;
+    }
+
+    @Benchmark
+    public Restaurant rebuildFromScores() {
+        ScoreDelta totals = new ScoreDelta();
+        for (ReviewScores reviewScores : scores) {
+            totals.add(reviewScores);
+        }
+        Restaurant restaurant = newRestaurant();
+        restaurant.setScoreAggregates(totals);
+        return restaurant;
+    }
+
+    private static Restaurant newRestaurant() {
+        return Restaurant.builder()
+                .id(1L)
+                .name("restaurant")
+                .city("Chicago")
+                .state("Illinois")
+                .zipcode("60601")
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ScoringBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.rjrouleau.dining_review_api.DiningReviewApiApplication;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import com.rjrouleau.dining_review_api.service.RestaurantLeaderboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Measures the search endpoint's data path against the application's H2 database, seeded with RESTAURANT_COUNT
+// restaurants over ZIPCODE_COUNT zipcodes. leaderboard is a search once the zipcode is loaded, leaderboardLoad is the
+// first search in a zipcode, which reads it from the repository and sorts it, and repositoryQuery is the ordered
+// query search used to run on every request. Run main() after mvn test-compile.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int RESTAURANT_COUNT = 20_000;
+    private static final int ZIPCODE_COUNT = 100;
+    private static final String ZIPCODE = String.format("%05d", 1);
+
+    private ConfigurableApplicationContext context;
+    private RestaurantRepository restaurantRepository;
+    private RestaurantLeaderboard restaurantLeaderboard;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(DiningReviewApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN")
+                .run();
+        restaurantRepository = context.getBean(RestaurantRepository.class);
+        restaurantLeaderboard = context.getBean(RestaurantLeaderboard.class);
+
+        Random random = new Random(42);
+        List<Restaurant> restaurants = new ArrayList<>(RESTAURANT_COUNT);
+        for (int i = 0; i < RESTAURANT_COUNT; i++) {
+            restaurants.add(Restaurant.builder()
+                    .name("restaurant" + i)
+                    .city("Chicago")
+                    .state("Illinois")
+                    .zipcode(String.format("%05d", i % ZIPCODE_COUNT))
+                    .peanutScore(1 + random.nextFloat() * 4)
+                    .eggScore(1 + random.nextFloat() * 4)
+                    .dairyScore(1 + random.nextFloat() * 4)
+                    .build());
+        }
+        restaurantRepository.saveAll(restaurants);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Restaurant> leaderboard() {
+        return restaurantLeaderboard.search(ZIPCODE, RestaurantLeaderboard.Allergy.PEANUT);
+    }
+
+    @Benchmark
+    public List<Restaurant> leaderboardLoad() {
+        restaurantLeaderboard.clear();
+        return restaurantLeaderboard.search(ZIPCODE, RestaurantLeaderboard.Allergy.PEANUT);
+    }
+
+    @Benchmark
+    public List<Restaurant> repositoryQuery() {
+        return restaurantRepository.findByZipcodeAndPeanutScoreGreaterThanOrderByPeanutScoreDesc(ZIPCODE, 0.f);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SearchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,182 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.service.BulkLoader;
+import com.rjrouleau.dining_review_api.service.ScoreRebuildJob;
+import org.springframework.context.ApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Generates a dataset shaped like real traffic and inserts it with BulkLoader. Restaurants and users are spread
+// over the zipcodes with a Zipf distribution, so a few dense zipcodes hold most of them. Reviews are skewed the same
+// way: a few popular restaurants and a few active users account for most reviews. Users have independent peanut, egg
+// and dairy allergies, and only score the allergies they have. Most reviews are accepted, and the restaurant scores
+// are rebuilt from them after seeding. Everything is derived from the seed, so two runs with the same sizes see the
+// same data.
+public class SyntheticDataset {
+    private static final String[] STATES = {"California", "Illinois", "New York", "Texas", "Washington"};
+    // the chance of each score from 1 to 5. Reviewers mostly rate restaurants they liked.
+    private static final double[] SCORE_WEIGHTS = {0.05, 0.10, 0.20, 0.35, 0.30};
+    private static final double PEANUT_ALLERGY_RATE = 0.2;
+    private static final double EGG_ALLERGY_RATE = 0.15;
+    private static final double DAIRY_ALLERGY_RATE = 0.3;
+    private static final double ACCEPTED_RATE = 0.7;
+    private static final double REJECTED_RATE = 0.1;
+    private static final int BATCH_SIZE = 5_000;
+
+    private final Random random;
+    private final List<String> zipcodes = new ArrayList<>();
+    private final List<Restaurant> restaurants = new ArrayList<>();
+    private final List<User> users = new ArrayList<>();
+    private final List<Long> pendingReviewIds = new ArrayList<>();
+    private final Zipf zipcodePopularity;
+    private Zipf restaurantPopularity;
+    private Zipf userActivity;
+
+    public SyntheticDataset(int zipcodeCount, long seed) {
+        this.random = new Random(seed);
+        for (int i = 0; i < zipcodeCount; i++) {
+            zipcodes.add(String.format("%05d", 10_000 + i * 7));
+        }
+        zipcodePopularity = new Zipf(zipcodeCount, 1.0);
+    }
+
+    // Inserts restaurantCount restaurants, userCount users and reviewCount reviews, then rebuilds the restaurant scores.
+    public void seed(ApplicationContext context, int restaurantCount, int userCount, int reviewCount) {
+        BulkLoader bulkLoader = context.getBean(BulkLoader.class);
+
+        for (int i = 0; i < restaurantCount; i++) {
+            int zipcodeIndex = zipcodePopularity.sample(random);
+            restaurants.add(Restaurant.builder()
+                    .name("restaurant" + i)
+                    .city(city(zipcodeIndex))
+                    .state(state(zipcodeIndex))
+                    .zipcode(zipcodes.get(zipcodeIndex))
+                    .build());
+        }
+        bulkLoader.insertAll(restaurants);
+
+        for (int i = 0; i < userCount; i++) {
+            int zipcodeIndex = zipcodePopularity.sample(random);
+            users.add(User.builder()
+                    .userName("user" + i)
+                    .city(city(zipcodeIndex))
+                    .state(state(zipcodeIndex))
+                    .zipcode(zipcodes.get(zipcodeIndex))
+                    .peanutAllergy(random.nextDouble() < PEANUT_ALLERGY_RATE)
+                    .eggAllergy(random.nextDouble() < EGG_ALLERGY_RATE)
+                    .dairyAllergy(random.nextDouble() < DAIRY_ALLERGY_RATE)
+                    .build());
+        }
+        bulkLoader.insertAll(users);
+
+        // shuffled so that popularity doesn't follow insertion order, and ids say nothing about how popular a row is.
+        Collections.shuffle(restaurants, random);
+        Collections.shuffle(users, random);
+        restaurantPopularity = new Zipf(restaurants.size(), 1.0);
+        userActivity = new Zipf(users.size(), 1.1);
+
+        List<Review> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < reviewCount; i++) {
+            batch.add(newReview(randomUser(random), randomRestaurant(random), randomStatus(), random));
+            if (batch.size() == BATCH_SIZE || i == reviewCount - 1) {
+                bulkLoader.insertAll(batch);
+                for (Review saved : batch) {
+                    if (saved.getStatus() == Review.Status.PENDING) {
+                        pendingReviewIds.add(saved.getId());
+                    }
+                }
+                batch.clear();
+            }
+        }
+
+        context.getBean(ScoreRebuildJob.class).rebuild();
+    }
+
+    // The methods below may be called from many client threads, each with its own Random.
+
+    // A review by the user of the restaurant, scoring only the user's allergies. Its ids are set but not its names.
+    public Review newReview(User user, Restaurant restaurant, Review.Status status, Random random) {
+        return Review.builder()
+                .restaurantId(restaurant.getId())
+                .userId(user.getId())
+                .peanutScore(Boolean.TRUE.equals(user.getPeanutAllergy()) ? randomScore(random) : null)
+                .eggScore(Boolean.TRUE.equals(user.getEggAllergy()) ? randomScore(random) : null)
+                .dairyScore(Boolean.TRUE.equals(user.getDairyAllergy()) ? randomScore(random) : null)
+                .commentary("Synthetic review from " + user.getUserName())
+                .status(status)
+                .build();
+    }
+
+    public Restaurant randomRestaurant(Random random) {
+        return restaurants.get(restaurantPopularity.sample(random));
+    }
+
+    public User randomUser(Random random) {
+        return users.get(userActivity.sample(random));
+    }
+
+    public String randomZipcode(Random random) {
+        return zipcodes.get(zipcodePopularity.sample(random));
+    }
+
+    public List<Long> getPendingReviewIds() {
+        return Collections.unmodifiableList(pendingReviewIds);
+    }
+
+    private Review.Status randomStatus() {
+        double value = random.nextDouble();
+        if (value < ACCEPTED_RATE) {
+            return Review.Status.ACCEPTED;
+        }
+        return value < ACCEPTED_RATE + REJECTED_RATE ? Review.Status.REJECTED : Review.Status.PENDING;
+    }
+
+    private static int randomScore(Random random) {
+        double value = random.nextDouble();
+        for (int i = 0; i < SCORE_WEIGHTS.length; i++) {
+            value -= SCORE_WEIGHTS[i];
+            if (value < 0) {
+                return i + 1;
+            }
+        }
+        return SCORE_WEIGHTS.length;
+    }
+
+    // ten zipcodes to a city, and each city in one state.
+    private static String city(int zipcodeIndex) {
+        return "City" + zipcodeIndex / 10;
+    }
+
+    private static String state(int zipcodeIndex) {
+        return STATES[(zipcodeIndex / 10) % STATES.length];
+    }
+
+    // Samples ranks from 0 to n - 1 where rank k is drawn with probability proportional to 1 / (k + 1)^exponent.
+    static class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double exponent) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int k = 0; k < n; k++) {
+                total += 1 / Math.pow(k + 1, exponent);
+                cumulative[k] = total;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= total;
+            }
+        }
+
+        int sample(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+}
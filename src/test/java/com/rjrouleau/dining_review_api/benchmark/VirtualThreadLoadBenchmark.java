@@ -0,0 +1,172 @@
+package com.rjrouleau.dining_review_api.benchmark;
+
+import com.rjrouleau.dining_review_api.DiningReviewApiApplication;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compares the servlet container on platform threads (Tomcat's pool of server.tomcat.threads.max threads) with
+// virtual threads (spring.threads.virtual.enabled) under 100, 1,000 and 10,000 concurrent clients. Each client is a
+// virtual thread that sends one request, waits for the response and sends the next, so throughput is limited by how
+// many requests the server handles at once. Prints requests per second and p50/p99 latency per run.
+//
+// Run main() after mvn test-compile. The first argument is the path to request, by default a keyset page of
+// restaurants by zipcode, which queries the database on every request. Client and server share the machine, so compare
+// the two modes with each other rather than with production numbers.
+public class VirtualThreadLoadBenchmark {
+    private static final int[] CLIENT_COUNTS = {100, 1_000, 10_000};
+    // long enough that, at 10,000 clients, requests finish inside the window even when each one queues for seconds.
+    private static final Duration WARMUP = Duration.ofSeconds(10);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(30);
+    private static final int RESTAURANT_COUNT = 5_000;
+    private static final int ZIPCODE_COUNT = 100;
+
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "/restaurants/byzipcode/00001?size=20";
+        List<String> rows = new ArrayList<>();
+        rows.add(String.format("%-9s %8s %10s %10s %10s %10s %8s",
+                "mode", "clients", "requests", "req/s", "p50 ms", "p99 ms", "errors"));
+
+        for (boolean virtualThreads : new boolean[] {false, true}) {
+            try (ConfigurableApplicationContext context = start(virtualThreads)) {
+                seed(context.getBean(RestaurantRepository.class));
+                URI uri = URI.create("http://localhost:"
+                        + context.getEnvironment().getProperty("local.server.port") + path);
+                // warms up the JIT and the connection pools before anything is measured.
+                run(uri, CLIENT_COUNTS[0], WARMUP, Duration.ZERO);
+                for (int clients : CLIENT_COUNTS) {
+                    Result result = run(uri, clients, WARMUP, MEASUREMENT);
+                    rows.add(String.format("%-9s %8d %10d %10.0f %10.1f %10.1f %8d",
+                            virtualThreads ? "virtual" : "platform",
+                            clients,
+                            result.requests(),
+                            result.requests() / (double) MEASUREMENT.toSeconds(),
+                            result.percentileMs(0.50),
+                            result.percentileMs(0.99),
+                            result.errors()));
+                    System.out.println(rows.get(rows.size() - 1));
+                }
+            }
+        }
+        System.out.println();
+        rows.forEach(System.out::println);
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtualThreads) {
+        return new SpringApplicationBuilder(DiningReviewApiApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "logging.level.root=WARN"
+                )
+                .run();
+    }
+
+    private static void seed(RestaurantRepository restaurantRepository) {
+        List<Restaurant> restaurants = new ArrayList<>(RESTAURANT_COUNT);
+        for (int i = 0; i < RESTAURANT_COUNT; i++) {
+            restaurants.add(Restaurant.builder()
+                    .name("restaurant" + i)
+                    .city("Chicago")
+                    .state("Illinois")
+                    .zipcode(String.format("%05d", i % ZIPCODE_COUNT))
+                    .peanutScore(1 + i % 5f)
+                    .build());
+        }
+        restaurantRepository.saveAll(restaurants);
+    }
+
+    // Runs the clients for the warmup and then the measurement window, recording the latency of every request that
+    // starts and finishes inside the measurement window.
+    static Result run(URI uri, int clients, Duration warmup, Duration measurement)
+            throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+
+        try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(clientThreads)
+                     .build()) {
+            long measureFrom = System.nanoTime() + warmup.toNanos();
+            long measureTo = measureFrom + measurement.toNanos();
+            for (int i = 0; i < clients; i++) {
+                int client = i;
+                clientThreads.execute(() -> {
+                    long[] recorded = new long[256];
+                    int count = 0;
+                    try {
+                        while (System.nanoTime() < measureTo) {
+                            long sentAt = System.nanoTime();
+                            boolean ok;
+                            try {
+                                ok = httpClient.send(request, HttpResponse.BodyHandlers.discarding())
+                                        .statusCode() == 200;
+                            } catch (Exception e) {
+                                ok = false;
+                            }
+                            long receivedAt = System.nanoTime();
+                            if (sentAt < measureFrom || receivedAt > measureTo) {
+                                continue;
+                            }
+                            if (!ok) {
+                                errors.incrementAndGet();
+                                continue;
+                            }
+                            if (count == recorded.length) {
+                                recorded = Arrays.copyOf(recorded, count * 2);
+                            }
+                            recorded[count++] = receivedAt - sentAt;
+                        }
+                    } finally {
+                        latencies[client] = recorded;
+                        counts[client] = count;
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        }
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int i = 0; i < clients; i++) {
+            System.arraycopy(latencies[i], 0, all, offset, counts[i]);
+            offset += counts[i];
+        }
+        Arrays.sort(all);
+        return new Result(all, errors.get());
+    }
+
+    record Result(long[] sortedLatencies, long errors) {
+        long requests() {
+            return sortedLatencies.length;
+        }
+
+        double percentileMs(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
@@ -1,8 +1,19 @@
 package com.rjrouleau.dining_review_api.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.RestaurantExport;
+import com.rjrouleau.dining_review_api.model.VersionSummary;
 import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import com.rjrouleau.dining_review_api.service.BulkImporter;
+import com.rjrouleau.dining_review_api.service.RestaurantCache;
+import com.rjrouleau.dining_review_api.service.RestaurantLeaderboard;
+import com.rjrouleau.dining_review_api.service.ScoreRebuildJob;
+import org.assertj.core.api.Assertions;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -10,16 +21,27 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.sql.SQLException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -30,6 +52,18 @@ public class RestaurantControllerTest {
     @MockBean
     private RestaurantRepository restaurantRepository;
 
+    @MockBean
+    private ScoreRebuildJob scoreRebuildJob;
+
+    @MockBean
+    private BulkImporter bulkImporter;
+
+    @Autowired
+    private RestaurantLeaderboard restaurantLeaderboard;
+
+    @Autowired
+    private RestaurantCache restaurantCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -37,6 +71,10 @@ public class RestaurantControllerTest {
 
     @BeforeEach
     public void init(){
+        // the leaderboards and cache loaded by earlier tests hold restaurants from other mocks.
+        restaurantLeaderboard.clear();
+        restaurantCache.clear();
+
         restaurant = Restaurant.builder()
                 .overallScore(3.0f)
                 .peanutScore(3.0f)
@@ -47,14 +85,14 @@ public class RestaurantControllerTest {
                 .state("Illinois")
                 .zipcode("00005")
                 .build();
+
+        given(restaurantRepository.summarizeByZipcode(Mockito.anyString())).willReturn(new VersionSummary(0, 0, 0));
     }
 
     @Test
     public void RestaurantController_CreateRestaurant_ReturnRestaurant() throws Exception {
         String expectedJson = objectMapper.writeValueAsString(restaurant);
 
-        given(restaurantRepository.findByNameAndZipcode(restaurant.getName(), restaurant.getZipcode()))
-                .willReturn(List.of());
         given(restaurantRepository.save(Mockito.any(Restaurant.class))).willReturn(restaurant);
 
         mockMvc.perform(
@@ -65,7 +103,6 @@ public class RestaurantControllerTest {
                 .andExpect(status().isCreated())
                 .andExpect(content().json(expectedJson));
 
-        Mockito.verify(restaurantRepository, Mockito.times(1)).findByNameAndZipcode(restaurant.getName(), restaurant.getZipcode());
         Mockito.verify(restaurantRepository, Mockito.times(1)).save(restaurant);
     }
 
@@ -73,11 +110,8 @@ public class RestaurantControllerTest {
     @Test
     public void RestaurantController_CreateRestaurant_ReturnBadName() throws Exception {
         String restaurantJson = objectMapper.writeValueAsString(restaurant);
-        List<Restaurant> restaurantList = new ArrayList<>();
-        restaurantList.add(restaurant);
 
-        given(restaurantRepository.findByNameAndZipcode(restaurant.getName(), restaurant.getZipcode()))
-                .willReturn(restaurantList);
+        given(restaurantRepository.save(Mockito.any(Restaurant.class))).willThrow(uniqueViolation());
 
         mockMvc.perform(
                         post("/restaurants")
@@ -87,9 +121,63 @@ public class RestaurantControllerTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string("Bad Request: Restaurant name must be unique for a given zipcode."));
 
-        Mockito.verify(restaurantRepository, Mockito.times(1))
-                .findByNameAndZipcode(restaurant.getName(), restaurant.getZipcode());
-        Mockito.verify(restaurantRepository, Mockito.times(0)).save(restaurant);
+        Mockito.verify(restaurantRepository, Mockito.times(1)).save(restaurant);
+    }
+
+    @Test
+    public void RestaurantController_ImportRestaurants_ReturnReport() throws Exception {
+        BulkImporter.Report report = new BulkImporter.Report(
+                2, 1, 1, List.of(new BulkImporter.LineError(2, "Restaurant name must be unique for a given zipcode."))
+        );
+        given(bulkImporter.importRestaurants(Mockito.any())).willReturn(report);
+
+        mockMvc.perform(
+                        post("/restaurants/import")
+                                .contentType("application/x-ndjson")
+                                .content("{\"name\": \"a\"}\n{\"name\": \"a\"}\n")
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(report)));
+
+        mockMvc.perform(
+                        post("/restaurants/import")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[]")
+                )
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
+    @Test
+    public void RestaurantController_ExportRestaurantScores_Csv_ReturnRoundedScores() throws Exception {
+        given(restaurantRepository.streamExport(5L, null, "Illinois")).willReturn(Stream.of(
+                new RestaurantExport(6L, "testRestaurant", "Chicago", "Illinois", "00005",
+                        1.2222222f, 3.6666667f, null, null, 3, 0, 0)
+        ));
+
+        mockMvc.perform(get("/restaurants/export").param("format", "CSV").param("state", "Illinois")
+                        .param("sinceId", "5"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string(
+                        "id,name,city,state,zipcode,overallScore,peanutScore,eggScore,dairyScore,peanutCount,"
+                                + "eggCount,dairyCount\n"
+                                + "6,testRestaurant,Chicago,Illinois,00005,1.22,3.67,,,3,0,0\n"
+                ));
+    }
+
+    @Test
+    public void RestaurantController_UpdateRestaurant_ReturnBadName() throws Exception {
+        restaurant.setId(1L);
+        given(restaurantRepository.findById(1L)).willReturn(Optional.of(restaurant));
+        given(restaurantRepository.save(Mockito.any(Restaurant.class))).willThrow(uniqueViolation());
+
+        mockMvc.perform(
+                        put("/restaurants/1")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"name\": \"takenName\"}")
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Bad Request: Restaurant name must be unique for a given zipcode."));
     }
 
     @Test
@@ -111,16 +199,19 @@ public class RestaurantControllerTest {
 
         String expectedJson = objectMapper.writeValueAsString(restaurantList);
 
-        given(restaurantRepository.findAll()).willReturn(restaurantList);
+        given(restaurantRepository.findByIdGreaterThan(Mockito.eq(Long.MIN_VALUE), Mockito.any(Pageable.class)))
+                .willReturn(restaurantList);
 
         mockMvc.perform(
                 get("/restaurants")
                         .contentType(MediaType.APPLICATION_JSON)
         )
                 .andExpect(status().isOk())
-                .andExpect(content().json(expectedJson));
+                .andExpect(content().json(expectedJson))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
 
-        Mockito.verify(restaurantRepository, Mockito.times(1)).findAll();
+        Mockito.verify(restaurantRepository, Mockito.times(1))
+                .findByIdGreaterThan(Mockito.eq(Long.MIN_VALUE), Mockito.any(Pageable.class));
     }
 
     @Test
@@ -174,7 +265,9 @@ public class RestaurantControllerTest {
 
         String expectedJson = objectMapper.writeValueAsString(restaurantList);
 
-        given(restaurantRepository.findByZipcode(restaurant.getZipcode())).willReturn(restaurantList);
+        given(restaurantRepository.findByZipcodeAndIdGreaterThan(
+                Mockito.eq(restaurant.getZipcode()), Mockito.eq(Long.MIN_VALUE), Mockito.any(Pageable.class))
+        ).willReturn(restaurantList);
 
         mockMvc.perform(
                 get("/restaurants/byzipcode/{zipcode}", restaurant.getZipcode())
@@ -183,7 +276,104 @@ public class RestaurantControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(expectedJson));
 
-        Mockito.verify(restaurantRepository, Mockito.times(1)).findByZipcode(restaurant.getZipcode());
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findByZipcodeAndIdGreaterThan(
+                Mockito.eq(restaurant.getZipcode()), Mockito.eq(Long.MIN_VALUE), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    public void RestaurantController_GetRestaurantById_ReturnNotModified() throws Exception {
+        Instant lastModified = Instant.parse("2024-05-01T12:00:00Z");
+        Restaurant versioned = restaurant.toBuilder().id(1L).version(3L).lastModified(lastModified).build();
+        given(restaurantRepository.findById(1L)).willReturn(Optional.of(versioned));
+
+        mockMvc.perform(get("/restaurants/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, lastModified.toEpochMilli()));
+
+        mockMvc.perform(get("/restaurants/{id}", 1L).header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(
+                        get("/restaurants/{id}", 1L)
+                                .header(HttpHeaders.IF_MODIFIED_SINCE, "Wed, 01 May 2024 12:00:00 GMT")
+                )
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/restaurants/{id}", 1L).header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("testRestaurant"));
+
+        // every request was answered from the cache.
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findById(1L);
+    }
+
+    @Test
+    public void RestaurantController_GetRestaurantById_Cbor_ReturnCborWithItsOwnEtag() throws Exception {
+        Restaurant versioned = restaurant.toBuilder().id(1L).version(3L).overallScore(11f / 3f).build();
+        given(restaurantRepository.findById(1L)).willReturn(Optional.of(versioned));
+
+        MvcResult result = mockMvc.perform(
+                        get("/restaurants/{id}", 1L)
+                                .accept(MediaType.APPLICATION_CBOR)
+                                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3-cbor\""))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn();
+
+        JsonNode body = new CBORMapper().readTree(result.getResponse().getContentAsByteArray());
+        Assertions.assertThat(body.get("name").asText()).isEqualTo("testRestaurant");
+        Assertions.assertThat(body.get("overallScore").floatValue()).isEqualTo(3.67f);
+        // null fields are left out, as they are in JSON.
+        Assertions.assertThat(body.has("id")).isTrue();
+        Assertions.assertThat(body.has("normalizedName")).isFalse();
+
+        mockMvc.perform(
+                        get("/restaurants/{id}", 1L)
+                                .accept(MediaType.APPLICATION_CBOR)
+                                .header(HttpHeaders.IF_NONE_MATCH, "\"3-cbor\"")
+                )
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void RestaurantController_GetRestaurants_Smile_ReturnSmileList() throws Exception {
+        Restaurant noCity = restaurant.toBuilder().id(2L).name("testRestaurant2").city(null).build();
+        given(restaurantRepository.findByIdGreaterThan(Mockito.eq(Long.MIN_VALUE), Mockito.any(Pageable.class)))
+                .willReturn(List.of(restaurant.toBuilder().id(1L).build(), noCity));
+
+        MvcResult result = mockMvc.perform(get("/restaurants").accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn();
+
+        JsonNode body = new SmileMapper().readTree(result.getResponse().getContentAsByteArray());
+        Assertions.assertThat(body.size()).isEqualTo(2);
+        Assertions.assertThat(body.get(0).get("city").asText()).isEqualTo("Chicago");
+        Assertions.assertThat(body.get(1).has("city")).isFalse();
+        Assertions.assertThat(body.get(1).get("peanutScore").floatValue()).isEqualTo(3.0f);
+    }
+
+    @Test
+    public void RestaurantController_GetRestaurantByZipcode_ReturnNotModified() throws Exception {
+        VersionSummary summary = new VersionSummary(2, 3, 5);
+        String etag = "\"2-3-5\"";
+        given(restaurantRepository.summarizeByZipcode("00005")).willReturn(summary);
+
+        mockMvc.perform(
+                        get("/restaurants/byzipcode/{zipcode}", "00005")
+                                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                )
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        Mockito.verify(restaurantRepository, Mockito.never())
+                .findByZipcodeAndIdGreaterThan(Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     @Test
@@ -205,7 +395,9 @@ public class RestaurantControllerTest {
 
         String expectedJson = objectMapper.writeValueAsString(restaurantList);
 
-        given(restaurantRepository.findByCity(restaurant.getCity())).willReturn(restaurantList);
+        given(restaurantRepository.findByCityAndIdGreaterThan(
+                Mockito.eq(restaurant.getCity()), Mockito.eq(Long.MIN_VALUE), Mockito.any(Pageable.class))
+        ).willReturn(restaurantList);
 
         mockMvc.perform(
                         get("/restaurants/bycity/{city}", restaurant.getCity())
@@ -214,7 +406,8 @@ public class RestaurantControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(expectedJson));
 
-        Mockito.verify(restaurantRepository, Mockito.times(1)).findByCity(restaurant.getCity());
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findByCityAndIdGreaterThan(
+                Mockito.eq(restaurant.getCity()), Mockito.eq(Long.MIN_VALUE), Mockito.any(Pageable.class));
     }
 
     @Test
@@ -236,7 +429,9 @@ public class RestaurantControllerTest {
 
         String expectedJson = objectMapper.writeValueAsString(restaurantList);
 
-        given(restaurantRepository.findByState(restaurant.getState())).willReturn(restaurantList);
+        given(restaurantRepository.findByStateAndIdGreaterThan(
+                Mockito.eq(restaurant.getState()), Mockito.eq(Long.MIN_VALUE), Mockito.any(Pageable.class))
+        ).willReturn(restaurantList);
 
         mockMvc.perform(
                         get("/restaurants/bystate/{state}", restaurant.getState())
@@ -245,12 +440,102 @@ public class RestaurantControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(expectedJson));
 
-        Mockito.verify(restaurantRepository, Mockito.times(1)).findByState(restaurant.getState());
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findByStateAndIdGreaterThan(
+                Mockito.eq(restaurant.getState()), Mockito.eq(Long.MIN_VALUE), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    public void RestaurantController_GetRestaurants_ReturnNextCursor() throws Exception {
+        restaurant.setId(1L);
+        Restaurant nextRestaurant = Restaurant.builder()
+                .id(2L)
+                .overallScore(3.0f)
+                .peanutScore(3.0f)
+                .eggScore(3.0f)
+                .dairyScore(3.0f)
+                .name("testRestaurant2")
+                .zipcode("00005")
+                .build();
+
+        // one row more than the page size means another page follows.
+        given(restaurantRepository.findByIdGreaterThan(Mockito.eq(Long.MIN_VALUE), Mockito.any(Pageable.class)))
+                .willReturn(List.of(restaurant, nextRestaurant));
+        given(restaurantRepository.findByIdGreaterThan(Mockito.eq(1L), Mockito.any(Pageable.class)))
+                .willReturn(List.of(nextRestaurant));
+
+        String cursor = mockMvc.perform(get("/restaurants").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("testRestaurant"))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+        mockMvc.perform(get("/restaurants").param("size", "1").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("testRestaurant2"))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        Mockito.verify(restaurantRepository, Mockito.times(1))
+                .findByIdGreaterThan(Mockito.eq(1L), Mockito.eq(PageRequest.of(0, 2, Sort.by("id"))));
+    }
+
+    @Test
+    public void RestaurantController_StreamRestaurantsByZipcode_ReturnJsonArray() throws Exception {
+        Restaurant restaurantSameZipcode = Restaurant.builder()
+                .id(2L)
+                .name("testRestaurant2")
+                .zipcode("00005")
+                .build();
+        String expectedJson = objectMapper.writeValueAsString(List.of(restaurant, restaurantSameZipcode));
+
+        given(restaurantRepository.streamByZipcodeOrderByIdAsc(restaurant.getZipcode()))
+                .willReturn(Stream.of(restaurant, restaurantSameZipcode));
+
+        MvcResult result = mockMvc.perform(
+                        get("/restaurants/byzipcode/{zipcode}", restaurant.getZipcode()).param("stream", "json")
+                )
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json(expectedJson, true));
+
+        Mockito.verify(restaurantRepository, Mockito.times(0))
+                .findByZipcodeAndIdGreaterThan(Mockito.anyString(), Mockito.anyLong(), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    public void RestaurantController_StreamRestaurants_ReturnBadFormat() throws Exception {
+        MvcResult result = mockMvc.perform(get("/restaurants").param("stream", "xml"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid stream format. Stream must be json or ndjson."));
+
+        Mockito.verify(restaurantRepository, Mockito.times(0)).streamAllByOrderByIdAsc();
+    }
+
+    @Test
+    public void RestaurantController_GetRestaurants_ReturnBadCursor() throws Exception {
+        mockMvc.perform(get("/restaurants").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid cursor."));
+
+        mockMvc.perform(get("/restaurants").param("size", "0"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(restaurantRepository, Mockito.times(0))
+                .findByIdGreaterThan(Mockito.anyLong(), Mockito.any(Pageable.class));
     }
 
     @Test
     public void RestaurantController_GetRestaurantByZipcodeAllergyDesc_ReturnPeanutRestaurantList() throws Exception {
         Restaurant restaurantLowerScore = Restaurant.builder()
+                .id(2L)
                 .overallScore(1.0f)
                 .peanutScore(1.0f)
                 .eggScore(1.0f)
@@ -267,9 +552,9 @@ public class RestaurantControllerTest {
 
         String expectedJson = objectMapper.writeValueAsString(restaurantList);
 
-        given(restaurantRepository
-                .findByZipcodeAndPeanutScoreGreaterThanOrderByPeanutScoreDesc(restaurant.getZipcode(), 0.f)
-        ).willReturn(restaurantList);
+        // returned out of order, the leaderboard sorts by score.
+        given(restaurantRepository.findByZipcode(restaurant.getZipcode()))
+                .willReturn(List.of(restaurantLowerScore, restaurant));
 
         mockMvc.perform(
                 get(
@@ -282,13 +567,13 @@ public class RestaurantControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(expectedJson));
 
-        Mockito.verify(restaurantRepository, Mockito.times(1))
-                .findByZipcodeAndPeanutScoreGreaterThanOrderByPeanutScoreDesc(restaurant.getZipcode(), 0.f);
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findByZipcode(restaurant.getZipcode());
     }
 
     @Test
     public void RestaurantController_GetRestaurantByZipcodeAllergyDesc_ReturnEggRestaurantList() throws Exception {
         Restaurant restaurantLowerScore = Restaurant.builder()
+                .id(2L)
                 .overallScore(1.0f)
                 .peanutScore(1.0f)
                 .eggScore(1.0f)
@@ -305,9 +590,9 @@ public class RestaurantControllerTest {
 
         String expectedJson = objectMapper.writeValueAsString(restaurantList);
 
-        given(restaurantRepository
-                .findByZipcodeAndEggScoreGreaterThanOrderByEggScoreDesc(restaurant.getZipcode(), 0.f)
-        ).willReturn(restaurantList);
+        // returned out of order, the leaderboard sorts by score.
+        given(restaurantRepository.findByZipcode(restaurant.getZipcode()))
+                .willReturn(List.of(restaurantLowerScore, restaurant));
 
         mockMvc.perform(
                         get(
@@ -320,13 +605,13 @@ public class RestaurantControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(expectedJson));
 
-        Mockito.verify(restaurantRepository, Mockito.times(1))
-                .findByZipcodeAndEggScoreGreaterThanOrderByEggScoreDesc(restaurant.getZipcode(), 0.f);
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findByZipcode(restaurant.getZipcode());
     }
 
     @Test
     public void RestaurantController_GetRestaurantByZipcodeAllergyDesc_ReturnDairyRestaurantList() throws Exception {
         Restaurant restaurantLowerScore = Restaurant.builder()
+                .id(2L)
                 .overallScore(1.0f)
                 .peanutScore(1.0f)
                 .eggScore(1.0f)
@@ -343,9 +628,9 @@ public class RestaurantControllerTest {
 
         String expectedJson = objectMapper.writeValueAsString(restaurantList);
 
-        given(restaurantRepository
-                .findByZipcodeAndDairyScoreGreaterThanOrderByDairyScoreDesc(restaurant.getZipcode(), 0.f)
-        ).willReturn(restaurantList);
+        // returned out of order, the leaderboard sorts by score.
+        given(restaurantRepository.findByZipcode(restaurant.getZipcode()))
+                .willReturn(List.of(restaurantLowerScore, restaurant));
 
         mockMvc.perform(
                         get(
@@ -358,8 +643,7 @@ public class RestaurantControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(expectedJson));
 
-        Mockito.verify(restaurantRepository, Mockito.times(1))
-                .findByZipcodeAndDairyScoreGreaterThanOrderByDairyScoreDesc(restaurant.getZipcode(), 0.f);
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findByZipcode(restaurant.getZipcode());
     }
 
     @Test
@@ -424,12 +708,12 @@ public class RestaurantControllerTest {
     @Test
     public void RestaurantController_UpdateRestaurant_ReturnRestaurant() throws Exception {
         Restaurant updatedRestaurant = Restaurant.builder()
-                .overallScore(5.0f)
-                .peanutScore(5.0f)
-                .eggScore(5.0f)
-                .dairyScore(5.0f)
+                .overallScore(3.0f)
+                .peanutScore(3.0f)
+                .eggScore(3.0f)
+                .dairyScore(3.0f)
                 .name("testRestaurant")
-                .city("Chicago")
+                .city("Springfield")
                 .state("Illinois")
                 .zipcode("00005")
                 .build();
@@ -450,6 +734,25 @@ public class RestaurantControllerTest {
         Mockito.verify(restaurantRepository, Mockito.times(1)).save(Mockito.any(Restaurant.class));
     }
 
+    @Test
+    public void RestaurantController_UpdateRestaurant_IgnoresScores() throws Exception {
+        given(restaurantRepository.findById(1L)).willReturn(Optional.of(restaurant));
+        given(restaurantRepository.save(Mockito.any(Restaurant.class)))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(
+                        put("/restaurants/{id}", 1L)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"city\": \"Oakland\", \"peanutScore\": 5, \"eggScore\": 1,"
+                                        + " \"overallScore\": 1}")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.city").value("Oakland"))
+                .andExpect(jsonPath("$.peanutScore").value(3.0))
+                .andExpect(jsonPath("$.eggScore").value(3.0))
+                .andExpect(jsonPath("$.overallScore").value(3.0));
+    }
+
     @Test
     public void RestaurantController_UpdateRestaurant_ReturnNotFound() throws Exception {
         String invalidRestaurant = objectMapper.writeValueAsString(restaurant);
@@ -497,4 +800,189 @@ public class RestaurantControllerTest {
 
         Mockito.verify(restaurantRepository, Mockito.times(0)).delete(restaurant);
     }
+
+    @Test
+    public void RestaurantController_DeleteRestaurant_ConcurrentWrite_RetriesDelete() throws Exception {
+        given(restaurantRepository.findById(1L)).willReturn(Optional.of(restaurant));
+        willThrow(new ObjectOptimisticLockingFailureException(Restaurant.class, 1L))
+                .willDoNothing()
+                .given(restaurantRepository).delete(restaurant);
+
+        mockMvc.perform(delete("/restaurants/{id}", 1L))
+                .andExpect(status().isNoContent());
+
+        Mockito.verify(restaurantRepository, Mockito.times(2)).delete(restaurant);
+    }
+
+    @Test
+    public void RestaurantController_DeleteRestaurant_ReturnConflict() throws Exception {
+        given(restaurantRepository.findById(1L)).willReturn(Optional.of(restaurant));
+        willThrow(new ObjectOptimisticLockingFailureException(Restaurant.class, 1L))
+                .given(restaurantRepository).delete(restaurant);
+
+        mockMvc.perform(delete("/restaurants/{id}", 1L))
+                .andExpect(status().isConflict())
+                .andExpect(content().string(
+                        "Conflict: Restaurant is being updated by other requests. Please try again."));
+    }
+
+    @Test
+    public void RestaurantController_RebuildScores_ReturnAccepted() throws Exception {
+        given(scoreRebuildJob.start()).willReturn(true);
+        given(scoreRebuildJob.getProgress()).willReturn(
+                new ScoreRebuildJob.Progress(ScoreRebuildJob.State.RUNNING, 0, 0, 0, 0., null)
+        );
+
+        mockMvc.perform(post("/restaurants/admin/scores/rebuild"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.state").value("RUNNING"));
+
+        Mockito.verify(scoreRebuildJob, Mockito.times(1)).start();
+    }
+
+    @Test
+    public void RestaurantController_RebuildScores_ReturnConflict() throws Exception {
+        given(scoreRebuildJob.start()).willReturn(false);
+        given(scoreRebuildJob.getProgress()).willReturn(
+                new ScoreRebuildJob.Progress(ScoreRebuildJob.State.RUNNING, 1000, 0, 10, 100000., null)
+        );
+
+        mockMvc.perform(post("/restaurants/admin/scores/rebuild"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.reviewsScanned").value(1000));
+    }
+
+    @Test
+    public void RestaurantController_GetRestaurantByZipcodeAllergyDesc_ReusesLeaderboard() throws Exception {
+        Restaurant restaurantNoPeanutScore = Restaurant.builder()
+                .id(2L)
+                .eggScore(4.0f)
+                .name("testRestaurant2")
+                .zipcode("00005")
+                .build();
+
+        given(restaurantRepository.findByZipcode(restaurant.getZipcode()))
+                .willReturn(List.of(restaurant, restaurantNoPeanutScore));
+
+        for (String allergy : List.of("peanut", "egg", "peanut")) {
+            mockMvc.perform(
+                            get(
+                                    "/restaurants/search?zipcode={zipcode}&allergy={allergy}",
+                                    restaurant.getZipcode(),
+                                    allergy
+                            )
+                    )
+                    .andExpect(status().isOk());
+        }
+
+        // a restaurant without a peanut score is only listed for egg.
+        mockMvc.perform(
+                        get(
+                                "/restaurants/search?zipcode={zipcode}&allergy={allergy}",
+                                restaurant.getZipcode(),
+                                "egg"
+                        )
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].name").value("testRestaurant2"));
+
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findByZipcode(restaurant.getZipcode());
+    }
+
+    @Test
+    public void RestaurantController_GetRestaurantByZipcodeAllergyDesc_ReflectsUpdatedRestaurant() throws Exception {
+        Restaurant restaurantLowerScore = Restaurant.builder()
+                .id(2L)
+                .overallScore(1.0f)
+                .peanutScore(1.0f)
+                .eggScore(1.0f)
+                .dairyScore(1.0f)
+                .name("testRestaurant2")
+                .zipcode("00005")
+                .build();
+        given(restaurantRepository.findByZipcode(restaurant.getZipcode()))
+                .willReturn(List.of(restaurant, restaurantLowerScore));
+        given(restaurantRepository.findById(2L)).willReturn(Optional.of(restaurantLowerScore));
+        given(restaurantRepository.save(Mockito.any(Restaurant.class)))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(
+                        get("/restaurants/search?zipcode={zipcode}&allergy={allergy}", "00005", "peanut")
+                )
+                .andExpect(jsonPath("$[0].name").value("testRestaurant"));
+
+        mockMvc.perform(
+                        put("/restaurants/{id}", 2L)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"name\": \"renamedRestaurant2\"}")
+                )
+                .andExpect(status().isOk());
+
+        mockMvc.perform(
+                        get(
+                                "/restaurants/search?zipcode={zipcode}&allergy={allergy}&limit={limit}",
+                                "00005",
+                                "peanut",
+                                2
+                        )
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].name").value("renamedRestaurant2"));
+
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findByZipcode("00005");
+    }
+
+    @Test
+    public void RestaurantController_GetRestaurantById_ReturnCachedRestaurant() throws Exception {
+        given(restaurantRepository.findById(1L)).willReturn(Optional.of(restaurant));
+        RestaurantCache.Stats before = restaurantCache.getStats();
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/restaurants/{id}", 1L))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.name").value("testRestaurant"));
+        }
+
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findById(1L);
+        Assertions.assertThat(restaurantCache.getStats().hits() - before.hits()).isEqualTo(2);
+        Assertions.assertThat(restaurantCache.getStats().misses() - before.misses()).isEqualTo(1);
+    }
+
+    @Test
+    public void RestaurantController_UpdateRestaurant_InvalidatesCachedRestaurant() throws Exception {
+        Restaurant renamedRestaurant = restaurant.toBuilder().name("renamedRestaurant").build();
+
+        given(restaurantRepository.findById(1L))
+                .willReturn(Optional.of(restaurant))
+                .willReturn(Optional.of(restaurant))
+                .willReturn(Optional.of(renamedRestaurant));
+        given(restaurantRepository.save(Mockito.any(Restaurant.class))).willReturn(renamedRestaurant);
+
+        mockMvc.perform(get("/restaurants/{id}", 1L))
+                .andExpect(jsonPath("$.name").value("testRestaurant"));
+
+        mockMvc.perform(
+                        put("/restaurants/{id}", 1L)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"name\": \"renamedRestaurant\"}")
+                )
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/restaurants/{id}", 1L))
+                .andExpect(jsonPath("$.name").value("renamedRestaurant"));
+
+        Mockito.verify(restaurantRepository, Mockito.times(3)).findById(1L);
+    }
+
+    // What a save throws when the database rejects a duplicate row.
+    private static DataIntegrityViolationException uniqueViolation() {
+        return new DataIntegrityViolationException("duplicate", new ConstraintViolationException(
+                "duplicate",
+                new SQLException("duplicate key"),
+                ConstraintViolationException.ConstraintKind.UNIQUE,
+                "ux_restaurant_normalized_name_zipcode"
+        ));
+    }
 }
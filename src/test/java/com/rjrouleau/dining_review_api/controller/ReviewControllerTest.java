@@ -3,8 +3,18 @@ package com.rjrouleau.dining_review_api.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rjrouleau.dining_review_api.model.Restaurant;
 import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.ReviewDecision;
+import com.rjrouleau.dining_review_api.model.ReviewExport;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.model.VersionSummary;
 import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
 import com.rjrouleau.dining_review_api.repository.ReviewRepository;
+import com.rjrouleau.dining_review_api.repository.UserRepository;
+import com.rjrouleau.dining_review_api.service.BulkImporter;
+import com.rjrouleau.dining_review_api.service.ScoreUpdateQueue;
+import com.rjrouleau.dining_review_api.service.UserCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -12,12 +22,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -35,29 +53,61 @@ public class ReviewControllerTest {
     @MockBean
     private RestaurantRepository restaurantRepository;
 
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private BulkImporter bulkImporter;
+
+    @Autowired
+    private ScoreUpdateQueue scoreUpdateQueue;
+
+    @Autowired
+    private UserCache userCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private Review review;
+    private User user;
 
     @BeforeEach
     public void init(){
+        userCache.clear();
+        // drain score updates queued by earlier tests. The reset mocks find no restaurant, so they are dropped.
+        scoreUpdateQueue.flush();
+
+        user = User.builder()
+                .id(7L)
+                .userName("testUser")
+                .build();
+
         review = Review.builder()
                 .userName("testUser")
                 .restaurantName("testRestaurant")
+                .restaurantId(1L)
                 .peanutScore(3)
                 .eggScore(3)
                 .dairyScore(3)
                 .commentary("This is a test review.")
                 .status(Review.Status.PENDING)
                 .build();
+
+        given(reviewRepository.summarizeByRestaurantIdInAndStatus(Mockito.anyCollection(), Mockito.any()))
+                .willReturn(new VersionSummary(1, 1, 0));
     }
 
     @Test
     public void ReviewController_CreateReview_ReturnReview() throws Exception {
         String expectedJson = objectMapper.writeValueAsString(review);
 
-        given(reviewRepository.save(Mockito.any(Review.class))).willReturn(review);
+        given(userRepository.findByUserName(review.getUserName())).willReturn(Optional.of(user));
+        given(restaurantRepository.findById(review.getRestaurantId()))
+                .willReturn(Optional.of(Restaurant.builder().id(1L).name("testRestaurant").build()));
+        given(reviewRepository.save(Mockito.any(Review.class))).willAnswer(invocation -> invocation.getArgument(0));
 
         mockMvc.perform(
                         post("/reviews")
@@ -65,9 +115,119 @@ public class ReviewControllerTest {
                                 .content(expectedJson)
                 )
                 .andExpect(status().isCreated())
-                .andExpect(content().json(expectedJson));
+                .andExpect(content().json(expectedJson))
+                .andExpect(jsonPath("$.userId").value(7));
 
-        Mockito.verify(reviewRepository, Mockito.times(1)).save(review);
+        Mockito.verify(reviewRepository, Mockito.times(1))
+                .save(Mockito.argThat(saved -> Long.valueOf(7L).equals(saved.getUserId())));
+    }
+
+    @Test
+    public void ReviewController_ImportReviews_ReturnReport() throws Exception {
+        BulkImporter.Report report = new BulkImporter.Report(
+                2, 1, 1, List.of(new BulkImporter.LineError(1, "User not found."))
+        );
+        given(bulkImporter.importReviews(Mockito.any())).willReturn(report);
+
+        mockMvc.perform(
+                        post("/reviews/import")
+                                .contentType("application/x-ndjson")
+                                .content("{\"userName\": \"otherUser\"}\n" + objectMapper.writeValueAsString(review))
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(report)));
+    }
+
+    @Test
+    public void ReviewController_ExportAcceptedReviews_Csv_ReturnHeaderAndRows() throws Exception {
+        given(reviewRepository.streamExport(Review.Status.ACCEPTED, Long.MIN_VALUE, null, "00005", null))
+                .willReturn(Stream.of(
+                        new ReviewExport(1L, 2L, "testRestaurant", "00005", "Illinois", 7L, "testUser",
+                                4, null, 2, "Good, \"mostly\""),
+                        new ReviewExport(3L, 2L, "testRestaurant", "00005", "Illinois", 7L, "testUser",
+                                null, null, null, null)
+                ));
+
+        mockMvc.perform(get("/reviews/export").param("format", "csv").param("zipcode", "00005"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string(
+                        "id,restaurantId,restaurantName,zipcode,state,userId,userName,peanutScore,eggScore,"
+                                + "dairyScore,commentary\n"
+                                + "1,2,testRestaurant,00005,Illinois,7,testUser,4,,2,\"Good, \"\"mostly\"\"\"\n"
+                                + "3,2,testRestaurant,00005,Illinois,7,testUser,,,,\n"
+                ));
+    }
+
+    @Test
+    public void ReviewController_ExportAcceptedReviews_Gzip_ReturnCompressedNdjson() throws Exception {
+        given(reviewRepository.streamExport(Review.Status.ACCEPTED, 10L, 2L, null, null))
+                .willReturn(Stream.of(
+                        new ReviewExport(11L, 2L, "testRestaurant", "00005", "Illinois", 7L, "testUser",
+                                4, null, null, null),
+                        new ReviewExport(12L, 2L, "testRestaurant", "00005", "Illinois", 7L, "testUser",
+                                5, null, null, null)
+                ));
+
+        MvcResult result = mockMvc.perform(
+                        get("/reviews/export")
+                                .param("restaurantId", "2")
+                                .param("sinceId", "10")
+                                .header("Accept-Encoding", "deflate, gzip;q=0.8")
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn();
+
+        Assertions.assertThat(gunzip(result.getResponse().getContentAsByteArray())).isEqualTo(
+                "{\"id\":11,\"restaurantId\":2,\"restaurantName\":\"testRestaurant\",\"zipcode\":\"00005\","
+                        + "\"state\":\"Illinois\",\"userId\":7,\"userName\":\"testUser\",\"peanutScore\":4}\n"
+                        + "{\"id\":12,\"restaurantId\":2,\"restaurantName\":\"testRestaurant\",\"zipcode\":\"00005\","
+                        + "\"state\":\"Illinois\",\"userId\":7,\"userName\":\"testUser\",\"peanutScore\":5}\n"
+        );
+    }
+
+    @Test
+    public void ReviewController_ExportAcceptedReviews_ReturnBadFormat() throws Exception {
+        mockMvc.perform(get("/reviews/export").param("format", "xml").header("Accept-Encoding", "gzip"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid format. Format must be ndjson or csv."));
+
+        Mockito.verify(reviewRepository, Mockito.never())
+                .streamExport(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void ReviewController_CreateReview_ReturnBadUser() throws Exception {
+        given(userRepository.findByUserName(review.getUserName())).willReturn(Optional.empty());
+
+        mockMvc.perform(
+                        post("/reviews")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(review))
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Bad Request: User not found."));
+
+        Mockito.verify(reviewRepository, Mockito.times(0)).save(Mockito.any(Review.class));
+    }
+
+    @Test
+    public void ReviewController_CreateReview_ReturnBadRestaurant() throws Exception {
+        given(userRepository.findByUserName(review.getUserName())).willReturn(Optional.of(user));
+        given(restaurantRepository.findById(review.getRestaurantId())).willReturn(Optional.empty());
+
+        mockMvc.perform(
+                        post("/reviews")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(review))
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Bad Request: Restaurant was not found."));
+
+        Mockito.verify(reviewRepository, Mockito.times(0)).save(Mockito.any(Review.class));
     }
 
     @Test
@@ -106,7 +266,8 @@ public class ReviewControllerTest {
         reviewList.add(review);
         String expectedJson = objectMapper.writeValueAsString(reviewList);
 
-        given(reviewRepository.findByRestaurantNameAndStatus(review.getRestaurantName(), Review.Status.ACCEPTED))
+        given(restaurantRepository.findIdsByName(review.getRestaurantName())).willReturn(List.of(1L, 2L));
+        given(reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(List.of(1L, 2L), Review.Status.ACCEPTED))
                 .willReturn(reviewList);
 
         mockMvc.perform(
@@ -117,7 +278,7 @@ public class ReviewControllerTest {
                 .andExpect(content().json(expectedJson));
 
         Mockito.verify(reviewRepository, Mockito.times(1))
-                .findByRestaurantNameAndStatus(review.getRestaurantName(), Review.Status.ACCEPTED);
+                .findByRestaurantIdInAndStatusOrderByIdAsc(List.of(1L, 2L), Review.Status.ACCEPTED);
     }
 
     @Test
@@ -125,7 +286,8 @@ public class ReviewControllerTest {
         List<Review> reviewList = new ArrayList<>();
         reviewList.add(review);
 
-        given(reviewRepository.findByRestaurantNameAndStatus(review.getRestaurantName(), Review.Status.ACCEPTED))
+        given(restaurantRepository.findIdsByName(review.getRestaurantName())).willReturn(List.of(1L));
+        given(reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(List.of(1L), Review.Status.ACCEPTED))
                 .willReturn(List.of());
 
         mockMvc.perform(
@@ -135,7 +297,43 @@ public class ReviewControllerTest {
                 .andExpect(status().isNotFound());
 
         Mockito.verify(reviewRepository, Mockito.times(1))
-                .findByRestaurantNameAndStatus(review.getRestaurantName(), Review.Status.ACCEPTED);
+                .findByRestaurantIdInAndStatusOrderByIdAsc(List.of(1L), Review.Status.ACCEPTED);
+    }
+
+    @Test
+    public void ReviewController_GetApprovedReviewsByRestaurantName_ReturnNotModified() throws Exception {
+        VersionSummary summary = new VersionSummary(2, 3, 5);
+        String etag = "\"2-3-5\"";
+        given(restaurantRepository.findIdsByName(review.getRestaurantName())).willReturn(List.of(1L, 2L));
+        given(reviewRepository.summarizeByRestaurantIdInAndStatus(List.of(1L, 2L), Review.Status.ACCEPTED))
+                .willReturn(summary);
+        given(reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(List.of(1L, 2L), Review.Status.ACCEPTED))
+                .willReturn(List.of(review));
+
+        mockMvc.perform(get("/reviews/restaurant/{restaurantName}", review.getRestaurantName()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        mockMvc.perform(
+                        get("/reviews/restaurant/{restaurantName}", review.getRestaurantName())
+                                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                )
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        // a review written since then changes the summary, so the list is sent again.
+        given(reviewRepository.summarizeByRestaurantIdInAndStatus(List.of(1L, 2L), Review.Status.ACCEPTED))
+                .willReturn(new VersionSummary(2, 3, 6));
+        mockMvc.perform(
+                        get("/reviews/restaurant/{restaurantName}", review.getRestaurantName())
+                                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+
+        Mockito.verify(reviewRepository, Mockito.times(2))
+                .findByRestaurantIdInAndStatusOrderByIdAsc(List.of(1L, 2L), Review.Status.ACCEPTED);
     }
 
     @Test
@@ -144,7 +342,8 @@ public class ReviewControllerTest {
         reviewList.add(review);
         String expectedJson = objectMapper.writeValueAsString(reviewList);
 
-        given(reviewRepository.findByUserName(review.getUserName())).willReturn(reviewList);
+        given(userRepository.findByUserName(review.getUserName())).willReturn(Optional.of(user));
+        given(reviewRepository.findByUserIdOrderByIdAsc(user.getId())).willReturn(reviewList);
 
         mockMvc.perform(
                         get("/reviews/user/{userName}", review.getUserName())
@@ -153,7 +352,33 @@ public class ReviewControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(expectedJson));
 
-        Mockito.verify(reviewRepository, Mockito.times(1)).findByUserName(review.getUserName());
+        Mockito.verify(reviewRepository, Mockito.times(1)).findByUserIdOrderByIdAsc(user.getId());
+    }
+
+    @Test
+    public void ReviewController_StreamReviewsByUserName_ReturnNdjson() throws Exception {
+        Review secondReview = Review.builder()
+                .id(2L)
+                .userName(review.getUserName())
+                .commentary("Another review.")
+                .build();
+        String expectedBody = objectMapper.writeValueAsString(review) + "\n"
+                + objectMapper.writeValueAsString(secondReview) + "\n";
+
+        given(userRepository.findByUserName(review.getUserName())).willReturn(Optional.of(user));
+        given(reviewRepository.streamByUserIdOrderByIdAsc(user.getId()))
+                .willReturn(Stream.of(review, secondReview));
+
+        MvcResult result = mockMvc.perform(get("/reviews/user/{userName}", review.getUserName()).param("stream", "ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(expectedBody));
+
+        Mockito.verify(reviewRepository, Mockito.times(0)).findByUserIdOrderByIdAsc(user.getId());
     }
 
     @Test
@@ -161,7 +386,8 @@ public class ReviewControllerTest {
         List<Review> reviewList = new ArrayList<>();
         reviewList.add(review);
 
-        given(reviewRepository.findByUserName(review.getUserName())).willReturn(List.of());
+        given(userRepository.findByUserName(review.getUserName())).willReturn(Optional.of(user));
+        given(reviewRepository.findByUserIdOrderByIdAsc(user.getId())).willReturn(List.of());
 
         mockMvc.perform(
                         get("/reviews/user/{userName}", review.getUserName())
@@ -169,7 +395,21 @@ public class ReviewControllerTest {
                 )
                 .andExpect(status().isNotFound());
 
-        Mockito.verify(reviewRepository, Mockito.times(1)).findByUserName(review.getUserName());
+        Mockito.verify(reviewRepository, Mockito.times(1)).findByUserIdOrderByIdAsc(user.getId());
+    }
+
+    @Test
+    public void ReviewController_GetApprovedReviewsByRestaurantId_ReturnReviewList() throws Exception {
+        String expectedJson = objectMapper.writeValueAsString(List.of(review));
+
+        given(reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(List.of(1L), Review.Status.ACCEPTED))
+                .willReturn(List.of(review));
+
+        mockMvc.perform(get("/reviews/byrestaurant/{restaurantId}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(content().json(expectedJson));
+
+        Mockito.verify(restaurantRepository, Mockito.times(0)).findIdsByName(Mockito.anyString());
     }
 
     @Test
@@ -200,6 +440,28 @@ public class ReviewControllerTest {
         Mockito.verify(reviewRepository, Mockito.times(1)).save(Mockito.any(Review.class));
     }
 
+    // deleting a restaurant sets restaurantId to null on its reviews, and their scores have nowhere to be withdrawn from.
+    @Test
+    public void ReviewController_UpdateReview_DeletedRestaurant_ReturnReview() throws Exception {
+        review.setStatus(Review.Status.ACCEPTED);
+        review.setRestaurantId(null);
+
+        given(reviewRepository.findById(Mockito.anyLong())).willReturn(Optional.of(review));
+        given(reviewRepository.save(Mockito.any(Review.class))).willAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(
+                        put("/reviews/{id}", 1L)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"peanutScore\": 5}")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.peanutScore").value(5))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+
+        Mockito.verify(restaurantRepository, Mockito.never()).findById(Mockito.any());
+        Assertions.assertThat(scoreUpdateQueue.getStats().queueDepth()).isZero();
+    }
+
     @Test
     public void ReviewController_UpdateReview_ReturnNotFound() throws Exception {
         String invalidReview = objectMapper.writeValueAsString(review);
@@ -280,8 +542,6 @@ public class ReviewControllerTest {
 
         given(reviewRepository.findById(Mockito.anyLong())).willReturn(Optional.of(review));
         given(reviewRepository.save(Mockito.any(Review.class))).willReturn(updatedReview);
-        given(reviewRepository.findByRestaurantNameAndStatus(review.getRestaurantName(), Review.Status.ACCEPTED))
-                .willReturn(reviewList);
         given(restaurantRepository.findById(Mockito.any())).willReturn(Optional.of(restaurant));
 
         mockMvc.perform(
@@ -314,6 +574,25 @@ public class ReviewControllerTest {
         Mockito.verify(reviewRepository, Mockito.times(0)).save(Mockito.any(Review.class));
     }
 
+    @Test
+    public void ReviewController_UpdateReviewStatus_ReturnConflict() throws Exception {
+        given(reviewRepository.findById(1L)).willReturn(Optional.of(review));
+        given(restaurantRepository.findById(Mockito.any())).willReturn(Optional.of(Restaurant.builder().build()));
+        given(reviewRepository.save(Mockito.any(Review.class)))
+                .willThrow(new ObjectOptimisticLockingFailureException(Review.class, 1L));
+
+        mockMvc.perform(
+                        put("/reviews/admin/{id}", 1L)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("accepted")
+                )
+                .andExpect(status().isConflict())
+                .andExpect(content().string("Conflict: Review was changed by another request. Please try again."));
+
+        // the decision was not saved, so the review's scores must not reach the restaurant.
+        Assertions.assertThat(scoreUpdateQueue.getStats().queueDepth()).isZero();
+    }
+
     @Test
     public void ReviewController_UpdateReviewStatus_ReturnInternalServerError() throws Exception {
         String updatedStatus = "accepted";
@@ -346,8 +625,6 @@ public class ReviewControllerTest {
 
         given(reviewRepository.findById(Mockito.anyLong())).willReturn(Optional.of(review));
         given(reviewRepository.save(Mockito.any(Review.class))).willReturn(updatedReview);
-        given(reviewRepository.findByRestaurantNameAndStatus(review.getRestaurantName(), Review.Status.ACCEPTED))
-                .willReturn(reviewList);
         // return Optional.empty() to mock an internal server error.
         given(restaurantRepository.findById(Mockito.any())).willReturn(Optional.empty());
 
@@ -360,7 +637,153 @@ public class ReviewControllerTest {
                 .andExpect(content().string("An error occurred while updating restaurant scores."));
 
         Mockito.verify(reviewRepository, Mockito.times(1)).findById(Mockito.anyLong());
-        Mockito.verify(reviewRepository, Mockito.times(1)).save(Mockito.any(Review.class));
+        Mockito.verify(reviewRepository, Mockito.never()).save(Mockito.any(Review.class));
+    }
+
+    @Test
+    public void ReviewController_UpdateReviewStatus_AppliesScoresWithoutRescan() throws Exception {
+        String updatedStatus = "accepted";
+        review.setPeanutScore(5);
+        review.setEggScore(null);
+
+        // one accepted review so far, with scores 3/3/3.
+        Restaurant restaurant = Restaurant.builder()
+                .peanutScore(3.0f)
+                .eggScore(3.0f)
+                .dairyScore(3.0f)
+                .peanutSum(3).peanutCount(1)
+                .eggSum(3).eggCount(1)
+                .dairySum(3).dairyCount(1)
+                .name("testRestaurant")
+                .zipcode("00005")
+                .build();
+
+        given(reviewRepository.findById(Mockito.anyLong())).willReturn(Optional.of(review));
+        given(reviewRepository.save(Mockito.any(Review.class))).willReturn(review);
+        given(restaurantRepository.findById(Mockito.any())).willReturn(Optional.of(restaurant));
+
+        mockMvc.perform(
+                        put("/reviews/admin/{id}", 1L)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(updatedStatus)
+                )
+                .andExpect(status().isOk());
+        scoreUpdateQueue.flush();
+
+        // a null egg score does not count toward the egg average.
+        Assertions.assertThat(restaurant.getPeanutScore()).isEqualTo(4.0f);
+        Assertions.assertThat(restaurant.getEggScore()).isEqualTo(3.0f);
+        Assertions.assertThat(restaurant.getDairyScore()).isEqualTo(3.0f);
+        Assertions.assertThat(restaurant.getOverallScore()).isEqualTo(10.0f / 3.f);
+        Mockito.verify(restaurantRepository, Mockito.times(1)).save(restaurant);
+        Mockito.verify(reviewRepository, Mockito.times(0))
+                .findByRestaurantIdInAndStatusOrderByIdAsc(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void ReviewController_DeleteReview_WithdrawsAcceptedScores() throws Exception {
+        review.setStatus(Review.Status.ACCEPTED);
+
+        // the review being deleted is the only accepted review.
+        Restaurant restaurant = Restaurant.builder()
+                .peanutScore(3.0f)
+                .eggScore(3.0f)
+                .dairyScore(3.0f)
+                .peanutSum(3).peanutCount(1)
+                .eggSum(3).eggCount(1)
+                .dairySum(3).dairyCount(1)
+                .name("testRestaurant")
+                .zipcode("00005")
+                .build();
+
+        given(reviewRepository.findById(Mockito.anyLong())).willReturn(Optional.of(review));
+        given(restaurantRepository.findById(Mockito.any())).willReturn(Optional.of(restaurant));
+
+        mockMvc.perform(
+                        delete("/reviews/{id}", 1L)
+                                .contentType(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNoContent());
+        scoreUpdateQueue.flush();
+
+        Assertions.assertThat(restaurant.getPeanutCount()).isEqualTo(0);
+        Assertions.assertThat(restaurant.getPeanutScore()).isNull();
+        Assertions.assertThat(restaurant.getOverallScore()).isEqualTo(0.f);
+        Mockito.verify(restaurantRepository, Mockito.times(1)).save(restaurant);
+        Mockito.verify(reviewRepository, Mockito.times(1)).delete(review);
+    }
+
+    @Test
+    public void ReviewController_UpdateReviewStatuses_ReturnResultPerDecision() throws Exception {
+        review.setId(1L);
+        Review otherReview = Review.builder()
+                .id(2L)
+                .userName("testUser2")
+                .restaurantName("testRestaurant")
+                .restaurantId(1L)
+                .peanutScore(5)
+                .eggScore(5)
+                .dairyScore(5)
+                .status(Review.Status.PENDING)
+                .build();
+
+        Restaurant restaurant = Restaurant.builder()
+                .name("testRestaurant")
+                .zipcode("00005")
+                .build();
+
+        List<ReviewDecision> decisions = List.of(
+                new ReviewDecision(1L, "accepted"),
+                new ReviewDecision(2L, "accepted"),
+                new ReviewDecision(3L, "rejected")
+        );
+
+        given(reviewRepository.findAllById(Mockito.any())).willReturn(List.of(review, otherReview));
+        given(restaurantRepository.findExistingIds(Mockito.any())).willReturn(List.of(1L));
+        given(restaurantRepository.findById(1L)).willReturn(Optional.of(restaurant));
+        double acceptedBefore = acceptedTransitions();
+
+        mockMvc.perform(
+                        put("/reviews/admin")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(decisions))
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$[1].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$[2].reviewId").value(3))
+                .andExpect(jsonPath("$[2].error").value("Review not found."));
+        scoreUpdateQueue.flush();
+
+        // both approvals reach the restaurant as one merged update.
+        Assertions.assertThat(restaurant.getPeanutScore()).isEqualTo(4.0f);
+        Assertions.assertThat(acceptedTransitions() - acceptedBefore).isEqualTo(2.0);
+        Assertions.assertThat(meterRegistry.get("scores.update").tag("reviews", "2-10").timer().count())
+                .isGreaterThanOrEqualTo(1);
+        Mockito.verify(reviewRepository, Mockito.times(1)).findAllById(Mockito.any());
+        Mockito.verify(reviewRepository, Mockito.times(1)).saveAll(Mockito.any());
+        Mockito.verify(reviewRepository, Mockito.times(0)).save(Mockito.any(Review.class));
+        Mockito.verify(restaurantRepository, Mockito.times(1)).save(restaurant);
+    }
+
+    @Test
+    public void ReviewController_UpdateReviewStatuses_ReturnRestaurantNotFound() throws Exception {
+        review.setId(1L);
+        List<ReviewDecision> decisions = List.of(new ReviewDecision(1L, "accepted"));
+
+        given(reviewRepository.findAllById(Mockito.any())).willReturn(List.of(review));
+        given(restaurantRepository.findExistingIds(Mockito.any())).willReturn(List.of());
+
+        mockMvc.perform(
+                        put("/reviews/admin")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(decisions))
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("PENDING"))
+                .andExpect(jsonPath("$[0].error").value("Restaurant was not found."));
+
+        Assertions.assertThat(review.getStatus()).isEqualTo(Review.Status.PENDING);
     }
 
     @Test
@@ -379,6 +802,43 @@ public class ReviewControllerTest {
         Mockito.verify(reviewRepository, Mockito.times(1)).delete(review);
     }
 
+    @Test
+    public void ReviewController_DeleteReview_DeletedRestaurant_ReturnReview() throws Exception {
+        review.setStatus(Review.Status.ACCEPTED);
+        review.setRestaurantId(null);
+
+        given(reviewRepository.findById(Mockito.anyLong())).willReturn(Optional.of(review));
+
+        mockMvc.perform(
+                        delete("/reviews/{id}", 1L)
+                                .contentType(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNoContent());
+
+        Mockito.verify(restaurantRepository, Mockito.never()).findById(Mockito.any());
+        Mockito.verify(reviewRepository, Mockito.times(1)).delete(review);
+        Assertions.assertThat(scoreUpdateQueue.getStats().queueDepth()).isZero();
+    }
+
+    @Test
+    public void ReviewController_UpdateReviewStatus_DeletedRestaurant_ReturnReview() throws Exception {
+        review.setStatus(Review.Status.ACCEPTED);
+
+        given(reviewRepository.findById(Mockito.anyLong())).willReturn(Optional.of(review));
+        given(reviewRepository.save(Mockito.any(Review.class))).willAnswer(invocation -> invocation.getArgument(0));
+        given(restaurantRepository.findById(Mockito.any())).willReturn(Optional.empty());
+
+        mockMvc.perform(
+                        put("/reviews/admin/{id}", 1L)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("rejected")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("REJECTED"));
+
+        Assertions.assertThat(scoreUpdateQueue.getStats().queueDepth()).isZero();
+    }
+
     @Test
     public void ReviewController_DeleteReview_ReturnNotFound() throws Exception {
         Long reviewId = Mockito.anyLong();
@@ -394,4 +854,19 @@ public class ReviewControllerTest {
         Mockito.verify(reviewRepository, Mockito.times(0)).delete(review);
     }
 
+
+    private static String gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // the count of PENDING to ACCEPTED transitions so far. The registry is shared by every test of the context.
+    private double acceptedTransitions() {
+        return meterRegistry.get("reviews.status.transitions")
+                .tag("from", "PENDING")
+                .tag("to", "ACCEPTED")
+                .counter()
+                .count();
+    }
 }
@@ -0,0 +1,75 @@
+package com.rjrouleau.dining_review_api.controller;
+
+import com.rjrouleau.dining_review_api.ApiContractTest;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import com.rjrouleau.dining_review_api.repository.ReviewRepository;
+import com.rjrouleau.dining_review_api.repository.UserRepository;
+import com.rjrouleau.dining_review_api.service.RestaurantCache;
+import com.rjrouleau.dining_review_api.service.RestaurantLeaderboard;
+import com.rjrouleau.dining_review_api.service.ScoreUpdateQueue;
+import com.rjrouleau.dining_review_api.service.UserCache;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+// Runs the API contract against the servlet controllers on Tomcat, backed by JPA.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ServletApiContractTest extends ApiContractTest {
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RestaurantCache restaurantCache;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private RestaurantLeaderboard restaurantLeaderboard;
+
+    @Autowired
+    private ScoreUpdateQueue scoreUpdateQueue;
+
+    @Override
+    protected void clearData() {
+        scoreUpdateQueue.flush();
+        reviewRepository.deleteAll();
+        restaurantRepository.deleteAll();
+        userRepository.deleteAll();
+        restaurantCache.clear();
+        userCache.clear();
+        restaurantLeaderboard.clear();
+    }
+
+    // score changes are queued and written in the background.
+    @Override
+    protected void awaitScoreUpdates() {
+        scoreUpdateQueue.flush();
+    }
+
+    // Tomcat leaves responses with a strong ETag uncompressed, so the tag always names the bytes sent.
+    @Test
+    public void Api_GetRestaurantsByZipcode_AcceptGzip_ReturnUncompressedWithStrongEtag() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            createRestaurant("restaurant" + i, "00005");
+        }
+
+        HttpResponse<byte[]> page = getWithGzip("/restaurants/byzipcode/00005");
+        Assertions.assertThat(page.statusCode()).isEqualTo(200);
+        Assertions.assertThat(page.headers().firstValue(HttpHeaders.ETAG)).hasValueSatisfying(
+                etag -> Assertions.assertThat(etag).startsWith("\""));
+        Assertions.assertThat(page.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).isEmpty();
+        Assertions.assertThat(new String(page.body(), StandardCharsets.UTF_8)).contains("restaurant39");
+    }
+}
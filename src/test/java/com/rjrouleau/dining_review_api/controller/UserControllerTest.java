@@ -3,6 +3,8 @@ package com.rjrouleau.dining_review_api.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rjrouleau.dining_review_api.model.User;
 import com.rjrouleau.dining_review_api.repository.UserRepository;
+import com.rjrouleau.dining_review_api.service.UserCache;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -10,9 +12,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.sql.SQLException;
 import java.util.Optional;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -30,6 +34,9 @@ public class UserControllerTest {
     @MockBean
     private UserRepository userRepository;
 
+    @Autowired
+    private UserCache userCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -37,6 +44,7 @@ public class UserControllerTest {
 
     @BeforeEach
     public void init(){
+        userCache.clear();
         user = User.builder()
                 .userName("testUser")
                 .city("Fremont")
@@ -52,7 +60,6 @@ public class UserControllerTest {
     void UserController_CreateUser_ReturnUser() throws Exception {
         String expectedJson = objectMapper.writeValueAsString(user);
 
-        given(userRepository.findByUserName("testUser")).willReturn(Optional.empty());
         given(userRepository.save(Mockito.any(User.class))).willReturn(user);
 
         mockMvc.perform(
@@ -62,7 +69,7 @@ public class UserControllerTest {
                 )
                 .andExpect(status().isCreated())
                 .andExpect(content().json(expectedJson));
-        Mockito.verify(userRepository, Mockito.times(1)).findByUserName("testUser");
+        Mockito.verify(userRepository, Mockito.times(0)).findByUserName("testUser");
         Mockito.verify(userRepository, Mockito.times(1)).save(user);
     }
 
@@ -70,7 +77,15 @@ public class UserControllerTest {
     void UserController_CreateUser_ReturnNameTaken() throws Exception {
         String invalidUser = objectMapper.writeValueAsString(user);
 
-        given(userRepository.findByUserName(Mockito.anyString())).willReturn(Optional.of(user));
+        given(userRepository.save(Mockito.any(User.class))).willThrow(new DataIntegrityViolationException(
+                "duplicate",
+                new ConstraintViolationException(
+                        "duplicate",
+                        new SQLException("duplicate key"),
+                        ConstraintViolationException.ConstraintKind.UNIQUE,
+                        "ux_app_user_user_name"
+                )
+        ));
 
         mockMvc.perform(
                 post("/user")
@@ -80,8 +95,7 @@ public class UserControllerTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string("Username is taken. Please choose a unique username."));
 
-        Mockito.verify(userRepository, Mockito.times(1)).findByUserName(Mockito.anyString());
-        Mockito.verify(userRepository, Mockito.times(0)).save(Mockito.any(User.class));
+        Mockito.verify(userRepository, Mockito.times(1)).save(user);
     }
 
     @Test
@@ -142,7 +156,8 @@ public class UserControllerTest {
                 .andExpect(content().json(expectedJson));
 
         Mockito.verify(userRepository, Mockito.times(1)).findByUserName(user.getUserName());
-        Mockito.verify(userRepository, Mockito.times(1)).save(user);
+        // the cache hands out copies, so the saved user is an updated copy of the stored one.
+        Mockito.verify(userRepository, Mockito.times(1)).save(updatedUser);
     }
 
     @Test
@@ -194,4 +209,39 @@ public class UserControllerTest {
 
         Mockito.verify(userRepository, Mockito.times(1)).findByUserName(user.getUserName());
     }
+
+    @Test
+    void UserController_GetUserByUserName_ReturnCachedUser() throws Exception {
+        given(userRepository.findByUserName(user.getUserName())).willReturn(Optional.of(user));
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/user/" + user.getUserName()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.city").value("Fremont"));
+        }
+
+        Mockito.verify(userRepository, Mockito.times(1)).findByUserName(user.getUserName());
+    }
+
+    @Test
+    void UserController_CreateUser_ClearCachedMiss() throws Exception {
+        given(userRepository.findByUserName(user.getUserName()))
+                .willReturn(Optional.empty())
+                .willReturn(Optional.of(user));
+        given(userRepository.save(Mockito.any(User.class))).willReturn(user);
+
+        mockMvc.perform(get("/user/" + user.getUserName()))
+                .andExpect(status().isNotFound());
+        // creating the user clears the cached miss.
+        mockMvc.perform(
+                post("/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user))
+                )
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/user/" + user.getUserName()))
+                .andExpect(status().isOk());
+
+        Mockito.verify(userRepository, Mockito.times(2)).findByUserName(user.getUserName());
+    }
 }
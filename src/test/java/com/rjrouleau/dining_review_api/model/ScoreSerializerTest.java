@@ -0,0 +1,60 @@
+package com.rjrouleau.dining_review_api.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ScoreSerializerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void ScoreSerializer_Serialize_WritesTwoDecimalPlaces() throws Exception {
+        Restaurant restaurant = Restaurant.builder()
+                .overallScore(11f / 3f)
+                .peanutScore(3.0f)
+                .eggScore(0.125f)
+                .dairyScore(-0.001f)
+                .build();
+
+        String json = objectMapper.writeValueAsString(restaurant);
+
+        Assertions.assertThat(json)
+                .contains("\"overallScore\":3.67")
+                .contains("\"peanutScore\":3.00")
+                .contains("\"eggScore\":0.13")
+                .contains("\"dairyScore\":0.00");
+        // the entity keeps its full precision.
+        Assertions.assertThat(restaurant.getOverallScore()).isEqualTo(11f / 3f);
+    }
+
+    @Test
+    public void ScoreSerializer_Serialize_SkipsNullScores() throws Exception {
+        Restaurant restaurant = Restaurant.builder().peanutScore(4.5f).build();
+
+        String json = objectMapper.writeValueAsString(restaurant);
+
+        Assertions.assertThat(json)
+                .contains("\"peanutScore\":4.50")
+                .contains("\"eggScore\":null");
+    }
+
+    @Test
+    public void ScoreSerializer_Serialize_Binary_WritesRoundedFloats() throws Exception {
+        Restaurant restaurant = Restaurant.builder()
+                .overallScore(11f / 3f)
+                .dairyScore(-0.001f)
+                .build();
+
+        for (ObjectMapper binaryMapper : new ObjectMapper[]{new CBORMapper(), new SmileMapper()}) {
+            JsonNode node = binaryMapper.readTree(binaryMapper.writeValueAsBytes(restaurant));
+
+            Assertions.assertThat(node.get("overallScore").isFloat()).isTrue();
+            Assertions.assertThat(node.get("overallScore").floatValue()).isEqualTo(3.67f);
+            Assertions.assertThat(node.get("dairyScore").floatValue()).isEqualTo(0f);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.rjrouleau.dining_review_api.repository;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.User;
+import org.assertj.core.api.Assertions;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+// Runs every query method declared on the repositories against a seeded database, records the SQL Hibernate sends,
+// and fails if H2's EXPLAIN plan for any of it scans a whole table. New finders are picked up automatically, so a
+// finder without a matching index fails here instead of slowing down in production.
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.rjrouleau.dining_review_api.repository.QueryPlanTest$SqlRecorder")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+public class QueryPlanTest {
+
+    // Queries that are allowed to scan a table, keyed by Repository.method, with the reason.
+    private static final Map<String, String> ALLOWED_SCANS = Map.of(
+            "RestaurantRepository.findIdsWithScoreAggregates",
+            "Only used by the admin score rebuild, and an OR over three count columns can't use one index."
+    );
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+    @Autowired
+    private ReviewRepository reviewRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void init(){
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            users.add(entityManager.persist(User.builder().userName("user" + i).build()));
+        }
+        for (int i = 0; i < 500; i++) {
+            Restaurant restaurant = entityManager.persist(Restaurant.builder()
+                    .name("restaurant" + i)
+                    .city("city" + i % 20)
+                    .state("state" + i % 10)
+                    .zipcode(String.format("%05d", i % 50))
+                    .peanutScore((float) (i % 5))
+                    .build());
+            entityManager.persist(Review.builder()
+                    .userId(users.get(i % users.size()).getId())
+                    .restaurantId(restaurant.getId())
+                    .status(Review.Status.values()[i % 3])
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        // collect statistics so the planner sees the seeded row counts.
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    public void Repositories_DeclaredQueries_UseIndexes() throws Exception {
+        Map<Class<?>, Object> repositories = Map.of(
+                RestaurantRepository.class, restaurantRepository,
+                ReviewRepository.class, reviewRepository,
+                UserRepository.class, userRepository
+        );
+        List<String> failures = new ArrayList<>();
+
+        for (Map.Entry<Class<?>, Object> repository : repositories.entrySet()) {
+            for (Method method : repository.getKey().getDeclaredMethods()) {
+                // overriding a CrudRepository method adds a bridge taking Object.
+                if (method.isBridge()) {
+                    continue;
+                }
+                String name = repository.getKey().getSimpleName() + "." + method.getName();
+                // start from an empty persistence context, so a row loaded by an earlier finder isn't served from it.
+                entityManager.clear();
+                SqlRecorder.STATEMENTS.clear();
+                Object result = method.invoke(repository.getValue(), sampleArguments(method));
+                if (result instanceof Stream<?> stream) {
+                    try (stream) {
+                        stream.forEach(row -> { });
+                    }
+                }
+
+                List<String> statements = List.copyOf(SqlRecorder.STATEMENTS);
+                if (statements.isEmpty()) {
+                    failures.add(name + " sent no SQL");
+                }
+                for (String sql : statements) {
+                    String plan = explain(sql);
+                    if (plan.contains(".tableScan") && !ALLOWED_SCANS.containsKey(name)) {
+                        failures.add(name + " scans a table: " + plan);
+                    }
+                }
+            }
+        }
+
+        Assertions.assertThat(failures).isEmpty();
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                int parameterCount = statement.getParameterMetaData().getParameterCount();
+                for (int i = 1; i <= parameterCount; i++) {
+                    statement.setNull(i, Types.NULL);
+                }
+                try (ResultSet plan = statement.executeQuery()) {
+                    plan.next();
+                    return plan.getString(1);
+                }
+            }
+        });
+    }
+
+    // One value per parameter type used by the finders. The values only need to be valid, since the plan doesn't
+    // depend on them.
+    private static Object[] sampleArguments(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Type[] genericTypes = method.getGenericParameterTypes();
+        Object[] arguments = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Class<?> type = types[i];
+            if (type == String.class) {
+                arguments[i] = "00001";
+            } else if (type == Long.class || type == long.class) {
+                arguments[i] = 1L;
+            } else if (type == Float.class || type == float.class) {
+                arguments[i] = 0.f;
+            } else if (type == Review.Status.class) {
+                arguments[i] = Review.Status.ACCEPTED;
+            } else if (Collection.class.isAssignableFrom(type)) {
+                boolean strings = genericTypes[i] instanceof ParameterizedType parameterized
+                        && parameterized.getActualTypeArguments()[0] == String.class;
+                arguments[i] = strings ? List.of("00001", "00002") : List.of(1L, 2L);
+            } else if (type == Pageable.class) {
+                arguments[i] = PageRequest.of(0, 10, Sort.by("id"));
+            } else {
+                throw new IllegalArgumentException(
+                        "No sample value for " + type.getSimpleName() + " in " + method.getName());
+            }
+        }
+        return arguments;
+    }
+
+    // Records every SQL statement Hibernate prepares.
+    public static class SqlRecorder implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
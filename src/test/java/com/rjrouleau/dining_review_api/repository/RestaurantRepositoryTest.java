@@ -1,13 +1,21 @@
 package com.rjrouleau.dining_review_api.repository;
 
+import com.rjrouleau.dining_review_api.AppUtils;
 import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.VersionSummary;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -63,51 +71,64 @@ public class RestaurantRepositoryTest {
         Assertions.assertThat(restaurantOptional.get().getId()).isEqualTo(savedRestaurant.getId());
     }
 
+    // Runs outside the test transaction so each save is committed and checked against the constraint, like it is in
+    // the controller.
     @Test
-    public void RestaurantRepository_FindByNameAndZipcode_ReturnRestaurantList(){
-        Restaurant newRestaurant1 = Restaurant.builder()
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void RestaurantRepository_SaveSameNameAndZipcode_ThrowUniqueViolation(){
+        try {
+            restaurantRepository.save(Restaurant.builder()
+                    .name("Test Restaurant")
+                    .city("San Francisco")
+                    .state("California")
+                    .zipcode("00002")
+                    .build());
+
+            // the same name in another zipcode is allowed.
+            Restaurant otherZipcode = restaurantRepository.save(Restaurant.builder()
+                    .name("Test Restaurant")
+                    .city("Portland")
+                    .state("Oregon")
+                    .zipcode("00003")
+                    .build());
+            Assertions.assertThat(otherZipcode.getId()).isNotNull();
+
+            // names are compared ignoring case and spacing.
+            Restaurant duplicate = Restaurant.builder()
+                    .name("  test   RESTAURANT ")
+                    .city("San Francisco")
+                    .state("California")
+                    .zipcode("00002")
+                    .build();
+            Assertions.assertThatThrownBy(() -> restaurantRepository.save(duplicate))
+                    .isInstanceOfSatisfying(
+                            DataIntegrityViolationException.class,
+                            e -> Assertions.assertThat(AppUtils.isUniqueViolation(e)).isTrue()
+                    );
+        } finally {
+            restaurantRepository.deleteAll();
+        }
+    }
+
+    @Test
+    public void RestaurantRepository_FindExistingIds_ReturnIdList(){
+        Restaurant newRestaurant = Restaurant.builder()
                 .overallScore(3.0f)
                 .peanutScore(3.0f)
                 .eggScore(3.0f)
                 .dairyScore(3.0f)
-                .name("testRestaurant1")
+                .name("testRestaurant")
                 .city("San Francisco")
                 .state("California")
                 .zipcode("00002")
                 .build();
 
-        Restaurant newRestaurant2 = Restaurant.builder()
-                .overallScore(3.0f)
-                .peanutScore(3.0f)
-                .eggScore(3.0f)
-                .dairyScore(3.0f)
-                .name("testRestaurant1")
-                .city("Portland")
-                .state("Oregon")
-                .zipcode("00003")
-                .build();
-
-        Restaurant savedRestaurant1 = restaurantRepository.save(newRestaurant1);
-        Restaurant savedRestaurant2 = restaurantRepository.save(newRestaurant2);
-
-        List<Restaurant> restaurantList1 = restaurantRepository.findByNameAndZipcode(
-                savedRestaurant1.getName(),
-                savedRestaurant1.getZipcode()
-        );
-
-        List<Restaurant> restaurantList2 = restaurantRepository.findByNameAndZipcode(
-                savedRestaurant2.getName(),
-                savedRestaurant2.getZipcode()
-        );
+        Restaurant savedRestaurant = restaurantRepository.save(newRestaurant);
+        Long missingId = savedRestaurant.getId() + 1000;
 
-        Assertions.assertThat(restaurantList1).isNotNull();
-        Assertions.assertThat(restaurantList2).isNotNull();
+        List<Long> existingIds = restaurantRepository.findExistingIds(List.of(savedRestaurant.getId(), missingId));
 
-        // restaurant1 and restaurant2 have the same name but different zipcodes.
-        Assertions.assertThat(restaurantList1.contains(savedRestaurant1)).isTrue();
-        Assertions.assertThat(restaurantList1.contains(savedRestaurant2)).isFalse();
-        Assertions.assertThat(restaurantList2.contains(savedRestaurant2)).isTrue();
-        Assertions.assertThat(restaurantList2.contains(savedRestaurant1)).isFalse();
+        Assertions.assertThat(existingIds).containsExactly(savedRestaurant.getId());
     }
 
     @Test
@@ -400,4 +421,46 @@ public class RestaurantRepositoryTest {
         Assertions.assertThat(greaterThan0RestaurantList.size()).isEqualTo(2);
         Assertions.assertThat(greaterThan0RestaurantList.get(0)).isEqualTo(newRestaurant1);
     }
+
+    @Test
+    public void RestaurantRepository_FindByZipcodeAndIdGreaterThan_ReturnKeysetPage(){
+        List<Restaurant> savedRestaurants = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            savedRestaurants.add(restaurantRepository.save(Restaurant.builder()
+                    .name("testRestaurant" + i)
+                    .zipcode("00002")
+                    .build()));
+        }
+        restaurantRepository.save(Restaurant.builder().name("otherRestaurant").zipcode("00003").build());
+
+        List<Restaurant> firstPage = restaurantRepository.findByZipcodeAndIdGreaterThan(
+                "00002", Long.MIN_VALUE, PageRequest.of(0, 2, Sort.by("id")));
+        List<Restaurant> secondPage = restaurantRepository.findByZipcodeAndIdGreaterThan(
+                "00002", firstPage.get(1).getId(), PageRequest.of(0, 2, Sort.by("id")));
+
+        Assertions.assertThat(firstPage).containsExactly(savedRestaurants.get(0), savedRestaurants.get(1));
+        Assertions.assertThat(secondPage).containsExactly(savedRestaurants.get(2), savedRestaurants.get(3));
+    }
+
+    @Test
+    public void RestaurantRepository_SummarizeByZipcode_ChangesWithEveryWrite(){
+        Restaurant restaurant1 = restaurantRepository.save(
+                Restaurant.builder().name("testRestaurant1").zipcode("00002").build());
+        Restaurant restaurant2 = restaurantRepository.save(
+                Restaurant.builder().name("testRestaurant2").zipcode("00002").build());
+        restaurantRepository.save(Restaurant.builder().name("otherRestaurant").zipcode("00003").build());
+
+        VersionSummary saved = restaurantRepository.summarizeByZipcode("00002");
+        Assertions.assertThat(saved).isEqualTo(new VersionSummary(2, restaurant1.getId() + restaurant2.getId(), 0));
+        Assertions.assertThat(restaurant1.getLastModified()).isNotNull();
+
+        // a restaurant moving to another zipcode leaves the summary of its old one. The query flushes the change.
+        restaurant2.setZipcode("00003");
+        restaurantRepository.save(restaurant2);
+        VersionSummary moved = restaurantRepository.summarizeByZipcode("00002");
+        Assertions.assertThat(moved).isEqualTo(new VersionSummary(1, restaurant1.getId(), 0));
+        Assertions.assertThat(restaurantRepository.summarizeByZipcode("00003").versionSum()).isEqualTo(1);
+
+        Assertions.assertThat(restaurantRepository.summarizeByZipcode("99999")).isEqualTo(new VersionSummary(0, 0, 0));
+    }
 }
@@ -1,25 +1,33 @@
 package com.rjrouleau.dining_review_api.repository;
 
+import com.rjrouleau.dining_review_api.model.Restaurant;
 import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.ReviewExport;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.model.VersionSummary;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
 public class ReviewRepositoryTest {
 
     private ReviewRepository reviewRepository;
+    private TestEntityManager entityManager;
 
     @Autowired
-    public ReviewRepositoryTest(ReviewRepository reviewRepository){
+    public ReviewRepositoryTest(ReviewRepository reviewRepository, TestEntityManager entityManager){
         this.reviewRepository = reviewRepository;
+        this.entityManager = entityManager;
     }
 
     @Test
@@ -65,9 +73,11 @@ public class ReviewRepositoryTest {
     }
 
     @Test
-    public void ReviewRepository_FindByUserName_ReturnReviewList(){
+    public void ReviewRepository_FindByUserIdOrderByIdAsc_ReturnReviewList(){
+        User user = entityManager.persist(User.builder().userName("testUser").build());
+
         Review newReview1 = Review.builder()
-                .userName("testUser")
+                .userId(user.getId())
                 .restaurantName("testRestaurant1")
                 .peanutScore(3)
                 .eggScore(2)
@@ -76,7 +86,7 @@ public class ReviewRepositoryTest {
                 .build();
 
         Review newReview2 = Review.builder()
-                .userName("testUser")
+                .userId(user.getId())
                 .restaurantName("testRestaurant2")
                 .peanutScore(3)
                 .eggScore(2)
@@ -86,13 +96,16 @@ public class ReviewRepositoryTest {
 
         Review savedReview1 = reviewRepository.save(newReview1);
         Review savedReview2 = reviewRepository.save(newReview2);
+        entityManager.flush();
+        entityManager.clear();
 
-        List<Review> reviewList = reviewRepository.findByUserName(savedReview1.getUserName());
+        List<Review> reviewList = reviewRepository.findByUserIdOrderByIdAsc(user.getId());
 
         Assertions.assertThat(reviewList).isNotNull();
-        Assertions.assertThat(reviewList.size()).isEqualTo(2);
-        Assertions.assertThat(reviewList.contains(savedReview1)).isTrue();
-        Assertions.assertThat(reviewList.contains(savedReview2)).isTrue();
+        Assertions.assertThat(reviewList).extracting(Review::getId)
+                .containsExactly(savedReview1.getId(), savedReview2.getId());
+        // the user name is read from the user fetched with the review.
+        Assertions.assertThat(reviewList.get(0).getUserName()).isEqualTo("testUser");
     }
 
     @Test
@@ -159,10 +172,15 @@ public class ReviewRepositoryTest {
     }
 
     @Test
-    public void ReviewRepository_FindByRestaurantNameAndStatus_ReturnReviewList(){
+    public void ReviewRepository_FindByRestaurantIdInAndStatusOrderByIdAsc_ReturnReviewList(){
+        // two restaurants with the same name in different zipcodes.
+        Restaurant restaurant1 = entityManager.persist(
+                Restaurant.builder().name("testRestaurant1").zipcode("00001").build());
+        Restaurant restaurant2 = entityManager.persist(
+                Restaurant.builder().name("testRestaurant1").zipcode("00002").build());
+
         Review newReview1 = Review.builder()
-                .userName("testUser")
-                .restaurantName("testRestaurant1")
+                .restaurantId(restaurant1.getId())
                 .peanutScore(3)
                 .eggScore(2)
                 .dairyScore(null)
@@ -171,8 +189,7 @@ public class ReviewRepositoryTest {
                 .build();
 
         Review newReview2 = Review.builder()
-                .userName("testUser")
-                .restaurantName("testRestaurant1")
+                .restaurantId(restaurant1.getId())
                 .peanutScore(3)
                 .eggScore(2)
                 .dairyScore(null)
@@ -181,8 +198,7 @@ public class ReviewRepositoryTest {
                 .build();
 
         Review newReview3 = Review.builder()
-                .userName("testUser")
-                .restaurantName("testRestaurant1")
+                .restaurantId(restaurant1.getId())
                 .peanutScore(null)
                 .eggScore(null)
                 .dairyScore(null)
@@ -190,28 +206,124 @@ public class ReviewRepositoryTest {
                 .status(Review.Status.REJECTED)
                 .build();
 
+        Review newReview4 = Review.builder()
+                .restaurantId(restaurant2.getId())
+                .peanutScore(1)
+                .commentary("A review for the other restaurant1.")
+                .status(Review.Status.ACCEPTED)
+                .build();
+
         Review savedReview1 = reviewRepository.save(newReview1);
         Review savedReview2 = reviewRepository.save(newReview2);
         Review savedReview3 = reviewRepository.save(newReview3);
+        Review savedReview4 = reviewRepository.save(newReview4);
 
-        List<Review> acceptedReviewList = reviewRepository.findByRestaurantNameAndStatus(
-                savedReview1.getRestaurantName(),
+        List<Review> acceptedReviewList = reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(
+                List.of(restaurant1.getId()),
                 Review.Status.ACCEPTED
         );
 
-        List<Review> rejectedReviewList = reviewRepository.findByRestaurantNameAndStatus(
-                savedReview3.getRestaurantName(),
+        List<Review> rejectedReviewList = reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(
+                List.of(restaurant1.getId()),
                 Review.Status.REJECTED
         );
 
-        Assertions.assertThat(acceptedReviewList).isNotNull();
-        Assertions.assertThat(acceptedReviewList.size()).isEqualTo(2);
-        Assertions.assertThat(acceptedReviewList.contains(savedReview1)).isTrue();
-        Assertions.assertThat(acceptedReviewList.contains(savedReview2)).isTrue();
-        Assertions.assertThat(acceptedReviewList.contains(savedReview3)).isFalse();
+        List<Review> bothRestaurantsReviewList = reviewRepository.findByRestaurantIdInAndStatusOrderByIdAsc(
+                List.of(restaurant1.getId(), restaurant2.getId()),
+                Review.Status.ACCEPTED
+        );
 
-        Assertions.assertThat(rejectedReviewList).isNotNull();
-        Assertions.assertThat(rejectedReviewList.size()).isEqualTo(1);
-        Assertions.assertThat(rejectedReviewList.contains(savedReview3)).isTrue();
+        Assertions.assertThat(acceptedReviewList).containsExactly(savedReview1, savedReview2);
+        Assertions.assertThat(rejectedReviewList).containsExactly(savedReview3);
+        Assertions.assertThat(bothRestaurantsReviewList).containsExactly(savedReview1, savedReview2, savedReview4);
+    }
+
+    @Test
+    public void ReviewRepository_StreamByUserIdOrderByIdAsc_ReturnReviewStream(){
+        User user = entityManager.persist(User.builder().userName("testUser").build());
+        User otherUser = entityManager.persist(User.builder().userName("otherUser").build());
+        Review savedReview1 = reviewRepository.save(Review.builder().userId(user.getId()).build());
+        Review savedReview2 = reviewRepository.save(Review.builder().userId(user.getId()).build());
+        reviewRepository.save(Review.builder().userId(otherUser.getId()).build());
+
+        try (Stream<Review> reviews = reviewRepository.streamByUserIdOrderByIdAsc(user.getId())) {
+            Assertions.assertThat(reviews.map(Review::getId))
+                    .containsExactly(savedReview1.getId(), savedReview2.getId());
+        }
+    }
+
+    @Test
+    public void ReviewRepository_StreamExport_ReturnFilteredRowsAfterCursor(){
+        User user = entityManager.persist(User.builder().userName("testUser").build());
+        Restaurant restaurant1 = entityManager.persist(
+                Restaurant.builder().name("testRestaurant1").zipcode("00001").state("Illinois").build());
+        Restaurant restaurant2 = entityManager.persist(
+                Restaurant.builder().name("testRestaurant2").zipcode("00002").state("Texas").build());
+        Review savedReview1 = reviewRepository.save(Review.builder().userId(user.getId())
+                .restaurantId(restaurant1.getId()).peanutScore(4).status(Review.Status.ACCEPTED).build());
+        Review savedReview2 = reviewRepository.save(Review.builder().userId(user.getId())
+                .restaurantId(restaurant2.getId()).status(Review.Status.ACCEPTED).build());
+        reviewRepository.save(Review.builder().userId(user.getId())
+                .restaurantId(restaurant1.getId()).status(Review.Status.PENDING).build());
+        Review savedReview4 = reviewRepository.save(Review.builder().userId(user.getId())
+                .restaurantId(restaurant1.getId()).status(Review.Status.ACCEPTED).build());
+        entityManager.flush();
+
+        try (Stream<ReviewExport> rows = reviewRepository.streamExport(
+                Review.Status.ACCEPTED, Long.MIN_VALUE, null, null, null)) {
+            Assertions.assertThat(rows.map(ReviewExport::id))
+                    .containsExactly(savedReview1.getId(), savedReview2.getId(), savedReview4.getId());
+        }
+        try (Stream<ReviewExport> rows = reviewRepository.streamExport(
+                Review.Status.ACCEPTED, savedReview1.getId(), null, "00001", null)) {
+            Assertions.assertThat(rows.map(ReviewExport::id)).containsExactly(savedReview4.getId());
+        }
+        try (Stream<ReviewExport> rows = reviewRepository.streamExport(
+                Review.Status.ACCEPTED, Long.MIN_VALUE, null, null, "Texas")) {
+            Assertions.assertThat(rows.toList()).containsExactly(new ReviewExport(savedReview2.getId(),
+                    restaurant2.getId(), "testRestaurant2", "00002", "Texas", user.getId(), "testUser",
+                    null, null, null, null));
+        }
+        try (Stream<ReviewExport> rows = reviewRepository.streamExport(
+                Review.Status.ACCEPTED, Long.MIN_VALUE, restaurant1.getId(), null, null)) {
+            Assertions.assertThat(rows.map(ReviewExport::peanutScore)).containsExactly(4, null);
+        }
+    }
+
+    @Test
+    public void ReviewRepository_SummarizeByRestaurantIdInAndStatus_ChangesWithEveryWrite(){
+        Restaurant restaurant = entityManager.persist(
+                Restaurant.builder().name("testRestaurant1").zipcode("00001").build());
+        Review review1 = reviewRepository.save(Review.builder()
+                .restaurantId(restaurant.getId())
+                .peanutScore(3)
+                .status(Review.Status.ACCEPTED)
+                .build());
+        Review review2 = reviewRepository.save(Review.builder()
+                .restaurantId(restaurant.getId())
+                .peanutScore(4)
+                .status(Review.Status.ACCEPTED)
+                .build());
+        entityManager.flush();
+
+        VersionSummary saved = reviewRepository.summarizeByRestaurantIdInAndStatus(
+                List.of(restaurant.getId()), Review.Status.ACCEPTED);
+        Assertions.assertThat(saved).isEqualTo(new VersionSummary(2, review1.getId() + review2.getId(), 0));
+
+        review1.setCommentary("Edited.");
+        entityManager.flush();
+        VersionSummary edited = reviewRepository.summarizeByRestaurantIdInAndStatus(
+                List.of(restaurant.getId()), Review.Status.ACCEPTED);
+        Assertions.assertThat(edited.versionSum()).isEqualTo(1);
+        Assertions.assertThat(edited.tag()).isNotEqualTo(saved.tag());
+
+        review2.setStatus(Review.Status.REJECTED);
+        entityManager.flush();
+        VersionSummary rejected = reviewRepository.summarizeByRestaurantIdInAndStatus(
+                List.of(restaurant.getId()), Review.Status.ACCEPTED);
+        Assertions.assertThat(rejected).isEqualTo(new VersionSummary(1, review1.getId(), 1));
+
+        VersionSummary none = reviewRepository.summarizeByRestaurantIdInAndStatus(List.of(-1L), Review.Status.ACCEPTED);
+        Assertions.assertThat(none).isEqualTo(new VersionSummary(0, 0, 0));
     }
 }
@@ -1,5 +1,6 @@
 package com.rjrouleau.dining_review_api.repository;
 
+import com.rjrouleau.dining_review_api.AppUtils;
 import com.rjrouleau.dining_review_api.model.User;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -7,6 +8,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -71,4 +75,23 @@ public class UserRepositoryTest {
 
         Assertions.assertThat(user.getUserName()).isEqualTo(newUser.getUserName());
     }
+
+    // Runs outside the test transaction so each save is committed and checked against the unique index, like it is
+    // in the controller.
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void UserRepository_SaveTakenUserName_ThrowUniqueViolation(){
+        try {
+            userRepository.save(User.builder().userName("testUser").city("Fremont").build());
+
+            User duplicate = User.builder().userName("testUser").city("San Jose").build();
+            Assertions.assertThatThrownBy(() -> userRepository.save(duplicate))
+                    .isInstanceOfSatisfying(
+                            DataIntegrityViolationException.class,
+                            e -> Assertions.assertThat(AppUtils.isUniqueViolation(e)).isTrue()
+                    );
+        } finally {
+            userRepository.deleteAll();
+        }
+    }
 }
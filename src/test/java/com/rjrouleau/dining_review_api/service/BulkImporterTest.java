@@ -0,0 +1,132 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import com.rjrouleau.dining_review_api.repository.ReviewRepository;
+import com.rjrouleau.dining_review_api.repository.UserRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Batches of two lines, so that duplicates are found both within a batch and against rows inserted by an earlier one.
+// Runs outside a test transaction, like BulkLoaderTest.
+@DataJpaTest(properties = {"bulk.import.batch-size=2", "bulk.import.max-reported-errors=3"})
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({BulkImporter.class, BulkLoader.class, RestaurantCache.class, UserCache.class, RestaurantLeaderboard.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BulkImporterTest {
+
+    @Autowired
+    private BulkImporter bulkImporter;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private RestaurantLeaderboard restaurantLeaderboard;
+
+    @AfterEach
+    public void cleanup(){
+        reviewRepository.deleteAll();
+        userRepository.deleteAll();
+        restaurantRepository.deleteAll();
+    }
+
+    @Test
+    public void BulkImporter_ImportRestaurants_ReportsDuplicateAndInvalidLines() throws IOException {
+        restaurantRepository.save(Restaurant.builder().name("Existing Restaurant").zipcode("00001").build());
+
+        BulkImporter.Report report = bulkImporter.importRestaurants(ndjson(
+                "{\"name\": \"First Restaurant\", \"zipcode\": \"00001\"}",
+                "{\"name\": \"existing  restaurant\", \"zipcode\": \"00001\"}",
+                "",
+                "{\"name\": \"Second Restaurant\", \"zipcode\": \"00001\"}",
+                "{\"name\": \"SECOND restaurant\", \"zipcode\": \"00001\"}",
+                "{\"name\": \"First Restaurant\", \"zipcode\": \"00002\"}",
+                "{\"name\": ",
+                "{\"id\": 999, \"name\": \"First Restaurant\", \"zipcode\": \"00001\"}"
+        ));
+
+        Assertions.assertThat(report.records()).isEqualTo(7);
+        Assertions.assertThat(report.imported()).isEqualTo(3);
+        Assertions.assertThat(report.failed()).isEqualTo(4);
+        // only the first three errors are kept.
+        Assertions.assertThat(report.errors()).map(BulkImporter.LineError::line).containsExactly(2L, 5L, 7L);
+        Assertions.assertThat(report.errors().get(0).error()).isEqualTo(BulkImporter.DUPLICATE_RESTAURANT);
+        Assertions.assertThat(report.errors().get(2).error()).startsWith(BulkImporter.INVALID_JSON);
+        Assertions.assertThat(restaurantRepository.count()).isEqualTo(4);
+        Assertions.assertThat(restaurantRepository.findNamesAndZipcodes(List.of("first restaurant")))
+                .map(RestaurantRepository.NameAndZipcode::getZipcode)
+                .containsExactlyInAnyOrder("00001", "00002");
+    }
+
+    @Test
+    public void BulkImporter_ImportRestaurants_ClearsOnlyImportedZipcodes() throws IOException {
+        restaurantLeaderboard.clear();
+        restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.PEANUT);
+        restaurantLeaderboard.search("00002", RestaurantLeaderboard.Allergy.PEANUT);
+
+        bulkImporter.importRestaurants(ndjson("{\"name\": \"First Restaurant\", \"zipcode\": \"00001\"}"));
+
+        Assertions.assertThat(restaurantLeaderboard.zipcodeCount()).isEqualTo(1);
+        // still loaded, so searching it doesn't add a zipcode.
+        restaurantLeaderboard.search("00002", RestaurantLeaderboard.Allergy.PEANUT);
+        Assertions.assertThat(restaurantLeaderboard.zipcodeCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void BulkImporter_ImportReviews_ReportsUnknownUserAndRestaurant() throws IOException {
+        User user = userRepository.save(User.builder().userName("testUser").build());
+        Restaurant restaurant = restaurantRepository.save(Restaurant.builder().name("testRestaurant").build());
+        restaurantLeaderboard.clear();
+        restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.PEANUT);
+
+        BulkImporter.Report report = bulkImporter.importReviews(ndjson(
+                "{\"userName\": \"testUser\", \"restaurantId\": " + restaurant.getId()
+                        + ", \"peanutScore\": 4, \"status\": \"ACCEPTED\"}",
+                "{\"userName\": \"otherUser\", \"restaurantId\": " + restaurant.getId() + "}",
+                "{\"userName\": \"testUser\", \"restaurantId\": " + (restaurant.getId() + 1000) + "}",
+                "{\"userName\": \"testUser\", \"restaurantId\": " + restaurant.getId() + ", \"commentary\": \"ok\"}"
+        ));
+
+        Assertions.assertThat(report.imported()).isEqualTo(2);
+        Assertions.assertThat(report.errors()).containsExactly(
+                new BulkImporter.LineError(2, BulkImporter.USER_NOT_FOUND),
+                new BulkImporter.LineError(3, BulkImporter.RESTAURANT_NOT_FOUND)
+        );
+        List<Review> reviews = reviewRepository.findByUserIdOrderByIdAsc(user.getId());
+        Assertions.assertThat(reviews).hasSize(2)
+                .allMatch(review -> review.getStatus() == Review.Status.PENDING)
+                .allMatch(review -> restaurant.getId().equals(review.getRestaurantId()));
+        Assertions.assertThat(reviews.get(0).getPeanutScore()).isEqualTo(4);
+        // pending reviews leave the leaderboards loaded.
+        Assertions.assertThat(restaurantLeaderboard.zipcodeCount()).isEqualTo(1);
+    }
+
+    private static ByteArrayInputStream ndjson(String... lines) {
+        return new ByteArrayInputStream((String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,115 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import com.rjrouleau.dining_review_api.repository.ReviewRepository;
+import com.rjrouleau.dining_review_api.repository.UserRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Small flush and transaction sizes, so that every load spans several flushes and transactions. Runs outside a test
+// transaction so that each of the loader's transactions is committed or rolled back on its own.
+@DataJpaTest(properties = {"bulk.load.flush-size=100", "bulk.load.transaction-size=1000"})
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@Import({BulkLoader.class, RestaurantCache.class, UserCache.class, RestaurantLeaderboard.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BulkLoaderTest {
+
+    @Autowired
+    private BulkLoader bulkLoader;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @AfterEach
+    public void cleanup(){
+        reviewRepository.deleteAll();
+        userRepository.deleteAll();
+        restaurantRepository.deleteAll();
+    }
+
+    @Test
+    public void BulkLoader_InsertAll_InsertsEveryRowWithItsId(){
+        List<Restaurant> restaurants = new ArrayList<>();
+        for (int i = 0; i < 2_500; i++) {
+            restaurants.add(Restaurant.builder()
+                    .name("Test  Restaurant " + i)
+                    .zipcode(String.format("%05d", i % 10))
+                    .build());
+        }
+        User user = User.builder().userName("testUser").build();
+
+        Assertions.assertThat(bulkLoader.insertAll(restaurants)).isEqualTo(2_500);
+        Assertions.assertThat(bulkLoader.insertAll(List.of(user))).isEqualTo(1);
+        List<Review> reviews = new ArrayList<>();
+        for (Restaurant restaurant : restaurants) {
+            reviews.add(Review.builder()
+                    .restaurantId(restaurant.getId())
+                    .userId(user.getId())
+                    .peanutScore(3)
+                    .status(Review.Status.PENDING)
+                    .build());
+        }
+        Assertions.assertThat(bulkLoader.insertAll(reviews)).isEqualTo(2_500);
+
+        Assertions.assertThat(restaurants).map(Restaurant::getId).doesNotContainNull().doesNotHaveDuplicates();
+        Assertions.assertThat(reviews).map(Review::getId).doesNotContainNull().doesNotHaveDuplicates();
+        Assertions.assertThat(restaurantRepository.count()).isEqualTo(2_500);
+        Assertions.assertThat(reviewRepository.count()).isEqualTo(2_500);
+
+        Restaurant saved = restaurantRepository.findById(restaurants.get(7).getId()).orElseThrow();
+        Assertions.assertThat(saved.getNormalizedName()).isEqualTo("test restaurant 7");
+        Assertions.assertThat(saved.getVersion()).isEqualTo(0L);
+        Assertions.assertThat(reviewRepository.findById(reviews.get(7).getId()).orElseThrow().getRestaurantId())
+                .isEqualTo(saved.getId());
+    }
+
+    @Test
+    public void BulkLoader_InsertAll_DuplicateUserName_KeepsEarlierTransactions(){
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 1_500; i++) {
+            users.add(User.builder().userName("testUser" + i).build());
+        }
+        // in the second transaction, which is rolled back as a whole.
+        users.set(1_200, User.builder().userName("testUser0").build());
+
+        Assertions.assertThatThrownBy(() -> bulkLoader.insertAll(users)).isNotNull();
+
+        Assertions.assertThat(userRepository.count()).isEqualTo(1_000);
+        Assertions.assertThat(userRepository.findByUserName("testUser999")).isPresent();
+        Assertions.assertThat(userRepository.findByUserName("testUser1000")).isEmpty();
+    }
+
+    @Test
+    public void BulkLoader_InsertAll_ClearsCachedMisses(){
+        Assertions.assertThat(userCache.findByUserName("testUser")).isEmpty();
+
+        bulkLoader.insertAll(List.of(User.builder().userName("testUser").build()));
+
+        Assertions.assertThat(userCache.findByUserName("testUser")).isPresent()
+                .get().extracting(User::getId).matches(Objects::nonNull);
+    }
+}
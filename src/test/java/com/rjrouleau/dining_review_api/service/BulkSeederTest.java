@@ -0,0 +1,109 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.User;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import com.rjrouleau.dining_review_api.repository.ReviewRepository;
+import com.rjrouleau.dining_review_api.repository.UserRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Runs outside a test transaction, like BulkLoaderTest. The seeder is built by each test with its own files.
+@DataJpaTest
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@ImportAutoConfiguration({MetricsAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class})
+@Import({
+        BulkLoader.class,
+        ScoreRebuildJob.class,
+        ScoreUpdateQueue.class,
+        RestaurantUpdater.class,
+        RestaurantCache.class,
+        UserCache.class,
+        RestaurantLeaderboard.class
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BulkSeederTest {
+
+    @Autowired
+    private BulkLoader bulkLoader;
+
+    @Autowired
+    private ScoreRebuildJob scoreRebuildJob;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @TempDir
+    private Path seedDir;
+
+    @AfterEach
+    public void cleanup(){
+        reviewRepository.deleteAll();
+        userRepository.deleteAll();
+        restaurantRepository.deleteAll();
+    }
+
+    @Test
+    public void BulkSeeder_Run_SeedsEmptyTablesOnce() throws IOException {
+        Path restaurants = Files.writeString(seedDir.resolve("restaurants.ndjson"),
+                "{\"id\": 999, \"name\": \"First Restaurant\", \"zipcode\": \"00001\"}\n"
+                        + "\n"
+                        + "{\"name\": \"Second Restaurant\", \"zipcode\": \"00001\"}\n");
+        Path users = Files.writeString(seedDir.resolve("users.ndjson"), "{\"userName\": \"testUser\"}\n");
+        BulkSeeder seeder = seeder("file:" + restaurants, "file:" + users, "");
+
+        seeder.run(null);
+        seeder.run(null);
+
+        Assertions.assertThat(restaurantRepository.count()).isEqualTo(2);
+        Assertions.assertThat(restaurantRepository.findById(999L)).isEmpty();
+        Assertions.assertThat(userRepository.findByUserName("testUser")).isPresent();
+        Assertions.assertThat(userRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void BulkSeeder_Run_AcceptedReviews_RebuildScores() throws IOException {
+        Restaurant restaurant = restaurantRepository.save(Restaurant.builder().name("testRestaurant").build());
+        User user = userRepository.save(User.builder().userName("testUser").build());
+        String review = "{\"restaurantId\": " + restaurant.getId() + ", \"userId\": " + user.getId()
+                + ", \"peanutScore\": %d, \"status\": \"ACCEPTED\"}\n";
+        Path reviews = Files.writeString(seedDir.resolve("reviews.ndjson"),
+                review.formatted(2) + review.formatted(4));
+
+        seeder("", "", "file:" + reviews).run(null);
+
+        Assertions.assertThat(reviewRepository.count()).isEqualTo(2);
+        Restaurant rebuilt = restaurantRepository.findById(restaurant.getId()).get();
+        Assertions.assertThat(rebuilt.getPeanutCount()).isEqualTo(2);
+        Assertions.assertThat(rebuilt.getPeanutScore()).isEqualTo(3.0f);
+    }
+
+    private BulkSeeder seeder(String restaurants, String users, String reviews) {
+        return new BulkSeeder(bulkLoader, scoreRebuildJob, restaurantRepository, userRepository, reviewRepository,
+                new DefaultResourceLoader(), new ObjectMapper(), restaurants, users, reviews);
+    }
+}
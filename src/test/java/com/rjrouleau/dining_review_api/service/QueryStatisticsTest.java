@@ -0,0 +1,133 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import com.rjrouleau.dining_review_api.repository.UserRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Every statement counts as slow, so that the slow query log can be checked. Runs outside a test transaction so that
+// each repository call commits and flushes on its own.
+@DataJpaTest(properties = "queries.slow-threshold-ms=0")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@Import({QueryStatistics.class, QueryStatisticsConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ExtendWith(OutputCaptureExtension.class)
+public class QueryStatisticsTest {
+
+    @Autowired
+    private QueryStatistics queryStatistics;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void cleanup(){
+        restaurantRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void QueryStatistics_Report_AttributesWorkToRepositoryMethods(CapturedOutput output) {
+        Restaurant restaurant = restaurantRepository.save(Restaurant.builder()
+                .name("testRestaurant")
+                .zipcode("00005")
+                .build());
+        restaurantRepository.findById(restaurant.getId());
+        restaurantRepository.findById(restaurant.getId());
+
+        QueryStatistics.Report report = queryStatistics.report(100);
+
+        QueryStatistics.UsageStats save = usage(report, "RestaurantRepository.save");
+        Assertions.assertThat(save.flushes()).isGreaterThanOrEqualTo(1);
+        Assertions.assertThat(save.entitiesFlushed()).isGreaterThanOrEqualTo(1);
+        QueryStatistics.UsageStats findById = usage(report, "RestaurantRepository.findById");
+        Assertions.assertThat(findById.calls()).isEqualTo(2);
+        Assertions.assertThat(findById.statements()).isEqualTo(2);
+        Assertions.assertThat(findById.rows()).isEqualTo(2);
+        Assertions.assertThat(findById.entityLoads()).isEqualTo(2);
+
+        QueryStatistics.StatementStats insert = report.mostFrequent().stream()
+                .filter(statement -> statement.sql().startsWith("insert into restaurant"))
+                .findFirst()
+                .orElseThrow();
+        Assertions.assertThat(insert.rows()).isEqualTo(1);
+        Assertions.assertThat(insert.slowestParameters()).contains("String").doesNotContain("testRestaurant");
+
+        Assertions.assertThat(output).contains("Slow query").contains("in RestaurantRepository.findById");
+        Assertions.assertThat(output).doesNotContain("00005");
+    }
+
+    // the rows of a result set read through getResultSet() after execute() are counted, and generated keys come back
+    // wrapped like every other result set.
+    @Test
+    public void QueryStatistics_Report_CountsExecuteResultSetsAndGeneratedKeys() {
+        restaurantRepository.save(Restaurant.builder().name("restaurant1").zipcode("00005").build());
+        restaurantRepository.save(Restaurant.builder().name("restaurant2").zipcode("00005").build());
+
+        Integer rowsRead = jdbcTemplate.execute((StatementCallback<Integer>) statement -> {
+            Assertions.assertThat(statement.execute("select id from restaurant")).isTrue();
+            int rows = 0;
+            try (ResultSet resultSet = statement.getResultSet()) {
+                while (resultSet.next()) {
+                    rows++;
+                }
+            }
+            return rows;
+        });
+        Boolean keysWrapped = jdbcTemplate.execute((ConnectionCallback<Boolean>) QueryStatisticsTest::insertUser);
+
+        Assertions.assertThat(rowsRead).isEqualTo(2);
+        Assertions.assertThat(keysWrapped).isTrue();
+        QueryStatistics.StatementStats select = queryStatistics.report(100).mostFrequent().stream()
+                .filter(statement -> statement.sql().equals("select id from restaurant"))
+                .findFirst()
+                .orElseThrow();
+        Assertions.assertThat(select.executions()).isEqualTo(1);
+        Assertions.assertThat(select.rows()).isEqualTo(2);
+    }
+
+    private static boolean insertUser(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "insert into app_user (id, user_name) values (next value for app_user_seq, ?)", new String[]{"ID"})) {
+            statement.setString(1, "testUser");
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                return keys.next() && Proxy.isProxyClass(keys.getClass());
+            }
+        }
+    }
+
+    private static QueryStatistics.UsageStats usage(QueryStatistics.Report report, String name) {
+        return report.repositoryMethods().stream()
+                .filter(usage -> usage.name().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+}
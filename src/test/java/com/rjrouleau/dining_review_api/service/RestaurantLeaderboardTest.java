@@ -0,0 +1,169 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.mockito.BDDMockito.given;
+
+public class RestaurantLeaderboardTest {
+
+    private RestaurantRepository restaurantRepository;
+    private RestaurantLeaderboard restaurantLeaderboard;
+    private Restaurant restaurant;
+
+    @BeforeEach
+    public void init(){
+        restaurantRepository = Mockito.mock(RestaurantRepository.class);
+        restaurantLeaderboard = new RestaurantLeaderboard(restaurantRepository, 100);
+        restaurant = Restaurant.builder()
+                .id(1L)
+                .peanutScore(3.0f)
+                .name("testRestaurant")
+                .zipcode("00001")
+                .build();
+    }
+
+    @Test
+    public void RestaurantLeaderboard_Update_MovesRestaurantBetweenZipcodes(){
+        given(restaurantRepository.findByZipcode("00001")).willReturn(List.of(restaurant));
+        given(restaurantRepository.findByZipcode("00002")).willReturn(List.of());
+
+        Assertions.assertThat(restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.PEANUT)).hasSize(1);
+        Assertions.assertThat(restaurantLeaderboard.search("00002", RestaurantLeaderboard.Allergy.PEANUT)).isEmpty();
+
+        restaurant.setZipcode("00002");
+        restaurantLeaderboard.update("00001", restaurant);
+
+        Assertions.assertThat(restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.PEANUT)).isEmpty();
+        Assertions.assertThat(restaurantLeaderboard.search("00002", RestaurantLeaderboard.Allergy.PEANUT))
+                .extracting(Restaurant::getId)
+                .containsExactly(1L);
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findByZipcode("00002");
+    }
+
+    @Test
+    public void RestaurantLeaderboard_Remove_DropsRestaurant(){
+        given(restaurantRepository.findByZipcode("00001")).willReturn(List.of(restaurant));
+
+        List<Restaurant> before = restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.PEANUT);
+        restaurantLeaderboard.remove(restaurant);
+
+        Assertions.assertThat(restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.PEANUT)).isEmpty();
+        // snapshots already handed out do not change.
+        Assertions.assertThat(before).hasSize(1);
+    }
+
+    // copies of one restaurant published out of order, as by a PUT racing a queued score write.
+    @Test
+    public void RestaurantLeaderboard_Update_IgnoresOlderVersions(){
+        restaurant.setVersion(2L);
+        given(restaurantRepository.findByZipcode("00001")).willReturn(List.of(restaurant));
+        given(restaurantRepository.findByZipcode("00002")).willReturn(List.of());
+        restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.PEANUT);
+        restaurantLeaderboard.search("00002", RestaurantLeaderboard.Allergy.PEANUT);
+
+        restaurantLeaderboard.update(null, restaurant.toBuilder().version(1L).peanutScore(5.0f).build());
+        Assertions.assertThat(restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.PEANUT))
+                .extracting(Restaurant::getPeanutScore)
+                .containsExactly(3.0f);
+
+        // moved away, then an older copy in the old zipcode arrives.
+        restaurantLeaderboard.update("00001", restaurant.toBuilder().version(4L).zipcode("00002").build());
+        restaurantLeaderboard.update(null, restaurant.toBuilder().version(3L).build());
+        Assertions.assertThat(restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.PEANUT)).isEmpty();
+
+        // deleted, then an older copy arrives.
+        restaurantLeaderboard.remove(restaurant.toBuilder().version(5L).zipcode("00002").build());
+        restaurantLeaderboard.update(null, restaurant.toBuilder().version(4L).zipcode("00002").build());
+        Assertions.assertThat(restaurantLeaderboard.search("00002", RestaurantLeaderboard.Allergy.PEANUT)).isEmpty();
+    }
+
+    // random score changes and removals, each checked against a full sort of the zipcode.
+    @Test
+    public void RestaurantLeaderboard_Update_KeepsListsSorted(){
+        Random random = new Random(42);
+        Map<Long, Restaurant> restaurants = new HashMap<>();
+        for (long id = 1; id <= 20; id++) {
+            restaurants.put(id, randomScores(random, id));
+        }
+        given(restaurantRepository.findByZipcode("00001")).willReturn(new ArrayList<>(restaurants.values()));
+        restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.PEANUT);
+
+        for (int i = 0; i < 500; i++) {
+            long id = 1 + random.nextInt(25);
+            if (random.nextInt(5) == 0) {
+                Restaurant removed = restaurants.remove(id);
+                if (removed != null) {
+                    restaurantLeaderboard.remove(removed);
+                }
+            } else {
+                Restaurant changed = randomScores(random, id);
+                restaurants.put(id, changed);
+                restaurantLeaderboard.update(null, changed);
+            }
+
+            Assertions.assertThat(restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.PEANUT))
+                    .extracting(Restaurant::getId)
+                    .containsExactlyElementsOf(expectedIds(restaurants, Restaurant::getPeanutScore));
+            Assertions.assertThat(restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.EGG))
+                    .extracting(Restaurant::getId)
+                    .containsExactlyElementsOf(expectedIds(restaurants, Restaurant::getEggScore));
+            Assertions.assertThat(restaurantLeaderboard.search("00001", RestaurantLeaderboard.Allergy.DAIRY))
+                    .extracting(Restaurant::getId)
+                    .containsExactlyElementsOf(expectedIds(restaurants, Restaurant::getDairyScore));
+        }
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findByZipcode("00001");
+    }
+
+    @Test
+    public void RestaurantLeaderboard_Search_BoundsZipcodes(){
+        restaurantLeaderboard = new RestaurantLeaderboard(restaurantRepository, 10);
+        given(restaurantRepository.findByZipcode(Mockito.anyString())).willReturn(List.of());
+
+        for (int i = 0; i < 100; i++) {
+            restaurantLeaderboard.search(String.format("%05d", i), RestaurantLeaderboard.Allergy.PEANUT);
+        }
+
+        Assertions.assertThat(restaurantLeaderboard.zipcodeCount()).isLessThanOrEqualTo(10);
+    }
+
+    // scores from 0 to 5 in quarters, or none, so that ties and unlisted restaurants are common.
+    private static Restaurant randomScores(Random random, long id) {
+        return Restaurant.builder()
+                .id(id)
+                .name("restaurant" + id)
+                .zipcode("00001")
+                .peanutScore(randomScore(random))
+                .eggScore(randomScore(random))
+                .dairyScore(randomScore(random))
+                .build();
+    }
+
+    private static Float randomScore(Random random) {
+        int quarters = random.nextInt(22) - 1;
+        return quarters < 0 ? null : quarters / 4.f;
+    }
+
+    private static List<Long> expectedIds(
+            Map<Long, Restaurant> restaurants,
+            Function<Restaurant, Float> score
+    ) {
+        return restaurants.values().stream()
+                .filter(restaurant -> score.apply(restaurant) != null && score.apply(restaurant) > 0.f)
+                .sorted(Comparator.comparing(score, Comparator.reverseOrder()).thenComparing(Restaurant::getId))
+                .map(Restaurant::getId)
+                .toList();
+    }
+}
@@ -0,0 +1,143 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.ScoreDelta;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stress tests for lost updates. Every update adds one review to a restaurant's running aggregates, so a lost update
+// shows up as a count below the number of updates made. Runs outside a test transaction so that every update is
+// committed, like it is in the application.
+@DataJpaTest(properties = "restaurants.update.max-attempts=50")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@Import(RestaurantUpdater.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class RestaurantUpdaterTest {
+    private static final int THREADS = 16;
+    private static final int UPDATES_PER_THREAD = 100;
+
+    @Autowired
+    private RestaurantUpdater restaurantUpdater;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void cleanup(){
+        restaurantRepository.deleteAll();
+    }
+
+    @Test
+    public void RestaurantUpdater_ConcurrentUpdates_LoseNoUpdates() throws Exception {
+        List<Long> restaurantIds = saveRestaurants(8);
+        Map<Long, AtomicLong> expectedCounts = new ConcurrentHashMap<>();
+        Map<Long, AtomicLong> expectedSums = new ConcurrentHashMap<>();
+
+        runConcurrently(thread -> {
+            Long restaurantId = restaurantIds.get(ThreadLocalRandom.current().nextInt(restaurantIds.size()));
+            int score = ThreadLocalRandom.current().nextInt(1, 6);
+            restaurantUpdater.update(restaurantId, restaurant -> restaurant.applyScoreDelta(peanutReview(score)));
+            expectedCounts.computeIfAbsent(restaurantId, id -> new AtomicLong()).incrementAndGet();
+            expectedSums.computeIfAbsent(restaurantId, id -> new AtomicLong()).addAndGet(score);
+        });
+
+        for (Long restaurantId : restaurantIds) {
+            Restaurant restaurant = restaurantRepository.findById(restaurantId).orElseThrow();
+            long expectedCount = expectedCounts.getOrDefault(restaurantId, new AtomicLong()).get();
+            Assertions.assertThat(restaurant.getPeanutCount()).isEqualTo(expectedCount);
+            Assertions.assertThat(restaurant.getPeanutSum())
+                    .isEqualTo(expectedSums.getOrDefault(restaurantId, new AtomicLong()).get());
+            // one version per committed update.
+            Assertions.assertThat(restaurant.getVersion()).isEqualTo(expectedCount);
+        }
+        Assertions.assertThat(restaurantUpdater.getStats().failures()).isEqualTo(0);
+    }
+
+    // A second updater has its own lock stripes, like another instance of the application. Only the version column
+    // stops the two from overwriting each other's writes to the same restaurant.
+    @Test
+    public void RestaurantUpdater_UpdatesFromTwoInstances_LoseNoUpdates() throws Exception {
+        Long restaurantId = saveRestaurants(1).get(0);
+        RestaurantUpdater otherInstance = new RestaurantUpdater(restaurantRepository, transactionManager, 64, 50);
+
+        runConcurrently(thread -> {
+            RestaurantUpdater updater = thread % 2 == 0 ? restaurantUpdater : otherInstance;
+            updater.update(restaurantId, restaurant -> restaurant.applyScoreDelta(peanutReview(1)));
+        });
+
+        Restaurant restaurant = restaurantRepository.findById(restaurantId).orElseThrow();
+        Assertions.assertThat(restaurant.getPeanutCount()).isEqualTo(THREADS * UPDATES_PER_THREAD);
+        Assertions.assertThat(restaurant.getVersion()).isEqualTo(THREADS * UPDATES_PER_THREAD);
+        Assertions.assertThat(restaurantUpdater.getStats().failures() + otherInstance.getStats().failures())
+                .isEqualTo(0);
+    }
+
+    private List<Long> saveRestaurants(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(restaurantRepository.save(Restaurant.builder()
+                    .name("testRestaurant" + i)
+                    .zipcode("00002")
+                    .build()).getId());
+        }
+        return ids;
+    }
+
+    private static ScoreDelta peanutReview(int score) {
+        return ScoreDelta.of(Review.builder().peanutScore(score).build(), 1);
+    }
+
+    // Runs UPDATES_PER_THREAD updates on each of THREADS threads, all released at once, and rethrows any failure.
+    private static void runConcurrently(ThreadUpdate update) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < UPDATES_PER_THREAD; j++) {
+                        update.run(thread);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private interface ThreadUpdate {
+        void run(int thread);
+    }
+}
@@ -0,0 +1,196 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.ScoreDelta;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import com.rjrouleau.dining_review_api.repository.ReviewRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.BDDMockito.willAnswer;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@ImportAutoConfiguration({MetricsAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class})
+@Import({
+        ScoreRebuildJob.class,
+        ScoreUpdateQueue.class,
+        RestaurantUpdater.class,
+        RestaurantCache.class,
+        RestaurantLeaderboard.class
+})
+public class ScoreRebuildJobTest {
+
+    @Autowired
+    private ScoreRebuildJob scoreRebuildJob;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private ScoreUpdateQueue scoreUpdateQueue;
+
+    @SpyBean
+    private RestaurantUpdater restaurantUpdater;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void ScoreRebuildJob_Rebuild_RecomputesAllRestaurants(){
+        Restaurant reviewed = restaurantRepository.save(Restaurant.builder()
+                .name("testRestaurant1")
+                .zipcode("00002")
+                .build());
+        // stale aggregates and no accepted reviews left.
+        Restaurant stale = restaurantRepository.save(Restaurant.builder()
+                .peanutScore(5.0f)
+                .peanutSum(5).peanutCount(1)
+                .name("testRestaurant2")
+                .zipcode("00002")
+                .build());
+        // scores entered directly and never reviewed.
+        Restaurant unreviewed = restaurantRepository.save(Restaurant.builder()
+                .peanutScore(2.0f)
+                .eggScore(2.0f)
+                .dairyScore(2.0f)
+                .name("testRestaurant3")
+                .zipcode("00002")
+                .build());
+
+        // more reviews than one chunk, so several chunks are aggregated in parallel.
+        List<Review> reviews = new ArrayList<>();
+        for (int i = 0; i < 12_000; i++) {
+            reviews.add(Review.builder()
+                    .restaurantId(reviewed.getId())
+                    .peanutScore(i % 2 == 0 ? 2 : 4)
+                    .eggScore(i % 2 == 0 ? 1 : null)
+                    .dairyScore(5)
+                    .status(Review.Status.ACCEPTED)
+                    .build());
+        }
+        reviews.add(Review.builder()
+                .restaurantId(stale.getId())
+                .peanutScore(1)
+                .status(Review.Status.REJECTED)
+                .build());
+        reviewRepository.saveAll(reviews);
+
+        scoreRebuildJob.rebuild();
+
+        Restaurant rebuilt = restaurantRepository.findById(reviewed.getId()).get();
+        Assertions.assertThat(rebuilt.getPeanutCount()).isEqualTo(12_000);
+        Assertions.assertThat(rebuilt.getPeanutScore()).isEqualTo(3.0f);
+        Assertions.assertThat(rebuilt.getEggCount()).isEqualTo(6_000);
+        Assertions.assertThat(rebuilt.getEggScore()).isEqualTo(1.0f);
+        Assertions.assertThat(rebuilt.getDairyScore()).isEqualTo(5.0f);
+        Assertions.assertThat(rebuilt.getOverallScore()).isEqualTo(3.0f);
+
+        Restaurant reset = restaurantRepository.findById(stale.getId()).get();
+        Assertions.assertThat(reset.getPeanutCount()).isEqualTo(0);
+        Assertions.assertThat(reset.getPeanutScore()).isNull();
+
+        Restaurant untouched = restaurantRepository.findById(unreviewed.getId()).get();
+        Assertions.assertThat(untouched.getPeanutScore()).isEqualTo(2.0f);
+
+        ScoreRebuildJob.Progress progress = scoreRebuildJob.getProgress();
+        Assertions.assertThat(progress.state()).isEqualTo(ScoreRebuildJob.State.COMPLETED);
+        Assertions.assertThat(progress.reviewsScanned()).isEqualTo(12_000);
+        Assertions.assertThat(progress.restaurantsWritten()).isEqualTo(2);
+        Assertions.assertThat(meterRegistry.get("scores.rebuild")
+                .tag("state", "COMPLETED")
+                .tag("reviews", "10001-100000")
+                .timer()
+                .count()).isEqualTo(1);
+    }
+
+    // a review is approved and another withdrawn after the rebuild's scan has read the reviews but before it writes the
+    // restaurant, and the queue flushes meanwhile, as its scheduler would. The flush must not wait for the rebuild, and
+    // each change must end up counted exactly once.
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void ScoreRebuildJob_Rebuild_ConcurrentApprovals_CountEachReviewOnce() throws Exception {
+        Restaurant restaurant = restaurantRepository.save(Restaurant.builder()
+                .name("concurrentRestaurant")
+                .zipcode("00003")
+                .build());
+        List<Review> saved = new ArrayList<>();
+        reviewRepository.saveAll(List.of(
+                Review.builder().restaurantId(restaurant.getId()).peanutScore(5)
+                        .status(Review.Status.ACCEPTED).build(),
+                Review.builder().restaurantId(restaurant.getId()).peanutScore(3)
+                        .status(Review.Status.ACCEPTED).build(),
+                Review.builder().restaurantId(restaurant.getId()).peanutScore(1)
+                        .status(Review.Status.PENDING).build()
+        )).forEach(saved::add);
+        ExecutorService moderator = Executors.newSingleThreadExecutor();
+        AtomicBoolean flushedDuringRebuild = new AtomicBoolean();
+        willAnswer(invocation -> {
+            moderator.submit(() -> {
+                moderate(saved.get(1));
+                moderate(saved.get(2));
+            }).get();
+            // the changes are written before the rebuild writes the restaurant, which must add them to its totals.
+            Future<?> flush = moderator.submit(scoreUpdateQueue::flush);
+            try {
+                flush.get(5, TimeUnit.SECONDS);
+                flushedDuringRebuild.set(true);
+            } catch (TimeoutException e) {
+                // blocked by the rebuild.
+            }
+            return invocation.callRealMethod();
+        }).given(restaurantUpdater).updateAll(anyCollection(), any());
+        try {
+            scoreRebuildJob.rebuild();
+            moderator.shutdown();
+            Assertions.assertThat(moderator.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+            scoreUpdateQueue.flush();
+
+            Assertions.assertThat(flushedDuringRebuild).isTrue();
+            Restaurant written = restaurantRepository.findById(restaurant.getId()).get();
+            Assertions.assertThat(written.getPeanutCount()).isEqualTo(2);
+            Assertions.assertThat(written.getPeanutSum()).isEqualTo(6);
+        } finally {
+            // the rows have newer versions than the saved copies.
+            reviewRepository.deleteAllById(saved.stream().map(Review::getId).toList());
+            restaurantRepository.deleteById(restaurant.getId());
+        }
+    }
+
+    // Accepts a pending review or withdraws an accepted one, as ReviewController.updateReviewStatus does.
+    private void moderate(Review review) {
+        int weight = review.getStatus() == Review.Status.ACCEPTED ? -1 : 1;
+        review.setStatus(weight > 0 ? Review.Status.ACCEPTED : Review.Status.REJECTED);
+        try (ScoreUpdateQueue.ScoreChange ignored = scoreUpdateQueue.beginScoreChange()) {
+            reviewRepository.save(review);
+            scoreUpdateQueue.submit(review.getRestaurantId(), ScoreDelta.of(review, weight));
+        }
+    }
+}
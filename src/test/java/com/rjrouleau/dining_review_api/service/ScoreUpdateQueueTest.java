@@ -0,0 +1,88 @@
+package com.rjrouleau.dining_review_api.service;
+
+import com.rjrouleau.dining_review_api.model.Restaurant;
+import com.rjrouleau.dining_review_api.model.Review;
+import com.rjrouleau.dining_review_api.model.ScoreDelta;
+import com.rjrouleau.dining_review_api.repository.RestaurantRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+
+import static org.mockito.BDDMockito.given;
+
+public class ScoreUpdateQueueTest {
+
+    private RestaurantRepository restaurantRepository;
+    private MeterRegistry meterRegistry;
+    private ScoreUpdateQueue scoreUpdateQueue;
+    private Restaurant restaurant;
+
+    @BeforeEach
+    public void init(){
+        restaurantRepository = Mockito.mock(RestaurantRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        // a long flush interval so that only the explicit flush() calls write.
+        scoreUpdateQueue = new ScoreUpdateQueue(
+                new RestaurantUpdater(restaurantRepository, Mockito.mock(PlatformTransactionManager.class), 16, 3),
+                new RestaurantCache(restaurantRepository, 100, 60),
+                new RestaurantLeaderboard(restaurantRepository, 100),
+                60_000,
+                2,
+                false,
+                meterRegistry
+        );
+        restaurant = Restaurant.builder()
+                .id(1L)
+                .name("testRestaurant")
+                .zipcode("00005")
+                .build();
+    }
+
+    @AfterEach
+    public void shutdown(){
+        scoreUpdateQueue.shutdown();
+    }
+
+    @Test
+    public void ScoreUpdateQueue_Flush_CoalescesUpdatesPerRestaurant(){
+        given(restaurantRepository.findById(1L)).willReturn(Optional.of(restaurant));
+
+        for (int score = 1; score <= 5; score++) {
+            Review review = Review.builder().peanutScore(score).eggScore(score).dairyScore(score).build();
+            scoreUpdateQueue.submit(1L, ScoreDelta.of(review, 1));
+        }
+
+        Assertions.assertThat(scoreUpdateQueue.getStats().queueDepth()).isEqualTo(1);
+
+        scoreUpdateQueue.flush();
+
+        Assertions.assertThat(restaurant.getPeanutScore()).isEqualTo(3.0f);
+        Assertions.assertThat(restaurant.getPeanutCount()).isEqualTo(5);
+        Assertions.assertThat(scoreUpdateQueue.getStats().queueDepth()).isEqualTo(0);
+        Assertions.assertThat(scoreUpdateQueue.getStats().coalescingRatio()).isEqualTo(5.0);
+        // the one write is timed with the five merged reviews.
+        Assertions.assertThat(meterRegistry.get("scores.update").tag("reviews", "2-10").timer().count()).isEqualTo(1);
+        Mockito.verify(restaurantRepository, Mockito.times(1)).findById(1L);
+        Mockito.verify(restaurantRepository, Mockito.times(1)).save(restaurant);
+    }
+
+    @Test
+    public void ScoreUpdateQueue_Flush_DropsMissingRestaurant(){
+        given(restaurantRepository.findById(2L)).willReturn(Optional.empty());
+
+        Review review = Review.builder().peanutScore(3).build();
+        scoreUpdateQueue.submit(2L, ScoreDelta.of(review, 1));
+        scoreUpdateQueue.flush();
+
+        Assertions.assertThat(scoreUpdateQueue.getStats().queueDepth()).isEqualTo(0);
+        Assertions.assertThat(scoreUpdateQueue.getStats().applied()).isEqualTo(0);
+        Mockito.verify(restaurantRepository, Mockito.times(0)).save(Mockito.any(Restaurant.class));
+    }
+}